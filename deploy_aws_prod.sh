@@ -1,3 +1,4 @@
 #!/bin/bash
 
-sam deploy --config-file samconfig_prod.toml
+sam deploy --config-file samconfig_prod.toml \
+    --parameter-overrides Profile=prod Runtime=${RUNTIME:-java21}
@@ -1,3 +1,4 @@
 #!/bin/bash
 
-sam deploy --config-file samconfig_test.toml
+sam deploy --config-file samconfig_test.toml \
+    --parameter-overrides Profile=test Runtime=${RUNTIME:-java21}
@@ -10,4 +10,5 @@ PORT_NUMBER=$(echo $BASE_URL | \
 
 echo "Starting ShortUrlReservationService on localhost:$PORT_NUMBER"
 
-sam local start-api -p $PORT_NUMBER --env-vars env_test.json
+sam local start-api -p $PORT_NUMBER --env-vars env_test.json \
+    --parameter-overrides Runtime=${RUNTIME:-java21}
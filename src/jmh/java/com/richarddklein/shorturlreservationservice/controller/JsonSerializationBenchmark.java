@@ -0,0 +1,73 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.SUCCESS;
+
+/**
+ * JMH benchmark of the Jackson serialization of response bodies.
+ *
+ * <p>The `ObjectMapper` is configured the way Spring configures the one
+ * that writes the controller's responses.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int count;
+
+    private ObjectMapper objectMapper;
+    private StatusAndShortUrlReservation statusAndShortUrlReservation;
+    private StatusAndShortUrlReservationArray statusAndShortUrlReservationArray;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<ShortUrlReservation> shortUrlReservations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ShortUrlReservation shortUrlReservation =
+                    new ShortUrlReservation(ShortUrlCodec.encode((1L << 30) + i), null);
+            shortUrlReservation.setVersion(2L);
+            shortUrlReservations.add(shortUrlReservation);
+        }
+        statusAndShortUrlReservation = new StatusAndShortUrlReservation(
+                new Status(SUCCESS, "Short URL '" + shortUrlReservations.get(0).getShortUrl()
+                        + "' successfully reserved"),
+                shortUrlReservations.get(0));
+        statusAndShortUrlReservationArray = new StatusAndShortUrlReservationArray(
+                new Status(SUCCESS, count + " short URLs successfully reserved"),
+                shortUrlReservations);
+    }
+
+    @Benchmark
+    public byte[] statusAndShortUrlReservation() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(statusAndShortUrlReservation);
+    }
+
+    @Benchmark
+    public byte[] statusAndShortUrlReservationArray() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(statusAndShortUrlReservationArray);
+    }
+}
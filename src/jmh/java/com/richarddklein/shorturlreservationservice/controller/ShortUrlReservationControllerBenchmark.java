@@ -0,0 +1,86 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlCodec;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * JMH benchmark of the response mapping in `ShortUrlReservationControllerImpl`.
+ *
+ * <p>The controller sits on top of a `StubShortUrlReservationService`, so
+ * what is measured is the controller's own work: choosing the HTTP status,
+ * formatting the message, and building the `ResponseEntity`.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortUrlReservationControllerBenchmark {
+    @Param({"1", "100", "1000"})
+    private int count;
+
+    private ShortUrlReservationController shortUrlReservationController;
+    private List<String> shortUrls;
+
+    @Setup
+    public void setUp() {
+        shortUrlReservationController = new ShortUrlReservationControllerImpl(
+                new StubShortUrlReservationService(),
+                1000,
+                10000,
+                100,
+                1000,
+                new SimpleMeterRegistry());
+
+        shortUrls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shortUrls.add(ShortUrlCodec.encode((1L << 30) + i));
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<StatusAndShortUrlReservation> getSpecificShortUrlReservation() {
+        return shortUrlReservationController.getSpecificShortUrlReservation(shortUrls.get(0)).block();
+    }
+
+    @Benchmark
+    public ResponseEntity<StatusAndShortUrlReservation> reserveAnyShortUrl() {
+        return shortUrlReservationController.reserveAnyShortUrl().block();
+    }
+
+    @Benchmark
+    public ResponseEntity<StatusAndShortUrlReservationArray> reserveAnyShortUrls() {
+        return shortUrlReservationController.reserveAnyShortUrls(count).block();
+    }
+
+    @Benchmark
+    public ResponseEntity<Status> reserveSpecificShortUrl() {
+        return shortUrlReservationController.reserveSpecificShortUrl(shortUrls.get(0)).block();
+    }
+
+    @Benchmark
+    public ResponseEntity<StatusAndShortUrlStatusArray> reserveSpecificShortUrls() {
+        return shortUrlReservationController.reserveSpecificShortUrls(shortUrls).block();
+    }
+
+    @Benchmark
+    public ResponseEntity<StatusAndShortUrlStatusArray> cancelSpecificShortUrlReservations() {
+        return shortUrlReservationController.cancelSpecificShortUrlReservations(shortUrls).block();
+    }
+}
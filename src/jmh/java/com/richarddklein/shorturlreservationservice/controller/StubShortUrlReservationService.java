@@ -0,0 +1,162 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlCodec;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+import com.richarddklein.shorturlreservationservice.dto.ShortUrlAndStatus;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndAdminJob;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
+import com.richarddklein.shorturlreservationservice.service.ShortUrlReservationService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.SUCCESS;
+
+/**
+ * A Short URL Reservation Service that answers every request at once with
+ * a canned success, so that benchmarks of the controller measure only the
+ * controller.
+ *
+ * <p>Like the real service, it returns new objects on every call, since the
+ * controller fills in their messages.</p>
+ */
+public class StubShortUrlReservationService implements ShortUrlReservationService {
+    private long next = 1L << 30;
+
+    @Override
+    public ShortUrlStatus
+    initializeShortUrlReservationRepository() {
+        return SUCCESS;
+    }
+
+    @Override
+    public ShortUrlStatus
+    migrateShortUrlReservationRepository() {
+        return SUCCESS;
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation>
+    getSpecificShortUrlReservation(String shortUrl) {
+        return Mono.just(new StatusAndShortUrlReservation(
+                new Status(SUCCESS), new ShortUrlReservation(shortUrl, shortUrl)));
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        return Flux.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation>
+    reserveAnyShortUrl() {
+        return Mono.just(new StatusAndShortUrlReservation(
+                new Status(SUCCESS), nextShortUrlReservation()));
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        List<ShortUrlReservation> shortUrlReservations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shortUrlReservations.add(nextShortUrlReservation());
+        }
+        return Mono.just(new StatusAndShortUrlReservationArray(
+                new Status(SUCCESS), shortUrlReservations));
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    reserveSpecificShortUrl(String shortUrl) {
+        return Mono.just(SUCCESS);
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return Mono.just(allSucceeded(shortUrls));
+    }
+
+    @Override
+    public Mono<StatusAndUpdateCounts>
+    reserveAllShortUrls() {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    cancelSpecificShortUrlReservation(String shortUrl) {
+        return Mono.just(SUCCESS);
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return Mono.just(allSucceeded(shortUrls));
+    }
+
+    @Override
+    public Mono<StatusAndUpdateCounts>
+    cancelAllShortUrlReservations() {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    startAdminJob(AdminJobType adminJobType, Long maxShortUrlBase10) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    resumeAdminJob(String jobId) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    getAdminJob(String jobId) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private ShortUrlReservation nextShortUrlReservation() {
+        ShortUrlReservation shortUrlReservation =
+                new ShortUrlReservation(ShortUrlCodec.encode(next++), null);
+        shortUrlReservation.setVersion(2L);
+        return shortUrlReservation;
+    }
+
+    private static StatusAndShortUrlStatusArray allSucceeded(List<String> shortUrls) {
+        List<ShortUrlAndStatus> shortUrlStatuses = new ArrayList<>(shortUrls.size());
+        for (String shortUrl : shortUrls) {
+            shortUrlStatuses.add(new ShortUrlAndStatus(shortUrl, SUCCESS));
+        }
+        return new StatusAndShortUrlStatusArray(new Status(SUCCESS), shortUrlStatuses);
+    }
+}
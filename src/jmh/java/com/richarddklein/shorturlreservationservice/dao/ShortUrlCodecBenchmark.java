@@ -0,0 +1,84 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmark of the `ShortUrlCodec`.
+ *
+ * <p>The encoding benchmarks mimic the populate path, which encodes runs of
+ * consecutive short URLs, a batch at a time. The decoding and validation
+ * benchmarks mimic the request path, which checks short URLs given by
+ * clients, some of which are not short URLs at all.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortUrlCodecBenchmark {
+    // A typical 6-character range, as configured in the Parameter Store.
+    private static final long MIN_SHORT_URL_BASE10 = 1L << 30;
+
+    private final char[] buffer = new char[ShortUrlCodec.MAX_LENGTH];
+    private long next = MIN_SHORT_URL_BASE10;
+
+    private String[] shortUrls;
+    private String[] clientInputs;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        shortUrls = new String[1024];
+        clientInputs = new String[1024];
+        for (int i = 0; i < shortUrls.length; i++) {
+            shortUrls[i] = ShortUrlCodec.encode(MIN_SHORT_URL_BASE10 + i * 7919L);
+            // One in eight requests is for something that is not a short URL.
+            clientInputs[i] = (i % 8 == 0) ? shortUrls[i] + "!" : shortUrls[i];
+        }
+    }
+
+    @Benchmark
+    public String encodeToString() {
+        return ShortUrlCodec.encode(next++);
+    }
+
+    @Benchmark
+    public int encodeIntoBuffer() {
+        int length = ShortUrlCodec.encode(next++, buffer, 0);
+        return length + buffer[0];
+    }
+
+    @Benchmark
+    public String encodeFixedWidth() {
+        return ShortUrlCodec.encode(next++, 6);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchWriter.MAX_BATCH_SIZE)
+    public void encodeBatch(Blackhole blackhole) {
+        long first = next;
+        next += BatchWriter.MAX_BATCH_SIZE;
+        for (long i = first; i < next; i++) {
+            blackhole.consume(new String(buffer, 0, ShortUrlCodec.encode(i, buffer, 0)));
+        }
+    }
+
+    @Benchmark
+    public long decode() {
+        return ShortUrlCodec.decode(shortUrls[index++ & (shortUrls.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return ShortUrlCodec.isValid(clientInputs[index++ & (clientInputs.length - 1)]);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+/**
+ * JMH benchmark of the Reactor chains in `ShortUrlReservationDaoImpl`.
+ *
+ * <p>The DAO runs against a `StubDynamoDbAsyncClient`, so what is measured
+ * is the cost of the DAO's own retry and `flatMap` chains, not of DynamoDB.
+ * `conflictRate` is the fraction of conditional writes that fail, which
+ * drives the retry paths. Retries are not delayed, so that the delays do
+ * not swamp everything else.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortUrlReservationDaoBenchmark {
+    private static final String TABLE_NAME = "benchmark";
+    private static final long FIRST_SHORT_URL_BASE10 = 1L << 30;
+    private static final int NUM_SHORT_URLS = 64 * 1024;
+
+    @Param({"0", "0.1", "0.5"})
+    private double conflictRate;
+
+    @Param({"100"})
+    private int count;
+
+    private ShortUrlReservationDao shortUrlReservationDao;
+    private List<String> shortUrls;
+
+    @Setup
+    public void setUp() {
+        StubDynamoDbAsyncClient dynamoDbAsyncClient = new StubDynamoDbAsyncClient(
+                FIRST_SHORT_URL_BASE10, NUM_SHORT_URLS, conflictRate);
+
+        shortUrlReservationDao = new ShortUrlReservationDaoImpl(
+                null,
+                dynamoDbAsyncClient,
+                DynamoDbEnhancedAsyncClient.builder()
+                    .dynamoDbClient(dynamoDbAsyncClient)
+                    .build()
+                    .table(TABLE_NAME, TableSchema.fromBean(ShortUrlReservation.class)),
+                Mono::empty,
+                new AvailabilityIndex(parameterStoreAccessor(), dynamoDbAsyncClient, TABLE_NAME),
+                new JitteredRetryStrategy(
+                        10,
+                        Duration.ZERO,
+                        Duration.ZERO,
+                        Duration.ofSeconds(3),
+                        new RetryBudget(Integer.MAX_VALUE, Double.MAX_VALUE),
+                        new SimpleMeterRegistry()),
+                new StaleKeyCache(Duration.ofSeconds(2), 10000),
+                8,
+                10,
+                new BatchWriter(dynamoDbAsyncClient, new RateLimiter(0), 10, Duration.ZERO, Duration.ZERO),
+                8,
+                4,
+                new MetadataTable(dynamoDbAsyncClient, TABLE_NAME));
+
+        shortUrls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shortUrls.add(ShortUrlCodec.encode(FIRST_SHORT_URL_BASE10 + i * 17L));
+        }
+    }
+
+    @Benchmark
+    public ShortUrlReservation getSpecificShortUrlReservation() {
+        return shortUrlReservationDao.getSpecificShortUrlReservation(shortUrls.get(0)).block();
+    }
+
+    @Benchmark
+    public StatusAndShortUrlReservation reserveAnyShortUrl() {
+        return shortUrlReservationDao.reserveAnyShortUrl().block();
+    }
+
+    @Benchmark
+    public StatusAndShortUrlReservationArray reserveAnyShortUrls() {
+        return shortUrlReservationDao.reserveAnyShortUrls(count).block();
+    }
+
+    @Benchmark
+    public StatusAndShortUrlStatusArray reserveSpecificShortUrls() {
+        return shortUrlReservationDao.reserveSpecificShortUrls(shortUrls).block();
+    }
+
+    /**
+     * A Parameter Store accessor that knows only the range of the stub's
+     * short URLs, from which the availability index picks its start points.
+     */
+    private static ParameterStoreAccessor parameterStoreAccessor() {
+        return (ParameterStoreAccessor) Proxy.newProxyInstance(
+                ParameterStoreAccessor.class.getClassLoader(),
+                new Class<?>[] {ParameterStoreAccessor.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getMinShortUrlBase10" -> Mono.just(FIRST_SHORT_URL_BASE10);
+                    case "getMaxShortUrlBase10" -> Mono.just(FIRST_SHORT_URL_BASE10 + NUM_SHORT_URLS - 1);
+                    case "toString" -> "BenchmarkParameterStoreAccessor";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+/**
+ * An in-process stand-in for the Short URL Reservation table, for benchmarks
+ * of the Reactor chains in the DAO.
+ *
+ * <p>The table holds `numShortUrls` available short URLs, and answers
+ * `GetItem`, `UpdateItem`, `DescribeTable` and availability index `Query`
+ * calls at once, from memory. The table never changes: a reservation
+ * succeeds without taking the short URL out of the index, so the benchmark
+ * can run for as long as it likes. To exercise the DAO's retry paths, each `UpdateItem`
+ * instead fails its condition with probability `conflictRate`, just as it
+ * does in real life when the eventually-consistent index offers a short
+ * URL that somebody else has just reserved.</p>
+ */
+public class StubDynamoDbAsyncClient implements DynamoDbAsyncClient {
+    private static final String SHORT_URL = "shortUrl";
+    private static final String IS_AVAILABLE = "isAvailable";
+
+    private final Map<String, Map<String, AttributeValue>> items = new HashMap<>();
+    private final List<NavigableSet<String>> buckets = new ArrayList<>();
+    private final double conflictRate;
+
+    /**
+     * General constructor.
+     *
+     * @param firstShortUrlBase10 The first short URL in the table.
+     * @param numShortUrls The number of short URLs in the table.
+     * @param conflictRate The fraction of updates that fail their condition.
+     */
+    public StubDynamoDbAsyncClient(long firstShortUrlBase10, int numShortUrls, double conflictRate) {
+        this.conflictRate = conflictRate;
+        for (int bucket = 0; bucket < AvailabilityIndex.NUM_BUCKETS; bucket++) {
+            buckets.add(new TreeSet<>());
+        }
+        for (long i = firstShortUrlBase10; i < firstShortUrlBase10 + numShortUrls; i++) {
+            String shortUrl = ShortUrlCodec.encode(i);
+            ShortUrlReservation shortUrlReservation = new ShortUrlReservation(shortUrl, shortUrl);
+            shortUrlReservation.setVersion(1L);
+            items.put(shortUrl, AvailabilityIndex.withBucket(shortUrlReservation.toAttributeValueMap()));
+            buckets.get(AvailabilityIndex.bucketOf(shortUrl)).add(shortUrl);
+        }
+    }
+
+    @Override
+    public CompletableFuture<GetItemResponse> getItem(GetItemRequest getItemRequest) {
+        Map<String, AttributeValue> item = items.get(getItemRequest.key().get(SHORT_URL).s());
+        return CompletableFuture.completedFuture(GetItemResponse.builder()
+            .item(item)
+            .build());
+    }
+
+    @Override
+    public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest updateItemRequest) {
+        Map<String, AttributeValue> item = items.get(updateItemRequest.key().get(SHORT_URL).s());
+        if (item == null || ThreadLocalRandom.current().nextDouble() < conflictRate) {
+            ConditionalCheckFailedException.Builder exception = ConditionalCheckFailedException.builder()
+                .message("The conditional request failed");
+            if (item != null && updateItemRequest.returnValuesOnConditionCheckFailure() ==
+                    ReturnValuesOnConditionCheckFailure.ALL_OLD) {
+                exception.item(item);
+            }
+            return CompletableFuture.failedFuture(exception.build());
+        }
+        return CompletableFuture.completedFuture(UpdateItemResponse.builder()
+            .attributes(item)
+            .build());
+    }
+
+    @Override
+    public CompletableFuture<QueryResponse> query(QueryRequest queryRequest) {
+        Map<String, AttributeValue> values = queryRequest.expressionAttributeValues();
+        int bucket = Integer.parseInt(values.get(":bucket").n());
+        NavigableSet<String> shortUrls = buckets.get(bucket);
+        if (values.containsKey(":startAt")) {
+            shortUrls = shortUrls.tailSet(values.get(":startAt").s(), true);
+        }
+        if (queryRequest.hasExclusiveStartKey()) {
+            shortUrls = shortUrls.tailSet(queryRequest.exclusiveStartKey().get(IS_AVAILABLE).s(), false);
+        }
+        int limit = queryRequest.limit() == null ? Integer.MAX_VALUE : queryRequest.limit();
+
+        List<Map<String, AttributeValue>> page = new ArrayList<>();
+        Iterator<String> iterator = shortUrls.iterator();
+        while (page.size() < limit && iterator.hasNext()) {
+            String shortUrl = iterator.next();
+            page.add(Map.of(
+                    SHORT_URL, AttributeValue.fromS(shortUrl),
+                    IS_AVAILABLE, AttributeValue.fromS(shortUrl),
+                    AvailabilityIndex.AVAILABLE_BUCKET, AttributeValue.fromN(Integer.toString(bucket))));
+        }
+
+        QueryResponse.Builder response = QueryResponse.builder()
+            .count(page.size());
+        if (queryRequest.select() != Select.COUNT) {
+            response.items(page);
+        }
+        if (!page.isEmpty() && iterator.hasNext()) {
+            response.lastEvaluatedKey(page.get(page.size() - 1));
+        }
+        return CompletableFuture.completedFuture(response.build());
+    }
+
+    @Override
+    public CompletableFuture<DescribeTableResponse> describeTable(DescribeTableRequest describeTableRequest) {
+        return CompletableFuture.completedFuture(DescribeTableResponse.builder()
+            .table(TableDescription.builder()
+                .tableName(describeTableRequest.tableName())
+                .globalSecondaryIndexes(GlobalSecondaryIndexDescription.builder()
+                    .indexName(AvailabilityIndex.INDEX_NAME)
+                    .indexStatus(IndexStatus.ACTIVE)
+                    .build())
+                .build())
+            .build());
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
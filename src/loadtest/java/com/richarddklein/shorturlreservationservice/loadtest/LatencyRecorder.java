@@ -0,0 +1,96 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the latency and outcome of every call of one operation.
+ *
+ * <p>Every latency is kept, so that the percentiles are exact rather than
+ * estimated. At the rates that DynamoDB Local can sustain, a run of a few
+ * minutes keeps no more than a few megabytes.</p>
+ */
+public class LatencyRecorder {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final String operation;
+    private final Map<String, Long> outcomeCounts = new TreeMap<>();
+    private long[] latenciesNanos = new long[1024];
+    private int count;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param operation The name of the operation, for the report.
+     */
+    public LatencyRecorder(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Record one call.
+     *
+     * @param latencyNanos How long the call took, in nanoseconds.
+     * @param outcome The `ShortUrlStatus` the call resulted in, or `ERROR`.
+     */
+    public synchronized void record(long latencyNanos, String outcome) {
+        if (count == latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+        }
+        latenciesNanos[count++] = latencyNanos;
+        outcomeCounts.merge(outcome, 1L, Long::sum);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Describe the calls in one line of the report.
+     *
+     * @param elapsedSeconds How long the run lasted, in seconds.
+     * @return The number of calls, their throughput, their latency
+     *         percentiles (in milliseconds), and how many calls had each
+     *         outcome.
+     */
+    public synchronized String report(double elapsedSeconds) {
+        StringBuilder line = new StringBuilder(String.format("%-16s %9d calls %9.1f/s",
+                operation, count, count / elapsedSeconds));
+        if (count > 0) {
+            long[] sorted = Arrays.copyOf(latenciesNanos, count);
+            Arrays.sort(sorted);
+            for (double percentile : PERCENTILES) {
+                int index = (int) Math.ceil(percentile / 100 * count) - 1;
+                line.append(String.format("  p%s=%.2fms",
+                        formatPercentile(percentile), toMillis(sorted[Math.max(index, 0)])));
+            }
+            line.append(String.format("  max=%.2fms", toMillis(sorted[count - 1])));
+        }
+        line.append("  ").append(outcomeCounts);
+        return line.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static String formatPercentile(double percentile) {
+        return (percentile == Math.rint(percentile)) ?
+                String.valueOf((long) percentile) :
+                String.valueOf(percentile);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
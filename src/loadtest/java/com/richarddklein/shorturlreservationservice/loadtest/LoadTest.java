@@ -0,0 +1,579 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlreservationservice.dao.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.dynamodb.services.local.embedded.DynamoDBEmbedded;
+import software.amazon.dynamodb.services.local.shared.access.AmazonDynamoDBLocal;
+
+/**
+ * A load test of the Short URL Reservation DAO, against DynamoDB Local.
+ *
+ * <p>The DAO is wired as `DaoConfig` wires it (metered, with the real
+ * retry strategy, and with the chosen allocator and execution mode), over
+ * a freshly populated table. A number of workers then each call the DAO,
+ * one call at a time, until the run is over, choosing every call at
+ * random from a weighted mix of four operations:</p>
+ *
+ * <ul>
+ *   <li>`reserveAny` reserves any available short URL;</li>
+ *   <li>`reserveSpecific` reserves a short URL chosen at random from the
+ *       whole range, which may well be reserved already, so that it
+ *       competes with the other workers;</li>
+ *   <li>`cancel` cancels the reservation of a short URL that the test
+ *       holds;</li>
+ *   <li>`get` reads a short URL chosen at random.</li>
+ * </ul>
+ *
+ * <p>The report gives the throughput and latency percentiles of each
+ * operation, with the outcomes of its calls, and the retries and
+ * conflicts counted by the retry strategy. Every short URL handed out is
+ * checked by a `ReservationLedger`, and at the end the short URLs held are
+ * compared with those reserved in the table. The test exits with status 1
+ * if a short URL was ever handed out twice.</p>
+ *
+ * <p>The test is configured with system properties (see the `loadtest`
+ * profile in the pom):</p>
+ *
+ * <ul>
+ *   <li>`loadtest.endpoint`: the endpoint of a DynamoDB Local to use,
+ *       e.g. `http://localhost:8000`; if empty, DynamoDB Local is run
+ *       in-process;</li>
+ *   <li>`loadtest.numShortUrls`: the size of the range of short URLs;</li>
+ *   <li>`loadtest.concurrency`: the number of workers;</li>
+ *   <li>`loadtest.durationSeconds`: how long the load lasts;</li>
+ *   <li>`loadtest.mix`: the weight of each operation, e.g.
+ *       `reserveAny=40,reserveSpecific=10,cancel=40,get=10`;</li>
+ *   <li>`loadtest.allocator`: `index`, `pool` or `sequence`, as with
+ *       `shortUrl.reservations.allocator`;</li>
+ *   <li>`loadtest.transport`: `tuned`, to talk to the DynamoDB Local at
+ *       `loadtest.endpoint` over the `DynamoDbTransport` that `DaoConfig`
+ *       builds from the `shortUrl.reservations.dynamoDb.*` properties of
+ *       `application.properties` (each of which a system property of the
+ *       same name overrides), or `default`, to leave the HTTP client and the
+ *       timeouts to the SDK. In-process, there is no HTTP at all.</li>
+ *   <li>`loadtest.execution`: `reactive` or `virtualThreads`, as with
+ *       `shortUrl.reservations.execution`. With `reactive`, the workers
+ *       are Reactor chains, as requests are on Spring WebFlux; with
+ *       `virtualThreads`, each worker is a virtual thread that blocks on
+ *       every call, as a request does on Spring MVC with virtual
+ *       threads.</li>
+ * </ul>
+ *
+ * <p>Comparing the two transports, or the two execution modes, at the
+ * same (high) concurrency shows what each does to the throughput and the
+ * latency percentiles, and to the threads and the memory of the process,
+ * which the report ends with.</p>
+ */
+public class LoadTest {
+    private static final String TABLE_NAME = "loadtest-short-url-reservations";
+    private static final long MIN_SHORT_URL_BASE10 = 1L << 30;
+    private static final String ERROR = "ERROR";
+
+    private final ShortUrlReservationDao shortUrlReservationDao;
+    private final boolean isOnVirtualThreads;
+    private final MeterRegistry meterRegistry;
+    private final long numShortUrls;
+    private final Map<String, Integer> mix;
+    private final int totalWeight;
+    private final Map<String, LatencyRecorder> latencyRecorders = new LinkedHashMap<>();
+    private final ReservationLedger reservationLedger = new ReservationLedger();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        String endpoint = System.getProperty("loadtest.endpoint", "");
+        long numShortUrls = Long.getLong("loadtest.numShortUrls", 20000);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        long durationSeconds = Long.getLong("loadtest.durationSeconds", 30);
+        String mix = System.getProperty("loadtest.mix",
+                "reserveAny=40,reserveSpecific=10,cancel=40,get=10");
+        String allocator = System.getProperty("loadtest.allocator", "index");
+        String transport = System.getProperty("loadtest.transport", "tuned");
+        boolean isOnVirtualThreads = System.getProperty("loadtest.execution", "reactive")
+                .equals("virtualThreads");
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AmazonDynamoDBLocal dynamoDbLocal = null;
+        SdkAsyncHttpClient httpClient = null;
+        SdkHttpClient syncHttpClient = null;
+        DynamoDbAsyncClient dynamoDbAsyncClient;
+        DynamoDbClient dynamoDbClient = null;
+        if (endpoint.isEmpty()) {
+            System.out.println("====> Starting DynamoDB Local in-process");
+            dynamoDbLocal = DynamoDBEmbedded.create();
+            dynamoDbAsyncClient = dynamoDbLocal.dynamoDbAsyncClient();
+            if (isOnVirtualThreads) {
+                dynamoDbClient = dynamoDbLocal.dynamoDbClient();
+            }
+        } else {
+            System.out.println("====> Using DynamoDB Local at " + endpoint
+                    + ", over the " + transport + " transport");
+            ClientOverrideConfiguration.Builder overrideConfiguration = ClientOverrideConfiguration.builder()
+                    .addExecutionInterceptor(new DynamoDbMetricsInterceptor(meterRegistry));
+            DynamoDbAsyncClient.Builder builder = DynamoDbAsyncClient.builder()
+                    .endpointOverride(URI.create(endpoint))
+                    .region(Region.US_WEST_2)
+                    .credentialsProvider(localCredentials());
+            DynamoDbClient.Builder syncBuilder = DynamoDbClient.builder()
+                    .endpointOverride(URI.create(endpoint))
+                    .region(Region.US_WEST_2)
+                    .credentialsProvider(localCredentials());
+            if (transport.equals("tuned")) {
+                DynamoDbTransport dynamoDbTransport = tunedTransport();
+                httpClient = dynamoDbTransport.buildHttpClient();
+                builder.httpClient(httpClient)
+                        .asyncConfiguration(dynamoDbTransport.buildAsyncConfiguration());
+                if (isOnVirtualThreads) {
+                    syncHttpClient = dynamoDbTransport.buildSyncHttpClient();
+                    syncBuilder.httpClient(syncHttpClient);
+                }
+                dynamoDbTransport.applyTimeouts(overrideConfiguration);
+            }
+            dynamoDbAsyncClient = builder
+                    .overrideConfiguration(overrideConfiguration.build())
+                    .build();
+            if (isOnVirtualThreads) {
+                dynamoDbClient = syncBuilder
+                        .overrideConfiguration(overrideConfiguration.build())
+                        .build();
+            }
+        }
+
+        int exitStatus;
+        try {
+            LoadTest loadTest = new LoadTest(
+                    dynamoDbAsyncClient,
+                    dynamoDbClient,
+                    meterRegistry,
+                    numShortUrls,
+                    parseMix(mix),
+                    allocator);
+            exitStatus = loadTest.run(concurrency, Duration.ofSeconds(durationSeconds));
+        } finally {
+            if (httpClient != null) {
+                httpClient.close();
+            }
+            if (syncHttpClient != null) {
+                syncHttpClient.close();
+            }
+            if (dynamoDbLocal != null) {
+                dynamoDbLocal.shutdownNow();
+            }
+        }
+        System.exit(exitStatus);
+    }
+
+    /**
+     * General constructor.
+     *
+     * <p>Wires the DAO, and initializes its table.</p>
+     *
+     * @param dynamoDbAsyncClient The client of DynamoDB Local.
+     * @param dynamoDbClient The synchronous client of DynamoDB Local, to
+     *                       run the DAO on virtual threads, or null to run
+     *                       it reactively.
+     * @param meterRegistry The registry of the DAO's meters.
+     * @param numShortUrls The size of the range of short URLs.
+     * @param mix The weight of each operation.
+     * @param allocator The allocator that reserves any short URL.
+     */
+    public LoadTest(DynamoDbAsyncClient dynamoDbAsyncClient,
+                    DynamoDbClient dynamoDbClient,
+                    MeterRegistry meterRegistry,
+                    long numShortUrls,
+                    Map<String, Integer> mix,
+                    String allocator) {
+
+        this.isOnVirtualThreads = dynamoDbClient != null;
+        this.meterRegistry = meterRegistry;
+        this.numShortUrls = numShortUrls;
+        this.mix = mix;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        for (String operation : mix.keySet()) {
+            latencyRecorders.put(operation, new LatencyRecorder(operation));
+        }
+
+        DynamoDbAsyncTable<ShortUrlReservation> shortUrlReservationTable =
+                DynamoDbEnhancedAsyncClient.builder()
+                    .dynamoDbClient(dynamoDbAsyncClient)
+                    .build()
+                    .table(TABLE_NAME, TableSchema.fromBean(ShortUrlReservation.class));
+        long maxShortUrlBase10 = MIN_SHORT_URL_BASE10 + numShortUrls - 1;
+        ParameterStoreAccessor parameterStoreAccessor = parameterStoreAccessor(maxShortUrlBase10);
+        AvailabilityIndex availabilityIndex = new AvailabilityIndex(
+                parameterStoreAccessor, dynamoDbAsyncClient, TABLE_NAME);
+        MetadataTable metadataTable = new MetadataTable(dynamoDbAsyncClient, TABLE_NAME);
+
+        ShortUrlAllocator shortUrlAllocator = switch (allocator) {
+            case "pool" -> new PooledShortUrlAllocator(
+                    dynamoDbAsyncClient,
+                    availabilityIndex,
+                    TABLE_NAME,
+                    50,
+                    10,
+                    Duration.ofSeconds(300));
+            case "sequence" -> new SequenceShortUrlAllocator(
+                    dynamoDbAsyncClient,
+                    metadataTable,
+                    TABLE_NAME,
+                    MIN_SHORT_URL_BASE10,
+                    maxShortUrlBase10,
+                    0,
+                    100);
+            default -> Mono::empty;
+        };
+
+        RetryStrategy retryStrategy = new JitteredRetryStrategy(
+                5,
+                Duration.ofMillis(10),
+                Duration.ofMillis(500),
+                Duration.ofMillis(3000),
+                new RetryBudget(100, 20),
+                meterRegistry);
+        StaleKeyCache staleKeyCache = new StaleKeyCache(Duration.ofMillis(2000), 10000);
+
+        ShortUrlReservationDao unmeteredShortUrlReservationDao = new ShortUrlReservationDaoImpl(
+                parameterStoreAccessor,
+                dynamoDbAsyncClient,
+                shortUrlReservationTable,
+                shortUrlAllocator,
+                availabilityIndex,
+                retryStrategy,
+                staleKeyCache,
+                8,
+                10,
+                new BatchWriter(
+                        dynamoDbAsyncClient,
+                        new RateLimiter(0),
+                        10,
+                        Duration.ofMillis(50),
+                        Duration.ofMillis(5000)),
+                8,
+                4,
+                metadataTable);
+        if (isOnVirtualThreads) {
+            unmeteredShortUrlReservationDao = new VirtualThreadShortUrlReservationDaoImpl(
+                    unmeteredShortUrlReservationDao,
+                    dynamoDbClient,
+                    DynamoDbEnhancedClient.builder()
+                        .dynamoDbClient(dynamoDbClient)
+                        .build()
+                        .table(TABLE_NAME, TableSchema.fromBean(ShortUrlReservation.class)),
+                    shortUrlAllocator,
+                    availabilityIndex,
+                    retryStrategy,
+                    staleKeyCache);
+        }
+        shortUrlReservationDao = new MeteredShortUrlReservationDao(
+                unmeteredShortUrlReservationDao,
+                meterRegistry);
+
+        System.out.println("====> Populating " + numShortUrls + " short URLs, with the "
+                + allocator + " allocator");
+        shortUrlReservationDao.initializeShortUrlReservationRepository();
+    }
+
+    /**
+     * Run the load, and report on it.
+     *
+     * @param concurrency The number of workers.
+     * @param duration How long the load lasts.
+     * @return 0 if every check passed, or 1 if any failed.
+     */
+    public int run(int concurrency, Duration duration) {
+        System.out.println("====> Running " + mix + " with " + concurrency
+                + (isOnVirtualThreads ? " virtual thread" : " reactive")
+                + " workers for " + duration.toSeconds() + "s");
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+
+        if (isOnVirtualThreads) {
+            try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int worker = 0; worker < concurrency; worker++) {
+                    workers.submit(() -> {
+                        while (System.nanoTime() < deadline) {
+                            callOne().block();
+                        }
+                    });
+                }
+            }
+        } else {
+            Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(this::callOne)
+                        .repeat(() -> System.nanoTime() < deadline),
+                    concurrency)
+                .blockLast();
+        }
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        Set<String> reservedShortUrls = shortUrlReservationDao.exportAllShortUrlReservations(false)
+                .map(ShortUrlReservation::getShortUrl)
+                .collect(Collectors.toSet())
+                .block();
+        int numUnaccounted = reservationLedger.audit(reservedShortUrls);
+
+        report(elapsedSeconds, reservedShortUrls.size(), numUnaccounted);
+        return reservationLedger.getViolations().isEmpty() ? 0 : 1;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private Mono<String>
+    callOne() {
+        String operation = chooseOperation();
+        long start = System.nanoTime();
+        return call(operation)
+            .onErrorResume(e -> Mono.just(ERROR))
+            .defaultIfEmpty(ERROR)
+            .doOnNext(outcome -> latencyRecorders.get(operation)
+                    .record(System.nanoTime() - start, outcome));
+    }
+
+    private Mono<String>
+    call(String operation) {
+        return switch (operation) {
+            case "reserveAny" -> shortUrlReservationDao.reserveAnyShortUrl()
+                .map(statusAndShortUrlReservation -> {
+                    ShortUrlStatus shortUrlStatus = statusAndShortUrlReservation.getStatus().getStatus();
+                    if (shortUrlStatus == ShortUrlStatus.SUCCESS) {
+                        reservationLedger.reserved(operation,
+                                statusAndShortUrlReservation.getShortUrlReservation().getShortUrl());
+                    }
+                    return shortUrlStatus.name();
+                });
+            case "reserveSpecific" -> {
+                String shortUrl = randomShortUrl();
+                yield shortUrlReservationDao.reserveSpecificShortUrl(shortUrl)
+                    .map(shortUrlStatus -> {
+                        if (shortUrlStatus == ShortUrlStatus.SUCCESS) {
+                            reservationLedger.reserved(operation, shortUrl);
+                        }
+                        return shortUrlStatus.name();
+                    });
+            }
+            case "cancel" -> {
+                String shortUrl = reservationLedger.takeForCancellation();
+                if (shortUrl == null) {
+                    yield Mono.just("NOTHING_HELD");
+                }
+                yield shortUrlReservationDao.cancelSpecificShortUrlReservation(shortUrl)
+                    .map(ShortUrlStatus::name)
+                    .onErrorResume(e -> Mono.just(ERROR))
+                    .defaultIfEmpty(ERROR)
+                    .doOnNext(outcome -> reservationLedger.cancelled(shortUrl, outcome));
+            }
+            case "get" -> shortUrlReservationDao.getSpecificShortUrlReservation(randomShortUrl())
+                .map(shortUrlReservation -> "SUCCESS");
+            default -> Mono.error(new IllegalArgumentException("Unknown operation " + operation));
+        };
+    }
+
+    private String chooseOperation() {
+        int choice = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            choice -= entry.getValue();
+            if (choice < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("The mix has no operations");
+    }
+
+    private String randomShortUrl() {
+        return ShortUrlCodec.encode(
+                MIN_SHORT_URL_BASE10 + ThreadLocalRandom.current().nextLong(numShortUrls));
+    }
+
+    private void report(double elapsedSeconds, int numReserved, int numUnaccounted) {
+        long totalCalls = latencyRecorders.values().stream()
+                .mapToLong(LatencyRecorder::getCount)
+                .sum();
+        System.out.println();
+        System.out.printf("====> %d calls in %.1fs: %.1f calls/s%n",
+                totalCalls, elapsedSeconds, totalCalls / elapsedSeconds);
+        for (LatencyRecorder latencyRecorder : latencyRecorders.values()) {
+            System.out.println("      " + latencyRecorder.report(elapsedSeconds));
+        }
+
+        System.out.println("====> Conflicts: " + countsByTag("shorturl.dao.conflicts", "cause"));
+        System.out.println("====> Retries:   " + countsByTag("shorturl.dao.retries", "outcome"));
+        System.out.println("====> " + numReserved + " short URLs reserved in the table, "
+                + reservationLedger.getNumHeld() + " held by the test, "
+                + numUnaccounted + " reserved by calls that failed");
+
+        List<String> violations = reservationLedger.getViolations();
+        if (violations.isEmpty()) {
+            System.out.println("====> PASSED: no short URL was handed out twice");
+        } else {
+            System.out.println("====> FAILED: " + violations.size() + " violations");
+            violations.stream().limit(20).forEach(violation -> System.out.println("      " + violation));
+        }
+        reportResources();
+    }
+
+    /**
+     * Report the threads and the memory of the process, which is where
+     * the HTTP transport shows up besides the latencies.
+     */
+    private static void reportResources() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.println("====> Threads: " + threadMXBean.getThreadCount() + " live, "
+                + threadMXBean.getPeakThreadCount() + " at peak; heap used: "
+                + (heapUsed >> 20) + " MB; " + peakResidentSetSize());
+    }
+
+    private static String peakResidentSetSize() {
+        try {
+            return Files.readAllLines(Path.of("/proc/self/status")).stream()
+                .filter(line -> line.startsWith("VmHWM:"))
+                .map(line -> "peak RSS: " + line.substring("VmHWM:".length()).trim())
+                .findFirst()
+                .orElse("peak RSS unknown");
+        } catch (IOException e) {
+            return "peak RSS unknown";
+        }
+    }
+
+    private Map<String, Long> countsByTag(String counterName, String tagKey) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Counter counter : meterRegistry.find(counterName).counters()) {
+            counts.merge(counter.getId().getTag(tagKey), (long) counter.count(), Long::sum);
+        }
+        return counts;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] operationAndWeight = entry.trim().split("=");
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(operationAndWeight[0].trim(), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix \"" + mix + "\" has no operations");
+        }
+        return weights;
+    }
+
+    /**
+     * A Parameter Store accessor that knows only the table and the range.
+     *
+     * <p>The DAO asks the Parameter Store for nothing else.</p>
+     */
+    private static ParameterStoreAccessor parameterStoreAccessor(long maxShortUrlBase10) {
+        return (ParameterStoreAccessor) Proxy.newProxyInstance(
+                ParameterStoreAccessor.class.getClassLoader(),
+                new Class<?>[] {ParameterStoreAccessor.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getShortUrlReservationTableName" -> Mono.just(TABLE_NAME);
+                    case "getMinShortUrlBase10" -> Mono.just(MIN_SHORT_URL_BASE10);
+                    case "getMaxShortUrlBase10" -> Mono.just(maxShortUrlBase10);
+                    case "toString" -> "LoadTestParameterStoreAccessor";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> Mono.empty();
+                });
+    }
+
+    private static StaticCredentialsProvider localCredentials() {
+        // DynamoDB Local accepts any credentials.
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local"));
+    }
+
+    /**
+     * The transport that `DaoConfig` builds, configured as the service is.
+     *
+     * <p>The `shortUrl.reservations.dynamoDb.*` properties are read from
+     * the service's `application.properties`, so that the test always
+     * measures the transport that is deployed. A system property of the
+     * same name overrides any of them.</p>
+     */
+    private static DynamoDbTransport tunedTransport() {
+        Properties properties = new Properties();
+        try (InputStream inputStream = LoadTest.class.getResourceAsStream("/application.properties")) {
+            if (inputStream == null) {
+                throw new IllegalStateException("application.properties is not on the classpath");
+            }
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        properties.putAll(System.getProperties());
+
+        return new DynamoDbTransport(
+                Integer.parseInt(dynamoDbProperty(properties, "maxConcurrency")),
+                Integer.parseInt(dynamoDbProperty(properties, "maxPendingConnectionAcquires")),
+                Duration.ofMillis(Long.parseLong(
+                        dynamoDbProperty(properties, "connectionAcquisitionTimeoutMillis"))),
+                Duration.ofMillis(Long.parseLong(dynamoDbProperty(properties, "connectionTimeoutMillis"))),
+                Duration.ofSeconds(Long.parseLong(dynamoDbProperty(properties, "connectionMaxIdleSeconds"))),
+                Duration.ofSeconds(Long.parseLong(
+                        dynamoDbProperty(properties, "connectionTimeToLiveSeconds"))),
+                Boolean.parseBoolean(dynamoDbProperty(properties, "tcpKeepAlive")),
+                Integer.parseInt(dynamoDbProperty(properties, "eventLoopThreads")),
+                Duration.ofMillis(Long.parseLong(dynamoDbProperty(properties, "apiCallTimeoutMillis"))),
+                Duration.ofMillis(Long.parseLong(
+                        dynamoDbProperty(properties, "apiCallAttemptTimeoutMillis"))),
+                Boolean.parseBoolean(dynamoDbProperty(properties, "completeOnEventLoop")));
+    }
+
+    private static String dynamoDbProperty(Properties properties, String name) {
+        String value = properties.getProperty("shortUrl.reservations.dynamoDb." + name);
+        if (value == null) {
+            throw new IllegalStateException("shortUrl.reservations.dynamoDb." + name + " is not set");
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps track of which short URLs the load test holds, and of every
+ * violation of the rule that a short URL is never handed out twice.
+ *
+ * <p>A short URL is held from the moment a reservation of it succeeds
+ * until a cancellation of it succeeds. A reservation that succeeds while
+ * the short URL is held is a violation.</p>
+ *
+ * <p>The one subtle case is a reservation that succeeds while the short
+ * URL is being cancelled. The cancellation may have taken effect in the
+ * table before the reservation did, with its response simply arriving
+ * later, so this is no violation yet. The short URL is marked
+ * `RESERVED_AGAIN`, and is held once more when the cancellation
+ * succeeds.</p>
+ */
+public class ReservationLedger {
+    private enum State {
+        HELD,
+        CANCELLING,
+        RESERVED_AGAIN
+    }
+
+    private final ConcurrentHashMap<String, State> states = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> heldShortUrls = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Record that a reservation of a short URL succeeded.
+     *
+     * @param operation The operation that reserved it, for the report.
+     * @param shortUrl The short URL that was handed out.
+     */
+    public void reserved(String operation, String shortUrl) {
+        State state = states.compute(shortUrl, (key, current) -> {
+            if (current == null) {
+                return State.HELD;
+            }
+            if (current == State.CANCELLING) {
+                return State.RESERVED_AGAIN;
+            }
+            violations.add(operation + " handed out " + shortUrl + ", which was " + current);
+            return current;
+        });
+        if (state == State.HELD) {
+            heldShortUrls.add(shortUrl);
+        }
+    }
+
+    /**
+     * Take a held short URL, to be cancelled.
+     *
+     * @return The short URL, or null if none is held.
+     */
+    public String takeForCancellation() {
+        String shortUrl;
+        while ((shortUrl = heldShortUrls.poll()) != null) {
+            if (states.replace(shortUrl, State.HELD, State.CANCELLING)) {
+                return shortUrl;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record the outcome of the cancellation of a short URL taken with
+     * `takeForCancellation()`.
+     *
+     * @param shortUrl The short URL.
+     * @param outcome The `ShortUrlStatus` of the cancellation, or `ERROR`.
+     */
+    public void cancelled(String shortUrl, String outcome) {
+        boolean succeeded = outcome.equals("SUCCESS");
+        if (!succeeded && !outcome.equals("ERROR")) {
+            // We held the short URL, so nobody else could have cancelled it.
+            violations.add("cancellation of held " + shortUrl + " resulted in " + outcome);
+        }
+        State state = states.compute(shortUrl, (key, current) -> {
+            if (current == State.RESERVED_AGAIN) {
+                return State.HELD;
+            }
+            // After an error, we cannot tell whether the cancellation took
+            // effect, so we let go of the short URL either way.
+            return (succeeded || outcome.equals("ERROR")) ? null : State.HELD;
+        });
+        if (state == State.HELD) {
+            heldShortUrls.add(shortUrl);
+        }
+    }
+
+    /**
+     * Compare the short URLs held with those reserved in the table.
+     *
+     * <p>A held short URL that is not reserved in the table is a violation.
+     * A reserved short URL that is not held is not: it is one whose
+     * reservation succeeded in the table, but whose caller saw an error
+     * (e.g. a timeout). It is lost until cancelled by hand, and is only
+     * counted.</p>
+     *
+     * @param reservedShortUrls The short URLs reserved in the table, once
+     *                          the load has stopped.
+     * @return The number of reserved short URLs that are not held.
+     */
+    public int audit(Set<String> reservedShortUrls) {
+        Set<String> held = new HashSet<>(states.keySet());
+        for (String shortUrl : held) {
+            if (!reservedShortUrls.contains(shortUrl)) {
+                violations.add(shortUrl + " is held but is not reserved in the table");
+            }
+        }
+        int numUnaccounted = 0;
+        for (String shortUrl : reservedShortUrls) {
+            if (!held.contains(shortUrl)) {
+                numUnaccounted++;
+            }
+        }
+        return numUnaccounted;
+    }
+
+    public int getNumHeld() {
+        return states.size();
+    }
+
+    public List<String> getViolations() {
+        return new ArrayList<>(violations);
+    }
+}
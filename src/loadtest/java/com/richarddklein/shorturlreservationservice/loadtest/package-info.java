@@ -0,0 +1,10 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains the load test of the Short URL Reservation DAO,
+ * which is run by the `loadtest` Maven profile.
+ */
+package com.richarddklein.shorturlreservationservice.loadtest;
@@ -7,20 +7,30 @@ package com.richarddklein.shorturlreservationservice;
 
 import com.richarddklein.shorturlcommonlibrary.environment.EnvironmentConfig;
 import com.richarddklein.shorturlcommonlibrary.security.SecurityConfig;
-import org.springframework.boot.SpringApplication;
+import com.richarddklein.shorturlreservationservice.nativeimage.NativeImageHints;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
  * The entry point of the Short URL Reservation Service.
  *
  * <p>Implements the `main()` function of the service, which runs the
- * service as a Spring application.</p>
+ * service standalone, on the chosen `WebStack` (listening on
+ * `server.port`). Both Spring WebFlux and Spring MVC are on the classpath,
+ * so the stack is chosen explicitly. The reactive stack runs on Netty. The
+ * servlet stack needs a servlet container, which only the `tomcat` Maven
+ * profile adds.</p>
+ *
+ * <p>The `NativeImageHints` are only needed by the native image, and are
+ * ignored on the JVM.</p>
  */
 @SpringBootApplication
 @Import({EnvironmentConfig.class, SecurityConfig.class})
+@ImportRuntimeHints(NativeImageHints.class)
 @ComponentScan(
         // The REST Controller will be instantiated via the `ControllerConfig`
         // @Configuration class, so we exclude it from the component scan.
@@ -28,6 +38,8 @@ import org.springframework.web.bind.annotation.RestController;
 )
 public class Application {
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        new SpringApplicationBuilder(Application.class)
+                .web(WebStack.current().webApplicationType())
+                .run(args);
     }
 }
@@ -12,33 +12,65 @@ import java.io.OutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.richarddklein.shorturlreservationservice.metrics.EmfMeterRegistry;
+import com.richarddklein.shorturlreservationservice.snapstart.LambdaPrimer;
+import com.richarddklein.shorturlreservationservice.tracing.TracingConfig;
+
 import com.amazonaws.serverless.exceptions.ContainerInitializationException;
+import com.amazonaws.serverless.proxy.InitializationWrapper;
 import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
 import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
 import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+import com.amazonaws.serverless.proxy.spring.SpringBootProxyHandlerBuilder;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import org.crac.Core;
 
 /**
  * Provide the interface between AWS Lambda and Spring Boot.
+ *
+ * <p>The Spring Boot application runs the `WebStack` chosen for the
+ * function: Spring WebFlux, behind a servlet adapter, or Spring MVC.</p>
+ *
+ * <p>Besides building the Spring Boot application, initialization
+ * registers a `LambdaPrimer`, which SnapStart calls to prime the request
+ * path before it takes its snapshot.</p>
  */
 public class StreamLambdaHandler implements RequestStreamHandler {
     private static final Logger logger = LoggerFactory.getLogger(StreamLambdaHandler.class);
     private static final SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
+    private static final LambdaPrimer lambdaPrimer;
 
     static {
         try {
-            handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(Application.class);
+            SpringBootProxyHandlerBuilder<AwsProxyRequest> builder = new SpringBootProxyHandlerBuilder<AwsProxyRequest>()
+                    .defaultProxy()
+                    .initializationWrapper(new InitializationWrapper())
+                    .springBootApplication(Application.class);
+            if (WebStack.current() == WebStack.SERVLET) {
+                builder.servletApplication();
+            }
+            handler = builder.buildAndInitialize();
         } catch (ContainerInitializationException e) {
             logger.error("====> ", e);
             throw new RuntimeException("Could not initialize Spring Boot application", e);
         }
+
+        // CRaC holds on to the primer only weakly, hence the static field.
+        // Registered after the Spring Boot application's own hooks, it is
+        // called before them.
+        lambdaPrimer = new LambdaPrimer(handler);
+        Core.getGlobalContext().register(lambdaPrimer);
     }
 
     /**
      * Handle an incoming request from AWS Lambda, by proxying it to
      * Spring Boot, and returning the response to AWS Lambda.
      *
+     * <p>The metrics and spans recorded while handling the request are
+     * written out before returning, since the function may be frozen right
+     * after.</p>
+     *
      * @param inputStream The Lambda function input stream.
      * @param outputStream The Lambda function output stream.
      * @param context The Lambda execution environment context object.
@@ -47,6 +79,11 @@ public class StreamLambdaHandler implements RequestStreamHandler {
     @Override
     public void handleRequest(InputStream inputStream, OutputStream outputStream, Context context)
             throws IOException {
-        handler.proxyStream(inputStream, outputStream, context);
+        try {
+            handler.proxyStream(inputStream, outputStream, context);
+        } finally {
+            EmfMeterRegistry.flushInstance();
+            TracingConfig.flushSpans();
+        }
     }
 }
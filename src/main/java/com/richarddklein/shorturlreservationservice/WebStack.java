@@ -0,0 +1,71 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice;
+
+import java.util.Locale;
+
+import org.springframework.boot.WebApplicationType;
+
+/**
+ * The web stack that serves the REST API.
+ *
+ * <p>The same controller serves the same endpoints on either stack:</p>
+ *
+ * <ul>
+ *     <li>`REACTIVE` (the default): Spring WebFlux. Each request is a
+ *     single Reactor chain, from the DAO's DynamoDB calls straight onto
+ *     the response. Standalone, it runs on Netty, with no servlet stack
+ *     at all; behind the Lambda handler, the container's servlet request
+ *     is merely adapted to it.</li>
+ *     <li>`SERVLET`: Spring MVC, behind the Lambda handler, or standalone
+ *     on Tomcat (see the `tomcat` Maven profile). A controller method that
+ *     returns a Mono is completed by an asynchronous dispatch of the
+ *     servlet request. On Tomcat, with `spring.threads.virtual.enabled`,
+ *     each request is dispatched on a virtual thread, on which the
+ *     `virtualThreads` execution mode of the DAO runs its blocking calls
+ *     in place.</li>
+ * </ul>
+ *
+ * <p>The stack must be known before the Spring application is built, so
+ * it is chosen by the `WEB_STACK` environment variable (or the
+ * `shortUrl.reservations.webStack` system property), rather than by an
+ * application property.</p>
+ */
+public enum WebStack {
+    REACTIVE(WebApplicationType.REACTIVE),
+    SERVLET(WebApplicationType.SERVLET);
+
+    private static final String PROPERTY_NAME = "shortUrl.reservations.webStack";
+    private static final String ENVIRONMENT_VARIABLE_NAME = "WEB_STACK";
+
+    private final WebApplicationType webApplicationType;
+
+    WebStack(WebApplicationType webApplicationType) {
+        this.webApplicationType = webApplicationType;
+    }
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return The web stack chosen for this process.
+     */
+    public static WebStack current() {
+        String webStack = System.getProperty(PROPERTY_NAME, System.getenv(ENVIRONMENT_VARIABLE_NAME));
+        if (webStack == null || webStack.isBlank()) {
+            return REACTIVE;
+        }
+        return valueOf(webStack.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return The type of Spring application that runs this stack.
+     */
+    public WebApplicationType webApplicationType() {
+        return webApplicationType;
+    }
+}
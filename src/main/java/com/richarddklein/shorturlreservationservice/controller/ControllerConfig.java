@@ -6,24 +6,118 @@
 package com.richarddklein.shorturlreservationservice.controller;
 
 import com.richarddklein.shorturlreservationservice.service.ShortUrlReservationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import reactor.core.scheduler.Schedulers;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
 
 /**
  * The Controller @Configuration class.
  *
  * <p>Tells Spring how to construct instances of classes that are needed
  * to implement the Controller package.</p>
+ *
+ * <p>The same controller serves both web stacks (see `WebStack`); only
+ * the way its requests are timed and traced differs: handler interceptors
+ * on Spring MVC, web filters on Spring WebFlux.</p>
  */
 @Configuration
 public class ControllerConfig {
     @Autowired
     ShortUrlReservationService shortUrlReservationService;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    OpenTelemetry openTelemetry;
+
+    @Autowired
+    Tracer tracer;
+
+    @Value("${shortUrl.reservations.reserveAny.maxCount:1000}")
+    int maxReserveAnyCount;
+
+    @Value("${shortUrl.reservations.bulk.maxCount:10000}")
+    int maxBulkCount;
+
+    @Value("${shortUrl.reservations.page.defaultLimit:100}")
+    int defaultPageLimit;
+
+    @Value("${shortUrl.reservations.page.maxLimit:1000}")
+    int maxPageLimit;
+
     @Bean
     public ShortUrlReservationController
     shortUrlReservationController() {
-        return new ShortUrlReservationControllerImpl(shortUrlReservationService);
+        return new ShortUrlReservationControllerImpl(
+                shortUrlReservationService,
+                maxReserveAnyCount,
+                maxBulkCount,
+                defaultPageLimit,
+                maxPageLimit,
+                meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = SERVLET)
+    public WebMvcConfigurer
+    controllerInterceptorConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new ControllerTracingInterceptor(openTelemetry, tracer));
+                registry.addInterceptor(new ControllerMetricsInterceptor(meterRegistry));
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = REACTIVE)
+    public ControllerTracingWebFilter
+    controllerTracingWebFilter() {
+        return new ControllerTracingWebFilter(openTelemetry, tracer);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = REACTIVE)
+    public ControllerMetricsWebFilter
+    controllerMetricsWebFilter() {
+        return new ControllerMetricsWebFilter(meterRegistry);
+    }
+
+    /**
+     * Run the controller methods that do not return a Mono or a Flux (the
+     * synchronous repository initialization and migration, and the
+     * metrics) off the Netty event loop.
+     *
+     * <p>Every other request runs on whichever thread its Reactor chain
+     * happens to be on, without any hand-off.</p>
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = REACTIVE)
+    public WebFluxConfigurer
+    controllerBlockingExecutionConfigurer() {
+        return new WebFluxConfigurer() {
+            @Override
+            public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+                configurer.setExecutor(new TaskExecutorAdapter(
+                        runnable -> Schedulers.boundedElastic().schedule(runnable)));
+            }
+        };
     }
 }
@@ -0,0 +1,75 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * A handler interceptor that times every request to the controller.
+ *
+ * <p>Each request is recorded in the `shorturl.controller.requests` timer,
+ * tagged with the controller method that handled it and the HTTP status
+ * of the response. Most of the endpoints return a Mono, which Spring
+ * completes in a second, asynchronous dispatch of the same request; the
+ * start time is therefore kept in a request attribute, set on the first
+ * dispatch only, and the request is recorded when the last dispatch
+ * completes.</p>
+ */
+public class ControllerMetricsInterceptor implements HandlerInterceptor {
+    private static final String START_NANOS =
+            ControllerMetricsInterceptor.class.getName() + ".startNanos";
+
+    private final MeterRegistry meterRegistry;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param meterRegistry The registry of the controller metrics.
+     */
+    public ControllerMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request,
+                             HttpServletResponse response,
+                             Object handler) {
+        if (request.getAttribute(START_NANOS) == null) {
+            request.setAttribute(START_NANOS, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+                                HttpServletResponse response,
+                                Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(START_NANOS) instanceof Long startNanos)) {
+            return;
+        }
+        String operation = handler instanceof HandlerMethod handlerMethod ?
+                handlerMethod.getMethod().getName() : "unmapped";
+
+        Timer.builder("shorturl.controller.requests")
+                .tag("operation", operation)
+                .tag("status", Integer.toString(response.getStatus()))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A web filter that times every request to the controller, on the
+ * reactive web stack.
+ *
+ * <p>The counterpart of the `ControllerMetricsInterceptor`: each request
+ * is recorded in the same `shorturl.controller.requests` timer, with the
+ * same tags. A reactive request is a single chain, so there is only one
+ * "dispatch": the request is recorded when the chain terminates, by which
+ * time the handler is known, and the response status set.</p>
+ */
+public class ControllerMetricsWebFilter implements WebFilter, Ordered {
+    private final MeterRegistry meterRegistry;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param meterRegistry The registry of the controller metrics.
+     */
+    public ControllerMetricsWebFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long startNanos = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signalType -> record(exchange, System.nanoTime() - startNanos));
+    }
+
+    @Override
+    public int getOrder() {
+        // Inside the `ControllerTracingWebFilter`, as the interceptors are.
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void record(ServerWebExchange exchange, long durationNanos) {
+        String operation = exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE)
+                instanceof HandlerMethod handlerMethod ?
+                handlerMethod.getMethod().getName() : "unmapped";
+        HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
+
+        Timer.builder("shorturl.controller.requests")
+                .tag("operation", operation)
+                .tag("status", statusCode == null ? "200" : Integer.toString(statusCode.value()))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+}
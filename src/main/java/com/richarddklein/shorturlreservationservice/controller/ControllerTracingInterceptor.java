@@ -0,0 +1,138 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.Collections;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * A handler interceptor that wraps every request to the controller in a
+ * server span.
+ *
+ * <p>The span continues the trace of the caller, if the request carries
+ * a W3C `traceparent` header, and is named after the controller method
+ * that handles the request. It is current while the controller runs, so
+ * that the spans of the service and the DAO become its children.</p>
+ *
+ * <p>As with the `ControllerMetricsInterceptor`, a request may be
+ * dispatched twice: the span is kept in a request attribute and ended
+ * when the last dispatch completes, while each dispatch opens and closes
+ * its own scope.</p>
+ */
+public class ControllerTracingInterceptor implements HandlerInterceptor {
+    private static final String SPAN = ControllerTracingInterceptor.class.getName() + ".span";
+    private static final String SCOPE = ControllerTracingInterceptor.class.getName() + ".scope";
+
+    private static final TextMapGetter<HttpServletRequest> HEADER_GETTER =
+            new TextMapGetter<>() {
+                @Override
+                public Iterable<String> keys(HttpServletRequest request) {
+                    return Collections.list(request.getHeaderNames());
+                }
+
+                @Override
+                public String get(HttpServletRequest request, String key) {
+                    return request == null ? null : request.getHeader(key);
+                }
+            };
+
+    private final OpenTelemetry openTelemetry;
+    private final Tracer tracer;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param openTelemetry The OpenTelemetry instance, whose propagators
+     *                      read the caller's trace context.
+     * @param tracer The tracer that creates the spans.
+     */
+    public ControllerTracingInterceptor(OpenTelemetry openTelemetry, Tracer tracer) {
+        this.openTelemetry = openTelemetry;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request,
+                             HttpServletResponse response,
+                             Object handler) {
+        Span span = (Span) request.getAttribute(SPAN);
+        if (span == null) {
+            Context parent = openTelemetry.getPropagators().getTextMapPropagator()
+                    .extract(Context.root(), request, HEADER_GETTER);
+            span = tracer.spanBuilder(operationName(handler))
+                    .setParent(parent)
+                    .setSpanKind(SpanKind.SERVER)
+                    .setAttribute("http.request.method", request.getMethod())
+                    .setAttribute("url.path", request.getRequestURI())
+                    .startSpan();
+            request.setAttribute(SPAN, span);
+        }
+        request.setAttribute(SCOPE, span.makeCurrent());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request,
+                                               HttpServletResponse response,
+                                               Object handler) {
+        closeScope(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+                                HttpServletResponse response,
+                                Object handler,
+                                Exception ex) {
+        closeScope(request);
+        if (!(request.getAttribute(SPAN) instanceof Span span)) {
+            return;
+        }
+        request.removeAttribute(SPAN);
+
+        int status = response.getStatus();
+        span.setAttribute("http.response.status_code", status);
+        if (ex != null) {
+            span.recordException(ex);
+        }
+        if (ex != null || status >= 500) {
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static void closeScope(HttpServletRequest request) {
+        if (request.getAttribute(SCOPE) instanceof Scope scope) {
+            request.removeAttribute(SCOPE);
+            scope.close();
+        }
+    }
+
+    private static String operationName(Object handler) {
+        return handler instanceof HandlerMethod handlerMethod ?
+                "ShortUrlReservationController." + handlerMethod.getMethod().getName() :
+                "unmapped";
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.controller;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.richarddklein.shorturlreservationservice.tracing.OtelContextAccessor;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A web filter that wraps every request to the controller in a server
+ * span, on the reactive web stack.
+ *
+ * <p>The counterpart of the `ControllerTracingInterceptor`. The span
+ * continues the trace of the caller, if the request carries a W3C
+ * `traceparent` header. It is current while the request's chain
+ * subscribes, and is carried in the Reactor `Context` under
+ * `OtelContextAccessor.KEY` for the rest of the chain, so that the spans
+ * of the service and the DAO become its children on whichever thread they
+ * run. The controller method is only known once the request has been
+ * mapped, so the span is renamed after it when the chain terminates.</p>
+ */
+public class ControllerTracingWebFilter implements WebFilter, Ordered {
+    private static final TextMapGetter<HttpHeaders> HEADER_GETTER =
+            new TextMapGetter<>() {
+                @Override
+                public Iterable<String> keys(HttpHeaders headers) {
+                    return headers.keySet();
+                }
+
+                @Override
+                public String get(HttpHeaders headers, String key) {
+                    return headers == null ? null : headers.getFirst(key);
+                }
+            };
+
+    private final OpenTelemetry openTelemetry;
+    private final Tracer tracer;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param openTelemetry The OpenTelemetry instance, whose propagators
+     *                      read the caller's trace context.
+     * @param tracer The tracer that creates the spans.
+     */
+    public ControllerTracingWebFilter(OpenTelemetry openTelemetry, Tracer tracer) {
+        this.openTelemetry = openTelemetry;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return Mono.defer(() -> {
+            Context parent = openTelemetry.getPropagators().getTextMapPropagator()
+                    .extract(Context.root(), exchange.getRequest().getHeaders(), HEADER_GETTER);
+            Span span = tracer.spanBuilder("unmapped")
+                    .setParent(parent)
+                    .setSpanKind(SpanKind.SERVER)
+                    .setAttribute("http.request.method", exchange.getRequest().getMethod().name())
+                    .setAttribute("url.path", exchange.getRequest().getPath().value())
+                    .startSpan();
+            Context context = parent.with(span);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+
+            Mono<Void> filtered;
+            try (Scope ignored = context.makeCurrent()) {
+                filtered = chain.filter(exchange);
+            }
+            return filtered
+                    .doOnError(error::set)
+                    .doFinally(signalType -> endSpan(exchange, span, error.get()))
+                    .contextWrite(reactorContext -> reactorContext.put(OtelContextAccessor.KEY, context));
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static void endSpan(ServerWebExchange exchange, Span span, Throwable error) {
+        if (exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE)
+                instanceof HandlerMethod handlerMethod) {
+            span.updateName("ShortUrlReservationController." + handlerMethod.getMethod().getName());
+        }
+
+        HttpStatusCode statusCode = exchange.getResponse().getStatusCode();
+        int status = statusCode == null ? 200 : statusCode.value();
+        span.setAttribute("http.response.status_code", status);
+        if (error != null) {
+            span.recordException(error);
+        }
+        if (error != null || status >= 500) {
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+    }
+}
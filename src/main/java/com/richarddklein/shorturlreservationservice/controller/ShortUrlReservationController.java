@@ -5,12 +5,21 @@
 
 package com.richarddklein.shorturlreservationservice.controller;
 
+import java.util.List;
+
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndAdminJob;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -39,6 +48,25 @@ public interface ShortUrlReservationController {
     ResponseEntity<Status>
     initializeShortUrlReservationRepository();
 
+    /**
+     * Migrate the Short URL Reservation repository to the current layout.
+     *
+     * <p>Adds the bucket attribute to every Short URL Reservation item that
+     * lacks it, and then adds the bucketed index of available short URLs
+     * to the table. Existing reservations are preserved, and the service
+     * keeps running throughout. Running the migration again is harmless.</p>
+     *
+     * <p>Like initialization, this is a long-running synchronous operation,
+     * so this REST endpoint is available only when the Short URL
+     * Reservation Service is running on localhost, not on AWS.</p>
+     *
+     * @return An HTTP Response Entity containing the status (success
+     * or failure) of the migration operation.
+     */
+    @PostMapping("/migrate-repository")
+    ResponseEntity<Status>
+    migrateShortUrlReservationRepository();
+
     /**
      * Get a specific Short URL Reservation item.
      *
@@ -56,19 +84,62 @@ public interface ShortUrlReservationController {
     getSpecificShortUrlReservation(@PathVariable String shortUrl);
 
     /**
-     * Get all Short URL Reservation items.
+     * Get all Short URL Reservation items, one page at a time.
+     *
+     * <p>Read one page of the Short URL Reservation items from the Short URL
+     * Reservation Table in the database, and return it to the client,
+     * together with a cursor. To read the next page, call this endpoint
+     * again, passing that cursor. When there are no more pages, the cursor
+     * is null.</p>
      *
-     * <p>Read all the Short URL Reservation items from the Short URL
-     * Reservation Table in the database, and return them to the client.</p>
+     * <p>When reading only the available (or only the reserved) items, a
+     * page may hold fewer than `limit` items, or even none at all, and
+     * still be followed by more pages.</p>
      *
+     * @param limit The largest number of items to return. Must be between 1
+     *              and a configured maximum. Defaults to a configured value.
+     * @param cursor The cursor returned with the previous page, or absent
+     *               to read the first page.
+     * @param available If `true`, return only the available items; if
+     *                  `false`, only the reserved items; if absent, all
+     *                  items.
      * @return An HTTP Response Entity containing the status (success
      * or failure) of the operation, as well as an array containing
-     * all Short URL Reservation items in the database (if the operation
-     * was successful).
+     * one page of Short URL Reservation items in the database, and the
+     * cursor of the next page (if the operation was successful).
      */
     @GetMapping("/all")
-    Mono<ResponseEntity<StatusAndShortUrlReservationArray>>
-    getAllShortUrlReservations();
+    Mono<ResponseEntity<StatusAndShortUrlReservationPage>>
+    getAllShortUrlReservations(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Boolean available);
+
+    /**
+     * Export all Short URL Reservation items as a stream.
+     *
+     * <p>Write every Short URL Reservation item in the database to the
+     * response as newline-delimited JSON (one item per line), as fast as
+     * the items are read from the database. No list of the items is ever
+     * built in memory, so this is suitable for offline jobs that need the
+     * whole table.</p>
+     *
+     * <p>The response is streamed only when the service runs as a plain
+     * Spring Boot server. When it runs on AWS Lambda, the whole response
+     * is buffered before it is returned, and is subject to the Lambda and
+     * API Gateway payload limits; there, use the paginated `all` endpoint
+     * instead.</p>
+     *
+     * @param available If `true`, export only the available items; if
+     *                  `false`, only the reserved items; if absent, all
+     *                  items.
+     * @return A stream of Short URL Reservation items. If an error occurs
+     * part-way through, the stream ends early.
+     */
+    @GetMapping(value = "/all/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(
+            @RequestParam(required = false) Boolean available);
 
     /**
      * Reserve any available short URL.
@@ -84,6 +155,27 @@ public interface ShortUrlReservationController {
     Mono<ResponseEntity<StatusAndShortUrlReservation>>
     reserveAnyShortUrl();
 
+    /**
+     * Reserve several available short URLs at once.
+     *
+     * <p>Find up to `count` available Short URL Reservation items in the
+     * database, reserve them, and return them to the client. This is much
+     * cheaper than calling `reserve/any` `count` times.</p>
+     *
+     * <p>If fewer than `count` short URLs could be reserved (for example,
+     * because the supply ran out), the ones that were reserved are still
+     * returned.</p>
+     *
+     * @param count The number of short URLs to reserve. Must be between 1
+     *              and a configured maximum.
+     * @return An HTTP Response Entity containing the status (success or
+     * failure) of the operation, as well as an array containing the Short
+     * URL Reservation items that were reserved.
+     */
+    @PatchMapping(value = "/reserve/any", params = "count")
+    Mono<ResponseEntity<StatusAndShortUrlReservationArray>>
+    reserveAnyShortUrls(@RequestParam int count);
+
     /**
      * Reserve a specific short URL.
      *
@@ -98,6 +190,22 @@ public interface ShortUrlReservationController {
     Mono<ResponseEntity<Status>>
     reserveSpecificShortUrl(@PathVariable String shortUrl);
 
+    /**
+     * Reserve a list of specific short URLs.
+     *
+     * <p>Reserve each of the short URLs in the request body (a JSON array
+     * of strings) that is available. This is much cheaper than calling
+     * `reserve/specific/{shortUrl}` once per short URL.</p>
+     *
+     * @param shortUrls The short URLs to reserve.
+     * @return An HTTP Response Entity containing the overall status of the
+     * operation, as well as the status (success or failure) for each short
+     * URL, in the same order as the request.
+     */
+    @PatchMapping("/reserve/specific")
+    Mono<ResponseEntity<StatusAndShortUrlStatusArray>>
+    reserveSpecificShortUrls(@RequestBody List<String> shortUrls);
+
     /**
      * Reserve ALL Short URL Reservation items in the database.
      *
@@ -107,10 +215,11 @@ public interface ShortUrlReservationController {
      * short URL when none are available.</p>
      *
      * @return An HTTP Response Entity containing the status (success or
-     * failure) of the operation.
+     * failure) of the operation, as well as the number of short URLs that
+     * were reserved, were already reserved, or could not be reserved.
      */
     @PatchMapping("/reserve/all")
-    Mono<ResponseEntity<Status>>
+    Mono<ResponseEntity<StatusAndUpdateCounts>>
     reserveAllShortUrls();
 
     /**
@@ -129,6 +238,23 @@ public interface ShortUrlReservationController {
     Mono<ResponseEntity<Status>>
     cancelSpecificShortUrlReservation(@PathVariable String shortUrl);
 
+    /**
+     * Cancel a list of specific Short URL Reservations.
+     *
+     * <p>Mark each of the short URLs in the request body (a JSON array of
+     * strings) as available, if it is currently reserved. This is much
+     * cheaper than calling `cancel/specific/{shortUrl}` once per short
+     * URL.</p>
+     *
+     * @param shortUrls The short URLs whose reservations are to be canceled.
+     * @return An HTTP Response Entity containing the overall status of the
+     * operation, as well as the status (success or failure) for each short
+     * URL, in the same order as the request.
+     */
+    @PatchMapping("/cancel/specific")
+    Mono<ResponseEntity<StatusAndShortUrlStatusArray>>
+    cancelSpecificShortUrlReservations(@RequestBody List<String> shortUrls);
+
     /**
      * Cancel ALL Short URL Reservation items in the database.
      *
@@ -138,9 +264,99 @@ public interface ShortUrlReservationController {
      * 'available`.</p>
      *
      * @return An HTTP Response Entity containing the status (success or
-     * failure) of the operation.
+     * failure) of the operation, as well as the number of short URLs whose
+     * reservations were canceled, were not reserved, or could not be
+     * canceled.
      */
     @PatchMapping("/cancel/all")
-    Mono<ResponseEntity<Status>>
+    Mono<ResponseEntity<StatusAndUpdateCounts>>
     cancelAllShortUrlReservations();
+
+    /**
+     * Start a table-wide operation as an admin job.
+     *
+     * <p>The job is given a job ID, and is worked on for a limited time
+     * slice, so that the response comes back well within the API Gateway
+     * timeout. The job's progress is saved as it goes. If the job is not
+     * done by the end of the slice, call `jobs/{jobId}/resume` to carry
+     * on from where it left off, as many times as it takes.</p>
+     *
+     * <p>The job types are `initialize-repository` (see
+     * `initialize-repository`, but note that only the population of the
+     * table is resumable), `reserve-all` (see `reserve/all`),
+     * `cancel-all` (see `cancel/all`), and `extend-range`. Like
+     * `initialize-repository`, an `initialize-repository` job can be started
+     * or resumed only when the Short URL Reservation Service is running on
+     * localhost.</p>
+     *
+     * <p>An `extend-range` job adds the short URLs from just past the end of
+     * the current range up to `maxShortUrlBase10`, without disturbing the
+     * existing ones, while the service carries on serving requests. Starting
+     * the same extension twice picks up the existing job. A
+     * `maxShortUrlBase10` that is not past the end of the current range, or
+     * that would add more than ten times the configured extension size, is
+     * rejected with "Bad Request" (400).</p>
+     *
+     * @param jobType The type of job to start.
+     * @param maxShortUrlBase10 For an `extend-range` job, the base-10 value of
+     *                          the new last short URL of the range. If it is
+     *                          omitted, the range is extended by the
+     *                          configured extension size.
+     * @return An HTTP Response Entity containing the status (success or
+     * failure) of the operation, as well as the job, including its ID and
+     * progress (if the operation was successful).
+     */
+    @PostMapping("/jobs/{jobType}")
+    Mono<ResponseEntity<StatusAndAdminJob>>
+    startAdminJob(
+            @PathVariable String jobType,
+            @RequestParam(required = false) Long maxShortUrlBase10);
+
+    /**
+     * Resume an admin job from its last checkpoint.
+     *
+     * <p>A job can be resumed when it is paused (it used up its time
+     * slice), interrupted (it timed out or crashed), or failed. Resuming a
+     * job that is running, or that has succeeded, does nothing.</p>
+     *
+     * @param jobId The ID of the job.
+     * @return An HTTP Response Entity containing the status (success or
+     * failure) of the operation, as well as the job, including its progress
+     * (if the operation was successful).
+     */
+    @PostMapping("/jobs/{jobId}/resume")
+    Mono<ResponseEntity<StatusAndAdminJob>>
+    resumeAdminJob(@PathVariable String jobId);
+
+    /**
+     * Get the state and progress of an admin job.
+     *
+     * <p>The progress includes the number of short URLs looked at so far,
+     * the rate at which they are being looked at, and an estimate of the
+     * running time remaining.</p>
+     *
+     * @param jobId The ID of the job.
+     * @return An HTTP Response Entity containing the status (success or
+     * failure) of the operation, as well as the job (if the operation was
+     * successful).
+     */
+    @GetMapping("/jobs/{jobId}")
+    Mono<ResponseEntity<StatusAndAdminJob>>
+    getAdminJob(@PathVariable String jobId);
+
+    /**
+     * Get the service's metrics, in the Prometheus text format.
+     *
+     * <p>The metrics are served here only when they are exported to
+     * Prometheus, which by default is when the Short URL Reservation Service
+     * is running on localhost, for a local Prometheus to scrape. On AWS,
+     * they are written to CloudWatch as embedded metric format log lines
+     * instead, and API Gateway has no route to this endpoint.</p>
+     *
+     * @return An HTTP Response Entity containing the metrics, or a 404 (Not
+     * Found) if they are not exported to Prometheus.
+     */
+    @GetMapping("/metrics")
+    ResponseEntity<String>
+    getMetrics();
 }
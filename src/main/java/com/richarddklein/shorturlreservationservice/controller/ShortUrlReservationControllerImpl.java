@@ -5,20 +5,36 @@
 
 package com.richarddklein.shorturlreservationservice.controller;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
 import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.AdminJob;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndAdminJob;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.richarddklein.shorturlreservationservice.service.ShortUrlReservationService;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.SUCCESS;
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.UNKNOWN_ERROR;
 
 /**
  * The production implementation of the Short URL Reservation Controller
@@ -28,6 +44,11 @@ import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlSta
 @RequestMapping({"/short-url/reservations", "/"})
 public class ShortUrlReservationControllerImpl implements ShortUrlReservationController {
     private final ShortUrlReservationService shortUrlReservationService;
+    private final int maxReserveAnyCount;
+    private final int maxBulkCount;
+    private final int defaultPageLimit;
+    private final int maxPageLimit;
+    private final MeterRegistry meterRegistry;
 
     // ------------------------------------------------------------------------
     // PUBLIC METHODS
@@ -39,11 +60,31 @@ public class ShortUrlReservationControllerImpl implements ShortUrlReservationCon
      * @param shortUrlReservationService Dependency injection of a class instance
      *                                   that is to play the role of the Short URL
      *                                   Reservation service layer.
+     * @param maxReserveAnyCount The largest number of short URLs that a client
+     *                           may reserve in a single `reserve/any` call.
+     * @param maxBulkCount The largest number of short URLs that a client may
+     *                     list in a single bulk `reserve/specific` or
+     *                     `cancel/specific` call.
+     * @param defaultPageLimit The number of items per page that `all`
+     *                         returns if the client does not say.
+     * @param maxPageLimit The largest number of items per page that a client
+     *                     may ask `all` to return.
+     * @param meterRegistry The registry of the service's metrics.
      */
     public ShortUrlReservationControllerImpl(
-            ShortUrlReservationService shortUrlReservationService) {
+            ShortUrlReservationService shortUrlReservationService,
+            int maxReserveAnyCount,
+            int maxBulkCount,
+            int defaultPageLimit,
+            int maxPageLimit,
+            MeterRegistry meterRegistry) {
 
         this.shortUrlReservationService = shortUrlReservationService;
+        this.maxReserveAnyCount = maxReserveAnyCount;
+        this.maxBulkCount = maxBulkCount;
+        this.defaultPageLimit = defaultPageLimit;
+        this.maxPageLimit = maxPageLimit;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -78,6 +119,38 @@ public class ShortUrlReservationControllerImpl implements ShortUrlReservationCon
                 httpStatus);
     }
 
+    @Override
+    public ResponseEntity<Status>
+    migrateShortUrlReservationRepository() {
+        ShortUrlStatus shortUrlReservationStatus = shortUrlReservationService
+                .migrateShortUrlReservationRepository();
+
+        HttpStatus httpStatus;
+        String message;
+
+        switch (shortUrlReservationStatus) {
+            case SUCCESS -> {
+                httpStatus = HttpStatus.OK;
+                message = "Migration of Short URL Reservation table "
+                        + "completed successfully";
+            }
+            case NOT_ON_LOCAL_MACHINE -> {
+                httpStatus = HttpStatus.FORBIDDEN;
+                message = "Migration of the Short URL Reservation "
+                        + "table can be done only when the service is "
+                        + "running on your local machine";
+            }
+            default -> {
+                httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+                message = "An unknown error occurred";
+            }
+        }
+
+        return new ResponseEntity<>(
+                new Status(shortUrlReservationStatus, message),
+                httpStatus);
+    }
+
     @Override
     public Mono<ResponseEntity<StatusAndShortUrlReservation>>
     getSpecificShortUrlReservation(@PathVariable String shortUrl) {
@@ -112,27 +185,61 @@ public class ShortUrlReservationControllerImpl implements ShortUrlReservationCon
     }
 
     @Override
-    public Mono<ResponseEntity<StatusAndShortUrlReservationArray>>
-    getAllShortUrlReservations() {
-        return shortUrlReservationService.getAllShortUrlReservations()
-            .map(statusAndShortUrlReservationArray -> {
+    public Mono<ResponseEntity<StatusAndShortUrlReservationPage>>
+    getAllShortUrlReservations(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Boolean available) {
+
+        int pageLimit = (limit == null) ? defaultPageLimit : limit;
+        if (pageLimit < 1 || pageLimit > maxPageLimit) {
+            return Mono.just(new ResponseEntity<>(
+                    new StatusAndShortUrlReservationPage(
+                            new Status(UNKNOWN_ERROR, String.format(
+                                    "The limit must be between 1 and %d",
+                                    maxPageLimit)),
+                            Collections.emptyList(),
+                            null),
+                    HttpStatus.BAD_REQUEST));
+        }
+        return shortUrlReservationService.getAllShortUrlReservations(
+                    pageLimit, cursor, available)
+            .map(statusAndShortUrlReservationPage -> {
                 ShortUrlStatus shortUrlUserStatus =
-                        statusAndShortUrlReservationArray.getStatus().getStatus();
+                        statusAndShortUrlReservationPage.getStatus().getStatus();
 
                 HttpStatus httpStatus;
                 String message;
 
                 if (Objects.requireNonNull(shortUrlUserStatus) == SUCCESS) {
                     httpStatus = HttpStatus.OK;
-                    message = "All short URL reservations successfully retrieved";
+                    message = (statusAndShortUrlReservationPage.getNextCursor() == null) ?
+                            "Last page of short URL reservations successfully retrieved" :
+                            "Page of short URL reservations successfully retrieved";
                 } else {
                     httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
                     message = "An unknown error occurred";
                 }
-                statusAndShortUrlReservationArray.getStatus().setMessage(message);
+                statusAndShortUrlReservationPage.getStatus().setMessage(message);
+
+                return new ResponseEntity<>(statusAndShortUrlReservationPage, httpStatus);
+            })
+            .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(
+                    new StatusAndShortUrlReservationPage(
+                            new Status(UNKNOWN_ERROR, "The cursor is not valid"),
+                            Collections.emptyList(),
+                            null),
+                    HttpStatus.BAD_REQUEST)));
+    }
 
-                return new ResponseEntity<>(statusAndShortUrlReservationArray, httpStatus);
-            });
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(
+            @RequestParam(required = false) Boolean available) {
+
+        return shortUrlReservationService.exportAllShortUrlReservations(available)
+            .doOnError(e -> System.out.println(
+                    "====> exportAllShortUrlReservations() failed: " + e.getMessage()));
     }
 
     @Override
@@ -169,6 +276,54 @@ public class ShortUrlReservationControllerImpl implements ShortUrlReservationCon
             });
     }
 
+    @Override
+    public Mono<ResponseEntity<StatusAndShortUrlReservationArray>>
+    reserveAnyShortUrls(@RequestParam int count) {
+        if (count < 1 || count > maxReserveAnyCount) {
+            return Mono.just(new ResponseEntity<>(
+                    new StatusAndShortUrlReservationArray(
+                            new Status(UNKNOWN_ERROR, String.format(
+                                    "The count must be between 1 and %d",
+                                    maxReserveAnyCount)),
+                            Collections.emptyList()),
+                    HttpStatus.BAD_REQUEST));
+        }
+        return shortUrlReservationService.reserveAnyShortUrls(count)
+            .map(statusAndShortUrlReservationArray -> {
+                ShortUrlStatus shortUrlReservationStatus =
+                        statusAndShortUrlReservationArray.getStatus().getStatus();
+                int numReserved = statusAndShortUrlReservationArray
+                        .getShortUrlReservations().size();
+
+                HttpStatus httpStatus;
+                String message;
+
+                switch (shortUrlReservationStatus) {
+                    case SUCCESS -> {
+                        httpStatus = HttpStatus.OK;
+                        message = (numReserved == count) ?
+                                String.format(
+                                        "%d short URLs successfully reserved",
+                                        numReserved) :
+                                String.format(
+                                        "Only %d of %d short URLs could be reserved",
+                                        numReserved, count);
+                    }
+                    case NO_SHORT_URLS_ARE_AVAILABLE -> {
+                        httpStatus = HttpStatus.NOT_FOUND;
+                        message = "No short URLs are available";
+                    }
+                    default -> {
+                        httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+                        message = "An unknown error occurred";
+                    }
+                }
+                statusAndShortUrlReservationArray.getStatus().setMessage(message);
+
+                return new ResponseEntity<>(statusAndShortUrlReservationArray, httpStatus);
+            });
+    }
+
     @Override
     public Mono<ResponseEntity<Status>>
     reserveSpecificShortUrl(@PathVariable String shortUrl) {
@@ -209,25 +364,19 @@ public class ShortUrlReservationControllerImpl implements ShortUrlReservationCon
     }
 
     @Override
-    public Mono<ResponseEntity<Status>>
+    public Mono<ResponseEntity<StatusAndShortUrlStatusArray>>
+    reserveSpecificShortUrls(@RequestBody List<String> shortUrls) {
+        return bulkResponse(shortUrls,
+                shortUrlReservationService::reserveSpecificShortUrls,
+                "reserved");
+    }
+
+    @Override
+    public Mono<ResponseEntity<StatusAndUpdateCounts>>
     reserveAllShortUrls() {
         return shortUrlReservationService.reserveAllShortUrls()
-            .map(shortUrlReservationStatus -> {
-                HttpStatus httpStatus;
-                String message;
-
-                if (Objects.requireNonNull(shortUrlReservationStatus) == SUCCESS) {
-                    httpStatus = HttpStatus.OK;
-                    message = "All short URL reservations successfully reserved";
-                } else {
-                    httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
-                    message = "An unknown error occurred";
-                }
-
-                return new ResponseEntity<>(
-                        new Status(shortUrlReservationStatus, message),
-                        httpStatus);
-            });
+            .map(statusAndUpdateCounts -> updateCountsResponse(
+                    statusAndUpdateCounts, "reserved"));
     }
 
     @Override
@@ -270,28 +419,244 @@ public class ShortUrlReservationControllerImpl implements ShortUrlReservationCon
     }
 
     @Override
-    public Mono<ResponseEntity<Status>>
+    public Mono<ResponseEntity<StatusAndShortUrlStatusArray>>
+    cancelSpecificShortUrlReservations(@RequestBody List<String> shortUrls) {
+        return bulkResponse(shortUrls,
+                shortUrlReservationService::cancelSpecificShortUrlReservations,
+                "canceled");
+    }
+
+    @Override
+    public Mono<ResponseEntity<StatusAndUpdateCounts>>
     cancelAllShortUrlReservations() {
         return shortUrlReservationService.cancelAllShortUrlReservations()
-            .map(shortUrlReservationStatus -> {
+            .map(statusAndUpdateCounts -> updateCountsResponse(
+                    statusAndUpdateCounts, "canceled"));
+    }
+
+    @Override
+    public Mono<ResponseEntity<StatusAndAdminJob>>
+    startAdminJob(
+            @PathVariable String jobType,
+            @RequestParam(required = false) Long maxShortUrlBase10) {
+        AdminJobType adminJobType = AdminJobType.fromPathName(jobType);
+        if (adminJobType == null) {
+            return Mono.just(new ResponseEntity<>(
+                    new StatusAndAdminJob(
+                            new Status(UNKNOWN_ERROR, String.format(
+                                    "'%s' is not a job type", jobType)),
+                            null),
+                    HttpStatus.BAD_REQUEST));
+        }
+        return adminJobResponse(shortUrlReservationService.startAdminJob(adminJobType, maxShortUrlBase10), true)
+            .onErrorResume(IllegalArgumentException.class, e -> Mono.just(new ResponseEntity<>(
+                    new StatusAndAdminJob(
+                            new Status(UNKNOWN_ERROR, e.getMessage()),
+                            null),
+                    HttpStatus.BAD_REQUEST)));
+    }
+
+    @Override
+    public Mono<ResponseEntity<StatusAndAdminJob>>
+    resumeAdminJob(@PathVariable String jobId) {
+        return adminJobResponse(shortUrlReservationService.resumeAdminJob(jobId), true);
+    }
+
+    @Override
+    public Mono<ResponseEntity<StatusAndAdminJob>>
+    getAdminJob(@PathVariable String jobId) {
+        return adminJobResponse(shortUrlReservationService.getAdminJob(jobId), false);
+    }
+
+    @Override
+    public ResponseEntity<String>
+    getMetrics() {
+        if (!(meterRegistry instanceof PrometheusMeterRegistry prometheusMeterRegistry)) {
+            return new ResponseEntity<>(
+                    "Metrics are not exported to Prometheus", HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TextFormat.CONTENT_TYPE_004))
+                .body(prometheusMeterRegistry.scrape());
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Perform a bulk operation on a list of short URLs, and build the
+     * response.
+     *
+     * @param shortUrls The short URLs listed in the request body.
+     * @param operation The service-layer bulk operation to perform.
+     * @param pastTense How to describe a successful operation ("reserved",
+     *                  "canceled").
+     * @return An HTTP Response Entity containing the overall status of the
+     * operation, as well as the status for each short URL.
+     */
+    private Mono<ResponseEntity<StatusAndShortUrlStatusArray>>
+    bulkResponse(
+            List<String> shortUrls,
+            Function<List<String>, Mono<StatusAndShortUrlStatusArray>> operation,
+            String pastTense) {
+
+        if (shortUrls == null || shortUrls.isEmpty() || shortUrls.size() > maxBulkCount) {
+            return Mono.just(new ResponseEntity<>(
+                    new StatusAndShortUrlStatusArray(
+                            new Status(UNKNOWN_ERROR, String.format(
+                                    "The request must list between 1 and %d short URLs",
+                                    maxBulkCount)),
+                            Collections.emptyList()),
+                    HttpStatus.BAD_REQUEST));
+        }
+        return operation.apply(shortUrls)
+            .map(statusAndShortUrlStatusArray -> {
+                ShortUrlStatus shortUrlReservationStatus =
+                        statusAndShortUrlStatusArray.getStatus().getStatus();
+
                 HttpStatus httpStatus;
                 String message;
 
                 if (Objects.requireNonNull(shortUrlReservationStatus) == SUCCESS) {
+                    long numSucceeded = statusAndShortUrlStatusArray.getShortUrlStatuses()
+                            .stream()
+                            .filter(shortUrlAndStatus -> shortUrlAndStatus.getStatus() == SUCCESS)
+                            .count();
                     httpStatus = HttpStatus.OK;
-                    message = "All short URL reservations successfully canceled";
+                    message = String.format(
+                            "%d of %d short URLs successfully %s",
+                            numSucceeded, shortUrls.size(), pastTense);
                 } else {
                     httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
                     message = "An unknown error occurred";
                 }
+                statusAndShortUrlStatusArray.getStatus().setMessage(message);
 
-                return new ResponseEntity<>(
-                        new Status(shortUrlReservationStatus, message),
-                        httpStatus);
+                return new ResponseEntity<>(statusAndShortUrlStatusArray, httpStatus);
             });
     }
 
-    // ------------------------------------------------------------------------
-    // PRIVATE METHODS
-    // ------------------------------------------------------------------------
+    /**
+     * Build the response to a table-wide operation.
+     *
+     * @param statusAndUpdateCounts The outcome of the operation.
+     * @param pastTense How to describe a successful operation ("reserved",
+     *                  "canceled").
+     * @return An HTTP Response Entity containing the overall status of the
+     * operation, as well as its counts.
+     */
+    private ResponseEntity<StatusAndUpdateCounts>
+    updateCountsResponse(
+            StatusAndUpdateCounts statusAndUpdateCounts,
+            String pastTense) {
+
+        HttpStatus httpStatus;
+        String message;
+
+        if (Objects.requireNonNull(statusAndUpdateCounts.getStatus().getStatus()) == SUCCESS) {
+            httpStatus = HttpStatus.OK;
+            message = String.format(
+                    "All short URL reservations successfully %s "
+                            + "(%d updated, %d already %s)",
+                    pastTense,
+                    statusAndUpdateCounts.getNumUpdated(),
+                    statusAndUpdateCounts.getNumUnchanged(),
+                    pastTense);
+        } else {
+            httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = String.format(
+                    "%d short URL reservations could not be %s",
+                    statusAndUpdateCounts.getNumFailed(),
+                    pastTense);
+        }
+        statusAndUpdateCounts.getStatus().setMessage(message);
+
+        return new ResponseEntity<>(statusAndUpdateCounts, httpStatus);
+    }
+
+    /**
+     * Build the response to a request concerning an admin job.
+     *
+     * @param statusAndAdminJob The outcome of the request, or an empty Mono
+     *                          if there is no such job.
+     * @param isRunRequest `true` if the request started or resumed the job,
+     *                     in which case the HTTP status reflects the state of
+     *                     the job; `false` if the request just asked about
+     *                     the job.
+     * @return An HTTP Response Entity containing the status of the request,
+     * as well as the job.
+     */
+    private Mono<ResponseEntity<StatusAndAdminJob>>
+    adminJobResponse(
+            Mono<StatusAndAdminJob> statusAndAdminJob,
+            boolean isRunRequest) {
+
+        return statusAndAdminJob
+            .map(statusAndJob -> {
+                AdminJob adminJob = statusAndJob.getAdminJob();
+
+                HttpStatus httpStatus;
+                String message;
+
+                switch (statusAndJob.getStatus().getStatus()) {
+                    case SUCCESS -> {
+                        String progress = String.format(
+                                "%d of about %d short URLs done: "
+                                        + "%d updated, %d unchanged, %d failed",
+                                adminJob.getNumScanned(),
+                                adminJob.getTotalShortUrls(),
+                                adminJob.getNumUpdated(),
+                                adminJob.getNumUnchanged(),
+                                adminJob.getNumFailed());
+                        switch (adminJob.getState()) {
+                            case SUCCEEDED -> {
+                                httpStatus = HttpStatus.OK;
+                                message = String.format("Job %s succeeded (%s)",
+                                        adminJob.getJobId(), progress);
+                            }
+                            case RUNNING -> {
+                                httpStatus = isRunRequest ? HttpStatus.ACCEPTED : HttpStatus.OK;
+                                message = String.format("Job %s is running (%s)",
+                                        adminJob.getJobId(), progress);
+                            }
+                            case FAILED -> {
+                                httpStatus = isRunRequest ?
+                                        HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.OK;
+                                message = String.format(
+                                        "Job %s failed (%s): %s. Resume it to retry "
+                                                + "from its last checkpoint",
+                                        adminJob.getJobId(), progress, adminJob.getMessage());
+                            }
+                            default -> {
+                                httpStatus = isRunRequest ? HttpStatus.ACCEPTED : HttpStatus.OK;
+                                message = String.format(
+                                        "Job %s is %s (%s). Resume it to carry on",
+                                        adminJob.getJobId(),
+                                        adminJob.getState().name().toLowerCase(),
+                                        progress);
+                            }
+                        }
+                    }
+                    case NOT_ON_LOCAL_MACHINE -> {
+                        httpStatus = HttpStatus.FORBIDDEN;
+                        message = "Initialization of the Short URL Reservation "
+                                + "table can be done only when the service is "
+                                + "running on your local machine";
+                    }
+                    default -> {
+                        httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+                        message = "An unknown error occurred";
+                    }
+                }
+                statusAndJob.getStatus().setMessage(message);
+
+                return new ResponseEntity<>(statusAndJob, httpStatus);
+            })
+            .defaultIfEmpty(new ResponseEntity<>(
+                    new StatusAndAdminJob(
+                            new Status(UNKNOWN_ERROR, "No such job"),
+                            null),
+                    HttpStatus.NOT_FOUND));
+    }
 }
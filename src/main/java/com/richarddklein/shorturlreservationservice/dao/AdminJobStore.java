@@ -0,0 +1,157 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.richarddklein.shorturlreservationservice.dto.AdminJob;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobState;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The store of admin job checkpoint records.
+ *
+ * <p>Each admin job is kept as one item in the metadata table, with an
+ * `id` of `job#` followed by the job ID. Every write is conditional on the
+ * item's version, so that when two instances of the service both try to
+ * work on the same job, only one of them wins.</p>
+ */
+public class AdminJobStore {
+    private static final String JOB_ID_PREFIX = "job#";
+
+    private final MetadataTable metadataTable;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param metadataTable Dependency injection of a class instance that is to
+     *                      play the role of the metadata table.
+     */
+    public AdminJobStore(MetadataTable metadataTable) {
+        this.metadataTable = metadataTable;
+    }
+
+    /**
+     * Create the table that holds the checkpoint records, unless it already
+     * exists.
+     *
+     * <p>This is a synchronous operation, and requires permission to create
+     * tables, so it is done as part of repository initialization or
+     * migration.</p>
+     */
+    public void createIfNotExists() {
+        metadataTable.createIfNotExists();
+    }
+
+    /**
+     * Read the checkpoint record of a job.
+     *
+     * @param jobId The ID of the job.
+     * @return The job, or an empty Mono if there is no such job.
+     */
+    public Mono<AdminJob> getJob(String jobId) {
+        return metadataTable.getItem(JOB_ID_PREFIX + jobId)
+            .map(AdminJobStore::toAdminJob);
+    }
+
+    /**
+     * Write the checkpoint record of a job, on condition that nobody else
+     * has written it since we last read or wrote it.
+     *
+     * <p>On success, the version of `adminJob` is brought up to date.</p>
+     *
+     * @param adminJob The job.
+     * @return `true` if the record was written, or `false` if somebody else
+     * got there first.
+     */
+    public Mono<Boolean> saveJob(AdminJob adminJob) {
+        return metadataTable.putVersionedItem(
+                JOB_ID_PREFIX + adminJob.getJobId(),
+                toAttributes(adminJob),
+                adminJob.getVersion())
+            .map(newVersion -> {
+                adminJob.setVersion(newVersion);
+                return true;
+            })
+            .defaultIfEmpty(false);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static Map<String, AttributeValue> toAttributes(AdminJob adminJob) {
+        Map<String, AttributeValue> attributes = new HashMap<>();
+        attributes.put("jobId", AttributeValue.fromS(adminJob.getJobId()));
+        attributes.put("jobType", AttributeValue.fromS(adminJob.getJobType().name()));
+        attributes.put("state", AttributeValue.fromS(adminJob.getState().name()));
+        if (adminJob.getMessage() != null) {
+            attributes.put("message", AttributeValue.fromS(adminJob.getMessage()));
+        }
+        attributes.put("positions", AttributeValue.fromL(adminJob.getPositions().stream()
+            .map(AttributeValue::fromS)
+            .toList()));
+        attributes.put("numScanned", fromLong(adminJob.getNumScanned()));
+        attributes.put("numUpdated", fromLong(adminJob.getNumUpdated()));
+        attributes.put("numUnchanged", fromLong(adminJob.getNumUnchanged()));
+        attributes.put("numFailed", fromLong(adminJob.getNumFailed()));
+        attributes.put("totalShortUrls", fromLong(adminJob.getTotalShortUrls()));
+        attributes.put("minShortUrlBase10", fromLong(adminJob.getMinShortUrlBase10()));
+        attributes.put("maxShortUrlBase10", fromLong(adminJob.getMaxShortUrlBase10()));
+        attributes.put("activeMillis", fromLong(adminJob.getActiveMillis()));
+        attributes.put("createdAt", fromLong(adminJob.getCreatedAt()));
+        attributes.put("updatedAt", fromLong(adminJob.getUpdatedAt()));
+        attributes.put("leaseExpiresAt", fromLong(adminJob.getLeaseExpiresAt()));
+        return attributes;
+    }
+
+    private static AdminJob toAdminJob(Map<String, AttributeValue> item) {
+        AdminJob adminJob = new AdminJob();
+        adminJob.setJobId(item.get("jobId").s());
+        adminJob.setJobType(AdminJobType.valueOf(item.get("jobType").s()));
+        adminJob.setState(AdminJobState.valueOf(item.get("state").s()));
+        if (item.containsKey("message")) {
+            adminJob.setMessage(item.get("message").s());
+        }
+        List<String> positions = item.get("positions").l().stream()
+            .map(AttributeValue::s)
+            .toList();
+        adminJob.setPositions(positions);
+        adminJob.setNumScanned(toLong(item.get("numScanned")));
+        adminJob.setNumUpdated(toLong(item.get("numUpdated")));
+        adminJob.setNumUnchanged(toLong(item.get("numUnchanged")));
+        adminJob.setNumFailed(toLong(item.get("numFailed")));
+        adminJob.setTotalShortUrls(toLong(item.get("totalShortUrls")));
+        // Records written before range extension existed have no interval.
+        if (item.containsKey("minShortUrlBase10")) {
+            adminJob.setMinShortUrlBase10(toLong(item.get("minShortUrlBase10")));
+            adminJob.setMaxShortUrlBase10(toLong(item.get("maxShortUrlBase10")));
+        }
+        adminJob.setActiveMillis(toLong(item.get("activeMillis")));
+        adminJob.setCreatedAt(toLong(item.get("createdAt")));
+        adminJob.setUpdatedAt(toLong(item.get("updatedAt")));
+        adminJob.setLeaseExpiresAt(toLong(item.get("leaseExpiresAt")));
+        adminJob.setVersion(toLong(item.get("version")));
+        return adminJob;
+    }
+
+    private static AttributeValue fromLong(long value) {
+        return AttributeValue.fromN(Long.toString(value));
+    }
+
+    private static long toLong(AttributeValue attributeValue) {
+        return Long.parseLong(attributeValue.n());
+    }
+}
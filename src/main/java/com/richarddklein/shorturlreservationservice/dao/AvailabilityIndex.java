@@ -0,0 +1,412 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+/**
+ * The bucketed availability index of the Short URL Reservation table.
+ *
+ * <p>The original `isAvailable-index` has `isAvailable` as its only key, so
+ * the only way to find an available short URL is to scan the index from the
+ * beginning. Every concurrent caller then gets the same first item, and all
+ * but one of them lose the race to reserve it.</p>
+ *
+ * <p>The `availableBucket-index` spreads the available short URLs over
+ * `NUM_BUCKETS` partitions instead. Its Partition Key is `availableBucket`,
+ * a small number derived from the short URL, and its Sort Key is the
+ * familiar `isAvailable` attribute. Every item carries a permanent
+ * `availableBucket` attribute, but since an item appears in the index only
+ * if it has both key attributes, the index is just as sparse as the
+ * original one: it contains exactly the available short URLs.</p>
+ *
+ * <p>To find candidates, we query a random bucket, starting at a random
+ * point within the bucket, and return a small window of short URLs from
+ * which the caller can choose at random. Concurrent callers are thus
+ * spread across the whole keyspace. The random point is a short URL picked
+ * uniformly from the range. DynamoDB orders the Sort Key by its bytes, in
+ * which the short URL digits are not in order, and by that order, the
+ * first digits of the short URLs in a range are far from uniform; but a
+ * uniformly picked short URL lands at a uniformly random rank whatever the
+ * order.</p>
+ *
+ * <p>A table that predates the bucketed index only gets it when
+ * `migrate-repository` is run. Until DynamoDB reports the new index as
+ * `ACTIVE` (because the migration has not been run yet, or is still
+ * backfilling it), the original `isAvailable-index` is read instead, as it
+ * was before. The status is checked at most once per
+ * `STATUS_CHECK_INTERVAL`, and no longer at all once the index is
+ * active.</p>
+ */
+public class AvailabilityIndex {
+    public static final String INDEX_NAME = "availableBucket-index";
+    public static final String LEGACY_INDEX_NAME = "isAvailable-index";
+    public static final String AVAILABLE_BUCKET = "availableBucket";
+    public static final int NUM_BUCKETS = 64;
+
+    private static final String SHORT_URL = "shortUrl";
+    private static final String IS_AVAILABLE = "isAvailable";
+    private static final Duration STATUS_CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    private final ParameterStoreAccessor parameterStoreAccessor;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final String tableName;
+    private final Mono<Boolean> indexStatus;
+
+    private volatile boolean isIndexActive;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param parameterStoreAccessor Dependency injection of a class instance
+     *                               that is to play the role of reading the
+     *                               short URL range from the Parameter Store.
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
+     * @param tableName The name of the Short URL Reservation table.
+     */
+    public AvailabilityIndex(
+            ParameterStoreAccessor parameterStoreAccessor,
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            String tableName) {
+
+        this.parameterStoreAccessor = parameterStoreAccessor;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.tableName = tableName;
+        this.indexStatus = Mono.defer(this::checkIndexStatus)
+            .cache(STATUS_CHECK_INTERVAL);
+    }
+
+    /**
+     * Determine the bucket of a short URL.
+     *
+     * @param shortUrl The short URL of interest.
+     * @return The bucket, in `[0, NUM_BUCKETS)`.
+     */
+    public static int bucketOf(String shortUrl) {
+        return Math.floorMod(shortUrl.hashCode(), NUM_BUCKETS);
+    }
+
+    /**
+     * Add the `availableBucket` attribute to a DynamoDB item.
+     *
+     * @param item A Short URL Reservation item, as a DynamoDB attribute map.
+     * @return A copy of `item` with the `availableBucket` attribute added.
+     */
+    public static Map<String, AttributeValue> withBucket(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> itemWithBucket = new HashMap<>(item);
+        itemWithBucket.put(AVAILABLE_BUCKET, AttributeValue.fromN(
+                Integer.toString(bucketOf(item.get(SHORT_URL).s()))));
+        return itemWithBucket;
+    }
+
+    /**
+     * Determine whether the bucketed index can be read.
+     *
+     * @return `true` if the bucketed index is `ACTIVE`, or `false` if the
+     * original `isAvailable-index` must be read instead.
+     */
+    public Mono<Boolean> isActive() {
+        return isIndexActive ? Mono.just(true) : indexStatus;
+    }
+
+    /**
+     * Find a small window of candidate short URLs at a random point in the
+     * index.
+     *
+     * <p>If the random point turns out to be past the end of its bucket,
+     * we try the whole bucket, and if the bucket is empty, we ask the index
+     * for any bucket that is not. Without the bucketed index, the window is
+     * simply the start of the original index.</p>
+     *
+     * @param windowSize The largest number of candidates to return.
+     * @return The candidate short URLs, or an empty list if no short URLs
+     * are available.
+     */
+    public Mono<List<String>> findCandidates(int windowSize) {
+        return isActive().flatMap(isActive -> isActive ?
+            randomStartAt().flatMap(startAt -> findCandidatesInBuckets(startAt, windowSize)) :
+            scanLegacyIndex(null, windowSize).map(this::shortUrlsOf));
+    }
+
+    /**
+     * Estimate the number of available short URLs, without reading more
+     * than is needed to tell whether there are at least `upTo` of them.
+     *
+     * <p>Counts the available short URLs in one random bucket (stopping at
+     * `upTo / NUM_BUCKETS`), and scales the count up by the number of
+     * buckets. Without the bucketed index, counts them in the original
+     * index, stopping at `upTo`.</p>
+     *
+     * @param upTo The largest estimate of interest.
+     * @return The estimated number of available short URLs, but no more
+     * than `upTo`.
+     */
+    public Mono<Long> estimateNumAvailable(long upTo) {
+        return isActive().flatMap(isActive -> {
+            if (!isActive) {
+                ScanRequest request = legacyScanRequest(null, (int) Math.min(Integer.MAX_VALUE, Math.max(1, upTo)))
+                    .toBuilder()
+                    .select(Select.COUNT)
+                    .build();
+                return Mono.fromFuture(() -> dynamoDbAsyncClient.scan(request))
+                    .map(response -> Math.min(upTo, (long) response.count()));
+            }
+
+            int bucket = InstanceRandom.current().nextInt(NUM_BUCKETS);
+            int limit = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (upTo + NUM_BUCKETS - 1) / NUM_BUCKETS));
+
+            QueryRequest request = QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(INDEX_NAME)
+                .keyConditionExpression(AVAILABLE_BUCKET + " = :bucket")
+                .expressionAttributeValues(Map.of(
+                    ":bucket", AttributeValue.fromN(Integer.toString(bucket))))
+                .select(Select.COUNT)
+                .limit(limit)
+                .build();
+
+            return Mono.fromFuture(() -> dynamoDbAsyncClient.query(request))
+                .map(response -> Math.min(upTo, (long) response.count() * NUM_BUCKETS));
+        });
+    }
+
+    /**
+     * Read one page of a bucket.
+     *
+     * <p>Without the bucketed index, reads one page of the original index
+     * instead, whatever the bucket.</p>
+     *
+     * @param bucket The bucket of interest.
+     * @param startAt If not null, skip the short URLs that sort before this.
+     * @param exclusiveStartKey If not null, resume after this key.
+     * @param limit The largest number of short URLs to return.
+     * @return One page of the bucket.
+     */
+    public Mono<QueryResponse> queryBucket(
+            int bucket,
+            String startAt,
+            Map<String, AttributeValue> exclusiveStartKey,
+            int limit) {
+
+        return isActive().flatMap(isActive -> isActive ?
+            queryIndexBucket(bucket, startAt, exclusiveStartKey, limit) :
+            scanLegacyIndex(exclusiveStartKey, limit).map(AvailabilityIndex::asQueryResponse));
+    }
+
+    /**
+     * Build the request that reads one page of a bucket.
+     *
+     * <p>For callers that make the call themselves, with a client of their
+     * own (see `VirtualThreadShortUrlReservationDaoImpl`).</p>
+     *
+     * @param bucket The bucket of interest.
+     * @param startAt If not null, skip the short URLs that sort before this.
+     * @param exclusiveStartKey If not null, resume after this key.
+     * @param limit The largest number of short URLs to return.
+     * @return The `Query` request.
+     */
+    public QueryRequest bucketQueryRequest(
+            int bucket,
+            String startAt,
+            Map<String, AttributeValue> exclusiveStartKey,
+            int limit) {
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":bucket", AttributeValue.fromN(Integer.toString(bucket)));
+        String keyCondition = AVAILABLE_BUCKET + " = :bucket";
+        if (startAt != null) {
+            values.put(":startAt", AttributeValue.fromS(startAt));
+            keyCondition += " AND " + IS_AVAILABLE + " >= :startAt";
+        }
+        return QueryRequest.builder()
+            .tableName(tableName)
+            .indexName(INDEX_NAME)
+            .keyConditionExpression(keyCondition)
+            .expressionAttributeValues(values)
+            .exclusiveStartKey(exclusiveStartKey)
+            .limit(limit)
+            .build();
+    }
+
+    /**
+     * Build the request that finds any bucket that contains at least one
+     * available short URL.
+     *
+     * @return The `Scan` request. The bucket is the `availableBucket` of
+     * the one item it returns, if any.
+     */
+    public ScanRequest nonEmptyBucketScanRequest() {
+        return ScanRequest.builder()
+            .tableName(tableName)
+            .indexName(INDEX_NAME)
+            .limit(1)
+            .build();
+    }
+
+    /**
+     * Build the request that reads one page of the original
+     * `isAvailable-index`, for use while the bucketed index is not active.
+     *
+     * @param exclusiveStartKey If not null, resume after this key.
+     * @param limit The largest number of short URLs to return.
+     * @return The `Scan` request.
+     */
+    public ScanRequest legacyScanRequest(Map<String, AttributeValue> exclusiveStartKey, int limit) {
+        return ScanRequest.builder()
+            .tableName(tableName)
+            .indexName(LEGACY_INDEX_NAME)
+            .exclusiveStartKey(exclusiveStartKey)
+            .limit(limit)
+            .build();
+    }
+
+    /**
+     * Choose a random point at which to start reading a bucket.
+     *
+     * @return A short URL picked uniformly from the short URL range.
+     */
+    public Mono<String> randomStartAt() {
+        return Mono.zip(
+                parameterStoreAccessor.getMinShortUrlBase10(),
+                parameterStoreAccessor.getMaxShortUrlBase10())
+            .map(range -> ShortUrlCodec.encode(
+                InstanceRandom.current().nextLong(range.getT1(), range.getT2() + 1)));
+    }
+
+    /**
+     * Extract the short URLs from a page of the index.
+     *
+     * @param response A page of the index.
+     * @return The short URLs on the page.
+     */
+    public List<String> shortUrlsOf(QueryResponse response) {
+        return shortUrlsOf(response.items());
+    }
+
+    /**
+     * Extract the short URLs from a page of the original index.
+     *
+     * @param response A page of the original index.
+     * @return The short URLs on the page.
+     */
+    public List<String> shortUrlsOf(ScanResponse response) {
+        return shortUrlsOf(response.items());
+    }
+
+    /**
+     * Present a page of the original index as a page of a bucket, for the
+     * callers that page through the buckets.
+     *
+     * @param response A page of the original index.
+     * @return The same items, and the same key to resume after.
+     */
+    public static QueryResponse asQueryResponse(ScanResponse response) {
+        QueryResponse.Builder queryResponse = QueryResponse.builder()
+            .items(response.items())
+            .count(response.count());
+        if (response.hasLastEvaluatedKey()) {
+            queryResponse.lastEvaluatedKey(response.lastEvaluatedKey());
+        }
+        return queryResponse.build();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private Mono<List<String>> findCandidatesInBuckets(String startAt, int windowSize) {
+        int bucket = InstanceRandom.current().nextInt(NUM_BUCKETS);
+
+        return queryIndexBucket(bucket, startAt, null, windowSize)
+            .map(this::shortUrlsOf)
+            .filter(shortUrls -> !shortUrls.isEmpty())
+            .switchIfEmpty(Mono.defer(() -> queryIndexBucket(bucket, null, null, windowSize)
+                .map(this::shortUrlsOf)))
+            .filter(shortUrls -> !shortUrls.isEmpty())
+            .switchIfEmpty(Mono.defer(() -> findNonEmptyBucket()
+                .flatMap(nonEmptyBucket -> queryIndexBucket(nonEmptyBucket, null, null, windowSize))
+                .map(this::shortUrlsOf)
+                .defaultIfEmpty(List.of())));
+    }
+
+    private Mono<QueryResponse> queryIndexBucket(
+            int bucket,
+            String startAt,
+            Map<String, AttributeValue> exclusiveStartKey,
+            int limit) {
+
+        QueryRequest request = bucketQueryRequest(bucket, startAt, exclusiveStartKey, limit);
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.query(request));
+    }
+
+    private Mono<ScanResponse> scanLegacyIndex(Map<String, AttributeValue> exclusiveStartKey, int limit) {
+        ScanRequest request = legacyScanRequest(exclusiveStartKey, limit);
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.scan(request));
+    }
+
+    /**
+     * Find any bucket that contains at least one available short URL.
+     *
+     * @return The bucket, or an empty Mono if no short URLs are available.
+     */
+    private Mono<Integer> findNonEmptyBucket() {
+        ScanRequest request = nonEmptyBucketScanRequest();
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.scan(request))
+            .filter(response -> !response.items().isEmpty())
+            .map(response -> Integer.parseInt(
+                    response.items().getFirst().get(AVAILABLE_BUCKET).n()));
+    }
+
+    /**
+     * Ask DynamoDB whether the bucketed index is active.
+     *
+     * @return `true` if it is, `false` if it is missing or still being
+     * built.
+     */
+    private Mono<Boolean> checkIndexStatus() {
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.describeTable(request -> request
+                .tableName(tableName)))
+            .map(response -> response.table().hasGlobalSecondaryIndexes() &&
+                response.table().globalSecondaryIndexes().stream()
+                    .anyMatch(index -> index.indexName().equals(INDEX_NAME) &&
+                        index.indexStatus() == IndexStatus.ACTIVE))
+            .onErrorResume(e -> {
+                // Every table that was initialized since the bucketed index
+                // was introduced has it, so that is the better guess.
+                System.out.println("====> Could not check the " + INDEX_NAME + ": " + e.getMessage());
+                return Mono.just(true);
+            })
+            .doOnNext(isActive -> {
+                if (isActive) {
+                    isIndexActive = true;
+                } else {
+                    System.out.println("====> The " + INDEX_NAME + " is not active yet;"
+                            + " reading the " + LEGACY_INDEX_NAME + " instead");
+                }
+            });
+    }
+
+    private List<String> shortUrlsOf(List<Map<String, AttributeValue>> items) {
+        return items.stream()
+            .map(item -> item.get(SHORT_URL).s())
+            .toList();
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import com.richarddklein.shorturlreservationservice.exception.UnprocessedItemsException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Writes batches of items with `BatchWriteItem`, for bulk loading.
+ *
+ * <p>`BatchWriteItem` may succeed without writing every item (typically
+ * because the table is being throttled), in which case it hands back the
+ * unprocessed items. These are written again after a delay that grows
+ * exponentially from `baseDelay`, with full jitter (see `JitteredBackoff`),
+ * up to `maxRetries` times, after which the batch fails with an
+ * `UnprocessedItemsException`.</p>
+ *
+ * <p>Every item written, the first time around, takes a permit from the
+ * shared `RateLimiter`, so that the total write rate of all bulk loads in
+ * the instance stays within the limit, however many of them run at once.</p>
+ *
+ * <p>`BatchWriteItem` cannot be made conditional, so items that must not
+ * overwrite existing ones are instead written with individual conditional
+ * `PutItem` calls (see `putNewItems()`), whose throttling is retried by the
+ * SDK itself.</p>
+ */
+public class BatchWriter {
+    public static final int MAX_BATCH_SIZE = 25;
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final RateLimiter rateLimiter;
+    private final int maxRetries;
+    private final JitteredBackoff backoff;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
+     * @param rateLimiter The limit on the number of items written per second.
+     * @param maxRetries The largest number of times to retry unprocessed items.
+     * @param baseDelay The cap on the delay before the first retry.
+     * @param maxDelay The cap on the delay before any retry.
+     */
+    public BatchWriter(
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            RateLimiter rateLimiter,
+            int maxRetries,
+            Duration baseDelay,
+            Duration maxDelay) {
+
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.rateLimiter = rateLimiter;
+        this.maxRetries = maxRetries;
+        this.backoff = new JitteredBackoff(baseDelay, maxDelay);
+    }
+
+    /**
+     * Put a batch of items into a table.
+     *
+     * @param tableName The name of the table.
+     * @param items The items. There must be no more than `MAX_BATCH_SIZE`.
+     * @return A Mono that completes when every item has been written.
+     */
+    public Mono<Void> putItems(String tableName, List<Map<String, AttributeValue>> items) {
+        List<WriteRequest> writeRequests = items.stream()
+            .map(item -> WriteRequest.builder()
+                .putRequest(put -> put.item(item))
+                .build())
+            .toList();
+
+        return rateLimiter.acquire(items.size())
+            .then(writeRequestItems(Map.of(tableName, writeRequests), 0));
+    }
+
+    /**
+     * Put a batch of items into a table, skipping any item whose key is
+     * already there.
+     *
+     * @param tableName The name of the table.
+     * @param keyAttributeName The name of the table's partition key.
+     * @param items The items. There must be no more than `MAX_BATCH_SIZE`.
+     * @return The number of items that were written. The rest already
+     * existed, and were left untouched.
+     */
+    public Mono<Long> putNewItems(
+            String tableName,
+            String keyAttributeName,
+            List<Map<String, AttributeValue>> items) {
+
+        return rateLimiter.acquire(items.size())
+            .thenMany(Flux.fromIterable(items))
+            .flatMap(item -> {
+                PutItemRequest request = PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(#key)")
+                    .expressionAttributeNames(Map.of("#key", keyAttributeName))
+                    .build();
+                return Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(request))
+                    .thenReturn(1L)
+                    .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.just(0L));
+            }, MAX_BATCH_SIZE)
+            .reduce(0L, Long::sum);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private Mono<Void> writeRequestItems(
+            Map<String, List<WriteRequest>> requestItems,
+            int numRetriesSoFar) {
+
+        BatchWriteItemRequest request = BatchWriteItemRequest.builder()
+            .requestItems(requestItems)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.batchWriteItem(request))
+            .flatMap(response -> {
+                Map<String, List<WriteRequest>> unprocessedItems = response.unprocessedItems();
+                if (unprocessedItems.isEmpty()) {
+                    return Mono.empty();
+                }
+                int numUnprocessed = unprocessedItems.values().stream().mapToInt(List::size).sum();
+                if (numRetriesSoFar >= maxRetries) {
+                    return Mono.error(new UnprocessedItemsException(numUnprocessed));
+                }
+                Duration delay = backoff.nextDelay(numRetriesSoFar);
+                System.out.println("====> Retrying " + numUnprocessed
+                        + " unprocessed items in " + delay.toMillis() + " ms");
+                return Mono.delay(delay)
+                    .then(writeRequestItems(unprocessedItems, numRetriesSoFar + 1));
+            });
+    }
+}
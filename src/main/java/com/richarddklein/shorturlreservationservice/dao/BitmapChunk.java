@@ -0,0 +1,225 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * One chunk of the Short URL Reservation table, in bitmap storage mode.
+ *
+ * <p>A chunk covers `CHUNK_SIZE` consecutive short URLs, and records the
+ * availability of each one as a single bit: 0 if the short URL is
+ * available, 1 if it has been reserved. The bits that lie past the end of
+ * the short URL range (which can only happen in the last chunk) are set to
+ * 1, until an extension of the range widens the chunk.</p>
+ *
+ * <p>Each chunk is stored as a single DynamoDB item with the following
+ * attributes:</p>
+ *
+ * <ul>
+ *     <li>`chunkId`: The zero-based number of the chunk (Partition Key).</li>
+ *     <li>`bitmap`: The availability bits, as a binary attribute.</li>
+ *     <li>`freeCount`: The number of 0 bits in `bitmap`.</li>
+ *     <li>`version`: The version # of the chunk, for optimistic locking.</li>
+ *     <li>`hasFreeBits`: Present (and equal to `chunkId`) if and only if
+ *     `freeCount` is greater than 0. This is the Partition Key of the
+ *     sparse `hasFreeBits-index`, by analogy with the `isAvailable-index`
+ *     of the item storage mode.</li>
+ *     <li>`validBits`: The number of bits that correspond to actual short
+ *     URLs. Chunks written before the range was first extended may lack
+ *     it.</li>
+ * </ul>
+ */
+public class BitmapChunk {
+    public static final int CHUNK_SIZE = 32 * 1024;
+
+    public static final String CHUNK_ID = "chunkId";
+    public static final String BITMAP = "bitmap";
+    public static final String FREE_COUNT = "freeCount";
+    public static final String VERSION = "version";
+    public static final String HAS_FREE_BITS = "hasFreeBits";
+    public static final String VALID_BITS = "validBits";
+
+    private final long chunkId;
+    private final byte[] bitmap;
+    private int freeCount;
+    private final long version;
+    private int validBits;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Create a brand-new chunk, in which every short URL is available.
+     *
+     * @param chunkId The zero-based number of the chunk.
+     * @param validBits The number of bits in the chunk that correspond to
+     *                  actual short URLs.
+     * @return The new chunk, at version 0.
+     */
+    public static BitmapChunk newChunk(long chunkId, int validBits) {
+        BitmapChunk chunk = new BitmapChunk(chunkId, new byte[CHUNK_SIZE / 8], 0, 0, validBits);
+        chunk.cancelAll(validBits);
+        return chunk;
+    }
+
+    /**
+     * Create a chunk from a DynamoDB item.
+     *
+     * @param item The DynamoDB item.
+     * @return The corresponding chunk.
+     */
+    public static BitmapChunk fromItem(Map<String, AttributeValue> item) {
+        return new BitmapChunk(
+                Long.parseLong(item.get(CHUNK_ID).n()),
+                item.get(BITMAP).b().asByteArray(),
+                Integer.parseInt(item.get(FREE_COUNT).n()),
+                Long.parseLong(item.get(VERSION).n()),
+                item.containsKey(VALID_BITS) ? Integer.parseInt(item.get(VALID_BITS).n()) : -1);
+    }
+
+    public long getChunkId() {
+        return chunkId;
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isReserved(int bit) {
+        return (bitmap[bit >>> 3] & (1 << (bit & 7))) != 0;
+    }
+
+    /**
+     * Mark a short URL as reserved or available.
+     *
+     * @param bit The bit that corresponds to the short URL.
+     * @param reserved `true` to reserve the short URL, `false` to make it
+     *                 available.
+     */
+    public void setReserved(int bit, boolean reserved) {
+        if (isReserved(bit) == reserved) {
+            return;
+        }
+        bitmap[bit >>> 3] ^= (byte) (1 << (bit & 7));
+        freeCount += reserved ? -1 : 1;
+    }
+
+    /**
+     * Find an available short URL in this chunk.
+     *
+     * <p>The search starts at the given bit and wraps around, so that
+     * concurrent callers who start at different bits tend to find different
+     * short URLs.</p>
+     *
+     * @param startBit The bit at which to start searching.
+     * @return The bit of an available short URL, or -1 if there is none.
+     */
+    public int findFreeBit(int startBit) {
+        int numBytes = bitmap.length;
+        int startByte = startBit >>> 3;
+        for (int i = 0; i < numBytes; i++) {
+            int byteIndex = (startByte + i) % numBytes;
+            int reservedBits = bitmap[byteIndex] & 0xFF;
+            if (reservedBits != 0xFF) {
+                return (byteIndex << 3) + Integer.numberOfTrailingZeros(~reservedBits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mark every short URL in this chunk as reserved.
+     */
+    public void reserveAll() {
+        Arrays.fill(bitmap, (byte) 0xFF);
+        freeCount = 0;
+    }
+
+    /**
+     * Mark every short URL in this chunk as available.
+     *
+     * @param validBits The number of bits in the chunk that correspond to
+     *                  actual short URLs. The remaining bits stay reserved.
+     */
+    public void cancelAll(int validBits) {
+        Arrays.fill(bitmap, (byte) 0);
+        for (int bit = validBits; bit < CHUNK_SIZE; bit++) {
+            bitmap[bit >>> 3] |= (byte) (1 << (bit & 7));
+        }
+        freeCount = validBits;
+        this.validBits = validBits;
+    }
+
+    /**
+     * Make more of this chunk's bits correspond to actual short URLs, when
+     * the range is extended past the end of the chunk's short URLs. The
+     * new short URLs are all available.
+     *
+     * <p>Widening a chunk that has already been widened this far changes
+     * nothing, so that an interrupted extension can safely be redone.</p>
+     *
+     * @param oldValidBits The number of valid bits before the extension,
+     *                     which is used only if the chunk does not record
+     *                     it itself.
+     * @param newValidBits The number of valid bits after the extension.
+     * @return The number of short URLs that were made available.
+     */
+    public int widen(int oldValidBits, int newValidBits) {
+        int fromBit = (validBits >= 0) ? validBits : oldValidBits;
+        if (newValidBits <= fromBit) {
+            return 0;
+        }
+        int freeCountBefore = freeCount;
+        for (int bit = fromBit; bit < newValidBits; bit++) {
+            setReserved(bit, false);
+        }
+        validBits = newValidBits;
+        return freeCount - freeCountBefore;
+    }
+
+    /**
+     * Convert this chunk to a DynamoDB item, with its version # incremented.
+     *
+     * @return The DynamoDB item to write.
+     */
+    public Map<String, AttributeValue> toItem() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(CHUNK_ID, AttributeValue.fromN(Long.toString(chunkId)));
+        item.put(BITMAP, AttributeValue.fromB(SdkBytes.fromByteArray(bitmap)));
+        item.put(FREE_COUNT, AttributeValue.fromN(Integer.toString(freeCount)));
+        item.put(VERSION, AttributeValue.fromN(Long.toString(version + 1)));
+        if (freeCount > 0) {
+            item.put(HAS_FREE_BITS, AttributeValue.fromN(Long.toString(chunkId)));
+        }
+        if (validBits >= 0) {
+            item.put(VALID_BITS, AttributeValue.fromN(Integer.toString(validBits)));
+        }
+        return item;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private BitmapChunk(long chunkId, byte[] bitmap, int freeCount, long version, int validBits) {
+        this.chunkId = chunkId;
+        this.bitmap = bitmap;
+        this.freeCount = freeCount;
+        this.version = version;
+        this.validBits = validBits;
+    }
+}
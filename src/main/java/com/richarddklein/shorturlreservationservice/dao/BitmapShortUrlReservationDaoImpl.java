@@ -0,0 +1,1019 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.ShortUrlAndStatus;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.exception.InconsistentDataException;
+import com.richarddklein.shorturlreservationservice.exception.NoShortUrlsAvailableException;
+import com.richarddklein.shorturlreservationservice.exception.NoSuchShortUrlException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbAsyncWaiter;
+
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.*;
+
+/**
+ * An implementation of the Short URL Reservation DAO interface that stores
+ * availability as bitmap chunks.
+ *
+ * <p>In the default (item) storage mode, the Short URL Reservation table
+ * holds one item per short URL, so that populating the table for a
+ * 6-character range means writing billions of items. In bitmap storage
+ * mode, the table instead holds one item per `BitmapChunk.CHUNK_SIZE`
+ * consecutive short URLs, which makes storage and initialization cheaper
+ * by more than four orders of magnitude.</p>
+ *
+ * <p>A short URL is mapped to its chunk and bit by decoding it to base 10,
+ * and subtracting `minShortUrlBase10`. Every mutation is a read-modify-write
+ * of the whole chunk, guarded by the chunk's `version` attribute, just as
+ * the item storage mode guards each item.</p>
+ *
+ * <p>To reserve any short URL, we look up a chunk that still has free bits
+ * via the sparse `hasFreeBits-index` (the counterpart of the item storage
+ * mode's `isAvailable-index`), starting the lookup at a random index
+ * segment and the search for a free bit at a random position, so that
+ * concurrent callers tend to pick different short URLs.</p>
+ *
+ * <p>The Short URL Reservation items returned to clients are synthesized
+ * from the chunks, and carry the version # of their chunk.</p>
+ *
+ * <p>The end of the range, once extended, is kept in the metadata table,
+ * just as in the item storage mode. Other instances pick up the new end
+ * of the range within `RANGE_REFRESH_INTERVAL`.</p>
+ */
+public class BitmapShortUrlReservationDaoImpl implements ShortUrlReservationDao {
+    private static final String HAS_FREE_BITS_INDEX = "hasFreeBits-index";
+    private static final int SCAN_SEGMENTS = 16;
+    private static final int MAX_CHUNKS_PER_PAGE = 4;
+    private static final String EXTENDED_MAX_COUNTER = "extendedMaxShortUrlBase10";
+    private static final Duration RANGE_REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+    private final ParameterStoreAccessor parameterStoreAccessor;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final String tableName;
+    private final RetryStrategy retryStrategy;
+    private final BatchWriter batchWriter;
+    private final MetadataTable metadataTable;
+    private final Mono<Long> rangeRefresh;
+
+    private volatile long minShortUrlBase10;
+    private volatile long maxShortUrlBase10;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param parameterStoreAccessor Dependency injection of a class instance that
+     *                               is to play the role of accessing parameters
+     *                               in the Parameter Store component of the AWS
+     *                               Simple System Manager (SSM).
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
+     * @param tableName The name of the Short URL Reservation table.
+     * @param retryStrategy Dependency injection of a class instance that
+     *                      is to play the role of the policy for retrying
+     *                      after a conflict.
+     * @param batchWriter Dependency injection of a class instance that is to
+     *                    play the role of the writer of batches of items.
+     * @param metadataTable Dependency injection of a class instance that is
+     *                      to play the role of the metadata table, which
+     *                      holds the end of the extended range.
+     */
+    public BitmapShortUrlReservationDaoImpl(
+            ParameterStoreAccessor parameterStoreAccessor,
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            String tableName,
+            RetryStrategy retryStrategy,
+            BatchWriter batchWriter,
+            MetadataTable metadataTable) {
+
+        this.parameterStoreAccessor = parameterStoreAccessor;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.tableName = tableName;
+        this.retryStrategy = retryStrategy;
+        this.batchWriter = batchWriter;
+        this.metadataTable = metadataTable;
+        this.rangeRefresh = Mono.defer(() -> metadataTable.getCounter(EXTENDED_MAX_COUNTER))
+            .doOnNext(this::raiseMaxShortUrlBase10)
+            .onErrorResume(e -> {
+                System.out.println("====> Could not refresh the range: " + e.getMessage());
+                return Mono.empty();
+            })
+            .defaultIfEmpty(0L)
+            .cache(RANGE_REFRESH_INTERVAL);
+        readShortUrlRange();
+    }
+
+    // Initialization of the Short URL Reservation repository is performed
+    // rarely, and then only by the Admin from a local machine. Therefore,
+    // we do not need to use reactive (asynchronous) programming techniques
+    // here. Simple synchronous logic will work just fine.
+    @Override
+    public void initializeShortUrlReservationRepository() {
+        recreateShortUrlReservationTable();
+
+        System.out.print("====> Populating the Short URL Reservation table (bitmap mode) ...");
+        populateShortUrlReservationTable(List.of()).blockLast();
+        System.out.println(" done!");
+    }
+
+    @Override
+    public void recreateShortUrlReservationTable() {
+        if (doesTableExist()) {
+            deleteShortUrlReservationTable();
+        }
+        createShortUrlReservationTable();
+
+        // The new table holds only the range in the Parameter Store, so any
+        // earlier extension of the range no longer applies.
+        metadataTable.createIfNotExists();
+        metadataTable.setCounter(EXTENDED_MAX_COUNTER, 0).block();
+        readShortUrlRange();
+    }
+
+    // There are few enough chunks that a single segment will do. Its
+    // position is the `chunkId` of the next chunk to be written. When a
+    // slice of an admin job ends, the batch that was in flight may or may
+    // not have been written, and short URLs in it may have been reserved
+    // since, so on resumption that batch is written on condition that its
+    // chunks do not exist yet.
+    @Override
+    public Flux<BulkProgress>
+    populateShortUrlReservationTable(List<String> startPositions) {
+        String startPosition = startPositions.isEmpty() ?
+                BulkProgress.START : startPositions.get(0);
+        if (startPosition.equals(BulkProgress.DONE)) {
+            return Flux.empty();
+        }
+        long numChunks = numChunks();
+        boolean isResuming = !startPosition.equals(BulkProgress.START);
+        long firstChunkId = isResuming ? Long.parseLong(startPosition) : 0;
+
+        return Flux.<Long, Long>generate(() -> firstChunkId, (batchStart, sink) -> {
+                if (batchStart >= numChunks) {
+                    sink.complete();
+                } else {
+                    sink.next(batchStart);
+                }
+                return batchStart + BatchWriter.MAX_BATCH_SIZE;
+            })
+            .concatMap(batchStart -> {
+                long batchEnd = Math.min(batchStart + BatchWriter.MAX_BATCH_SIZE, numChunks);
+                long numShortUrls = 0;
+                for (long chunkId = batchStart; chunkId < batchEnd; chunkId++) {
+                    numShortUrls += validBits(chunkId);
+                }
+                long numShortUrlsInBatch = numShortUrls;
+                Mono<Long> write = (isResuming && batchStart == firstChunkId) ?
+                        insertNewChunks(batchStart, batchEnd, maxShortUrlBase10) :
+                        batchInsertChunks(batchStart, batchEnd).thenReturn(numShortUrls);
+                return write
+                    .map(numWritten -> new BulkProgress(
+                            0,
+                            1,
+                            batchEnd == numChunks ? BulkProgress.DONE : Long.toString(batchEnd),
+                            numShortUrlsInBatch,
+                            numWritten,
+                            numShortUrlsInBatch - numWritten,
+                            0));
+            });
+    }
+
+    @Override
+    public void migrateShortUrlReservationRepository() {
+        // Chunks are located by `chunkId`, not via an index of available
+        // short URLs, so there is nothing to migrate.
+        System.out.println("====> The bitmap chunk table needs no migration");
+    }
+
+    // Chunks are counted up from the start of the range, so an extension
+    // widens the last chunk (if the range used to end part-way through it)
+    // and adds new chunks after it. There are few enough chunks that a
+    // single segment will do, whose position is the `chunkId` of the next
+    // chunk to be written. Widening a chunk twice changes nothing, and new
+    // chunks are written on condition that they do not exist yet, so that
+    // the extension can be rerun or resumed without clobbering short URLs
+    // that were reserved in the meantime.
+    @Override
+    public Flux<BulkProgress>
+    extendShortUrlRange(
+            long minShortUrlBase10,
+            long maxShortUrlBase10,
+            List<String> startPositions) {
+
+        String startPosition = startPositions.isEmpty() ?
+                BulkProgress.START : startPositions.get(0);
+        long firstChunkId = (minShortUrlBase10 - this.minShortUrlBase10) / BitmapChunk.CHUNK_SIZE;
+        long endChunkId = (maxShortUrlBase10 - this.minShortUrlBase10) / BitmapChunk.CHUNK_SIZE + 1;
+        long startChunkId = startPosition.equals(BulkProgress.START) ? firstChunkId :
+                startPosition.equals(BulkProgress.DONE) ? endChunkId :
+                Long.parseLong(startPosition);
+
+        return Flux.<Long, Long>generate(() -> startChunkId, (batchStart, sink) -> {
+                if (batchStart >= endChunkId) {
+                    sink.complete();
+                } else {
+                    sink.next(batchStart);
+                }
+                return batchStart + BatchWriter.MAX_BATCH_SIZE;
+            })
+            .concatMap(batchStart -> {
+                long batchEnd = Math.min(batchStart + BatchWriter.MAX_BATCH_SIZE, endChunkId);
+                long numShortUrls = 0;
+                for (long chunkId = batchStart; chunkId < batchEnd; chunkId++) {
+                    numShortUrls += validBits(chunkId, maxShortUrlBase10) -
+                            validBits(chunkId, minShortUrlBase10 - 1);
+                }
+                long numShortUrlsInBatch = numShortUrls;
+                return extendChunks(batchStart, batchEnd, minShortUrlBase10, maxShortUrlBase10)
+                    .map(numWritten -> new BulkProgress(
+                            0,
+                            1,
+                            batchEnd == endChunkId ? BulkProgress.DONE : Long.toString(batchEnd),
+                            numShortUrlsInBatch,
+                            numWritten,
+                            numShortUrlsInBatch - numWritten,
+                            0));
+            })
+            .concatWith(metadataTable.raiseCounter(EXTENDED_MAX_COUNTER, maxShortUrlBase10)
+                .then(Mono.<BulkProgress>fromRunnable(() -> raiseMaxShortUrlBase10(maxShortUrlBase10))));
+    }
+
+    @Override
+    public Mono<Long>
+    getMaxShortUrlBase10() {
+        return rangeRefresh.then(Mono.fromSupplier(() -> maxShortUrlBase10));
+    }
+
+    // Sums the free counts of the chunks, reading no further than needed.
+    @Override
+    public Mono<Long>
+    estimateNumFreeShortUrls(long upTo) {
+        ScanRequest scanRequest = ScanRequest.builder()
+            .tableName(tableName)
+            .projectionExpression(BitmapChunk.FREE_COUNT)
+            .build();
+
+        return Flux.from(dynamoDbAsyncClient.scanPaginator(scanRequest).items())
+            .map(item -> Long.parseLong(item.get(BitmapChunk.FREE_COUNT).n()))
+            .scan(0L, Long::sum)
+            .takeUntil(numFree -> numFree >= upTo)
+            .last(0L)
+            .map(numFree -> Math.min(numFree, upTo));
+    }
+
+    @Override
+    public Mono<ShortUrlReservation>
+    getSpecificShortUrlReservation(String shortUrl) {
+        return rangeRefresh.then(Mono.defer(() -> {
+            long offset = shortUrlToOffset(shortUrl);
+            if (offset < 0) {
+                return Mono.error(new NoSuchShortUrlException());
+            }
+            return getChunk(offset / BitmapChunk.CHUNK_SIZE)
+                .map(chunk -> toShortUrlReservation(
+                        shortUrl, chunk, (int) (offset % BitmapChunk.CHUNK_SIZE)));
+        }));
+    }
+
+    // The cursor encodes the offset of the next short URL to read. Each
+    // call reads at most `MAX_CHUNKS_PER_PAGE` chunks, so that a filtered
+    // read of a mostly-filtered-out range still returns promptly.
+    @Override
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return rangeRefresh.then(Mono.defer(() -> {
+            long startOffset = (cursor == null) ? 0 : decodeOffsetCursor(cursor);
+            List<ShortUrlReservation> shortUrlReservations = new ArrayList<>();
+            return readPage(startOffset, limit, available, shortUrlReservations, 0)
+                .map(nextOffset -> new StatusAndShortUrlReservationPage(
+                        new Status(SUCCESS),
+                        shortUrlReservations,
+                        (nextOffset < numShortUrls()) ?
+                                PageCursor.encode(Long.toString(nextOffset)) :
+                                null));
+        }))
+            // An invalid cursor is the client's fault, so let the caller see it.
+            .onErrorResume(e -> !(e instanceof IllegalArgumentException), e -> {
+                System.out.println("====> " + e.getMessage());
+                return Mono.just(new StatusAndShortUrlReservationPage(
+                        new Status(UNKNOWN_ERROR),
+                        Collections.emptyList(),
+                        null));
+            });
+    }
+
+    // Chunks are read one at a time, as the subscriber asks for more
+    // items, and each chunk is expanded into items lazily.
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        return rangeRefresh.thenMany(Flux.defer(() -> Flux.range(0, (int) numChunks())))
+            .concatMap(chunkId -> getChunk(chunkId), 1)
+            .concatMap(chunk -> Flux.range(0, validBits(chunk.getChunkId()))
+                .filter(bit -> available == null || chunk.isReserved(bit) != available)
+                .map(bit -> toShortUrlReservation(
+                        offsetToShortUrl(chunk.getChunkId(), bit), chunk, bit)));
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation> reserveAnyShortUrl() {
+        return Mono.defer(this::findChunkWithFreeBits)
+            .flatMap(chunk -> {
+                int bit = chunk.findFreeBit(
+                        InstanceRandom.current().nextInt(BitmapChunk.CHUNK_SIZE));
+                if (bit < 0) {
+                    // The index said the chunk had free bits, but it didn't.
+                    return Mono.error(new InconsistentDataException());
+                }
+                chunk.setReserved(bit, true);
+                return putChunk(chunk)
+                    .thenReturn(toShortUrlReservation(
+                            offsetToShortUrl(chunk.getChunkId(), bit), chunk, bit));
+            })
+            .retryWhen(retryStrategy.retryOnConflict())
+            .map(shortUrlReservation -> new StatusAndShortUrlReservation(
+                    new Status(SUCCESS),
+                    shortUrlReservation))
+            .onErrorResume(e -> {
+                System.out.println("====> reserveAnyShortUrl() failed: " + e.getMessage());
+                if (e instanceof NoShortUrlsAvailableException) {
+                    return Mono.just(new StatusAndShortUrlReservation(
+                            new Status(NO_SHORT_URLS_ARE_AVAILABLE),
+                            null));
+                } else {
+                    return Mono.just(new StatusAndShortUrlReservation(
+                            new Status(UNKNOWN_ERROR),
+                            null));
+                }
+            });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        return reserveShortUrlsFromChunks(count, new ArrayList<>())
+            .map(reservedShortUrlReservations -> new StatusAndShortUrlReservationArray(
+                    new Status(reservedShortUrlReservations.isEmpty() ?
+                            NO_SHORT_URLS_ARE_AVAILABLE : SUCCESS),
+                    reservedShortUrlReservations))
+            .onErrorResume(e -> {
+                System.out.println("====> reserveAnyShortUrls() failed: " + e.getMessage());
+                return Mono.just(new StatusAndShortUrlReservationArray(
+                        new Status(UNKNOWN_ERROR),
+                        Collections.emptyList()));
+            });
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    reserveSpecificShortUrl(String shortUrl) {
+        return updateSpecificShortUrl(shortUrl, true, SHORT_URL_ALREADY_TAKEN)
+            .onErrorResume(e -> {
+                System.out.println("====> reserveSpecificShortUrl() failed: " + e.getMessage());
+                return Mono.just(statusFor(e));
+            });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return rangeRefresh.then(Mono.defer(() ->
+                updateSpecificShortUrls(shortUrls, true, SHORT_URL_ALREADY_TAKEN)));
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    reserveAllShortUrls(List<String> startPositions) {
+        return updateAllChunks(BitmapChunk::reserveAll, startPositions);
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    cancelSpecificShortUrlReservation(String shortUrl) {
+        return updateSpecificShortUrl(shortUrl, false, SHORT_URL_NOT_RESERVED)
+            .onErrorResume(e -> {
+                System.out.println("====> cancelSpecificShortUrl() failed: " + e.getMessage());
+                return Mono.just(statusFor(e));
+            });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return rangeRefresh.then(Mono.defer(() ->
+                updateSpecificShortUrls(shortUrls, false, SHORT_URL_NOT_RESERVED)));
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    cancelAllShortUrlReservations(List<String> startPositions) {
+        return updateAllChunks(
+                chunk -> chunk.cancelAll(validBits(chunk.getChunkId())),
+                startPositions);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void readShortUrlRange() {
+        Long min = parameterStoreAccessor.getMinShortUrlBase10().block();
+        Long max = parameterStoreAccessor.getMaxShortUrlBase10().block();
+        Long extendedMax = metadataTable.getCounter(EXTENDED_MAX_COUNTER).block();
+        minShortUrlBase10 = (min == null) ? 0 : min;
+        maxShortUrlBase10 = Math.max(
+                (max == null) ? 0 : max,
+                (extendedMax == null) ? 0 : extendedMax);
+    }
+
+    private synchronized void raiseMaxShortUrlBase10(long newMaxShortUrlBase10) {
+        if (newMaxShortUrlBase10 > maxShortUrlBase10) {
+            maxShortUrlBase10 = newMaxShortUrlBase10;
+        }
+    }
+
+    private long numShortUrls() {
+        return maxShortUrlBase10 - minShortUrlBase10 + 1;
+    }
+
+    private long numChunks() {
+        return (numShortUrls() + BitmapChunk.CHUNK_SIZE - 1) / BitmapChunk.CHUNK_SIZE;
+    }
+
+    /**
+     * Determine how many bits of a chunk correspond to actual short URLs.
+     *
+     * @param chunkId The zero-based number of the chunk.
+     * @return `CHUNK_SIZE` for every chunk except (possibly) the last.
+     */
+    private int validBits(long chunkId) {
+        return validBits(chunkId, maxShortUrlBase10);
+    }
+
+    /**
+     * Determine how many bits of a chunk correspond to actual short URLs,
+     * if the range were to end at a given short URL.
+     *
+     * @param chunkId The zero-based number of the chunk.
+     * @param maxShortUrlBase10 The last short URL of the range.
+     * @return A number between 0 and `CHUNK_SIZE`.
+     */
+    private int validBits(long chunkId, long maxShortUrlBase10) {
+        long numShortUrls = maxShortUrlBase10 - minShortUrlBase10 + 1;
+        return (int) Math.max(0, Math.min(BitmapChunk.CHUNK_SIZE,
+                numShortUrls - chunkId * BitmapChunk.CHUNK_SIZE));
+    }
+
+    /**
+     * Map a short URL to its offset within the short URL range.
+     *
+     * @param shortUrl The short URL of interest.
+     * @return The offset of `shortUrl` from `minShortUrlBase10`, or -1 if
+     * `shortUrl` is not a short URL within the range.
+     */
+    private long shortUrlToOffset(String shortUrl) {
+        // Leading zeros would give a single short URL several spellings.
+        if (!ShortUrlCodec.isValid(shortUrl) ||
+                (shortUrl.length() > 1 && shortUrl.charAt(0) == '0')) {
+            return -1;
+        }
+        long shortUrlBase10 = ShortUrlCodec.decode(shortUrl);
+        if (shortUrlBase10 < minShortUrlBase10 || shortUrlBase10 > maxShortUrlBase10) {
+            return -1;
+        }
+        return shortUrlBase10 - minShortUrlBase10;
+    }
+
+    private String offsetToShortUrl(long chunkId, int bit) {
+        return ShortUrlCodec.encode(
+                minShortUrlBase10 + chunkId * BitmapChunk.CHUNK_SIZE + bit);
+    }
+
+    private ShortUrlReservation
+    toShortUrlReservation(String shortUrl, BitmapChunk chunk, int bit) {
+        ShortUrlReservation shortUrlReservation = new ShortUrlReservation(
+                shortUrl, chunk.isReserved(bit) ? null : shortUrl);
+        shortUrlReservation.setVersion(chunk.getVersion());
+        return shortUrlReservation;
+    }
+
+    private long decodeOffsetCursor(String cursor) {
+        long offset;
+        try {
+            offset = Long.parseLong(PageCursor.decode(cursor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return offset;
+    }
+
+    /**
+     * Read one page of Short URL Reservation items, chunk by chunk.
+     *
+     * @param offset The offset of the next short URL to read.
+     * @param limit The largest number of items in the page.
+     * @param available If not null, read only the available (`true`) or
+     *                  reserved (`false`) short URLs.
+     * @param shortUrlReservations The items read so far.
+     * @param numChunksRead The number of chunks read so far.
+     * @return The offset at which the next page starts.
+     */
+    private Mono<Long> readPage(
+            long offset,
+            int limit,
+            Boolean available,
+            List<ShortUrlReservation> shortUrlReservations,
+            int numChunksRead) {
+
+        if (shortUrlReservations.size() == limit ||
+                offset >= numShortUrls() ||
+                numChunksRead == MAX_CHUNKS_PER_PAGE) {
+            return Mono.just(offset);
+        }
+        long chunkId = offset / BitmapChunk.CHUNK_SIZE;
+
+        return getChunk(chunkId).flatMap(chunk -> {
+            int validBits = validBits(chunkId);
+            int bit = (int) (offset % BitmapChunk.CHUNK_SIZE);
+            for (; bit < validBits && shortUrlReservations.size() < limit; bit++) {
+                if (available == null || chunk.isReserved(bit) != available) {
+                    shortUrlReservations.add(toShortUrlReservation(
+                            offsetToShortUrl(chunkId, bit), chunk, bit));
+                }
+            }
+            return readPage(
+                    chunkId * BitmapChunk.CHUNK_SIZE + bit,
+                    limit,
+                    available,
+                    shortUrlReservations,
+                    numChunksRead + 1);
+        });
+    }
+
+    /**
+     * Reserve several available short URLs, taking as many as possible from
+     * each chunk, so that a single compare-and-set write can reserve up to
+     * `CHUNK_SIZE` short URLs at once.
+     *
+     * @param numNeeded The number of short URLs still needed.
+     * @param reserved The Short URL Reservation items reserved so far.
+     * @return All the Short URL Reservation items that were reserved.
+     */
+    private Mono<List<ShortUrlReservation>>
+    reserveShortUrlsFromChunks(int numNeeded, List<ShortUrlReservation> reserved) {
+        if (numNeeded == 0) {
+            return Mono.just(reserved);
+        }
+        return Mono.defer(this::findChunkWithFreeBits)
+            .flatMap(chunk -> {
+                List<Integer> bits = new ArrayList<>();
+                int startBit = InstanceRandom.current().nextInt(BitmapChunk.CHUNK_SIZE);
+                while (bits.size() < numNeeded) {
+                    int bit = chunk.findFreeBit(startBit);
+                    if (bit < 0) {
+                        break;
+                    }
+                    chunk.setReserved(bit, true);
+                    bits.add(bit);
+                    startBit = bit;
+                }
+                if (bits.isEmpty()) {
+                    return Mono.error(new InconsistentDataException());
+                }
+                return putChunk(chunk).thenReturn(bits.stream()
+                    .map(bit -> toShortUrlReservation(
+                            offsetToShortUrl(chunk.getChunkId(), bit), chunk, bit))
+                    .toList());
+            })
+            .retryWhen(retryStrategy.retryOnConflict())
+            .flatMap(reservedFromChunk -> {
+                reserved.addAll(reservedFromChunk);
+                return reserveShortUrlsFromChunks(numNeeded - reservedFromChunk.size(), reserved);
+            })
+            // Hang on to whatever we have already reserved.
+            .onErrorResume(e -> reserved.isEmpty() ?
+                    Mono.error(e) :
+                    Mono.just(reserved));
+    }
+
+    /**
+     * Reserve or cancel the reservation of a specific short URL.
+     *
+     * @param shortUrl The short URL of interest.
+     * @param reserve `true` to reserve the short URL, `false` to cancel its
+     *                reservation.
+     * @param alreadyDoneStatus The status to return if the short URL is
+     *                          already in the desired state.
+     * @return The status of the operation.
+     */
+    private Mono<ShortUrlStatus>
+    updateSpecificShortUrl(String shortUrl, boolean reserve, ShortUrlStatus alreadyDoneStatus) {
+        return rangeRefresh.then(Mono.defer(() -> {
+            long offset = shortUrlToOffset(shortUrl);
+            if (offset < 0) {
+                return Mono.error(new NoSuchShortUrlException());
+            }
+            int bit = (int) (offset % BitmapChunk.CHUNK_SIZE);
+            return getChunk(offset / BitmapChunk.CHUNK_SIZE)
+                .flatMap(chunk -> {
+                    if (chunk.isReserved(bit) == reserve) {
+                        return Mono.just(alreadyDoneStatus);
+                    }
+                    chunk.setReserved(bit, reserve);
+                    return putChunk(chunk).thenReturn(SUCCESS);
+                });
+            }))
+            .retryWhen(retryStrategy.retryOnConflict());
+    }
+
+    /**
+     * Reserve or cancel the reservations of a list of short URLs.
+     *
+     * <p>The short URLs are grouped by chunk, so that all the short URLs in
+     * one chunk are updated with a single compare-and-set write.</p>
+     *
+     * @param shortUrls The short URLs of interest.
+     * @param reserve `true` to reserve the short URLs, `false` to cancel
+     *                their reservations.
+     * @param alreadyDoneStatus The status to report for a short URL that is
+     *                          already in the desired state.
+     * @return The outcome for each short URL, in the same order as the
+     * request.
+     */
+    private Mono<StatusAndShortUrlStatusArray>
+    updateSpecificShortUrls(
+            List<String> shortUrls,
+            boolean reserve,
+            ShortUrlStatus alreadyDoneStatus) {
+
+        ShortUrlStatus[] shortUrlStatuses = new ShortUrlStatus[shortUrls.size()];
+        Map<Long, List<Integer>> requestIndicesByChunk = new HashMap<>();
+        for (int i = 0; i < shortUrls.size(); i++) {
+            long offset = shortUrlToOffset(shortUrls.get(i));
+            if (offset < 0) {
+                shortUrlStatuses[i] = NO_SUCH_SHORT_URL;
+            } else {
+                requestIndicesByChunk
+                    .computeIfAbsent(offset / BitmapChunk.CHUNK_SIZE, chunkId -> new ArrayList<>())
+                    .add(i);
+            }
+        }
+
+        return Flux.fromIterable(requestIndicesByChunk.entrySet())
+            .flatMap(entry -> Mono.defer(() -> getChunk(entry.getKey())
+                    .flatMap(chunk -> {
+                        ShortUrlStatus[] chunkStatuses = new ShortUrlStatus[entry.getValue().size()];
+                        for (int j = 0; j < chunkStatuses.length; j++) {
+                            int bit = (int) (shortUrlToOffset(shortUrls.get(entry.getValue().get(j)))
+                                    % BitmapChunk.CHUNK_SIZE);
+                            if (chunk.isReserved(bit) == reserve) {
+                                chunkStatuses[j] = alreadyDoneStatus;
+                            } else {
+                                chunk.setReserved(bit, reserve);
+                                chunkStatuses[j] = SUCCESS;
+                            }
+                        }
+                        return putChunk(chunk).thenReturn(chunkStatuses);
+                    }))
+                .retryWhen(retryStrategy.retryOnConflict())
+                .onErrorResume(e -> {
+                    System.out.println("====> Chunk update failed: " + e.getMessage());
+                    ShortUrlStatus[] chunkStatuses = new ShortUrlStatus[entry.getValue().size()];
+                    Arrays.fill(chunkStatuses, UNKNOWN_ERROR);
+                    return Mono.just(chunkStatuses);
+                })
+                .doOnNext(chunkStatuses -> {
+                    for (int j = 0; j < chunkStatuses.length; j++) {
+                        shortUrlStatuses[entry.getValue().get(j)] = chunkStatuses[j];
+                    }
+                }))
+            .then(Mono.fromSupplier(() -> {
+                List<ShortUrlAndStatus> results = new ArrayList<>(shortUrls.size());
+                for (int i = 0; i < shortUrls.size(); i++) {
+                    results.add(new ShortUrlAndStatus(shortUrls.get(i), shortUrlStatuses[i]));
+                }
+                return new StatusAndShortUrlStatusArray(new Status(SUCCESS), results);
+            }));
+    }
+
+    /**
+     * Apply the same update to every chunk in the table.
+     *
+     * <p>The chunks are split into `SCAN_SEGMENTS` interleaved segments
+     * (segment `s` holds chunks `s`, `s + SCAN_SEGMENTS`, and so on), which
+     * are updated in parallel, one chunk at a time. The position of a
+     * segment is the `chunkId` of its next chunk.</p>
+     *
+     * <p>Each chunk holds many short URLs, so the counts are derived from
+     * the change in the chunk's free count: every short URL whose state
+     * changed was updated, and every other short URL in the chunk was
+     * unchanged. If a chunk cannot be updated, all of its short URLs are
+     * counted as failed.</p>
+     *
+     * @param update The update to apply to each chunk.
+     * @param startPositions The position from which to pick up each segment,
+     *                       or an empty list to start from scratch.
+     * @return The progress of the operation, chunk by chunk.
+     */
+    private Flux<BulkProgress> updateAllChunks(
+            Consumer<BitmapChunk> update,
+            List<String> startPositions) {
+
+        int numSegments = startPositions.isEmpty() ? SCAN_SEGMENTS : startPositions.size();
+
+        return rangeRefresh.thenMany(Flux.range(0, numSegments))
+            .flatMap(segment -> {
+                long numChunks = numChunks();
+                String startPosition = startPositions.isEmpty() ?
+                        BulkProgress.START : startPositions.get(segment);
+                if (startPosition.equals(BulkProgress.DONE)) {
+                    return Flux.empty();
+                }
+                long firstChunkId = startPosition.equals(BulkProgress.START) ?
+                        segment : Long.parseLong(startPosition);
+
+                return Flux.<Long, Long>generate(() -> firstChunkId, (chunkId, sink) -> {
+                        if (chunkId >= numChunks) {
+                            sink.complete();
+                        } else {
+                            sink.next(chunkId);
+                        }
+                        return chunkId + numSegments;
+                    })
+                    .concatMap(chunkId -> updateChunk(chunkId, update)
+                        .map(counts -> new BulkProgress(
+                                segment,
+                                numSegments,
+                                chunkId + numSegments >= numChunks ?
+                                        BulkProgress.DONE : Long.toString(chunkId + numSegments),
+                                validBits(chunkId),
+                                counts[0],
+                                counts[1],
+                                counts[2])));
+            }, numSegments);
+    }
+
+    /**
+     * Apply an update to one chunk.
+     *
+     * @param chunkId The zero-based number of the chunk.
+     * @param update The update to apply.
+     * @return The number of short URLs in the chunk that were updated, that
+     * were unchanged, and that failed to be updated.
+     */
+    private Mono<long[]> updateChunk(long chunkId, Consumer<BitmapChunk> update) {
+        return getChunk(chunkId)
+            .flatMap(chunk -> {
+                int freeCountBefore = chunk.getFreeCount();
+                update.accept(chunk);
+                long numUpdated = Math.abs(chunk.getFreeCount() - freeCountBefore);
+                return putChunk(chunk).thenReturn(new long[] {
+                        numUpdated, validBits(chunkId) - numUpdated, 0});
+            })
+            .retryWhen(retryStrategy.retryOnConflict())
+            .onErrorResume(e -> {
+                System.out.println("====> Chunk update failed: " + e.getMessage());
+                return Mono.just(new long[] {0, 0, validBits(chunkId)});
+            });
+    }
+
+    private ShortUrlStatus statusFor(Throwable e) {
+        return (e instanceof NoSuchShortUrlException) ? NO_SUCH_SHORT_URL : UNKNOWN_ERROR;
+    }
+
+    private Mono<BitmapChunk> getChunk(long chunkId) {
+        GetItemRequest request = GetItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(BitmapChunk.CHUNK_ID, AttributeValue.fromN(Long.toString(chunkId))))
+            .consistentRead(true)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(request))
+            .filter(GetItemResponse::hasItem)
+            .map(response -> BitmapChunk.fromItem(response.item()))
+            .switchIfEmpty(Mono.error(new NoSuchShortUrlException()));
+    }
+
+    /**
+     * Write a chunk back to the table, on condition that nobody else has
+     * updated it since we read it.
+     *
+     * @param chunk The chunk to write.
+     * @return A Mono that completes when the chunk has been written, or
+     * that fails with a `ConditionalCheckFailedException` if somebody else
+     * got there first.
+     */
+    private Mono<Void> putChunk(BitmapChunk chunk) {
+        PutItemRequest request = PutItemRequest.builder()
+            .tableName(tableName)
+            .item(chunk.toItem())
+            .conditionExpression("version = :version")
+            .expressionAttributeValues(Map.of(
+                ":version", AttributeValue.fromN(Long.toString(chunk.getVersion()))))
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(request)).then();
+    }
+
+    /**
+     * Find a chunk that has at least one available short URL.
+     *
+     * @return A chunk with free bits, freshly read from the table.
+     */
+    private Mono<BitmapChunk> findChunkWithFreeBits() {
+        ScanRequest segmentRequest = ScanRequest.builder()
+            .tableName(tableName)
+            .indexName(HAS_FREE_BITS_INDEX)
+            .segment(InstanceRandom.current().nextInt(SCAN_SEGMENTS))
+            .totalSegments(SCAN_SEGMENTS)
+            .limit(1)
+            .build();
+        ScanRequest fullRequest = ScanRequest.builder()
+            .tableName(tableName)
+            .indexName(HAS_FREE_BITS_INDEX)
+            .limit(1)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.scan(segmentRequest))
+            .filter(response -> !response.items().isEmpty())
+            .switchIfEmpty(Mono.defer(() ->
+                    Mono.fromFuture(() -> dynamoDbAsyncClient.scan(fullRequest))))
+            .flatMap(response -> {
+                if (response.items().isEmpty()) {
+                    return Mono.error(new NoShortUrlsAvailableException());
+                }
+                long chunkId = Long.parseLong(
+                        response.items().getFirst().get(BitmapChunk.CHUNK_ID).n());
+                return getChunk(chunkId);
+            });
+    }
+
+    private boolean doesTableExist() {
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.describeTable(req -> req.tableName(tableName)))
+            .map(response -> true)
+            .onErrorReturn(ResourceNotFoundException.class, false)
+            .block();
+    }
+
+    private void deleteShortUrlReservationTable() {
+        System.out.print("====> Deleting the Short URL Reservation table ...");
+
+        Mono.fromFuture(() -> dynamoDbAsyncClient.deleteTable(req -> req.tableName(tableName))).block();
+
+        DynamoDbAsyncWaiter waiter = DynamoDbAsyncWaiter.builder().client(dynamoDbAsyncClient).build();
+        Mono.fromFuture(() -> waiter.waitUntilTableNotExists(builder -> builder.tableName(tableName).build()))
+            .block();
+        waiter.close();
+
+        System.out.println(" done!");
+    }
+
+    private void createShortUrlReservationTable() {
+        System.out.print("====> Creating the Short URL Reservation table (bitmap mode) ...");
+
+        Mono.fromFuture(() -> dynamoDbAsyncClient.createTable(req -> req
+            .tableName(tableName)
+            .keySchema(KeySchemaElement.builder()
+                .attributeName(BitmapChunk.CHUNK_ID)
+                .keyType(KeyType.HASH)
+                .build())
+            .attributeDefinitions(
+                AttributeDefinition.builder()
+                    .attributeName(BitmapChunk.CHUNK_ID)
+                    .attributeType(ScalarAttributeType.N)
+                    .build(),
+                AttributeDefinition.builder()
+                    .attributeName(BitmapChunk.HAS_FREE_BITS)
+                    .attributeType(ScalarAttributeType.N)
+                    .build())
+            .globalSecondaryIndexes(GlobalSecondaryIndex.builder()
+                .indexName(HAS_FREE_BITS_INDEX)
+                .keySchema(KeySchemaElement.builder()
+                    .attributeName(BitmapChunk.HAS_FREE_BITS)
+                    .keyType(KeyType.HASH)
+                    .build())
+                .projection(projection -> projection.projectionType(ProjectionType.KEYS_ONLY))
+                .build())
+            .billingMode(BillingMode.PAY_PER_REQUEST))).block();
+
+        DynamoDbAsyncWaiter waiter = DynamoDbAsyncWaiter.builder().client(dynamoDbAsyncClient).build();
+        Mono.fromFuture(() -> waiter.waitUntilTableExists(builder -> builder.tableName(tableName).build()))
+            .block();
+        waiter.close();
+
+        System.out.println(" done!");
+    }
+
+    /**
+     * Batch insert some chunks, with every short URL marked as available.
+     *
+     * @param firstChunkId The `chunkId` of the first chunk to insert.
+     * @param endChunkId The `chunkId` after the last chunk to insert. There
+     *                   must be no more than `BatchWriter.MAX_BATCH_SIZE`
+     *                   chunks.
+     * @return A Mono that completes when every chunk has been written.
+     */
+    private Mono<Void> batchInsertChunks(long firstChunkId, long endChunkId) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        for (long chunkId = firstChunkId; chunkId < endChunkId; chunkId++) {
+            items.add(BitmapChunk.newChunk(chunkId, validBits(chunkId)).toItem());
+        }
+
+        return batchWriter.putItems(tableName, items);
+    }
+
+    /**
+     * Insert some chunks, with every short URL marked as available, except
+     * for those chunks that already exist.
+     *
+     * @param firstChunkId The `chunkId` of the first chunk to insert.
+     * @param endChunkId The `chunkId` after the last chunk to insert. There
+     *                   must be no more than `BatchWriter.MAX_BATCH_SIZE`
+     *                   chunks.
+     * @param maxShortUrlBase10 The last short URL of the range that the
+     *                          chunks are to cover.
+     * @return The number of short URLs in the chunks that were written.
+     */
+    private Mono<Long> insertNewChunks(long firstChunkId, long endChunkId, long maxShortUrlBase10) {
+        return Flux.range(0, (int) (endChunkId - firstChunkId))
+            .map(i -> firstChunkId + i)
+            .flatMap(chunkId -> {
+                    int numValidBits = validBits(chunkId, maxShortUrlBase10);
+                    return batchWriter.putNewItems(
+                            tableName,
+                            BitmapChunk.CHUNK_ID,
+                            List.of(BitmapChunk.newChunk(chunkId, numValidBits).toItem()))
+                        .map(numWritten -> numWritten * numValidBits);
+                },
+                BatchWriter.MAX_BATCH_SIZE)
+            .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Extend the range over some chunks.
+     *
+     * <p>The chunk in which the old range ended (if it ended part-way
+     * through one) is widened, and the others are inserted, unless they
+     * already exist.</p>
+     *
+     * @param firstChunkId The `chunkId` of the first chunk to extend over.
+     * @param endChunkId The `chunkId` after the last chunk to extend over.
+     *                   There must be no more than `BatchWriter.MAX_BATCH_SIZE`
+     *                   chunks.
+     * @param minShortUrlBase10 The first short URL of the extension.
+     * @param maxShortUrlBase10 The last short URL of the extension.
+     * @return The number of short URLs that were made available.
+     */
+    private Mono<Long> extendChunks(
+            long firstChunkId,
+            long endChunkId,
+            long minShortUrlBase10,
+            long maxShortUrlBase10) {
+
+        int oldValidBits = validBits(firstChunkId, minShortUrlBase10 - 1);
+        if (oldValidBits == 0) {
+            return insertNewChunks(firstChunkId, endChunkId, maxShortUrlBase10);
+        }
+        int newValidBits = validBits(firstChunkId, maxShortUrlBase10);
+        Mono<Long> widened = Mono.defer(() -> getChunk(firstChunkId)
+                .flatMap(chunk -> {
+                    int numWidened = chunk.widen(oldValidBits, newValidBits);
+                    return numWidened == 0 ?
+                            Mono.just(0L) :
+                            putChunk(chunk).thenReturn((long) numWidened);
+                }))
+            .retryWhen(retryStrategy.retryOnConflict());
+
+        return firstChunkId + 1 == endChunkId ?
+                widened :
+                widened.zipWith(
+                        insertNewChunks(firstChunkId + 1, endChunkId, maxShortUrlBase10),
+                        Long::sum);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.SUCCESS;
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.UNKNOWN_ERROR;
+
+/**
+ * The progress made by a table-wide operation on one segment of the table.
+ *
+ * <p>A table-wide operation (such as reserving all short URLs, or
+ * populating the table) splits the table into segments, works through
+ * the segments in parallel, and emits a `BulkProgress` each time it has
+ * finished with a piece (a scan page, a batch, or a chunk) of a segment.
+ * Each `BulkProgress` says where in its segment the operation should pick
+ * up again, and so can be saved as a checkpoint.</p>
+ *
+ * <p>Positions are opaque to everything but the DAO that produced them.
+ * A segment that has not been started has position `START`, and a
+ * segment that has been finished has position `DONE`.</p>
+ */
+public class BulkProgress {
+    public static final String START = "";
+    public static final String DONE = "*";
+
+    private final int segment;
+    private final int numSegments;
+    private final String nextPosition;
+    private final long numScanned;
+    private final long numUpdated;
+    private final long numUnchanged;
+    private final long numFailed;
+
+    /**
+     * General constructor.
+     *
+     * @param segment The zero-based number of the segment.
+     * @param numSegments The total number of segments.
+     * @param nextPosition Where in the segment to pick up again.
+     * @param numScanned The number of short URLs looked at.
+     * @param numUpdated The number of short URLs updated.
+     * @param numUnchanged The number of short URLs already in the desired state.
+     * @param numFailed The number of short URLs that could not be updated.
+     */
+    public BulkProgress(
+            int segment,
+            int numSegments,
+            String nextPosition,
+            long numScanned,
+            long numUpdated,
+            long numUnchanged,
+            long numFailed) {
+
+        this.segment = segment;
+        this.numSegments = numSegments;
+        this.nextPosition = nextPosition;
+        this.numScanned = numScanned;
+        this.numUpdated = numUpdated;
+        this.numUnchanged = numUnchanged;
+        this.numFailed = numFailed;
+    }
+
+    /**
+     * Run a table-wide operation to the end, and total up its progress.
+     *
+     * <p>If the operation fails part-way through, that counts as one more
+     * failure.</p>
+     *
+     * @param progress The progress of the operation.
+     * @return The overall status of the operation, and its counts.
+     */
+    public static Mono<StatusAndUpdateCounts>
+    toUpdateCounts(Flux<BulkProgress> progress) {
+        return progress
+            .onErrorResume(e -> {
+                System.out.println("====> Table-wide operation failed: " + e.getMessage());
+                return Mono.just(new BulkProgress(0, 1, DONE, 0, 0, 0, 1));
+            })
+            .reduceWith(() -> new long[3], (counts, bulkProgress) -> {
+                counts[0] += bulkProgress.numUpdated;
+                counts[1] += bulkProgress.numUnchanged;
+                counts[2] += bulkProgress.numFailed;
+                return counts;
+            })
+            .map(counts -> new StatusAndUpdateCounts(
+                    new Status(counts[2] == 0 ? SUCCESS : UNKNOWN_ERROR),
+                    counts[0],
+                    counts[1],
+                    counts[2]));
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    public String getNextPosition() {
+        return nextPosition;
+    }
+
+    public long getNumScanned() {
+        return numScanned;
+    }
+
+    public long getNumUpdated() {
+        return numUpdated;
+    }
+
+    public long getNumUnchanged() {
+        return numUnchanged;
+    }
+
+    public long getNumFailed() {
+        return numFailed;
+    }
+}
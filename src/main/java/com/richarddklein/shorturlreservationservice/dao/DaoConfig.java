@@ -5,16 +5,28 @@
 
 package com.richarddklein.shorturlreservationservice.dao;
 
+import java.time.Duration;
+
 import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
+import reactor.core.publisher.Mono;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.enhanced.dynamodb.*;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
+import software.amazon.awssdk.services.ssm.model.ParameterNotFoundException;
 
 /**
  * The DAO (Data Access Object) @Configuration class.
@@ -24,31 +36,304 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
  */
 @Configuration
 public class DaoConfig {
+    private static final String SEQUENCE_PERMUTATION_KEY_PARAMETER =
+            "/shortUrl/reservations/sequencePermutationKey";
+
     @Autowired
     ParameterStoreAccessor parameterStoreAccessor;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    Tracer tracer;
+
+    @Value("${shortUrl.reservations.storageMode:item}")
+    String storageMode;
+
+    @Value("${shortUrl.reservations.allocator:index}")
+    String allocator;
+
+    @Value("${shortUrl.reservations.execution:reactive}")
+    String execution;
+
+    @Value("${shortUrl.reservations.pool.blockSize:50}")
+    int poolBlockSize;
+
+    @Value("${shortUrl.reservations.pool.refillThreshold:10}")
+    int poolRefillThreshold;
+
+    @Value("${shortUrl.reservations.pool.leaseSeconds:300}")
+    long poolLeaseSeconds;
+
+    @Value("${shortUrl.reservations.sequence.blockSize:100}")
+    int sequenceBlockSize;
+
+    @Value("${shortUrl.reservations.retry.maxRetries:5}")
+    int retryMaxRetries;
+
+    @Value("${shortUrl.reservations.retry.baseDelayMillis:10}")
+    long retryBaseDelayMillis;
+
+    @Value("${shortUrl.reservations.retry.maxDelayMillis:500}")
+    long retryMaxDelayMillis;
+
+    @Value("${shortUrl.reservations.retry.deadlineMillis:3000}")
+    long retryDeadlineMillis;
+
+    @Value("${shortUrl.reservations.retry.budget.capacity:100}")
+    int retryBudgetCapacity;
+
+    @Value("${shortUrl.reservations.retry.budget.perSecond:20}")
+    double retryBudgetPerSecond;
+
+    @Value("${shortUrl.reservations.staleKeys.ttlMillis:2000}")
+    long staleKeysTtlMillis;
+
+    @Value("${shortUrl.reservations.staleKeys.maxSize:10000}")
+    int staleKeysMaxSize;
+
+    @Value("${shortUrl.reservations.bulkAll.segments:8}")
+    int bulkAllSegments;
+
+    @Value("${shortUrl.reservations.bulkAll.concurrencyPerSegment:10}")
+    int bulkAllConcurrencyPerSegment;
+
+    @Value("${shortUrl.reservations.populate.workers:8}")
+    int populateWorkers;
+
+    @Value("${shortUrl.reservations.populate.batchesPerWorker:4}")
+    int populateBatchesPerWorker;
+
+    @Value("${shortUrl.reservations.populate.maxItemsPerSecond:0}")
+    double populateMaxItemsPerSecond;
+
+    @Value("${shortUrl.reservations.populate.maxRetries:10}")
+    int populateMaxRetries;
+
+    @Value("${shortUrl.reservations.populate.baseDelayMillis:50}")
+    long populateBaseDelayMillis;
+
+    @Value("${shortUrl.reservations.populate.maxDelayMillis:5000}")
+    long populateMaxDelayMillis;
+
+    @Value("${shortUrl.reservations.dynamoDb.maxConcurrency:100}")
+    int dynamoDbMaxConcurrency;
+
+    @Value("${shortUrl.reservations.dynamoDb.maxPendingConnectionAcquires:10000}")
+    int dynamoDbMaxPendingConnectionAcquires;
+
+    @Value("${shortUrl.reservations.dynamoDb.connectionAcquisitionTimeoutMillis:5000}")
+    long dynamoDbConnectionAcquisitionTimeoutMillis;
+
+    @Value("${shortUrl.reservations.dynamoDb.connectionTimeoutMillis:1000}")
+    long dynamoDbConnectionTimeoutMillis;
+
+    @Value("${shortUrl.reservations.dynamoDb.connectionMaxIdleSeconds:60}")
+    long dynamoDbConnectionMaxIdleSeconds;
+
+    @Value("${shortUrl.reservations.dynamoDb.connectionTimeToLiveSeconds:300}")
+    long dynamoDbConnectionTimeToLiveSeconds;
+
+    @Value("${shortUrl.reservations.dynamoDb.tcpKeepAlive:true}")
+    boolean dynamoDbTcpKeepAlive;
+
+    @Value("${shortUrl.reservations.dynamoDb.eventLoopThreads:0}")
+    int dynamoDbEventLoopThreads;
+
+    @Value("${shortUrl.reservations.dynamoDb.apiCallTimeoutMillis:6000}")
+    long dynamoDbApiCallTimeoutMillis;
+
+    @Value("${shortUrl.reservations.dynamoDb.apiCallAttemptTimeoutMillis:2000}")
+    long dynamoDbApiCallAttemptTimeoutMillis;
+
+    @Value("${shortUrl.reservations.dynamoDb.completeOnEventLoop:false}")
+    boolean dynamoDbCompleteOnEventLoop;
+
     @Bean
     public ShortUrlReservationDao
     shortUrlReservationDao() {
-        return new ShortUrlReservationDaoImpl(
+        return new MeteredShortUrlReservationDao(
+                unmeteredShortUrlReservationDao(),
+                meterRegistry
+        );
+    }
+
+    private ShortUrlReservationDao
+    unmeteredShortUrlReservationDao() {
+        if (storageMode.equals("bitmap")) {
+            // There is no blocking implementation of the bitmap layout, so
+            // rather than quietly run reactively, refuse to start.
+            if (execution.equals("virtualThreads")) {
+                throw new IllegalStateException("The `virtualThreads` execution mode "
+                        + "is not supported in `bitmap` storage mode");
+            }
+            return new BitmapShortUrlReservationDaoImpl(
+                    parameterStoreAccessor,
+                    dynamoDbAsyncClient(),
+                    shortUrlReservationTable().tableName(),
+                    retryStrategy(),
+                    batchWriter(),
+                    metadataTable()
+            );
+        }
+        ShortUrlReservationDao reactiveShortUrlReservationDao = new ShortUrlReservationDaoImpl(
                 parameterStoreAccessor,
-                dynamoDbClient(),
-                shortUrlReservationTable()
+                dynamoDbAsyncClient(),
+                shortUrlReservationTable(),
+                shortUrlAllocator(),
+                availabilityIndex(),
+                retryStrategy(),
+                staleKeyCache(),
+                bulkAllSegments,
+                bulkAllConcurrencyPerSegment,
+                batchWriter(),
+                populateWorkers,
+                populateBatchesPerWorker,
+                metadataTable()
         );
+        if (execution.equals("virtualThreads")) {
+            return new VirtualThreadShortUrlReservationDaoImpl(
+                    reactiveShortUrlReservationDao,
+                    dynamoDbClient(),
+                    synchronousShortUrlReservationTable(),
+                    shortUrlAllocator(),
+                    availabilityIndex(),
+                    retryStrategy(),
+                    staleKeyCache()
+            );
+        }
+        return reactiveShortUrlReservationDao;
     }
 
     @Bean
-    public DynamoDbClient
-    dynamoDbClient() {
-        return DynamoDbClient.builder()
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+    public ShortUrlAllocator
+    shortUrlAllocator() {
+        return switch (allocator) {
+            case "pool" -> new PooledShortUrlAllocator(
+                    dynamoDbAsyncClient(),
+                    availabilityIndex(),
+                    shortUrlReservationTable().tableName(),
+                    poolBlockSize,
+                    poolRefillThreshold,
+                    Duration.ofSeconds(poolLeaseSeconds)
+            );
+            case "sequence" -> new SequenceShortUrlAllocator(
+                    dynamoDbAsyncClient(),
+                    metadataTable(),
+                    shortUrlReservationTable().tableName(),
+                    minShortUrlBase10(),
+                    maxShortUrlBase10(),
+                    sequencePermutationKey(),
+                    sequenceBlockSize
+            );
+            // Every reservation is served via the availability index.
+            default -> Mono::empty;
+        };
+    }
+
+    @Bean
+    public RetryStrategy
+    retryStrategy() {
+        return new JitteredRetryStrategy(
+                retryMaxRetries,
+                Duration.ofMillis(retryBaseDelayMillis),
+                Duration.ofMillis(retryMaxDelayMillis),
+                Duration.ofMillis(retryDeadlineMillis),
+                retryBudget(),
+                meterRegistry
+        );
+    }
+
+    @Bean
+    public RetryBudget
+    retryBudget() {
+        return new RetryBudget(
+                retryBudgetCapacity,
+                retryBudgetPerSecond
+        );
+    }
+
+    @Bean
+    public StaleKeyCache
+    staleKeyCache() {
+        return new StaleKeyCache(
+                Duration.ofMillis(staleKeysTtlMillis),
+                staleKeysMaxSize
+        );
+    }
+
+    @Bean
+    public AvailabilityIndex
+    availabilityIndex() {
+        return new AvailabilityIndex(
+                parameterStoreAccessor,
+                dynamoDbAsyncClient(),
+                shortUrlReservationTable().tableName()
+        );
+    }
+
+    @Bean
+    public MetadataTable
+    metadataTable() {
+        return new MetadataTable(
+                dynamoDbAsyncClient(),
+                shortUrlReservationTable().tableName()
+        );
+    }
+
+    @Bean
+    public BatchWriter
+    batchWriter() {
+        return new BatchWriter(
+                dynamoDbAsyncClient(),
+                new RateLimiter(populateMaxItemsPerSecond),
+                populateMaxRetries,
+                Duration.ofMillis(populateBaseDelayMillis),
+                Duration.ofMillis(populateMaxDelayMillis)
+        );
+    }
+
+    @Bean
+    public AdminJobStore
+    adminJobStore() {
+        return new AdminJobStore(metadataTable());
+    }
+
+    @Bean
+    public DynamoDbTransport
+    dynamoDbTransport() {
+        return new DynamoDbTransport(
+                dynamoDbMaxConcurrency,
+                dynamoDbMaxPendingConnectionAcquires,
+                Duration.ofMillis(dynamoDbConnectionAcquisitionTimeoutMillis),
+                Duration.ofMillis(dynamoDbConnectionTimeoutMillis),
+                Duration.ofSeconds(dynamoDbConnectionMaxIdleSeconds),
+                Duration.ofSeconds(dynamoDbConnectionTimeToLiveSeconds),
+                dynamoDbTcpKeepAlive,
+                dynamoDbEventLoopThreads,
+                Duration.ofMillis(dynamoDbApiCallTimeoutMillis),
+                Duration.ofMillis(dynamoDbApiCallAttemptTimeoutMillis),
+                dynamoDbCompleteOnEventLoop
+        );
+    }
+
+    // Closed by Spring, as the DynamoDB client does not close it.
+    @Bean
+    public SdkAsyncHttpClient
+    dynamoDbHttpClient() {
+        return dynamoDbTransport().buildHttpClient();
     }
 
     @Bean
     public DynamoDbAsyncClient
     dynamoDbAsyncClient() {
-        return DynamoDbAsyncClient.builder().build();
+        return DynamoDbAsyncClient.builder()
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClient(dynamoDbHttpClient())
+                .asyncConfiguration(dynamoDbTransport().buildAsyncConfiguration())
+                .overrideConfiguration(dynamoDbOverrideConfiguration())
+                .build();
     }
 
     @Bean
@@ -66,4 +351,75 @@ public class DaoConfig {
                 parameterStoreAccessor.getShortUrlReservationTableName().block(),
                 TableSchema.fromBean(ShortUrlReservation.class));
     }
+
+    // The synchronous client is only built in the `virtualThreads`
+    // execution mode. Like the asynchronous one, it does not close its
+    // HTTP client, so Spring does.
+    @Bean
+    @Lazy
+    public SdkHttpClient
+    dynamoDbSyncHttpClient() {
+        return dynamoDbTransport().buildSyncHttpClient();
+    }
+
+    @Bean
+    @Lazy
+    public DynamoDbClient
+    dynamoDbClient() {
+        return DynamoDbClient.builder()
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClient(dynamoDbSyncHttpClient())
+                .overrideConfiguration(dynamoDbOverrideConfiguration())
+                .build();
+    }
+
+    @Bean
+    @Lazy
+    public DynamoDbTable<ShortUrlReservation>
+    synchronousShortUrlReservationTable() {
+        return DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(dynamoDbClient())
+                .build()
+                .table(shortUrlReservationTable().tableName(),
+                        TableSchema.fromBean(ShortUrlReservation.class));
+    }
+
+    private ClientOverrideConfiguration dynamoDbOverrideConfiguration() {
+        return dynamoDbTransport().applyTimeouts(ClientOverrideConfiguration.builder())
+                .addExecutionInterceptor(new DynamoDbMetricsInterceptor(meterRegistry))
+                .addExecutionInterceptor(new DynamoDbTracingInterceptor(tracer))
+                .addExecutionInterceptor(new DynamoDbJfrInterceptor())
+                .build();
+    }
+
+    // The key is what makes the order of the short URLs unguessable, so,
+    // like the table name, it lives in the Parameter Store rather than in
+    // the source, and it has no default: the `sequence` engine refuses to
+    // start without it.
+    private long sequencePermutationKey() {
+        try (SsmAsyncClient ssmAsyncClient = SsmAsyncClient.create()) {
+            String sequencePermutationKey = Mono.fromFuture(ssmAsyncClient.getParameter(request -> request
+                            .name(SEQUENCE_PERMUTATION_KEY_PARAMETER)
+                            .withDecryption(true)))
+                    .map(response -> response.parameter().value())
+                    .block();
+            return Long.parseLong(sequencePermutationKey.trim());
+        } catch (ParameterNotFoundException e) {
+            throw new IllegalStateException("The `sequence` allocator requires the "
+                    + SEQUENCE_PERMUTATION_KEY_PARAMETER + " parameter", e);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("The " + SEQUENCE_PERMUTATION_KEY_PARAMETER
+                    + " parameter is not a number", e);
+        }
+    }
+
+    private long minShortUrlBase10() {
+        Long minShortUrlBase10 = parameterStoreAccessor.getMinShortUrlBase10().block();
+        return (minShortUrlBase10 == null) ? 0 : minShortUrlBase10;
+    }
+
+    private long maxShortUrlBase10() {
+        Long maxShortUrlBase10 = parameterStoreAccessor.getMaxShortUrlBase10().block();
+        return (maxShortUrlBase10 == null) ? 0 : maxShortUrlBase10;
+    }
 }
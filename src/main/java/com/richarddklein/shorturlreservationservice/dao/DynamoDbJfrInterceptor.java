@@ -0,0 +1,88 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.Map;
+
+import com.richarddklein.shorturlreservationservice.jfr.DynamoDbCallEvent;
+
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+/**
+ * An SDK interceptor that records every DynamoDB call as a JFR
+ * `DynamoDbCallEvent`.
+ *
+ * <p>Installed on both DynamoDB clients. When the event is not enabled
+ * in the running recording (or there is no recording), the interceptor
+ * costs next to nothing.</p>
+ */
+public class DynamoDbJfrInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<DynamoDbCallEvent> EVENT =
+            new ExecutionAttribute<>("ShortUrlJfrEvent");
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context,
+                                ExecutionAttributes executionAttributes) {
+        DynamoDbCallEvent event = DynamoDbCallEvent.start(
+                executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+        if (event.isEnabled()) {
+            SdkRequest request = context.request();
+            event.setTarget(
+                    request.getValueForField("TableName", String.class).orElse(null),
+                    request.getValueForField("Key", Map.class)
+                            .map(key -> key.get("shortUrl"))
+                            .filter(AttributeValue.class::isInstance)
+                            .map(shortUrl -> ((AttributeValue) shortUrl).s())
+                            .orElse(null));
+        }
+        executionAttributes.putAttribute(EVENT, event);
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context,
+                                   ExecutionAttributes executionAttributes) {
+        DynamoDbCallEvent event = executionAttributes.getAttribute(EVENT);
+        if (event != null) {
+            event.countAttempt();
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context,
+                               ExecutionAttributes executionAttributes) {
+        finish(executionAttributes, "success");
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context,
+                                   ExecutionAttributes executionAttributes) {
+        Throwable exception = context.exception();
+        finish(executionAttributes, exception instanceof ConditionalCheckFailedException ?
+                "conditional_check_failed" : exception.getClass().getSimpleName());
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static void finish(ExecutionAttributes executionAttributes, String outcome) {
+        DynamoDbCallEvent event = executionAttributes.getAttribute(EVENT);
+        if (event != null) {
+            event.finish(outcome);
+        }
+    }
+}
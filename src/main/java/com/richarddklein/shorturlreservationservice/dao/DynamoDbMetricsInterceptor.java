@@ -0,0 +1,99 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+/**
+ * An SDK interceptor that times every DynamoDB call.
+ *
+ * <p>Installed on both DynamoDB clients, it records each call, including
+ * the SDK's own retries, in the `shorturl.dynamodb.calls` timer, tagged
+ * with the operation (e.g. `UpdateItem`) and its outcome. The timer
+ * publishes a latency histogram, so that percentiles can be computed
+ * across instances. Failed conditions, which are how the service learns
+ * that somebody else got to a short URL first, are also counted on their
+ * own in `shorturl.dynamodb.conditional.check.failures`.</p>
+ */
+public class DynamoDbMetricsInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Long> START_NANOS =
+            new ExecutionAttribute<>("ShortUrlMetricsStartNanos");
+
+    private final MeterRegistry meterRegistry;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param meterRegistry The registry of the DynamoDB metrics.
+     */
+    public DynamoDbMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context,
+                                ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context,
+                               ExecutionAttributes executionAttributes) {
+        record(executionAttributes, "success");
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context,
+                                   ExecutionAttributes executionAttributes) {
+        Throwable exception = context.exception();
+        if (exception instanceof ConditionalCheckFailedException) {
+            meterRegistry.counter("shorturl.dynamodb.conditional.check.failures",
+                    "operation", operationName(executionAttributes)).increment();
+            record(executionAttributes, "conditional_check_failed");
+        } else {
+            record(executionAttributes, exception.getClass().getSimpleName());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void record(ExecutionAttributes executionAttributes, String outcome) {
+        Long startNanos = executionAttributes.getAttribute(START_NANOS);
+        if (startNanos == null) {
+            return;
+        }
+        Timer.builder("shorturl.dynamodb.calls")
+                .tag("operation", operationName(executionAttributes))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String operationName(ExecutionAttributes executionAttributes) {
+        String operationName = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return operationName == null ? "unknown" : operationName;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.Map;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+/**
+ * An SDK interceptor that wraps every DynamoDB call in a client span.
+ *
+ * <p>The span is a child of the span that is current when the call is
+ * made, and is named after the operation, e.g. `DynamoDB.UpdateItem`.
+ * It records the table, the index (for queries), the candidate short URL
+ * (for calls on a single item), and the number of attempts that the SDK
+ * made. When a condition fails, the span records why, as far as the item
+ * returned with the failure tells: the short URL was `already_reserved`,
+ * or was `not_reserved`; otherwise just `condition_failed`.</p>
+ */
+public class DynamoDbTracingInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Span> SPAN =
+            new ExecutionAttribute<>("ShortUrlTracingSpan");
+    private static final ExecutionAttribute<Integer> ATTEMPTS =
+            new ExecutionAttribute<>("ShortUrlTracingAttempts");
+
+    private final Tracer tracer;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param tracer The tracer that creates the spans.
+     */
+    public DynamoDbTracingInterceptor(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context,
+                                ExecutionAttributes executionAttributes) {
+        String operationName = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        SdkRequest request = context.request();
+
+        Span span = tracer.spanBuilder("DynamoDB." + operationName)
+                .setParent(io.opentelemetry.context.Context.current())
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("db.system", "dynamodb")
+                .setAttribute("db.operation", operationName)
+                .startSpan();
+        request.getValueForField("TableName", String.class)
+                .ifPresent(tableName -> span.setAttribute("aws.dynamodb.table_names", tableName));
+        request.getValueForField("IndexName", String.class)
+                .ifPresent(indexName -> span.setAttribute("aws.dynamodb.index_name", indexName));
+        request.getValueForField("Key", Map.class)
+                .map(key -> key.get("shortUrl"))
+                .filter(AttributeValue.class::isInstance)
+                .ifPresent(shortUrl -> span.setAttribute(
+                        "shorturl.candidate", ((AttributeValue) shortUrl).s()));
+
+        executionAttributes.putAttribute(SPAN, span);
+        executionAttributes.putAttribute(ATTEMPTS, 0);
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context,
+                                   ExecutionAttributes executionAttributes) {
+        Integer attempts = executionAttributes.getAttribute(ATTEMPTS);
+        executionAttributes.putAttribute(ATTEMPTS, attempts == null ? 1 : attempts + 1);
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context,
+                               ExecutionAttributes executionAttributes) {
+        Span span = executionAttributes.getAttribute(SPAN);
+        if (span != null) {
+            end(span, executionAttributes);
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context,
+                                   ExecutionAttributes executionAttributes) {
+        Span span = executionAttributes.getAttribute(SPAN);
+        if (span == null) {
+            return;
+        }
+        Throwable exception = context.exception();
+        if (exception instanceof ConditionalCheckFailedException conditionalCheckFailedException) {
+            // Losing a race is an expected outcome, not an error.
+            span.setAttribute("shorturl.conflict.reason",
+                    conflictReason(conditionalCheckFailedException));
+        } else {
+            span.recordException(exception);
+            span.setStatus(StatusCode.ERROR);
+        }
+        end(span, executionAttributes);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static void end(Span span, ExecutionAttributes executionAttributes) {
+        Integer attempts = executionAttributes.getAttribute(ATTEMPTS);
+        if (attempts != null) {
+            span.setAttribute("aws.sdk.attempts", attempts);
+        }
+        span.end();
+    }
+
+    private static String conflictReason(ConditionalCheckFailedException e) {
+        if (!e.hasItem()) {
+            return "condition_failed";
+        }
+        return e.item().containsKey("isAvailable") ? "not_reserved" : "already_reserved";
+    }
+}
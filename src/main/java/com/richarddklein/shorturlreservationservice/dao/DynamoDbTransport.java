@@ -0,0 +1,207 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.util.ServiceLoader;
+
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpConfigurationOption;
+import software.amazon.awssdk.http.SdkHttpService;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.utils.AttributeMap;
+
+/**
+ * The HTTP transport of every call that the service makes to DynamoDB.
+ *
+ * <p>There is a single Netty-based HTTP client, which the one DynamoDB
+ * client uses for reads, conditional writes, scans, batch writes and the
+ * admin operations (including their waiters) alike. So there is one
+ * connection pool, and one set of event loop threads, whose limits are
+ * set explicitly, rather than left to the defaults.</p>
+ *
+ * <p>Every call is bounded by two timeouts: the attempt timeout cuts off a
+ * single slow attempt, so that the SDK retries it on another connection,
+ * and the call timeout bounds the call as a whole, retries included.</p>
+ *
+ * <p>By default, the SDK completes the future of each call on a thread
+ * pool of its own, handing the response over from the event loop thread
+ * that received it. Completing it on the event loop thread instead lets
+ * the Reactor chain of the request run on from there, straight onto the
+ * response, which saves that hand-off. But then whatever the chain does
+ * next runs on the event loop thread: in the DAO, in the service, in the
+ * web stack, or in any other subscriber. If any of it blocks, or just
+ * runs long, it stalls every other connection of that event loop too,
+ * and nothing here checks that it does not. So this is off unless it is
+ * asked for, for deployments that have verified (e.g. with BlockHound)
+ * that their chains do not block.</p>
+ *
+ * <p>The `virtualThreads` execution mode of the DAO (see
+ * `VirtualThreadShortUrlReservationDaoImpl`) also needs a synchronous
+ * client, for its request path. Its HTTP client has a pool of its own,
+ * with the same limits, and the same timeouts; a caller that has to wait
+ * for a connection blocks its virtual thread, rather than queueing. The
+ * SDK's Apache-based client, which is only on the classpath in the
+ * `tomcat` profile (where `virtualThreads` belongs), is found at runtime,
+ * so that no other build carries it.</p>
+ */
+public class DynamoDbTransport {
+    private final int maxConcurrency;
+    private final int maxPendingConnectionAcquires;
+    private final Duration connectionAcquisitionTimeout;
+    private final Duration connectionTimeout;
+    private final Duration connectionMaxIdleTime;
+    private final Duration connectionTimeToLive;
+    private final boolean tcpKeepAlive;
+    private final int eventLoopThreads;
+    private final Duration apiCallTimeout;
+    private final Duration apiCallAttemptTimeout;
+    private final boolean completeOnEventLoop;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param maxConcurrency The largest number of connections open (and so
+     *                       of calls in flight) at once.
+     * @param maxPendingConnectionAcquires The largest number of calls that
+     *                                     may wait for a connection.
+     * @param connectionAcquisitionTimeout How long a call may wait for a
+     *                                     connection.
+     * @param connectionTimeout How long opening a connection may take.
+     * @param connectionMaxIdleTime How long a connection is kept open while
+     *                              it is idle.
+     * @param connectionTimeToLive How long a connection is kept open at
+     *                             most, or zero for as long as it is in
+     *                             use.
+     * @param tcpKeepAlive Whether to send TCP keep-alive packets on idle
+     *                     connections.
+     * @param eventLoopThreads The number of event loop threads, or zero for
+     *                         the SDK's default.
+     * @param apiCallTimeout How long a call may take, retries included.
+     * @param apiCallAttemptTimeout How long a single attempt of a call may
+     *                              take.
+     * @param completeOnEventLoop Whether to complete the future of each call
+     *                            on the event loop thread that received the
+     *                            response, rather than on the SDK's own
+     *                            thread pool. Only safe if nothing
+     *                            downstream of the call blocks.
+     */
+    public DynamoDbTransport(
+            int maxConcurrency,
+            int maxPendingConnectionAcquires,
+            Duration connectionAcquisitionTimeout,
+            Duration connectionTimeout,
+            Duration connectionMaxIdleTime,
+            Duration connectionTimeToLive,
+            boolean tcpKeepAlive,
+            int eventLoopThreads,
+            Duration apiCallTimeout,
+            Duration apiCallAttemptTimeout,
+            boolean completeOnEventLoop) {
+
+        this.maxConcurrency = maxConcurrency;
+        this.maxPendingConnectionAcquires = maxPendingConnectionAcquires;
+        this.connectionAcquisitionTimeout = connectionAcquisitionTimeout;
+        this.connectionTimeout = connectionTimeout;
+        this.connectionMaxIdleTime = connectionMaxIdleTime;
+        this.connectionTimeToLive = connectionTimeToLive;
+        this.tcpKeepAlive = tcpKeepAlive;
+        this.eventLoopThreads = eventLoopThreads;
+        this.apiCallTimeout = apiCallTimeout;
+        this.apiCallAttemptTimeout = apiCallAttemptTimeout;
+        this.completeOnEventLoop = completeOnEventLoop;
+    }
+
+    /**
+     * Build the HTTP client.
+     *
+     * <p>A DynamoDB client does not close an HTTP client that it was given,
+     * so whoever builds it must close it.</p>
+     *
+     * @return The HTTP client.
+     */
+    public SdkAsyncHttpClient buildHttpClient() {
+        NettyNioAsyncHttpClient.Builder builder = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .maxPendingConnectionAcquires(maxPendingConnectionAcquires)
+                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .connectionTimeout(connectionTimeout)
+                .connectionMaxIdleTime(connectionMaxIdleTime)
+                .connectionTimeToLive(connectionTimeToLive)
+                .useIdleConnectionReaper(true)
+                .tcpKeepAlive(tcpKeepAlive);
+        if (eventLoopThreads > 0) {
+            builder.eventLoopGroupBuilder(SdkEventLoopGroup.builder()
+                    .numberOfThreads(eventLoopThreads));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Build the HTTP client of a synchronous DynamoDB client.
+     *
+     * <p>This is whichever synchronous HTTP client of the SDK is on the
+     * classpath (the Apache-based one, in the `tomcat` profile). As with
+     * `buildHttpClient()`, whoever builds it must close it.</p>
+     *
+     * @return The HTTP client.
+     * @throws IllegalStateException If there is no synchronous HTTP client
+     * on the classpath.
+     */
+    public SdkHttpClient buildSyncHttpClient() {
+        SdkHttpService sdkHttpService = ServiceLoader.load(SdkHttpService.class)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("The `virtualThreads` execution mode "
+                        + "needs a synchronous HTTP client, such as the SDK's apache-client "
+                        + "(see the `tomcat` profile)"));
+        return sdkHttpService.createHttpClientBuilder()
+                .buildWithDefaults(AttributeMap.builder()
+                        .put(SdkHttpConfigurationOption.MAX_CONNECTIONS, maxConcurrency)
+                        .put(SdkHttpConfigurationOption.CONNECTION_ACQUIRE_TIMEOUT,
+                                connectionAcquisitionTimeout)
+                        .put(SdkHttpConfigurationOption.CONNECTION_TIMEOUT, connectionTimeout)
+                        .put(SdkHttpConfigurationOption.CONNECTION_MAX_IDLE_TIMEOUT, connectionMaxIdleTime)
+                        .put(SdkHttpConfigurationOption.CONNECTION_TIME_TO_LIVE, connectionTimeToLive)
+                        .put(SdkHttpConfigurationOption.REAP_IDLE_CONNECTIONS, true)
+                        .put(SdkHttpConfigurationOption.TCP_KEEPALIVE, tcpKeepAlive)
+                        .build());
+    }
+
+    /**
+     * Set the timeouts of the calls.
+     *
+     * @param builder The override configuration of a DynamoDB client.
+     * @return The same builder.
+     */
+    public ClientOverrideConfiguration.Builder
+    applyTimeouts(ClientOverrideConfiguration.Builder builder) {
+        return builder
+                .apiCallTimeout(apiCallTimeout)
+                .apiCallAttemptTimeout(apiCallAttemptTimeout);
+    }
+
+    /**
+     * Build the asynchronous configuration of a DynamoDB client.
+     *
+     * @return The asynchronous configuration.
+     */
+    public ClientAsyncConfiguration buildAsyncConfiguration() {
+        ClientAsyncConfiguration.Builder builder = ClientAsyncConfiguration.builder();
+        if (completeOnEventLoop) {
+            builder.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, Runnable::run);
+        }
+        return builder.build();
+    }
+}
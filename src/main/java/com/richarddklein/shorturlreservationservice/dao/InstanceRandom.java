@@ -0,0 +1,72 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The source of the random choices that spread concurrent DAO calls
+ * apart: index buckets, candidates, and retry delays.
+ *
+ * <p>Like `ThreadLocalRandom`, this gives each thread a generator of its
+ * own, so that it is cheap and uncontended. Unlike `ThreadLocalRandom`,
+ * whose seeds are captured in a SnapStart snapshot, it can be reseeded:
+ * every instance restored from one snapshot would otherwise make the very
+ * same "random" choices, and so collide on the same buckets and candidates,
+ * and retry in lockstep. After `reseed()`, each thread reseeds its
+ * generator from a `SecureRandom` the next time it asks for it.</p>
+ */
+public final class InstanceRandom {
+    private static final SecureRandom SEEDS = new SecureRandom();
+
+    private static volatile int generation;
+
+    private static final ThreadLocal<SeededRandom> RANDOMS =
+            ThreadLocal.withInitial(() -> new SeededRandom(generation));
+
+    private InstanceRandom() {
+    }
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the current thread's generator.
+     *
+     * @return The generator, which must not be shared with other threads.
+     */
+    public static RandomGenerator current() {
+        SeededRandom seededRandom = RANDOMS.get();
+        int currentGeneration = generation;
+        if (seededRandom.generation() != currentGeneration) {
+            seededRandom = new SeededRandom(currentGeneration);
+            RANDOMS.set(seededRandom);
+        }
+        return seededRandom.random();
+    }
+
+    /**
+     * Have every thread reseed its generator.
+     *
+     * <p>Called when the instance is restored from a SnapStart snapshot.</p>
+     */
+    public static synchronized void reseed() {
+        generation++;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private record SeededRandom(int generation, SplittableRandom random) {
+        SeededRandom(int generation) {
+            this(generation, new SplittableRandom(SEEDS.nextLong()));
+        }
+    }
+}
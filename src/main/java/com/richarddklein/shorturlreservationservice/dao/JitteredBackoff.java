@@ -0,0 +1,56 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+
+/**
+ * The delays between the retries of an operation.
+ *
+ * <p>Delays grow exponentially from `baseDelay`, with "full jitter": Each
+ * delay is a random duration between zero and the current exponential cap,
+ * which never exceeds `maxDelay`. This spreads out the retries of clients
+ * that collided (or that were throttled together), so that they do not
+ * simply collide again one delay later.</p>
+ *
+ * <p>This is shared by the `JitteredRetryStrategy`, which retries
+ * conflicting updates, and the `BatchWriter`, which retries unprocessed
+ * items.</p>
+ */
+public class JitteredBackoff {
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param baseDelay The cap on the delay before the first retry.
+     * @param maxDelay The cap on the delay before any retry.
+     */
+    public JitteredBackoff(Duration baseDelay, Duration maxDelay) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Choose the delay before a retry.
+     *
+     * @param numRetriesSoFar The number of retries already made.
+     * @return A random delay between zero and `baseDelay * 2^numRetriesSoFar`,
+     * but no more than `maxDelay`.
+     */
+    public Duration nextDelay(long numRetriesSoFar) {
+        long capNanos = baseDelay.toNanos() << Math.min(numRetriesSoFar, 30);
+        if (capNanos <= 0 || capNanos > maxDelay.toNanos()) {
+            capNanos = maxDelay.toNanos();
+        }
+        return Duration.ofNanos(InstanceRandom.current().nextLong(capNanos + 1));
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+
+import com.richarddklein.shorturlreservationservice.exception.InconsistentDataException;
+import com.richarddklein.shorturlreservationservice.jfr.RetryEvent;
+import com.richarddklein.shorturlreservationservice.tracing.OtelContextAccessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.Retry.RetrySignal;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+/**
+ * The production implementation of the Retry Strategy interface.
+ *
+ * <p>Delays grow exponentially from a millisecond-scale base, with "full
+ * jitter" (see `JitteredBackoff`), so that clients that collided do not
+ * simply collide again one delay later.</p>
+ *
+ * <p>An operation stops retrying when it has used up its retries, when
+ * the next delay would take it past its deadline, or when the shared
+ * `RetryBudget` is empty. In each case, the operation fails with the
+ * error that caused the last retry.</p>
+ *
+ * <p>Every conflict is counted in `shorturl.dao.conflicts`, tagged with the
+ * kind of error, and every retry decision in `shorturl.dao.retries`,
+ * tagged with its outcome. Each retry decision is also added, as a
+ * `retry` event, to the span of the operation, if it is traced, and
+ * recorded as a JFR `RetryEvent`.</p>
+ */
+public class JitteredRetryStrategy implements RetryStrategy {
+    private final int maxRetries;
+    private final JitteredBackoff backoff;
+    private final Duration deadline;
+    private final RetryBudget retryBudget;
+    private final MeterRegistry meterRegistry;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param maxRetries The largest number of delayed retries per operation.
+     * @param baseDelay The cap on the delay before the first retry.
+     * @param maxDelay The cap on the delay before any retry.
+     * @param deadline How long after its first attempt an operation may
+     *                 still be retried.
+     * @param retryBudget The budget shared by all retries.
+     * @param meterRegistry The registry of the retry metrics.
+     */
+    public JitteredRetryStrategy(
+            int maxRetries,
+            Duration baseDelay,
+            Duration maxDelay,
+            Duration deadline,
+            RetryBudget retryBudget,
+            MeterRegistry meterRegistry) {
+
+        this.maxRetries = maxRetries;
+        this.backoff = new JitteredBackoff(baseDelay, maxDelay);
+        this.deadline = deadline;
+        this.retryBudget = retryBudget;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Retry retryOnConflict() {
+        return Retry.from(retrySignals -> {
+            // This runs once per subscription, i.e. once per operation.
+            long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+            return retrySignals.concatMap(retrySignal -> {
+                Throwable failure = retrySignal.failure();
+                if (!isConflict(failure)) {
+                    return Mono.error(failure);
+                }
+                countConflict(failure);
+                if (retrySignal.totalRetries() >= maxRetries) {
+                    recordRetry(retrySignal, "max_retries", Duration.ZERO);
+                    return Mono.error(failure);
+                }
+                Duration delay = backoff.nextDelay(retrySignal.totalRetries());
+                if (System.nanoTime() + delay.toNanos() > deadlineNanos) {
+                    System.out.println("====> Retry deadline reached: " + failure.getMessage());
+                    recordRetry(retrySignal, "deadline", delay);
+                    return Mono.error(failure);
+                }
+                if (!retryBudget.tryAcquire()) {
+                    System.out.println("====> Retry budget exhausted: " + failure.getMessage());
+                    recordRetry(retrySignal, "budget_exhausted", delay);
+                    return Mono.error(failure);
+                }
+                recordRetry(retrySignal, "retried", delay);
+                System.out.println("====> Retrying in " + delay.toMillis()
+                        + " ms after error: " + failure.getMessage());
+                return Mono.delay(delay);
+            });
+        });
+    }
+
+    @Override
+    public boolean tryImmediateRetry() {
+        boolean acquired = retryBudget.tryAcquire();
+        countRetry(acquired ? "immediate" : "budget_exhausted");
+        return acquired;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static boolean isConflict(Throwable e) {
+        return e instanceof InconsistentDataException ||
+                e instanceof ConditionalCheckFailedException;
+    }
+
+    private void countConflict(Throwable e) {
+        meterRegistry.counter("shorturl.dao.conflicts",
+                "cause", e.getClass().getSimpleName()).increment();
+    }
+
+    private void countRetry(String outcome) {
+        meterRegistry.counter("shorturl.dao.retries", "outcome", outcome).increment();
+    }
+
+    /**
+     * Count a retry decision, add it to the span of the operation, and
+     * record it as a JFR event.
+     *
+     * @param retrySignal The failure that is or is not being retried.
+     * @param outcome What was decided.
+     * @param delay The delay before the retry.
+     */
+    private void recordRetry(RetrySignal retrySignal, String outcome, Duration delay) {
+        countRetry(outcome);
+
+        long attempt = retrySignal.totalRetries() + 1;
+        String reason = retrySignal.failure() instanceof InconsistentDataException ?
+                "stale_index" : "conditional_check_failed";
+        Context context = retrySignal.retryContextView()
+                .getOrDefault(OtelContextAccessor.KEY, Context.root());
+        Span.fromContext(context).addEvent("retry", Attributes.builder()
+                .put("shorturl.retry.attempt", attempt)
+                .put("shorturl.retry.outcome", outcome)
+                .put("shorturl.retry.delay_ms", delay.toMillis())
+                .put("shorturl.conflict.reason", reason)
+                .build());
+        RetryEvent.record(attempt, outcome, reason, delay.toMillis());
+    }
+}
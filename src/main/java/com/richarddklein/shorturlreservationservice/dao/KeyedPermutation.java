@@ -0,0 +1,85 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+/**
+ * A keyed, bijective permutation of the integers `[0, domainSize)`.
+ *
+ * <p>Implemented as a balanced Feistel network over the smallest even
+ * number of bits that covers the domain, combined with "cycle walking":
+ * if the network maps a value outside the domain, the network is simply
+ * applied again, until the result lands back inside. Because the network
+ * is itself a permutation, this always terminates, and on average takes
+ * fewer than four passes.</p>
+ *
+ * <p>The permutation is not meant to be cryptographically strong. Its
+ * only purpose is to make consecutive sequence numbers map to short URLs
+ * that are not guessable from one another.</p>
+ */
+public class KeyedPermutation {
+    private static final int ROUNDS = 4;
+
+    private final long domainSize;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * General constructor.
+     *
+     * @param domainSize The number of integers to permute. Must be between
+     *                   1 and 2^62.
+     * @param key The key that selects one particular permutation.
+     */
+    public KeyedPermutation(long domainSize, long key) {
+        if (domainSize < 1 || domainSize > (1L << 62)) {
+            throw new IllegalArgumentException("Domain size out of range: " + domainSize);
+        }
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(domainSize - 1));
+        bits += bits & 1;
+
+        this.domainSize = domainSize;
+        this.halfBits = bits / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = mix(key + i);
+        }
+    }
+
+    /**
+     * Map an integer to its image under this permutation.
+     *
+     * @param n An integer in `[0, domainSize)`.
+     * @return The image of `n`, also in `[0, domainSize)`.
+     */
+    public long permute(long n) {
+        if (n < 0 || n >= domainSize) {
+            throw new IllegalArgumentException("Value out of range: " + n);
+        }
+        do {
+            n = encipher(n);
+        } while (n >= domainSize);
+        return n;
+    }
+
+    private long encipher(long n) {
+        long left = n >>> halfBits;
+        long right = n & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // The SplitMix64 finalizer, a fast and well-distributed 64-bit mixer.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbAsyncWaiter;
+
+/**
+ * The Short URL Reservation metadata table.
+ *
+ * <p>A small DynamoDB table that lives alongside the Short URL Reservation
+ * table, and holds bookkeeping items that are not short URLs (such as
+ * allocation counters). Keeping them out of the Short URL Reservation
+ * table means that table-wide scans of that table never have to step
+ * around them.</p>
+ *
+ * <p>Each item is keyed by a string attribute `id`. The table is named
+ * after the Short URL Reservation table, with a `-metadata` suffix.</p>
+ */
+public class MetadataTable {
+    private static final String ID = "id";
+    private static final String COUNTER_VALUE = "counterValue";
+    private static final String VERSION = "version";
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final String tableName;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
+     * @param shortUrlReservationTableName The name of the Short URL Reservation
+     *                                     table.
+     */
+    public MetadataTable(
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            String shortUrlReservationTableName) {
+
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.tableName = shortUrlReservationTableName + "-metadata";
+    }
+
+    /**
+     * Create the metadata table in DynamoDB, unless it already exists.
+     *
+     * <p>Like the rest of repository initialization, this is a synchronous
+     * operation.</p>
+     */
+    public void createIfNotExists() {
+        boolean exists = Mono.fromFuture(() -> dynamoDbAsyncClient.describeTable(req -> req.tableName(tableName)))
+            .map(response -> true)
+            .onErrorReturn(ResourceNotFoundException.class, false)
+            .block();
+        if (exists) {
+            return;
+        }
+        System.out.print("====> Creating the metadata table ...");
+
+        Mono.fromFuture(() -> dynamoDbAsyncClient.createTable(req -> req
+            .tableName(tableName)
+            .keySchema(KeySchemaElement.builder()
+                .attributeName(ID)
+                .keyType(KeyType.HASH)
+                .build())
+            .attributeDefinitions(AttributeDefinition.builder()
+                .attributeName(ID)
+                .attributeType(ScalarAttributeType.S)
+                .build())
+            .billingMode(BillingMode.PAY_PER_REQUEST))).block();
+
+        DynamoDbAsyncWaiter waiter = DynamoDbAsyncWaiter.builder().client(dynamoDbAsyncClient).build();
+        Mono.fromFuture(() -> waiter.waitUntilTableExists(builder -> builder.tableName(tableName).build()))
+            .block();
+        waiter.close();
+
+        System.out.println(" done!");
+    }
+
+    /**
+     * Atomically add to a counter.
+     *
+     * <p>A counter that does not exist yet is treated as zero.</p>
+     *
+     * @param counterName The name of the counter.
+     * @param delta The amount to add.
+     * @return The value of the counter after the addition.
+     */
+    public Mono<Long> addToCounter(String counterName, long delta) {
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(ID, AttributeValue.fromS(counterName)))
+            .updateExpression("ADD " + COUNTER_VALUE + " :delta")
+            .expressionAttributeValues(Map.of(
+                ":delta", AttributeValue.fromN(Long.toString(delta))))
+            .returnValues(ReturnValue.UPDATED_NEW)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .map(response -> Long.parseLong(response.attributes().get(COUNTER_VALUE).n()));
+    }
+
+    /**
+     * Set a counter to a specific value.
+     *
+     * @param counterName The name of the counter.
+     * @param value The new value of the counter.
+     * @return A Mono that completes when the counter has been set.
+     */
+    public Mono<Void> setCounter(String counterName, long value) {
+        PutItemRequest request = PutItemRequest.builder()
+            .tableName(tableName)
+            .item(Map.of(
+                ID, AttributeValue.fromS(counterName),
+                COUNTER_VALUE, AttributeValue.fromN(Long.toString(value))))
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(request)).then();
+    }
+
+    /**
+     * Read a counter.
+     *
+     * @param counterName The name of the counter.
+     * @return The value of the counter, or an empty Mono if the counter (or
+     * the metadata table itself) does not exist.
+     */
+    public Mono<Long> getCounter(String counterName) {
+        return getItem(counterName)
+            .filter(item -> item.containsKey(COUNTER_VALUE))
+            .map(item -> Long.parseLong(item.get(COUNTER_VALUE).n()))
+            .onErrorResume(ResourceNotFoundException.class, e -> Mono.empty());
+    }
+
+    /**
+     * Raise a counter to a value, unless it is already at least that high.
+     *
+     * @param counterName The name of the counter.
+     * @param value The value to raise the counter to.
+     * @return A Mono that completes when the counter is at least `value`.
+     */
+    public Mono<Void> raiseCounter(String counterName, long value) {
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(ID, AttributeValue.fromS(counterName)))
+            .updateExpression("SET " + COUNTER_VALUE + " = :value")
+            .conditionExpression("attribute_not_exists(" + COUNTER_VALUE + ") OR "
+                    + COUNTER_VALUE + " < :value")
+            .expressionAttributeValues(Map.of(
+                ":value", AttributeValue.fromN(Long.toString(value))))
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .then()
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty());
+    }
+
+    /**
+     * Read an item.
+     *
+     * @param id The ID of the item.
+     * @return The attributes of the item (including `id` and `version`), or
+     * an empty Mono if there is no such item.
+     */
+    public Mono<Map<String, AttributeValue>> getItem(String id) {
+        GetItemRequest request = GetItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(ID, AttributeValue.fromS(id)))
+            .consistentRead(true)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(request))
+            .filter(GetItemResponse::hasItem)
+            .map(GetItemResponse::item);
+    }
+
+    /**
+     * Write an item, on condition that nobody else has written it since we
+     * last read or wrote it.
+     *
+     * @param id The ID of the item.
+     * @param attributes The attributes of the item, other than `id` and
+     *                   `version`.
+     * @param expectedVersion The version of the item that we last read or
+     *                        wrote, or 0 if the item is new.
+     * @return The new version of the item, or an empty Mono if somebody else
+     * got there first.
+     */
+    public Mono<Long> putVersionedItem(
+            String id,
+            Map<String, AttributeValue> attributes,
+            long expectedVersion) {
+
+        long newVersion = expectedVersion + 1;
+        Map<String, AttributeValue> item = new HashMap<>(attributes);
+        item.put(ID, AttributeValue.fromS(id));
+        item.put(VERSION, AttributeValue.fromN(Long.toString(newVersion)));
+
+        PutItemRequest.Builder request = PutItemRequest.builder()
+            .tableName(tableName)
+            .item(item);
+        if (expectedVersion == 0) {
+            request.conditionExpression("attribute_not_exists(" + ID + ")");
+        } else {
+            request.conditionExpression(VERSION + " = :version")
+                .expressionAttributeValues(Map.of(
+                    ":version", AttributeValue.fromN(Long.toString(expectedVersion))));
+        }
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(request.build()))
+            .thenReturn(newVersion)
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty());
+    }
+}
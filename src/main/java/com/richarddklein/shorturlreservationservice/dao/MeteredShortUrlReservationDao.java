@@ -0,0 +1,283 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlreservationservice.dto.ShortUrlAndStatus;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.exception.NoSuchShortUrlException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.*;
+
+/**
+ * A Short URL Reservation DAO that measures another one.
+ *
+ * <p>Every call is timed, from subscription to completion, in the
+ * `shorturl.dao.operations` timer, tagged with the name of the operation
+ * and the `ShortUrlStatus` it resulted in. A call that fails with an
+ * unexpected error is tagged `UNKNOWN_ERROR`, and one that completes
+ * without a result is tagged `EMPTY`. The operations that act on a list of
+ * short URLs also count each short URL in `shorturl.dao.short.urls`, tagged
+ * with its own status.</p>
+ */
+public class MeteredShortUrlReservationDao implements ShortUrlReservationDao {
+    private static final String EMPTY = "EMPTY";
+
+    private final ShortUrlReservationDao shortUrlReservationDao;
+    private final MeterRegistry meterRegistry;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param shortUrlReservationDao The DAO to be measured.
+     * @param meterRegistry The registry of the DAO metrics.
+     */
+    public MeteredShortUrlReservationDao(
+            ShortUrlReservationDao shortUrlReservationDao,
+            MeterRegistry meterRegistry) {
+
+        this.shortUrlReservationDao = shortUrlReservationDao;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void initializeShortUrlReservationRepository() {
+        timeSync("initializeShortUrlReservationRepository",
+                shortUrlReservationDao::initializeShortUrlReservationRepository);
+    }
+
+    @Override
+    public void recreateShortUrlReservationTable() {
+        timeSync("recreateShortUrlReservationTable",
+                shortUrlReservationDao::recreateShortUrlReservationTable);
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    populateShortUrlReservationTable(List<String> startPositions) {
+        return time("populateShortUrlReservationTable",
+                shortUrlReservationDao.populateShortUrlReservationTable(startPositions));
+    }
+
+    @Override
+    public void migrateShortUrlReservationRepository() {
+        timeSync("migrateShortUrlReservationRepository",
+                shortUrlReservationDao::migrateShortUrlReservationRepository);
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    extendShortUrlRange(long minShortUrlBase10, long maxShortUrlBase10, List<String> startPositions) {
+        return time("extendShortUrlRange",
+                shortUrlReservationDao.extendShortUrlRange(
+                        minShortUrlBase10, maxShortUrlBase10, startPositions));
+    }
+
+    @Override
+    public Mono<Long>
+    getMaxShortUrlBase10() {
+        return time("getMaxShortUrlBase10",
+                shortUrlReservationDao.getMaxShortUrlBase10(),
+                maxShortUrlBase10 -> SUCCESS);
+    }
+
+    @Override
+    public Mono<Long>
+    estimateNumFreeShortUrls(long upTo) {
+        return time("estimateNumFreeShortUrls",
+                shortUrlReservationDao.estimateNumFreeShortUrls(upTo),
+                numFreeShortUrls -> SUCCESS);
+    }
+
+    @Override
+    public Mono<ShortUrlReservation>
+    getSpecificShortUrlReservation(String shortUrl) {
+        return time("getSpecificShortUrlReservation",
+                shortUrlReservationDao.getSpecificShortUrlReservation(shortUrl),
+                shortUrlReservation -> SUCCESS);
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return time("getAllShortUrlReservations",
+                shortUrlReservationDao.getAllShortUrlReservations(limit, cursor, available),
+                page -> page.getStatus().getStatus());
+    }
+
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        return time("exportAllShortUrlReservations",
+                shortUrlReservationDao.exportAllShortUrlReservations(available));
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation>
+    reserveAnyShortUrl() {
+        return time("reserveAnyShortUrl",
+                shortUrlReservationDao.reserveAnyShortUrl(),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        return time("reserveAnyShortUrls",
+                shortUrlReservationDao.reserveAnyShortUrls(count)
+                    .doOnNext(result -> {
+                        if (result.getStatus().getStatus() == SUCCESS) {
+                            countShortUrls("reserveAnyShortUrls", SUCCESS.name(), count);
+                        }
+                    }),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    reserveSpecificShortUrl(String shortUrl) {
+        return time("reserveSpecificShortUrl",
+                shortUrlReservationDao.reserveSpecificShortUrl(shortUrl),
+                Function.identity());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return time("reserveSpecificShortUrls",
+                shortUrlReservationDao.reserveSpecificShortUrls(shortUrls)
+                    .doOnNext(result -> countShortUrls("reserveSpecificShortUrls", result)),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    reserveAllShortUrls(List<String> startPositions) {
+        return time("reserveAllShortUrls",
+                shortUrlReservationDao.reserveAllShortUrls(startPositions));
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    cancelSpecificShortUrlReservation(String shortUrl) {
+        return time("cancelSpecificShortUrlReservation",
+                shortUrlReservationDao.cancelSpecificShortUrlReservation(shortUrl),
+                Function.identity());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return time("cancelSpecificShortUrlReservations",
+                shortUrlReservationDao.cancelSpecificShortUrlReservations(shortUrls)
+                    .doOnNext(result -> countShortUrls("cancelSpecificShortUrlReservations", result)),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    cancelAllShortUrlReservations(List<String> startPositions) {
+        return time("cancelAllShortUrlReservations",
+                shortUrlReservationDao.cancelAllShortUrlReservations(startPositions));
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Time a Mono, from subscription to its result.
+     *
+     * @param operation The name of the operation.
+     * @param mono The Mono to be timed.
+     * @param statusOf Maps the result of the Mono to its `ShortUrlStatus`.
+     * @return The timed Mono.
+     */
+    private <T> Mono<T>
+    time(String operation, Mono<T> mono, Function<T, ShortUrlStatus> statusOf) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return mono
+                .doOnSuccess(result -> record(operation,
+                        result == null ? EMPTY : statusOf.apply(result).name(),
+                        startNanos))
+                .doOnError(e -> record(operation, statusOf(e), startNanos));
+        });
+    }
+
+    /**
+     * Time a Flux, from subscription to completion.
+     *
+     * @param operation The name of the operation.
+     * @param flux The Flux to be timed.
+     * @return The timed Flux.
+     */
+    private <T> Flux<T>
+    time(String operation, Flux<T> flux) {
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            return flux
+                .doOnComplete(() -> record(operation, SUCCESS.name(), startNanos))
+                .doOnError(e -> record(operation, statusOf(e), startNanos));
+        });
+    }
+
+    private void timeSync(String operation, Runnable runnable) {
+        long startNanos = System.nanoTime();
+        try {
+            runnable.run();
+            record(operation, SUCCESS.name(), startNanos);
+        } catch (RuntimeException e) {
+            record(operation, statusOf(e), startNanos);
+            throw e;
+        }
+    }
+
+    private void record(String operation, String status, long startNanos) {
+        Timer.builder("shorturl.dao.operations")
+                .tag("operation", operation)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void countShortUrls(String operation, StatusAndShortUrlStatusArray result) {
+        if (result.getShortUrlStatuses() == null) {
+            return;
+        }
+        for (ShortUrlAndStatus shortUrlAndStatus : result.getShortUrlStatuses()) {
+            countShortUrls(operation, shortUrlAndStatus.getStatus().name(), 1);
+        }
+    }
+
+    private void countShortUrls(String operation, String status, int count) {
+        meterRegistry.counter("shorturl.dao.short.urls",
+                "operation", operation,
+                "status", status).increment(count);
+    }
+
+    private static String statusOf(Throwable e) {
+        return (e instanceof NoSuchShortUrlException ? NO_SUCH_SHORT_URL : UNKNOWN_ERROR).name();
+    }
+}
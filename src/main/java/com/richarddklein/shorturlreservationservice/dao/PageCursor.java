@@ -0,0 +1,56 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Converts between the position at which a paginated read stopped and the
+ * opaque cursor that is handed to the client.
+ *
+ * <p>The position is whatever string the DAO needs in order to resume
+ * (the last short URL read, say, or an offset into the short URL range).
+ * Encoding it keeps clients from depending on its format.</p>
+ */
+public final class PageCursor {
+    private static final String PREFIX = "v1:";
+
+    private PageCursor() {
+    }
+
+    /**
+     * Encode a position as a cursor.
+     *
+     * @param position The position at which to resume reading.
+     * @return The opaque cursor.
+     */
+    public static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (PREFIX + position).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor that was previously returned by `encode()`.
+     *
+     * @param cursor The opaque cursor.
+     * @return The position at which to resume reading.
+     * @throws IllegalArgumentException if `cursor` is not a valid cursor.
+     */
+    public static String decode(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(
+                    Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        if (!decoded.startsWith(PREFIX) || decoded.length() == PREFIX.length()) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return decoded.substring(PREFIX.length());
+    }
+}
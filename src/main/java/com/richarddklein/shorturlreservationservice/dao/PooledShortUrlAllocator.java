@@ -0,0 +1,370 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlreservationservice.jfr.PoolRefillEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+/**
+ * A Short URL Allocator that serves reservations from a per-instance pool
+ * of prefetched short URLs.
+ *
+ * <p>Rather than visiting the availability index for every reservation,
+ * this allocator claims a whole block of available short URLs at a time,
+ * and keeps them in a local lock-free queue. Reserving any short URL then
+ * costs a single conditional `UpdateItem` call, instead of an index scan,
+ * a `GetItem`, and a versioned `UpdateItem`.</p>
+ *
+ * <p>Claiming a short URL removes its `isAvailable` attribute (so that no
+ * other instance can find it in the index), and stamps the item with two
+ * extra attributes: `leaseOwner`, which identifies this pool, and
+ * `leaseExpiry`, the epoch second after which the claim may be reclaimed.
+ * Handing a claimed short URL out to a client removes both attributes,
+ * conditioned on the lease still belonging to this pool.</p>
+ *
+ * <p>That final conditional write is what keeps the scheme safe when
+ * SnapStart restores many copies of one snapshot. Each copy might then
+ * hold an identical queue, but only the first copy to hand out a given
+ * short URL can remove its lease; every other copy fails the condition
+ * check, drops the short URL, and moves on to the next one.</p>
+ *
+ * <p>Claims that are never handed out (because the instance that owns
+ * them was frozen or destroyed) are returned to the index once their lease
+ * has expired. The sweep that does this is triggered whenever a refill
+ * finds the index empty, and runs at most once per lease period.</p>
+ */
+public class PooledShortUrlAllocator implements ShortUrlAllocator, AutoCloseable {
+    private static final String SHORT_URL = "shortUrl";
+    private static final int CLAIM_CONCURRENCY = 8;
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final AvailabilityIndex availabilityIndex;
+    private final String tableName;
+    private final int blockSize;
+    private final int refillThreshold;
+    private final Duration leaseDuration;
+
+    private final Queue<LeasedShortUrl> pool = new ConcurrentLinkedQueue<>();
+    // `ConcurrentLinkedQueue.size()` is O(n), so track the size separately.
+    private final AtomicInteger poolSize = new AtomicInteger();
+    private final AtomicBoolean refillInProgress = new AtomicBoolean();
+    private final AtomicLong lastReclaimEpochSecond = new AtomicLong();
+    private volatile String ownerId = UUID.randomUUID().toString();
+
+    /**
+     * A short URL that this pool has claimed, but not yet handed out.
+     *
+     * @param shortUrl The claimed short URL.
+     * @param owner The lease owner that was stamped on the item.
+     */
+    private record LeasedShortUrl(String shortUrl, String owner) {}
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
+     * @param availabilityIndex Dependency injection of a class instance that
+     *                          is to play the role of the bucketed index of
+     *                          available short URLs.
+     * @param tableName The name of the Short URL Reservation table.
+     * @param blockSize The number of short URLs to claim per refill.
+     * @param refillThreshold The pool size below which a background refill is
+     *                        started.
+     * @param leaseDuration How long a claimed short URL stays out of the index
+     *                      before it may be reclaimed.
+     */
+    public PooledShortUrlAllocator(
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            AvailabilityIndex availabilityIndex,
+            String tableName,
+            int blockSize,
+            int refillThreshold,
+            Duration leaseDuration) {
+
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.availabilityIndex = availabilityIndex;
+        this.tableName = tableName;
+        this.blockSize = blockSize;
+        this.refillThreshold = refillThreshold;
+        this.leaseDuration = leaseDuration;
+    }
+
+    @Override
+    public Mono<ShortUrlReservation>
+    allocateShortUrlReservation() {
+        return Mono.defer(() -> {
+            LeasedShortUrl leasedShortUrl = poll();
+            if (leasedShortUrl != null) {
+                return handOut(leasedShortUrl);
+            }
+            // The pool is dry. Refill it on the caller's behalf (unless a
+            // refill is already under way), and then try once more. If the
+            // pool is still dry, complete empty so that the DAO falls back
+            // to the index.
+            return refill().then(Mono.defer(() -> {
+                LeasedShortUrl claimedShortUrl = poll();
+                return (claimedShortUrl == null) ?
+                        Mono.empty() :
+                        handOut(claimedShortUrl);
+            }));
+        });
+    }
+
+    @Override
+    public void onInstanceRestored() {
+        // Every restored copy of this pool would otherwise claim short URLs
+        // under the same owner, and hold the same queue of claims. Whatever
+        // the copies drop is reclaimed once its lease expires.
+        ownerId = UUID.randomUUID().toString();
+        while (poll() != null) {
+            // Keep draining.
+        }
+    }
+
+    @Override
+    public void onRepositoryInitialized() {
+        // Our claims refer to items of the table that was just deleted.
+        while (poll() != null) {
+            // Keep draining.
+        }
+    }
+
+    /**
+     * Return every short URL still in the pool to the index.
+     *
+     * <p>Called by Spring when the application context shuts down. (AWS
+     * Lambda usually destroys an instance without warning, in which case
+     * the unused claims are reclaimed once their leases expire.)</p>
+     */
+    @Override
+    public void close() {
+        Flux.<LeasedShortUrl>generate(sink -> {
+                LeasedShortUrl leasedShortUrl = poll();
+                if (leasedShortUrl == null) {
+                    sink.complete();
+                } else {
+                    sink.next(leasedShortUrl);
+                }
+            })
+            .flatMap(this::release, CLAIM_CONCURRENCY)
+            .then()
+            .onErrorResume(e -> {
+                System.out.println("====> Could not release pool: " + e.getMessage());
+                return Mono.empty();
+            })
+            .block(Duration.ofSeconds(10));
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private LeasedShortUrl poll() {
+        LeasedShortUrl leasedShortUrl = pool.poll();
+        if (leasedShortUrl != null) {
+            poolSize.decrementAndGet();
+        }
+        return leasedShortUrl;
+    }
+
+    private void offer(LeasedShortUrl leasedShortUrl) {
+        pool.offer(leasedShortUrl);
+        poolSize.incrementAndGet();
+    }
+
+    /**
+     * Hand a claimed short URL out to a client.
+     *
+     * <p>Removes the lease from the item, on condition that the lease still
+     * belongs to us, and that nobody has made the short URL available again
+     * in the meantime (e.g. via a cancellation). If the condition fails, the
+     * short URL is dropped and the next one in the pool is tried instead.</p>
+     *
+     * @param leasedShortUrl The claimed short URL to hand out.
+     * @return The Short URL Reservation item that has just been reserved.
+     */
+    private Mono<ShortUrlReservation>
+    handOut(LeasedShortUrl leasedShortUrl) {
+        if (poolSize.get() < refillThreshold) {
+            refill().subscribe();
+        }
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(SHORT_URL, AttributeValue.fromS(leasedShortUrl.shortUrl())))
+            .updateExpression("REMOVE leaseOwner, leaseExpiry SET version = version + :one")
+            .conditionExpression("leaseOwner = :owner AND attribute_not_exists(isAvailable)")
+            .expressionAttributeValues(Map.of(
+                ":owner", AttributeValue.fromS(leasedShortUrl.owner()),
+                ":one", AttributeValue.fromN("1")))
+            .returnValues(ReturnValue.ALL_NEW)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .map(response -> {
+                ShortUrlReservation shortUrlReservation =
+                        new ShortUrlReservation(leasedShortUrl.shortUrl(), null);
+                shortUrlReservation.setVersion(
+                        Long.parseLong(response.attributes().get("version").n()));
+                return shortUrlReservation;
+            })
+            .onErrorResume(ConditionalCheckFailedException.class, e -> {
+                System.out.println("====> Lost lease on pooled short URL '"
+                        + leasedShortUrl.shortUrl() + "'");
+                return allocateShortUrlReservation();
+            });
+    }
+
+    /**
+     * Claim another block of available short URLs, unless a refill is
+     * already under way.
+     *
+     * @return A Mono that completes when the refill is done.
+     */
+    private Mono<Void> refill() {
+        if (!refillInProgress.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+        PoolRefillEvent event = PoolRefillEvent.start(blockSize);
+
+        // Claiming a block starts at a random point of the index, so that
+        // concurrent instances tend to claim disjoint blocks.
+        return availabilityIndex.findCandidates(blockSize)
+            .flatMapMany(Flux::fromIterable)
+            .flatMap(this::claim, CLAIM_CONCURRENCY)
+            .doOnNext(this::offer)
+            .count()
+            .doOnNext(numClaimed -> {
+                event.finish(numClaimed, "success");
+                if (numClaimed == 0) {
+                    reclaimExpiredLeasesIfDue();
+                }
+            })
+            .onErrorResume(e -> {
+                System.out.println("====> Pool refill failed: " + e.getMessage());
+                event.finish(0, "failure");
+                return Mono.empty();
+            })
+            .doFinally(signalType -> refillInProgress.set(false))
+            .then();
+    }
+
+    /**
+     * Claim one candidate short URL for this pool.
+     *
+     * @param shortUrl The candidate short URL.
+     * @return A Mono that emits the claimed short URL, or that completes
+     * empty if somebody else got there first (or the index was stale).
+     */
+    private Mono<LeasedShortUrl> claim(String shortUrl) {
+        long leaseExpiry = Instant.now().plus(leaseDuration).getEpochSecond();
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(SHORT_URL, AttributeValue.fromS(shortUrl)))
+            .updateExpression("REMOVE isAvailable "
+                    + "SET leaseOwner = :owner, leaseExpiry = :expiry, version = version + :one")
+            .conditionExpression("attribute_exists(isAvailable)")
+            .expressionAttributeValues(Map.of(
+                ":owner", AttributeValue.fromS(ownerId),
+                ":expiry", AttributeValue.fromN(Long.toString(leaseExpiry)),
+                ":one", AttributeValue.fromN("1")))
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .map(response -> new LeasedShortUrl(shortUrl, ownerId))
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty());
+    }
+
+    /**
+     * Return a claimed short URL to the index.
+     *
+     * @param leasedShortUrl The claimed short URL to release.
+     * @return A Mono that completes when the short URL has been released.
+     */
+    private Mono<Void> release(LeasedShortUrl leasedShortUrl) {
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(SHORT_URL, AttributeValue.fromS(leasedShortUrl.shortUrl())))
+            .updateExpression("REMOVE leaseOwner, leaseExpiry "
+                    + "SET isAvailable = :shortUrl, version = version + :one")
+            .conditionExpression("leaseOwner = :owner")
+            .expressionAttributeValues(Map.of(
+                ":owner", AttributeValue.fromS(leasedShortUrl.owner()),
+                ":shortUrl", AttributeValue.fromS(leasedShortUrl.shortUrl()),
+                ":one", AttributeValue.fromN("1")))
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty())
+            .then();
+    }
+
+    /**
+     * Return every expired claim, whoever its owner, to the index.
+     *
+     * <p>This requires a scan of the whole table, so it runs in the
+     * background, and at most once per lease period per instance.</p>
+     */
+    private void reclaimExpiredLeasesIfDue() {
+        long now = Instant.now().getEpochSecond();
+        long last = lastReclaimEpochSecond.get();
+        if (now - last < leaseDuration.getSeconds() ||
+                !lastReclaimEpochSecond.compareAndSet(last, now)) {
+            return;
+        }
+        System.out.println("====> Reclaiming expired short URL leases");
+
+        AttributeValue nowValue = AttributeValue.fromN(Long.toString(now));
+        ScanRequest scanRequest = ScanRequest.builder()
+            .tableName(tableName)
+            .filterExpression("leaseExpiry < :now")
+            .projectionExpression(SHORT_URL)
+            .expressionAttributeValues(Map.of(":now", nowValue))
+            .build();
+
+        Flux.from(dynamoDbAsyncClient.scanPaginator(scanRequest).items())
+            .map(item -> item.get(SHORT_URL).s())
+            .flatMap(shortUrl -> Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(
+                UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of(SHORT_URL, AttributeValue.fromS(shortUrl)))
+                    .updateExpression("REMOVE leaseOwner, leaseExpiry "
+                            + "SET isAvailable = :shortUrl, version = version + :one")
+                    .conditionExpression("leaseExpiry < :now")
+                    .expressionAttributeValues(Map.of(
+                        ":now", nowValue,
+                        ":shortUrl", AttributeValue.fromS(shortUrl),
+                        ":one", AttributeValue.fromN("1")))
+                    .build()))
+                .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty()),
+                CLAIM_CONCURRENCY)
+            .count()
+            .subscribe(
+                numReclaimed -> System.out.println(
+                        "====> Reclaimed " + numReclaimed + " expired short URL leases"),
+                e -> System.out.println("====> Lease reclamation failed: " + e.getMessage()));
+    }
+}
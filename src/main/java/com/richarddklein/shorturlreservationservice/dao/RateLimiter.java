@@ -0,0 +1,67 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A limit on the sustained rate of some operation, shared by everybody
+ * who performs it.
+ *
+ * <p>Unlike the `RetryBudget`, which refuses work once it is used up, a
+ * rate limiter delays work: each caller reserves the permits it needs,
+ * and is told to wait until the moment at which the rate allows them.
+ * Callers are thus spaced out evenly, however many of them there are.</p>
+ */
+public class RateLimiter {
+    private final double nanosPerPermit;
+
+    private long nextFreeNanos;
+
+    /**
+     * General constructor.
+     *
+     * @param permitsPerSecond The sustained number of permits per second, or
+     *                         0 for no limit.
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this.nanosPerPermit = permitsPerSecond > 0 ? 1_000_000_000d / permitsPerSecond : 0;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Wait until the rate allows some permits to be used.
+     *
+     * @param numPermits The number of permits needed.
+     * @return A Mono that completes when the permits may be used.
+     */
+    public Mono<Void> acquire(int numPermits) {
+        if (nanosPerPermit == 0) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            long waitNanos = reserve(numPermits);
+            return waitNanos <= 0 ?
+                    Mono.empty() :
+                    Mono.delay(Duration.ofNanos(waitNanos)).then();
+        });
+    }
+
+    /**
+     * Reserve some permits.
+     *
+     * @param numPermits The number of permits needed.
+     * @return How long to wait, in nanoseconds, before using them.
+     */
+    private synchronized long reserve(int numPermits) {
+        long now = System.nanoTime();
+        long start = Math.max(now, nextFreeNanos);
+        nextFreeNanos = start + (long) (numPermits * nanosPerPermit);
+        return start - now;
+    }
+}
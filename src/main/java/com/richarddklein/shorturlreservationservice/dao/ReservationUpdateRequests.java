@@ -0,0 +1,99 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+/**
+ * The conditional `UpdateItem` requests that reserve a short URL, or
+ * cancel its reservation, in the Short URL Reservation table.
+ *
+ * <p>Each is a single call that bumps the `version` attribute, just as a
+ * versioned update would. They are shared by the reactive DAO
+ * (`ShortUrlReservationDaoImpl`) and the `virtualThreads` one
+ * (`VirtualThreadShortUrlReservationDaoImpl`), which send them with the
+ * asynchronous and the synchronous client respectively.</p>
+ */
+final class ReservationUpdateRequests {
+    private static final AttributeValue ONE = AttributeValue.fromN("1");
+
+    private ReservationUpdateRequests() {
+    }
+
+    /**
+     * Reserve a short URL, on condition that it is available, and return
+     * the item as it is afterwards.
+     *
+     * @param tableName The name of the Short URL Reservation table.
+     * @param shortUrl The short URL to reserve.
+     * @return The request.
+     */
+    static UpdateItemRequest
+    reserveIfAvailable(String tableName, String shortUrl) {
+        return reserve(tableName, shortUrl)
+            .returnValues(ReturnValue.ALL_NEW)
+            .build();
+    }
+
+    /**
+     * Reserve a short URL, on condition that it is available. If the
+     * condition fails, DynamoDB returns the item as it was, which tells
+     * whether the short URL was taken or does not exist at all.
+     *
+     * @param tableName The name of the Short URL Reservation table.
+     * @param shortUrl The short URL to reserve.
+     * @return The request.
+     */
+    static UpdateItemRequest
+    reserveConditionally(String tableName, String shortUrl) {
+        return reserve(tableName, shortUrl)
+            .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+            .build();
+    }
+
+    /**
+     * Cancel the reservation of a short URL, on condition that it exists
+     * and is reserved. If the condition fails, DynamoDB returns the item as
+     * it was, which tells whether the short URL was not reserved or does
+     * not exist at all.
+     *
+     * @param tableName The name of the Short URL Reservation table.
+     * @param shortUrl The short URL whose reservation is to be canceled.
+     * @return The request.
+     */
+    static UpdateItemRequest
+    cancelConditionally(String tableName, String shortUrl) {
+        return UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of("shortUrl", AttributeValue.fromS(shortUrl)))
+            .updateExpression("SET isAvailable = :shortUrl, version = version + :one")
+            .conditionExpression("attribute_exists(shortUrl) AND attribute_not_exists(isAvailable)")
+            .expressionAttributeValues(Map.of(
+                ":shortUrl", AttributeValue.fromS(shortUrl),
+                ":one", ONE))
+            .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+            .build();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private static UpdateItemRequest.Builder
+    reserve(String tableName, String shortUrl) {
+        return UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of("shortUrl", AttributeValue.fromS(shortUrl)))
+            .updateExpression("REMOVE isAvailable SET version = version + :one")
+            .conditionExpression("attribute_exists(isAvailable)")
+            .expressionAttributeValues(Map.of(":one", ONE));
+    }
+}
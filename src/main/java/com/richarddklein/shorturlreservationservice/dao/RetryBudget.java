@@ -0,0 +1,64 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+/**
+ * A token bucket that limits the rate of retries across the whole service
+ * instance.
+ *
+ * <p>Each retry costs one token. The bucket holds at most `capacity`
+ * tokens, and is refilled continuously at `tokensPerSecond`. When the
+ * bucket is empty, operations fail instead of retrying.</p>
+ */
+public class RetryBudget {
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * General constructor.
+     *
+     * @param capacity The largest number of retries that may be made in a
+     *                 burst.
+     * @param tokensPerSecond The sustained number of retries per second.
+     */
+    public RetryBudget(int capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take one token from the bucket, if there is one.
+     *
+     * @return `true` if a token was taken, or `false` if the bucket is
+     * empty.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Fill the bucket up, and restart its refill from now.
+     *
+     * <p>Called when the instance is restored from a SnapStart snapshot,
+     * after which the time of the last refill means nothing.</p>
+     */
+    public synchronized void reset() {
+        tokens = capacity;
+        lastRefillNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import reactor.util.retry.Retry;
+
+/**
+ * The Retry Strategy interface.
+ *
+ * <p>Specifies how the Short URL Reservation DAO retries an operation that
+ * lost an optimistic-locking race (or that found the index to be out of
+ * date). Every retry, whether immediate or delayed, is charged to the same
+ * budget, so that a burst of contention cannot multiply the load on
+ * DynamoDB.</p>
+ */
+public interface RetryStrategy {
+    /**
+     * Get the policy for retrying an operation after a conflict.
+     *
+     * @return A Retry spec, for use with `retryWhen()`. Errors that are not
+     * conflicts are never retried.
+     */
+    Retry retryOnConflict();
+
+    /**
+     * Ask permission to retry an operation immediately, on a different
+     * short URL, after a conflict.
+     *
+     * @return `true` if the retry may go ahead, or `false` if the retry
+     * budget is exhausted.
+     */
+    boolean tryImmediateRetry();
+}
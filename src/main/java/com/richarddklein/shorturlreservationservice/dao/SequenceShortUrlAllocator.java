@@ -0,0 +1,199 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+/**
+ * A Short URL Allocator that hands out short URLs in the order of a keyed
+ * permutation of the short URL range, without consulting the `isAvailable`
+ * index.
+ *
+ * <p>An atomic counter in the metadata table records how many sequence
+ * numbers have been handed out so far. Each instance claims sequence
+ * numbers from the counter a block at a time, maps each sequence number
+ * through a keyed permutation of `[minShortUrlBase10, maxShortUrlBase10]`
+ * (so that consecutive reservations do not yield guessable short URLs),
+ * and base-64 encodes the result.</p>
+ *
+ * <p>Reserving the resulting short URL is a single conditional `UpdateItem`
+ * call. If the condition fails (because the short URL was reserved as a
+ * specific short URL in the meantime), the next sequence number is tried.
+ * Since the permutation visits every short URL exactly once, neither the
+ * eventually consistent index nor its stale-data retries are involved.</p>
+ *
+ * <p>Once the counter has run past the end of the range, this allocator
+ * completes empty, and the DAO falls back to the index. From then on, the
+ * index is only needed to find short URLs whose reservations have been
+ * canceled (or sequence numbers that an instance claimed but never used).</p>
+ */
+public class SequenceShortUrlAllocator implements ShortUrlAllocator {
+    private static final String SHORT_URL = "shortUrl";
+    private static final String SEQUENCE_COUNTER = "sequence";
+
+    // How many taken short URLs to step over before giving up and letting
+    // the DAO fall back to the index.
+    private static final int MAX_ATTEMPTS = 16;
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final MetadataTable metadataTable;
+    private final String tableName;
+    private final long minShortUrlBase10;
+    private final long domainSize;
+    private final KeyedPermutation keyedPermutation;
+    private final int blockSize;
+
+    private final AtomicReference<SequenceBlock> currentBlock =
+            new AtomicReference<>(new SequenceBlock(0, 0));
+
+    /**
+     * A block of sequence numbers claimed from the counter.
+     */
+    private static class SequenceBlock {
+        final AtomicLong next;
+        final long end;
+
+        SequenceBlock(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
+     * @param metadataTable Dependency injection of a class instance that is to
+     *                      model the metadata table, which holds the counter.
+     * @param tableName The name of the Short URL Reservation table.
+     * @param minShortUrlBase10 The lowest short URL in the range, in base 10.
+     * @param maxShortUrlBase10 The highest short URL in the range, in base 10.
+     * @param permutationKey The key that selects the order in which short URLs
+     *                       are handed out.
+     * @param blockSize The number of sequence numbers to claim at a time.
+     */
+    public SequenceShortUrlAllocator(
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            MetadataTable metadataTable,
+            String tableName,
+            long minShortUrlBase10,
+            long maxShortUrlBase10,
+            long permutationKey,
+            int blockSize) {
+
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.metadataTable = metadataTable;
+        this.tableName = tableName;
+        this.minShortUrlBase10 = minShortUrlBase10;
+        this.domainSize = maxShortUrlBase10 - minShortUrlBase10 + 1;
+        this.keyedPermutation = new KeyedPermutation(domainSize, permutationKey);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public Mono<ShortUrlReservation>
+    allocateShortUrlReservation() {
+        return allocate(MAX_ATTEMPTS);
+    }
+
+    @Override
+    public void onRepositoryInitialized() {
+        metadataTable.createIfNotExists();
+        metadataTable.setCounter(SEQUENCE_COUNTER, 0).block();
+        currentBlock.set(new SequenceBlock(0, 0));
+    }
+
+    @Override
+    public void onInstanceRestored() {
+        // Have each restored copy claim a block of its own, rather than all
+        // of them handing out the block in the snapshot.
+        currentBlock.set(new SequenceBlock(0, 0));
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private Mono<ShortUrlReservation> allocate(int attemptsLeft) {
+        if (attemptsLeft == 0) {
+            return Mono.empty();
+        }
+        return nextSequenceNumber()
+            .filter(sequenceNumber -> sequenceNumber < domainSize)
+            .flatMap(sequenceNumber -> reserve(ShortUrlCodec.encode(
+                    minShortUrlBase10 + keyedPermutation.permute(sequenceNumber)))
+                .switchIfEmpty(Mono.defer(() -> allocate(attemptsLeft - 1))));
+    }
+
+    /**
+     * Take the next sequence number from the current block, claiming a new
+     * block from the counter if the current one is used up.
+     *
+     * <p>If several callers find the block used up at the same time, each
+     * claims a new block, and only the last one installed survives. The
+     * sequence numbers in the other blocks are never handed out by this
+     * allocator, but their short URLs remain available via the index.</p>
+     *
+     * @return The next sequence number.
+     */
+    private Mono<Long> nextSequenceNumber() {
+        return Mono.defer(() -> {
+            SequenceBlock block = currentBlock.get();
+            long sequenceNumber = block.next.getAndIncrement();
+            if (sequenceNumber < block.end) {
+                return Mono.just(sequenceNumber);
+            }
+            return metadataTable.addToCounter(SEQUENCE_COUNTER, blockSize)
+                .map(end -> {
+                    long start = end - blockSize;
+                    currentBlock.set(new SequenceBlock(start + 1, end));
+                    return start;
+                });
+        });
+    }
+
+    /**
+     * Reserve a specific short URL, on condition that it is available.
+     *
+     * @param shortUrl The short URL to reserve.
+     * @return The Short URL Reservation item that has just been reserved,
+     * or an empty Mono if the short URL was not available.
+     */
+    private Mono<ShortUrlReservation> reserve(String shortUrl) {
+        UpdateItemRequest request = UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(SHORT_URL, AttributeValue.fromS(shortUrl)))
+            .updateExpression("REMOVE isAvailable SET version = version + :one")
+            .conditionExpression("attribute_exists(isAvailable)")
+            .expressionAttributeValues(Map.of(":one", AttributeValue.fromN("1")))
+            .returnValues(ReturnValue.ALL_NEW)
+            .build();
+
+        return Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .map(response -> {
+                ShortUrlReservation shortUrlReservation =
+                        new ShortUrlReservation(shortUrl, null);
+                shortUrlReservation.setVersion(
+                        Long.parseLong(response.attributes().get("version").n()));
+                return shortUrlReservation;
+            })
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty());
+    }
+}
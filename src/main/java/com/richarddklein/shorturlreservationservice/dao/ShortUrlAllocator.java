@@ -0,0 +1,51 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import reactor.core.publisher.Mono;
+
+/**
+ * The Short URL Allocator interface.
+ *
+ * <p>Specifies an allocation engine that the Short URL Reservation DAO
+ * consults first whenever a client asks to reserve any available short
+ * URL. An allocator that has nothing to offer simply completes empty, in
+ * which case the DAO falls back to finding an available short URL via the
+ * availability index.</p>
+ */
+@FunctionalInterface
+public interface ShortUrlAllocator {
+    /**
+     * Reserve any available short URL.
+     *
+     * @return A Mono that emits the Short URL Reservation item that has
+     * just been reserved, or that completes empty if this allocator cannot
+     * supply a short URL right now.
+     */
+    Mono<ShortUrlReservation>
+    allocateShortUrlReservation();
+
+    /**
+     * Discard any allocation state, because the Short URL Reservation
+     * repository has just been (re)initialized.
+     *
+     * <p>Like the rest of repository initialization, this is a synchronous
+     * operation.</p>
+     */
+    default void onRepositoryInitialized() {
+    }
+
+    /**
+     * Discard any allocation state that was captured in a SnapStart
+     * snapshot, because this instance has just been restored from it.
+     *
+     * <p>Every instance restored from the snapshot starts out with the same
+     * state, which must not be shared between them.</p>
+     */
+    default void onInstanceRestored() {
+    }
+}
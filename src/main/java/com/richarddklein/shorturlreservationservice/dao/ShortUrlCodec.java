@@ -0,0 +1,228 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.Arrays;
+
+/**
+ * Converts between base-10 integers and their base-64 short URL strings.
+ *
+ * <p>The 64 digits are '0' thru '9', 'a' thru 'z', 'A' thru 'Z', and the
+ * characters '_' and '-'. (See `ShortUrlReservationDaoImpl` for the full
+ * story.)</p>
+ *
+ * <p>Since the base is a power of two, each digit is exactly six bits of
+ * the integer, so encoding and decoding are done with shifts and masks and
+ * a pair of lookup tables, rather than with division and searching. The
+ * methods that take a `char[]` write into the caller's buffer and allocate
+ * nothing, so that a caller that encodes many short URLs in a row (such as
+ * populating the table) can reuse one buffer throughout.</p>
+ *
+ * <p>By default, a short URL has no leading zeros. In fixed-width mode, it
+ * is padded on the left with '0' digits to a given width instead. Both
+ * forms decode to the same integer, but they are different strings, and so
+ * different keys in the Short URL Reservation table: a table must be
+ * populated and accessed using one form only.</p>
+ */
+public final class ShortUrlCodec {
+    /**
+     * The largest number of digits in a short URL that fits in a long
+     * integer.
+     */
+    public static final int MAX_LENGTH = 11;
+
+    private static final int BITS_PER_DIGIT = 6;
+    private static final int DIGIT_MASK = (1 << BITS_PER_DIGIT) - 1;
+
+    private static final char[] DIGITS = (
+            "0123456789" +
+            "abcdefghijklmnopqrstuvwxyz" +
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+            "_-").toCharArray();
+
+    // The value of each ASCII character as a digit, or -1 if it is not one.
+    private static final byte[] DIGIT_VALUES = new byte[128];
+
+    // The most significant digit of an 11-digit short URL holds only the
+    // top 63 - 60 = 3 bits of a (non-negative) long integer.
+    private static final int MAX_LEADING_DIGIT_AT_MAX_LENGTH =
+            (int) (Long.MAX_VALUE >>> (BITS_PER_DIGIT * (MAX_LENGTH - 1)));
+
+    static {
+        Arrays.fill(DIGIT_VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            DIGIT_VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private ShortUrlCodec() {
+    }
+
+    /**
+     * Convert a long integer to its base-64 representation.
+     *
+     * @param n The non-negative long integer of interest.
+     * @return A string that is the base-64 representation of `n`.
+     */
+    public static String encode(long n) {
+        char[] buffer = new char[MAX_LENGTH];
+        int length = encode(n, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Convert a long integer to its fixed-width base-64 representation.
+     *
+     * @param n The non-negative long integer of interest.
+     * @param width The number of digits in the result.
+     * @return A string that is the base-64 representation of `n`, padded on
+     * the left with '0' digits to `width` digits.
+     * @throws IllegalArgumentException if `n` needs more than `width` digits.
+     */
+    public static String encode(long n, int width) {
+        char[] buffer = new char[width];
+        encode(n, width, buffer, 0);
+        return new String(buffer);
+    }
+
+    /**
+     * Write the base-64 representation of a long integer into a buffer.
+     *
+     * @param n The non-negative long integer of interest.
+     * @param buffer The buffer to write into.
+     * @param offset Where in `buffer` to write the first digit.
+     * @return The number of digits written, which is `length(n)`.
+     */
+    public static int encode(long n, char[] buffer, int offset) {
+        int length = length(n);
+        writeDigits(n, buffer, offset, length);
+        return length;
+    }
+
+    /**
+     * Write the fixed-width base-64 representation of a long integer into a
+     * buffer.
+     *
+     * @param n The non-negative long integer of interest.
+     * @param width The number of digits to write.
+     * @param buffer The buffer to write into.
+     * @param offset Where in `buffer` to write the first digit.
+     * @throws IllegalArgumentException if `n` needs more than `width` digits.
+     */
+    public static void encode(long n, int width, char[] buffer, int offset) {
+        if (length(n) > width) {
+            throw new IllegalArgumentException(n + " needs more than " + width + " digits");
+        }
+        writeDigits(n, buffer, offset, width);
+    }
+
+    /**
+     * Get the number of digits in the base-64 representation of a long
+     * integer, without leading zeros.
+     *
+     * @param n The non-negative long integer of interest.
+     * @return The number of digits, between 1 and `MAX_LENGTH`.
+     */
+    public static int length(long n) {
+        int numBits = Long.SIZE - Long.numberOfLeadingZeros(n);
+        return Math.max(1, (numBits + BITS_PER_DIGIT - 1) / BITS_PER_DIGIT);
+    }
+
+    /**
+     * Convert a base-64 short URL back to the long integer it represents.
+     *
+     * @param shortUrl A string that is the base-64 representation of some
+     *                 non-negative long integer.
+     * @return The long integer represented by `shortUrl`.
+     * @throws IllegalArgumentException if `shortUrl` is not valid (see
+     * `isValid()`).
+     */
+    public static long decode(CharSequence shortUrl) {
+        if (shortUrl == null) {
+            throw new IllegalArgumentException("Empty short URL");
+        }
+        return decode(shortUrl, 0, shortUrl.length());
+    }
+
+    /**
+     * Convert part of a character sequence, holding a base-64 short URL,
+     * back to the long integer it represents.
+     *
+     * @param chars The character sequence.
+     * @param start The index of the first digit.
+     * @param end The index just past the last digit.
+     * @return The long integer represented by the digits.
+     * @throws IllegalArgumentException if the digits are not a valid short
+     * URL (see `isValid()`).
+     */
+    public static long decode(CharSequence chars, int start, int end) {
+        long n = decodeOrNegative(chars, start, end);
+        if (n < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid short URL: " + chars.subSequence(start, end));
+        }
+        return n;
+    }
+
+    /**
+     * Tell whether a string is a valid short URL.
+     *
+     * <p>A valid short URL is between 1 and `MAX_LENGTH` base-64 digits,
+     * and represents a value that fits in a long integer. Leading zeros
+     * are allowed, so that fixed-width short URLs are valid too.</p>
+     *
+     * @param shortUrl The string of interest.
+     * @return `true` if `shortUrl` can be decoded, or `false` if not.
+     */
+    public static boolean isValid(CharSequence shortUrl) {
+        return shortUrl != null && decodeOrNegative(shortUrl, 0, shortUrl.length()) >= 0;
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write the last `width` base-64 digits of a long integer, most
+     * significant first.
+     */
+    private static void writeDigits(long n, char[] buffer, int offset, int width) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative value: " + n);
+        }
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = DIGITS[(int) (n & DIGIT_MASK)];
+            n >>>= BITS_PER_DIGIT;
+        }
+    }
+
+    /**
+     * Decode some base-64 digits, without throwing.
+     *
+     * @return The long integer represented by the digits, or -1 if they are
+     * not a valid short URL.
+     */
+    private static long decodeOrNegative(CharSequence chars, int start, int end) {
+        int length = end - start;
+        if (length < 1 || length > MAX_LENGTH) {
+            return -1;
+        }
+        long n = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            int digit = c < DIGIT_VALUES.length ? DIGIT_VALUES[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            n = (n << BITS_PER_DIGIT) | digit;
+        }
+        if (length == MAX_LENGTH &&
+                DIGIT_VALUES[chars.charAt(start)] > MAX_LEADING_DIGIT_AT_MAX_LENGTH) {
+            return -1;
+        }
+        return n;
+    }
+}
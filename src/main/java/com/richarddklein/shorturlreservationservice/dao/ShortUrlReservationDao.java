@@ -5,10 +5,15 @@
 
 package com.richarddklein.shorturlreservationservice.dao;
 
+import java.util.List;
+
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -22,24 +27,52 @@ import reactor.core.publisher.Mono;
 public interface ShortUrlReservationDao {
     void initializeShortUrlReservationRepository();
 
+    void recreateShortUrlReservationTable();
+
+    Flux<BulkProgress>
+    populateShortUrlReservationTable(List<String> startPositions);
+
+    void migrateShortUrlReservationRepository();
+
+    Flux<BulkProgress>
+    extendShortUrlRange(long minShortUrlBase10, long maxShortUrlBase10, List<String> startPositions);
+
+    Mono<Long>
+    getMaxShortUrlBase10();
+
+    Mono<Long>
+    estimateNumFreeShortUrls(long upTo);
+
     Mono<ShortUrlReservation>
     getSpecificShortUrlReservation(String shortUrl);
 
-    Mono<StatusAndShortUrlReservationArray>
-    getAllShortUrlReservations();
+    Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available);
+
+    Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available);
 
     Mono<StatusAndShortUrlReservation>
     reserveAnyShortUrl();
 
+    Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count);
+
     Mono<ShortUrlStatus>
     reserveSpecificShortUrl(String shortUrl);
 
-    Mono<ShortUrlStatus>
-    reserveAllShortUrls();
+    Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls);
+
+    Flux<BulkProgress>
+    reserveAllShortUrls(List<String> startPositions);
 
     Mono<ShortUrlStatus>
     cancelSpecificShortUrlReservation(String shortUrl);
 
-    Mono<ShortUrlStatus>
-    cancelAllShortUrlReservations();
+    Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls);
+
+    Flux<BulkProgress>
+    cancelAllShortUrlReservations(List<String> startPositions);
 }
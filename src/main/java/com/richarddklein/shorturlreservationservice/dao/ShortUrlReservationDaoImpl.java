@@ -7,6 +7,8 @@ package com.richarddklein.shorturlreservationservice.dao;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
@@ -14,20 +16,23 @@ import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservic
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
 import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.ShortUrlAndStatus;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
 import com.richarddklein.shorturlreservationservice.exception.InconsistentDataException;
 import com.richarddklein.shorturlreservationservice.exception.NoSuchShortUrlException;
+import com.richarddklein.shorturlreservationservice.jfr.ReservationAttemptEvent;
 import org.springframework.stereotype.Repository;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Signal;
-import reactor.util.retry.Retry;
+import reactor.core.scheduler.Schedulers;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
 import software.amazon.awssdk.enhanced.dynamodb.Expression;
-import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
-import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbAsyncWaiter;
 
 import com.richarddklein.shorturlreservationservice.exception.NoShortUrlsAvailableException;
 
@@ -131,23 +136,60 @@ import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlSta
  * database. If so, DynamoDB lets the `write` proceed, and updates the `version` attribute
  * in the database. If not, DynamoDB announces that the `write` has failed.</p>
  *
+ * <p>Having a distinct `isAvailable` value per item solves the partitioning problem, but
+ * not the contention problem: A scan of the `isAvailable` GSI always returns its items in
+ * the same order, so every concurrent client that wants any available short URL is
+ * offered the very same one, and all but one of them lose the race to reserve it.
+ * Therefore, reserving any short URL actually uses the `availableBucket` GSI, whose
+ * Partition Key is a small bucket number derived from the short URL, and whose Sort Key
+ * is `isAvailable`. Concurrent clients query random buckets, starting at random points,
+ * and so tend to find different short URLs. (See `AvailabilityIndex` for the details.)
+ * A table that was created before the `availableBucket` GSI existed can be upgraded in
+ * place via `migrateShortUrlReservationRepository()`; the `isAvailable` GSI of such a
+ * table is no longer used, and may be deleted once the migration has completed.</p>
+ *
+ * <p>Operations on a single short URL do not need a read-update-write transaction at all.
+ * Reserving a specific short URL, for example, is a single `UpdateItem` call that removes
+ * the `isAvailable` attribute on condition that it exists, and that increments `version`
+ * so that any concurrent optimistic-locking writer will notice the change. If the condition
+ * fails, DynamoDB returns the item as it was (if there is one), which tells us why.</p>
+ *
  * <p>The Short URL Reservation table is fully populated with short URLs, and each short URL
  * is initialized as being available, before the service goes into production.</p>
  */
 @Repository
 public class ShortUrlReservationDaoImpl implements ShortUrlReservationDao {
-    private static final String DIGITS =
-            "0123456789" +
-            "abcdefghijklmnopqrstuvwxyz" +
-            "ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
-            "_-";
-    private static final int BASE = DIGITS.length();
 
-    private static final int MAX_BATCH_SIZE = 25;
+    // Batch reservations start at a randomly chosen bucket of the index, so
+    // that concurrent batches tend to claim disjoint short URLs.
+    private static final int MAX_INDEX_SCAN_ROUNDS = 64;
+    private static final int RESERVATION_CONCURRENCY = 16;
+    private static final int BULK_CONCURRENCY = 100;
+
+    // Reserving any short URL picks one of this many candidates at random.
+    private static final int CANDIDATE_WINDOW_SIZE = 10;
+
+    // Migration of an existing table.
+    private static final int MIGRATION_CONCURRENCY = 50;
+    private static final Duration INDEX_POLL_INTERVAL = Duration.ofSeconds(10);
+
+    // The metadata counter that records how far the range of short URLs has
+    // been extended beyond the one in the Parameter Store.
+    private static final String EXTENDED_MAX_COUNTER = "extendedMaxShortUrlBase10";
 
     private final ParameterStoreAccessor parameterStoreAccessor;
-    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
     private final DynamoDbAsyncTable<ShortUrlReservation> shortUrlReservationTable;
+    private final ShortUrlAllocator shortUrlAllocator;
+    private final AvailabilityIndex availabilityIndex;
+    private final RetryStrategy retryStrategy;
+    private final StaleKeyCache staleKeyCache;
+    private final int bulkScanSegments;
+    private final int bulkConcurrencyPerSegment;
+    private final BatchWriter batchWriter;
+    private final int populationWorkers;
+    private final int populationBatchesPerWorker;
+    private final MetadataTable metadataTable;
 
     // ------------------------------------------------------------------------
     // PUBLIC METHODS
@@ -160,20 +202,66 @@ public class ShortUrlReservationDaoImpl implements ShortUrlReservationDao {
      *                               is to play the role of accessing parameters
      *                               in the Parameter Store component of the AWS
      *                               Simple System Manager (SSM).
-     * @param dynamoDbClient Dependency injection of a class instance that is
-     *                       to play the role of a DynamoDB Client.
+     * @param dynamoDbAsyncClient Dependency injection of a class instance that
+     *                            is to play the role of an asynchronous DynamoDB
+     *                            Client.
      * @param shortUrlReservationTable Dependency injection of a class instance
      *                                 that is to model the Short URL Reservation
      *                                 table in DynamoDB.
+     * @param shortUrlAllocator Dependency injection of a class instance that
+     *                          is to play the role of the allocation engine
+     *                          consulted first when reserving any short URL.
+     * @param availabilityIndex Dependency injection of a class instance that
+     *                          is to play the role of the bucketed index of
+     *                          available short URLs.
+     * @param retryStrategy Dependency injection of a class instance that
+     *                      is to play the role of the policy for retrying
+     *                      after a conflict.
+     * @param staleKeyCache Dependency injection of a class instance that
+     *                      is to remember the short URLs that the index
+     *                      recently offered, but that were already taken.
+     * @param bulkScanSegments The number of segments in which a table-wide
+     *                         operation scans the table in parallel.
+     * @param bulkConcurrencyPerSegment The largest number of updates that a
+     *                                  table-wide operation has in flight per
+     *                                  scan segment.
+     * @param batchWriter Dependency injection of a class instance that is to
+     *                    play the role of the writer of batches of items.
+     * @param populationWorkers The number of segments of the range of short
+     *                          URLs that are populated in parallel.
+     * @param populationBatchesPerWorker The largest number of batches that
+     *                                   each population worker has in flight.
+     * @param metadataTable Dependency injection of a class instance that is
+     *                      to play the role of the metadata table.
      */
     public ShortUrlReservationDaoImpl(
             ParameterStoreAccessor parameterStoreAccessor,
-            DynamoDbClient dynamoDbClient,
-            DynamoDbAsyncTable<ShortUrlReservation> shortUrlReservationTable) {
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            DynamoDbAsyncTable<ShortUrlReservation> shortUrlReservationTable,
+            ShortUrlAllocator shortUrlAllocator,
+            AvailabilityIndex availabilityIndex,
+            RetryStrategy retryStrategy,
+            StaleKeyCache staleKeyCache,
+            int bulkScanSegments,
+            int bulkConcurrencyPerSegment,
+            BatchWriter batchWriter,
+            int populationWorkers,
+            int populationBatchesPerWorker,
+            MetadataTable metadataTable) {
 
         this.parameterStoreAccessor = parameterStoreAccessor;
-        this.dynamoDbClient = dynamoDbClient;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
         this.shortUrlReservationTable = shortUrlReservationTable;
+        this.shortUrlAllocator = shortUrlAllocator;
+        this.availabilityIndex = availabilityIndex;
+        this.retryStrategy = retryStrategy;
+        this.staleKeyCache = staleKeyCache;
+        this.bulkScanSegments = bulkScanSegments;
+        this.bulkConcurrencyPerSegment = bulkConcurrencyPerSegment;
+        this.batchWriter = batchWriter;
+        this.populationWorkers = populationWorkers;
+        this.populationBatchesPerWorker = populationBatchesPerWorker;
+        this.metadataTable = metadataTable;
     }
 
     // Initialization of the Short URL Reservation repository is performed
@@ -182,55 +270,186 @@ public class ShortUrlReservationDaoImpl implements ShortUrlReservationDao {
     // here. Simple synchronous logic will work just fine.
     @Override
     public void initializeShortUrlReservationRepository() {
+        recreateShortUrlReservationTable();
+
+        System.out.print("====> Populating the Short URL Reservation table ...");
+        populateShortUrlReservationTable(List.of()).blockLast();
+        System.out.println(" done!");
+    }
+
+    @Override
+    public void recreateShortUrlReservationTable() {
         if (doesTableExist()) {
             deleteShortUrlReservationTable();
         }
         createShortUrlReservationTable();
-        populateShortUrlReservationTable();
+
+        // The new table holds only the range in the Parameter Store, so any
+        // earlier extension of the range no longer applies.
+        metadataTable.createIfNotExists();
+        metadataTable.setCounter(EXTENDED_MAX_COUNTER, 0).block();
+    }
+
+    // The range of short URLs is split into one equal segment per worker,
+    // and the position of a segment is the base-10 value of the next short
+    // URL to be written. Items are generated a batch at a time, just before
+    // they are written, so memory use does not depend on the size of the
+    // range. When a slice of an admin job ends, the batches that were still
+    // in flight may or may not have been written, and some of their short
+    // URLs may have been reserved since. So on resumption, the batches that
+    // could have been in flight (up to `populationBatchesPerWorker` past
+    // each position) are written on condition that their items do not exist
+    // yet, and only the rest are overwritten blindly.
+    @Override
+    public Flux<BulkProgress>
+    populateShortUrlReservationTable(List<String> startPositions) {
+        int numSegments = startPositions.isEmpty() ? populationWorkers : startPositions.size();
+
+        return Mono.zip(
+                parameterStoreAccessor.getMinShortUrlBase10().defaultIfEmpty(0L),
+                parameterStoreAccessor.getMaxShortUrlBase10().defaultIfEmpty(0L))
+            .flatMapMany(range -> Flux.range(0, numSegments)
+                .flatMap(segment -> {
+                    String startPosition = startPositions.isEmpty() ?
+                            BulkProgress.START : startPositions.get(segment);
+                    return writeSegment(
+                            range.getT1(),
+                            range.getT2(),
+                            segment,
+                            numSegments,
+                            startPosition,
+                            resumingBatchWriter(startPosition));
+                }, numSegments))
+            .concatWith(Mono.<BulkProgress>fromRunnable(shortUrlAllocator::onRepositoryInitialized)
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    // Extension writes only the items of the new interval, with the same
+    // segments and positions as population. Each item is written on
+    // condition that it does not exist yet, so that the extension can be
+    // rerun or resumed without clobbering short URLs that were reserved
+    // in the meantime. Live traffic carries on throughout: each new short
+    // URL becomes available to the availability index as soon as it has
+    // been written.
+    @Override
+    public Flux<BulkProgress>
+    extendShortUrlRange(
+            long minShortUrlBase10,
+            long maxShortUrlBase10,
+            List<String> startPositions) {
+
+        int numSegments = startPositions.isEmpty() ? populationWorkers : startPositions.size();
+
+        return Flux.range(0, numSegments)
+            .flatMap(segment -> writeSegment(
+                    minShortUrlBase10,
+                    maxShortUrlBase10,
+                    segment,
+                    numSegments,
+                    startPositions.isEmpty() ?
+                            BulkProgress.START : startPositions.get(segment),
+                    this::insertNewShortUrlReservations),
+                numSegments)
+            .concatWith(metadataTable.raiseCounter(EXTENDED_MAX_COUNTER, maxShortUrlBase10)
+                .then(Mono.empty()));
+    }
+
+    @Override
+    public Mono<Long>
+    getMaxShortUrlBase10() {
+        return Mono.zip(
+                parameterStoreAccessor.getMaxShortUrlBase10().defaultIfEmpty(0L),
+                metadataTable.getCounter(EXTENDED_MAX_COUNTER).defaultIfEmpty(0L))
+            .map(maxes -> Math.max(maxes.getT1(), maxes.getT2()));
+    }
+
+    @Override
+    public Mono<Long>
+    estimateNumFreeShortUrls(long upTo) {
+        return availabilityIndex.estimateNumAvailable(upTo);
+    }
+
+    // Like initialization, migration is performed rarely, and then only by
+    // the Admin from a local machine, so it too is synchronous.
+    @Override
+    public void migrateShortUrlReservationRepository() {
+        backfillAvailableBuckets();
+        createAvailabilityIndexIfNotExists();
     }
 
     @Override
     public Mono<ShortUrlReservation>
     getSpecificShortUrlReservation(String shortUrl) {
+        if (!ShortUrlCodec.isValid(shortUrl)) {
+            return Mono.error(new NoSuchShortUrlException());
+        }
         ShortUrlReservation key = new ShortUrlReservation();
         key.setShortUrl(shortUrl);
         return Mono.fromFuture(shortUrlReservationTable.getItem(key))
             .switchIfEmpty(Mono.error(new NoSuchShortUrlException()));
     }
 
+    // Each call reads a single page of the table, so that the memory used
+    // per call is bounded by `limit`, however large the table is. The
+    // cursor encodes the last short URL read (the `lastEvaluatedKey`).
     @Override
-    public Mono<StatusAndShortUrlReservationArray> getAllShortUrlReservations() {
-        return Flux.from(shortUrlReservationTable.scan().items())
-            .collectList()
-            .map(shortUrlReservations -> {
-                return new StatusAndShortUrlReservationArray(
-                        new Status(SUCCESS),
-                        shortUrlReservations);
-            })
-            .onErrorResume(e -> {
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return Mono.defer(() -> {
+            ScanEnhancedRequest.Builder scanRequest = ScanEnhancedRequest.builder()
+                .limit(limit);
+            if (cursor != null) {
+                scanRequest.exclusiveStartKey(Map.of("shortUrl",
+                        AttributeValue.fromS(PageCursor.decode(cursor))));
+            }
+            if (available != null) {
+                scanRequest.filterExpression(Expression.builder()
+                    .expression(available ?
+                            "attribute_exists(isAvailable)" :
+                            "attribute_not_exists(isAvailable)")
+                    .build());
+            }
+            return Mono.from(shortUrlReservationTable.scan(scanRequest.build()));
+        })
+            .map(page -> new StatusAndShortUrlReservationPage(
+                    new Status(SUCCESS),
+                    page.items(),
+                    (page.lastEvaluatedKey() == null || page.lastEvaluatedKey().isEmpty()) ?
+                            null :
+                            PageCursor.encode(page.lastEvaluatedKey().get("shortUrl").s())))
+            // An invalid cursor is the client's fault, so let the caller see it.
+            .onErrorResume(e -> !(e instanceof IllegalArgumentException), e -> {
                 System.out.println("====> " + e.getMessage());
-                return Mono.just(new StatusAndShortUrlReservationArray(
+                return Mono.just(new StatusAndShortUrlReservationPage(
                         new Status(UNKNOWN_ERROR),
-                        Collections.emptyList()));
+                        Collections.emptyList(),
+                        null));
             });
     }
 
+    // The scan fetches its next page only when the subscriber asks for
+    // more items, so at most a page or so is held in memory at any time.
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        ScanEnhancedRequest.Builder scanRequest = ScanEnhancedRequest.builder();
+        if (available != null) {
+            scanRequest.filterExpression(Expression.builder()
+                .expression(available ?
+                        "attribute_exists(isAvailable)" :
+                        "attribute_not_exists(isAvailable)")
+                .build());
+        }
+        return Flux.from(shortUrlReservationTable.scan(scanRequest.build()).items());
+    }
+
     @Override
     public Mono<StatusAndShortUrlReservation> reserveAnyShortUrl() {
-        return findAvailableShortUrlReservation()
-            .flatMap(shortUrlReservation -> {
-                shortUrlReservation.setIsAvailable(null);
-                return updateShortUrlReservation(shortUrlReservation)
-                    .map(updatedShortUrlReservation -> new StatusAndShortUrlReservation(
-                            new Status(SUCCESS),
-                            updatedShortUrlReservation));
-            })
-            .retryWhen(Retry.backoff(5, Duration.ofSeconds(1))
-                .filter(e -> e instanceof InconsistentDataException ||
-                        e instanceof ConditionalCheckFailedException)
-                .doAfterRetry(retrySignal -> System.out.println(
-                        "====> Retrying after error: " + retrySignal.failure().getMessage()))
-            )
+        return shortUrlAllocator.allocateShortUrlReservation()
+            .switchIfEmpty(Mono.defer(this::reserveAnyShortUrlViaIndex))
+            .map(reservedShortUrlReservation -> new StatusAndShortUrlReservation(
+                    new Status(SUCCESS),
+                    reservedShortUrlReservation))
             .onErrorResume(e -> {
                 System.out.println("====> reserveAnyShortUrl() failed: " + e.getMessage());
                 if (e instanceof NoShortUrlsAvailableException) {
@@ -245,116 +464,73 @@ public class ShortUrlReservationDaoImpl implements ShortUrlReservationDao {
             });
     }
 
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        int firstBucket = InstanceRandom.current().nextInt(AvailabilityIndex.NUM_BUCKETS);
+        return reserveShortUrlsViaIndex(
+                count, firstBucket, 0, null, new ArrayList<>(), 0)
+            .map(reservedShortUrlReservations -> new StatusAndShortUrlReservationArray(
+                    new Status(reservedShortUrlReservations.isEmpty() ?
+                            NO_SHORT_URLS_ARE_AVAILABLE : SUCCESS),
+                    reservedShortUrlReservations))
+            .onErrorResume(e -> {
+                System.out.println("====> reserveAnyShortUrls() failed: " + e.getMessage());
+                return Mono.just(new StatusAndShortUrlReservationArray(
+                        new Status(UNKNOWN_ERROR),
+                        Collections.emptyList()));
+            });
+    }
+
     @Override
     public Mono<ShortUrlStatus>
     reserveSpecificShortUrl(String shortUrl) {
-        return getSpecificShortUrlReservation(shortUrl)
-            .flatMap(shortUrlReservation -> {
-                if (!shortUrlReservation.isReallyAvailable()) {
-                    return Mono.just(SHORT_URL_ALREADY_TAKEN);
-                }
-                shortUrlReservation.setIsAvailable(null);
-                return updateShortUrlReservation(shortUrlReservation)
-                    .map(updatedShortUrlReservation -> SUCCESS);
-            })
-            .retryWhen(Retry.backoff(5, Duration.ofSeconds(1))
-                .filter(e -> e instanceof InconsistentDataException ||
-                        e instanceof ConditionalCheckFailedException)
-                .doAfterRetry(retrySignal -> System.out.println(
-                        "====> Retrying after error: " + retrySignal.failure().getMessage()))
-            )
+        return reserveShortUrlConditionally(shortUrl)
             .onErrorResume(e -> {
                 System.out.println("====> reserveSpecificShortUrl() failed: " + e.getMessage());
-                if (e instanceof NoSuchShortUrlException) {
-                    return Mono.just(NO_SUCH_SHORT_URL);
-                } else {
-                    return Mono.just(UNKNOWN_ERROR);
-                }
+                return Mono.just(UNKNOWN_ERROR);
             });
     }
 
     @Override
-    public Mono<ShortUrlStatus> reserveAllShortUrls() {
-        return Flux.from(shortUrlReservationTable.scan(req -> req
-            .filterExpression(Expression.builder()
-                .expression("attribute_exists(isAvailable)")
-                .build()))
-            .items())
-            .flatMap(shortUrlReservation -> {
-                shortUrlReservation.setIsAvailable(null);
-                return updateShortUrlReservation(shortUrlReservation)
-                    .retryWhen(Retry.backoff(5, Duration.ofSeconds(1))
-                        .filter(e -> e instanceof InconsistentDataException ||
-                                e instanceof ConditionalCheckFailedException)
-                        .doAfterRetry(retrySignal -> System.out.println(
-                                "====> Retrying after error: " + retrySignal.failure().getMessage()))
-                    )
-                    .materialize();  // Capture the signal (onNext, onError, etc.)
-            })
-            .collectList()  // Collect all signals (which may include errors)
-            .flatMap(signals -> {
-                boolean hasError = signals.stream().anyMatch(Signal::isOnError);
-                return hasError ?
-                        Mono.just(UNKNOWN_ERROR) :
-                        Mono.just(SUCCESS);
-            });
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return updateSpecificShortUrls(shortUrls, this::reserveShortUrlConditionally);
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    reserveAllShortUrls(List<String> startPositions) {
+        return updateAllShortUrls(
+                "attribute_exists(isAvailable)",
+                this::reserveShortUrlConditionally,
+                startPositions);
     }
 
     @Override
     public Mono<ShortUrlStatus>
     cancelSpecificShortUrlReservation(String shortUrl) {
-        return getSpecificShortUrlReservation(shortUrl)
-            .flatMap(shortUrlReservation -> {
-                if (shortUrlReservation.isReallyAvailable()) {
-                    return Mono.just(SHORT_URL_NOT_RESERVED);
-                }
-                shortUrlReservation.setIsAvailable(shortUrl);
-                return updateShortUrlReservation(shortUrlReservation)
-                    .map(updatedShortUrlReservation -> SUCCESS);
-            })
-            .retryWhen(Retry.backoff(5, Duration.ofSeconds(1))
-                .filter(e -> e instanceof InconsistentDataException ||
-                        e instanceof ConditionalCheckFailedException)
-                .doAfterRetry(retrySignal -> System.out.println(
-                        "====> Retrying after error: " + retrySignal.failure().getMessage()))
-            )
+        return cancelShortUrlReservationConditionally(shortUrl)
             .onErrorResume(e -> {
                 System.out.println("====> cancelSpecificShortUrl() failed: " + e.getMessage());
-                if (e instanceof NoSuchShortUrlException) {
-                    return Mono.just(NO_SUCH_SHORT_URL);
-                } else {
-                    return Mono.just(UNKNOWN_ERROR);
-                }
+                return Mono.just(UNKNOWN_ERROR);
             });
     }
 
     @Override
-    public Mono<ShortUrlStatus>
-    cancelAllShortUrlReservations() {
-        return Flux.from(shortUrlReservationTable.scan(req -> req
-            .filterExpression(Expression.builder()
-                    .expression("attribute_not_exists(isAvailable)")
-                    .build()))
-            .items())
-            .flatMap(shortUrlReservation -> {
-                shortUrlReservation.setIsAvailable(shortUrlReservation.getShortUrl());
-                return updateShortUrlReservation(shortUrlReservation)
-                    .retryWhen(Retry.backoff(5, Duration.ofSeconds(1))
-                        .filter(e -> e instanceof InconsistentDataException ||
-                                e instanceof ConditionalCheckFailedException)
-                        .doAfterRetry(retrySignal -> System.out.println(
-                                "====> Retrying after error: " + retrySignal.failure().getMessage()))
-                    )
-                    .materialize();  // Capture the signal (onNext, onError, etc.)
-            })
-            .collectList()  // Collect all signals (which may include errors)
-            .flatMap(signals -> {
-                boolean hasError = signals.stream().anyMatch(Signal::isOnError);
-                return hasError ?
-                        Mono.just(UNKNOWN_ERROR) :
-                        Mono.just(SUCCESS);
-            });
-        }
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return updateSpecificShortUrls(shortUrls, this::cancelShortUrlReservationConditionally);
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    cancelAllShortUrlReservations(List<String> startPositions) {
+        return updateAllShortUrls(
+                "attribute_not_exists(isAvailable)",
+                this::cancelShortUrlReservationConditionally,
+                startPositions);
+    }
 
     // ------------------------------------------------------------------------
     // PRIVATE METHODS
@@ -384,10 +560,10 @@ public class ShortUrlReservationDaoImpl implements ShortUrlReservationDao {
 
         shortUrlReservationTable.deleteTable();
 
-        DynamoDbWaiter waiter = DynamoDbWaiter.builder().client(dynamoDbClient).build();
-        waiter.waitUntilTableNotExists(builder -> builder
+        DynamoDbAsyncWaiter waiter = DynamoDbAsyncWaiter.builder().client(dynamoDbAsyncClient).build();
+        Mono.fromFuture(() -> waiter.waitUntilTableNotExists(builder -> builder
             .tableName(parameterStoreAccessor.getShortUrlReservationTableName().block())
-            .build());
+            .build())).block();
         waiter.close();
 
         System.out.println(" done!");
@@ -399,159 +575,655 @@ public class ShortUrlReservationDaoImpl implements ShortUrlReservationDao {
     private void createShortUrlReservationTable() {
         System.out.print("====> Creating the Short URL Reservation table ...");
 
-        CreateTableEnhancedRequest createTableRequest =
-            CreateTableEnhancedRequest.builder()
-                .globalSecondaryIndices(gsiBuilder -> gsiBuilder
-                    .indexName("isAvailable-index")
-                    .projection(projectionBuilder -> projectionBuilder
-                            .projectionType(ProjectionType.KEYS_ONLY))
-                )
-                .build();
-        shortUrlReservationTable.createTable(createTableRequest);
-
-        DynamoDbWaiter waiter = DynamoDbWaiter.builder()
-            .client(dynamoDbClient)
+        // The `availableBucket` attribute is not part of the Short URL
+        // Reservation entity, so the enhanced client cannot create its
+        // index for us.
+        Mono.fromFuture(() -> dynamoDbAsyncClient.createTable(CreateTableRequest.builder()
+            .tableName(shortUrlReservationTable.tableName())
+            .attributeDefinitions(
+                AttributeDefinition.builder()
+                    .attributeName("shortUrl")
+                    .attributeType(ScalarAttributeType.S)
+                    .build(),
+                AttributeDefinition.builder()
+                    .attributeName(AvailabilityIndex.AVAILABLE_BUCKET)
+                    .attributeType(ScalarAttributeType.N)
+                    .build(),
+                AttributeDefinition.builder()
+                    .attributeName("isAvailable")
+                    .attributeType(ScalarAttributeType.S)
+                    .build())
+            .keySchema(KeySchemaElement.builder()
+                .attributeName("shortUrl")
+                .keyType(KeyType.HASH)
+                .build())
+            .globalSecondaryIndexes(availabilityIndexDefinition())
+            .billingMode(BillingMode.PAY_PER_REQUEST)
+            .build())).block();
+
+        DynamoDbAsyncWaiter waiter = DynamoDbAsyncWaiter.builder()
+            .client(dynamoDbAsyncClient)
             .build();
-        waiter.waitUntilTableExists(builder -> builder
+        Mono.fromFuture(() -> waiter.waitUntilTableExists(builder -> builder
             .tableName(parameterStoreAccessor.getShortUrlReservationTableName().block())
-            .build());
+            .build())).block();
         waiter.close();
 
         System.out.println(" done!");
     }
 
     /**
-     * Populate the Short URL Reservation table in DynamoDB.
+     * Write one segment of a range of short URLs to the Short URL
+     * Reservation table.
      *
-     * <p>Create a Short URL Reservation item for each short URL in the range
-     * specified in the Parameter Store, and mark all the items as being
-     * available.</p>
+     * <p>Create a Short URL Reservation item for each short URL in the
+     * segment, and mark all the items as being available.</p>
+     *
+     * @param minShortUrlBase10 The first short URL of the whole range.
+     * @param maxShortUrlBase10 The last short URL of the whole range.
+     * @param segment The zero-based number of the segment.
+     * @param numSegments The total number of segments.
+     * @param startPosition The position from which to pick up the segment.
+     * @param writeBatch Writes the items for a run of consecutive short URLs,
+     *                   and reports how many of them it actually wrote.
+     * @return The progress of the segment, batch by batch.
      */
-    private void populateShortUrlReservationTable() {
-        System.out.print("====> Populating the Short URL Reservation table ...");
-
-        List<ShortUrlReservation> shortUrlReservations = new ArrayList<>();
+    private Flux<BulkProgress> writeSegment(
+            long minShortUrlBase10,
+            long maxShortUrlBase10,
+            int segment,
+            int numSegments,
+            String startPosition,
+            BiFunction<Long, Long, Mono<Long>> writeBatch) {
 
-        Long minShortUrlBase10PossiblyNull = parameterStoreAccessor.getMinShortUrlBase10().block();
-        long minShortUrlBase10 = (minShortUrlBase10PossiblyNull == null) ? 0 : minShortUrlBase10PossiblyNull;
-        Long maxShortUrlBase10PossiblyNull = parameterStoreAccessor.getMaxShortUrlBase10().block();
-        long maxShortUrlBase10 = (maxShortUrlBase10PossiblyNull == null) ? 0 : maxShortUrlBase10PossiblyNull;
-
-        for (long i = minShortUrlBase10; i <= maxShortUrlBase10; i++) {
-            String shortUrl = longToShortUrl(i);
-            ShortUrlReservation shortUrlReservation =
-                    new ShortUrlReservation(shortUrl, shortUrl);
-            shortUrlReservation.setVersion(1L);
-            shortUrlReservations.add(shortUrlReservation);
+        if (startPosition.equals(BulkProgress.DONE)) {
+            return Flux.empty();
         }
+        long numShortUrls = maxShortUrlBase10 - minShortUrlBase10 + 1;
+        long segmentStart = minShortUrlBase10 + numShortUrls * segment / numSegments;
+        long segmentEnd = minShortUrlBase10 + numShortUrls * (segment + 1) / numSegments - 1;
+        long first = startPosition.equals(BulkProgress.START) ?
+                segmentStart : Long.parseLong(startPosition);
 
-        batchInsertShortUrlReservations(shortUrlReservations);
-
-        System.out.println(" done!");
+        return Flux.<Long, Long>generate(() -> first, (batchStart, sink) -> {
+                if (batchStart > segmentEnd) {
+                    sink.complete();
+                } else {
+                    sink.next(batchStart);
+                }
+                return batchStart + BatchWriter.MAX_BATCH_SIZE;
+            })
+            // Batches are written concurrently, but their progress is
+            // reported in order, so that each position reported is one up
+            // to which every short URL has been written.
+            .flatMapSequential(batchStart -> {
+                long batchEnd = Math.min(batchStart + BatchWriter.MAX_BATCH_SIZE - 1, segmentEnd);
+                long numItems = batchEnd - batchStart + 1;
+                return writeBatch.apply(batchStart, batchEnd)
+                    .map(numWritten -> new BulkProgress(
+                            segment,
+                            numSegments,
+                            batchEnd == segmentEnd ?
+                                    BulkProgress.DONE : Long.toString(batchEnd + 1),
+                            numItems,
+                            numWritten,
+                            numItems - numWritten,
+                            0));
+            }, populationBatchesPerWorker);
     }
 
     /**
-     * Convert a long integer to its base-64 representation.
+     * Choose how to write the batches of a segment that is being populated.
      *
-     * @param n The long integer of interest.
-     * @return A string that is the base-64 representation of `n`.
+     * @param startPosition The position from which the segment is picked up.
+     * @return A writer that inserts the batches that an earlier slice may
+     * already have written only where their items do not exist yet, and
+     * that batch inserts all the others.
      */
-    private String longToShortUrl(long n) {
-        StringBuilder sb = new StringBuilder();
-        do {
-            sb.append(DIGITS.charAt((int) (n % BASE)));
-            n /= BASE;
-        } while (n > 0);
-        return sb.reverse().toString();
+    private BiFunction<Long, Long, Mono<Long>> resumingBatchWriter(String startPosition) {
+        if (startPosition.equals(BulkProgress.START) || startPosition.equals(BulkProgress.DONE)) {
+            return this::batchInsertShortUrlReservations;
+        }
+        long endOfOverlap = Long.parseLong(startPosition) +
+                (long) populationBatchesPerWorker * BatchWriter.MAX_BATCH_SIZE;
+
+        return (firstShortUrlBase10, lastShortUrlBase10) -> firstShortUrlBase10 < endOfOverlap ?
+                insertNewShortUrlReservations(firstShortUrlBase10, lastShortUrlBase10) :
+                batchInsertShortUrlReservations(firstShortUrlBase10, lastShortUrlBase10);
     }
 
     /**
      * Batch insert some Short URL Reservation items.
      *
      * <p>Into the Short URL Reservation table in DynamoDB, perform a
-     * batch insert of a list of Short URL Reservation items. Insert
+     * batch insert of the Short URL Reservation items for a run of
+     * consecutive short URLs, each marked as being available. Insert
      * the items in batches rather than one at a time in order to
      * improve efficiency.</p>
      *
-     * @param shortUrlReservations The list of Short URL Reservation
-     *                             items to be batch inserted.
+     * @param firstShortUrlBase10 The first short URL of the run.
+     * @param lastShortUrlBase10 The last short URL of the run. There must
+     *                           be no more than `BatchWriter.MAX_BATCH_SIZE`
+     *                           short URLs in the run.
+     * @return The number of items written (all of them).
      */
-    private void batchInsertShortUrlReservations(
-            List<ShortUrlReservation> shortUrlReservations) {
+    private Mono<Long> batchInsertShortUrlReservations(
+            long firstShortUrlBase10,
+            long lastShortUrlBase10) {
 
-        long numItems = shortUrlReservations.size();
+        List<Map<String, AttributeValue>> items =
+                newShortUrlReservationItems(firstShortUrlBase10, lastShortUrlBase10);
 
-        for (int i = 0; i < numItems; i += MAX_BATCH_SIZE) {
-            List<WriteRequest> writeRequests = new ArrayList<>();
+        return batchWriter.putItems(shortUrlReservationTable.tableName(), items)
+            .thenReturn((long) items.size());
+    }
 
-            for (int j = i; j < Math.min(i + MAX_BATCH_SIZE, numItems); j++) {
-                ShortUrlReservation shortUrlReservation =
-                        shortUrlReservations.get(j);
-                WriteRequest writeRequest = WriteRequest.builder()
-                    .putRequest(put -> put.item(
-                            shortUrlReservation.toAttributeValueMap()))
-                    .build();
-                writeRequests.add(writeRequest);
+    /**
+     * Insert the Short URL Reservation items for a run of consecutive
+     * short URLs, except for those that already exist.
+     *
+     * @param firstShortUrlBase10 The first short URL of the run.
+     * @param lastShortUrlBase10 The last short URL of the run. There must
+     *                           be no more than `BatchWriter.MAX_BATCH_SIZE`
+     *                           short URLs in the run.
+     * @return The number of items written.
+     */
+    private Mono<Long> insertNewShortUrlReservations(
+            long firstShortUrlBase10,
+            long lastShortUrlBase10) {
+
+        return batchWriter.putNewItems(
+                shortUrlReservationTable.tableName(),
+                "shortUrl",
+                newShortUrlReservationItems(firstShortUrlBase10, lastShortUrlBase10));
+    }
+
+    /**
+     * Build the Short URL Reservation items for a run of consecutive short
+     * URLs, each marked as being available.
+     *
+     * @param firstShortUrlBase10 The first short URL of the run.
+     * @param lastShortUrlBase10 The last short URL of the run.
+     * @return The items.
+     */
+    private static List<Map<String, AttributeValue>> newShortUrlReservationItems(
+            long firstShortUrlBase10,
+            long lastShortUrlBase10) {
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        char[] buffer = new char[ShortUrlCodec.MAX_LENGTH];
+
+        for (long i = firstShortUrlBase10; i <= lastShortUrlBase10; i++) {
+            String shortUrl = new String(buffer, 0, ShortUrlCodec.encode(i, buffer, 0));
+            ShortUrlReservation shortUrlReservation =
+                    new ShortUrlReservation(shortUrl, shortUrl);
+            shortUrlReservation.setVersion(1L);
+            items.add(AvailabilityIndex.withBucket(shortUrlReservation.toAttributeValueMap()));
+        }
+        return items;
+    }
+
+    /**
+     * Define the bucketed index of available short URLs.
+     *
+     * @return The definition of the `availableBucket` GSI.
+     */
+    private GlobalSecondaryIndex availabilityIndexDefinition() {
+        return GlobalSecondaryIndex.builder()
+            .indexName(AvailabilityIndex.INDEX_NAME)
+            .keySchema(
+                KeySchemaElement.builder()
+                    .attributeName(AvailabilityIndex.AVAILABLE_BUCKET)
+                    .keyType(KeyType.HASH)
+                    .build(),
+                KeySchemaElement.builder()
+                    .attributeName("isAvailable")
+                    .keyType(KeyType.RANGE)
+                    .build())
+            .projection(projection -> projection
+                    .projectionType(ProjectionType.KEYS_ONLY))
+            .build();
+    }
+
+    /**
+     * Add the `availableBucket` attribute to every Short URL Reservation
+     * item that does not have it yet.
+     *
+     * <p>The attribute never changes once it has been set, and is not part
+     * of the Short URL Reservation entity, so it is safe to add it while the
+     * service is live: It does not bump the `version`, and no other write
+     * ever touches it.</p>
+     */
+    private void backfillAvailableBuckets() {
+        System.out.print("====> Adding buckets to the Short URL Reservation table ...");
+
+        ScanRequest scanRequest = ScanRequest.builder()
+            .tableName(shortUrlReservationTable.tableName())
+            .filterExpression("attribute_not_exists(" + AvailabilityIndex.AVAILABLE_BUCKET + ")")
+            .projectionExpression("shortUrl")
+            .build();
+
+        Long numMigrated = Flux.from(dynamoDbAsyncClient.scanPaginator(scanRequest).items())
+            .map(item -> item.get("shortUrl").s())
+            .flatMap(shortUrl -> Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(
+                UpdateItemRequest.builder()
+                    .tableName(shortUrlReservationTable.tableName())
+                    .key(Map.of("shortUrl", AttributeValue.fromS(shortUrl)))
+                    .updateExpression("SET " + AvailabilityIndex.AVAILABLE_BUCKET + " = :bucket")
+                    .conditionExpression("attribute_exists(shortUrl)")
+                    .expressionAttributeValues(Map.of(":bucket", AttributeValue.fromN(
+                            Integer.toString(AvailabilityIndex.bucketOf(shortUrl)))))
+                    .build())),
+                MIGRATION_CONCURRENCY)
+            .count()
+            .block();
+
+        System.out.println(" done! (" + numMigrated + " items)");
+    }
+
+    /**
+     * Add the bucketed index of available short URLs to the Short URL
+     * Reservation table, unless it is already there, and wait for DynamoDB
+     * to finish building it.
+     */
+    private void createAvailabilityIndexIfNotExists() {
+        if (getAvailabilityIndexStatus() == null) {
+            System.out.println("====> Creating the " + AvailabilityIndex.INDEX_NAME + " ...");
+            Mono.fromFuture(() -> dynamoDbAsyncClient.updateTable(UpdateTableRequest.builder()
+                .tableName(shortUrlReservationTable.tableName())
+                .attributeDefinitions(
+                    AttributeDefinition.builder()
+                        .attributeName(AvailabilityIndex.AVAILABLE_BUCKET)
+                        .attributeType(ScalarAttributeType.N)
+                        .build(),
+                    AttributeDefinition.builder()
+                        .attributeName("isAvailable")
+                        .attributeType(ScalarAttributeType.S)
+                        .build())
+                .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder()
+                    .create(CreateGlobalSecondaryIndexAction.builder()
+                        .indexName(AvailabilityIndex.INDEX_NAME)
+                        .keySchema(availabilityIndexDefinition().keySchema())
+                        .projection(availabilityIndexDefinition().projection())
+                        .build())
+                    .build())
+                .build())).block();
+        }
+
+        // There is no waiter for indexes, so poll until the index is active.
+        IndexStatus indexStatus;
+        while ((indexStatus = getAvailabilityIndexStatus()) != IndexStatus.ACTIVE) {
+            System.out.println("====> Waiting for the " + AvailabilityIndex.INDEX_NAME
+                    + " (" + indexStatus + ") ...");
+            try {
+                Thread.sleep(INDEX_POLL_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for index", e);
             }
+        }
 
-            dynamoDbClient.batchWriteItem(req -> req.requestItems(
-                    Collections.singletonMap(parameterStoreAccessor
-                        .getShortUrlReservationTableName().block(),
-                            writeRequests)));
+        System.out.println("====> The " + AvailabilityIndex.INDEX_NAME + " is active");
+    }
+
+    /**
+     * Get the status of the bucketed index of available short URLs.
+     *
+     * @return The status of the index, or `null` if the index does not
+     * exist.
+     */
+    private IndexStatus getAvailabilityIndexStatus() {
+        TableDescription table = Mono.fromFuture(() -> dynamoDbAsyncClient.describeTable(req -> req
+            .tableName(shortUrlReservationTable.tableName()))).block().table();
+        if (!table.hasGlobalSecondaryIndexes()) {
+            return null;
         }
+        return table.globalSecondaryIndexes().stream()
+            .filter(index -> index.indexName().equals(AvailabilityIndex.INDEX_NAME))
+            .map(GlobalSecondaryIndexDescription::indexStatus)
+            .findFirst()
+            .orElse(null);
     }
 
     /**
-     * Find an available Short URL Reservation item.
+     * Reserve any available Short URL Reservation item, using the
+     * bucketed index to find it.
      *
-     * <p>In the Short URL Reservation table in DynamoDB, find an available
-     * Short URL Reservation item. Use the General Secondary Index (GSI)
-     * on the `isAvailable` attribute to avoid a time-consuming scan
-     * operation.</p>
+     * <p>Reads a small window of candidates from the index, and tries them
+     * in random order, skipping any that recently proved stale. Losing the
+     * race for one candidate moves straight on to the next one, without
+     * any delay. Only when the whole window is used up do we back off and
+     * read the index again.</p>
      *
-     * @return An available Short URl Reservation item.
+     * @return The Short URL Reservation item that has just been reserved.
      */
     private Mono<ShortUrlReservation>
-    findAvailableShortUrlReservation() {
-        return Mono.from(
-            shortUrlReservationTable.index("isAvailable-index")
-                .scan(req -> req.limit(1)))
-            .flatMap(page -> {
-                if (page.items().isEmpty()) {
+    reserveAnyShortUrlViaIndex() {
+        return Mono.defer(() -> availabilityIndex.findCandidates(CANDIDATE_WINDOW_SIZE))
+            .flatMap(candidates -> {
+                if (candidates.isEmpty()) {
                     return Mono.error(new NoShortUrlsAvailableException());
-                } else {
-                    ShortUrlReservation gsiItem = page.items().getFirst();
-                    return getSpecificShortUrlReservation(gsiItem.getShortUrl())
-                        .flatMap(firstAvailableShortUrlReservation -> {
-                            // In DynamoDB, GSIs are only eventually consistent. When the
-                            // underlying data is updated, there might be a slight delay
-                            // before the GSI is updated. Therefore, we must verify that
-                            // the item we just found using the GSI is really available.
-                            if (firstAvailableShortUrlReservation.isReallyAvailable()) {
-                                return Mono.just(firstAvailableShortUrlReservation);
-                            } else {
-                                return Mono.error(new InconsistentDataException());
-                            }
-                        })
-                        .onErrorResume(Mono::error);
                 }
-            });
+                List<String> freshCandidates = new ArrayList<>(candidates.stream()
+                    .filter(candidate -> !staleKeyCache.isStale(candidate))
+                    .toList());
+                Collections.shuffle(freshCandidates, InstanceRandom.current());
+                return reserveFirstAvailableCandidate(freshCandidates, 0);
+            })
+            .retryWhen(retryStrategy.retryOnConflict());
     }
 
+    /**
+     * Reserve the first candidate, from a given position onwards, that is
+     * really available.
+     *
+     * @param candidates The candidate short URLs, in the order to try them.
+     * @param i The position of the next candidate to try.
+     * @return The Short URL Reservation item that has just been reserved.
+     */
     private Mono<ShortUrlReservation>
-    updateShortUrlReservation(ShortUrlReservation shortUrlReservation) {
-        return Mono.fromFuture(shortUrlReservationTable.updateItem(shortUrlReservation))
-            .onErrorResume(ConditionalCheckFailedException.class, e -> {
-                // Version check failed. Someone updated the ShortUrlReservation item
-                // in the database after we read the item, so the item we just tried
-                // to update contains stale data.
-                System.out.println("====> Version check failed: " + e.getMessage());
-                return Mono.error(e);
+    reserveFirstAvailableCandidate(List<String> candidates, int i) {
+        if (i == candidates.size()) {
+            return Mono.error(new InconsistentDataException());
+        }
+        return reserveShortUrlIfAvailable(candidates.get(i))
+            .switchIfEmpty(Mono.defer(() -> {
+                if (i + 1 < candidates.size() && retryStrategy.tryImmediateRetry()) {
+                    return reserveFirstAvailableCandidate(candidates, i + 1);
+                }
+                return Mono.error(new InconsistentDataException());
+            }));
+    }
+
+    /**
+     * Reserve several available Short URL Reservation items, using the
+     * bucketed index to find them.
+     *
+     * <p>Works in rounds. Each round reads one page of candidates from the
+     * index, no larger than the number of short URLs still needed, and tries
+     * to reserve all of them concurrently with conditional writes. Since the
+     * index is only eventually consistent, some of those writes may fail,
+     * in which case the next round reads the next page. The index is read
+     * bucket by bucket, starting with a random bucket.</p>
+     *
+     * <p>A round never tries to reserve more short URLs than are still
+     * needed, so no short URL is ever reserved without being returned.</p>
+     *
+     * @param numNeeded The number of short URLs still needed.
+     * @param bucket The index bucket currently being read.
+     * @param numBucketsDone The number of index buckets read to the end.
+     * @param exclusiveStartKey Where to resume reading the current bucket.
+     * @param reserved The Short URL Reservation items reserved so far.
+     * @param round The number of rounds done so far.
+     * @return All the Short URL Reservation items that were reserved.
+     */
+    private Mono<List<ShortUrlReservation>>
+    reserveShortUrlsViaIndex(
+            int numNeeded,
+            int bucket,
+            int numBucketsDone,
+            Map<String, AttributeValue> exclusiveStartKey,
+            List<ShortUrlReservation> reserved,
+            int round) {
+
+        if (numNeeded == 0 ||
+                numBucketsDone == AvailabilityIndex.NUM_BUCKETS ||
+                round == MAX_INDEX_SCAN_ROUNDS) {
+            return Mono.just(reserved);
+        }
+
+        return availabilityIndex.isActive()
+            .flatMap(isIndexActive -> availabilityIndex.queryBucket(bucket, null, exclusiveStartKey, numNeeded)
+                .flatMap(page -> Flux.fromIterable(availabilityIndex.shortUrlsOf(page))
+                    .filter(shortUrl -> !staleKeyCache.isStale(shortUrl))
+                    .flatMap(shortUrl -> reserveShortUrlIfAvailable(shortUrl)
+                        .onErrorResume(e -> {
+                            System.out.println("====> Could not reserve candidate: " + e.getMessage());
+                            return Mono.empty();
+                        }),
+                        RESERVATION_CONCURRENCY)
+                    .collectList()
+                    .flatMap(reservedThisRound -> {
+                        reserved.addAll(reservedThisRound);
+                        boolean isBucketDone = !page.hasLastEvaluatedKey() ||
+                                page.lastEvaluatedKey().isEmpty();
+                        return reserveShortUrlsViaIndex(
+                                numNeeded - reservedThisRound.size(),
+                                isBucketDone ? (bucket + 1) % AvailabilityIndex.NUM_BUCKETS : bucket,
+                                // The original index has no buckets: one scan covers it all.
+                                !isBucketDone ? numBucketsDone :
+                                        isIndexActive ? numBucketsDone + 1 : AvailabilityIndex.NUM_BUCKETS,
+                                isBucketDone ? null : page.lastEvaluatedKey(),
+                                reserved,
+                                round + 1);
+                    })))
+            // Hang on to whatever we have already reserved.
+            .onErrorResume(e -> reserved.isEmpty() ?
+                    Mono.error(e) :
+                    Mono.just(reserved));
+    }
+
+    /**
+     * Reserve a specific short URL, on condition that it is available.
+     *
+     * <p>This is a single conditional `UpdateItem` call, which bumps the
+     * `version` attribute just as a versioned update would.</p>
+     *
+     * @param shortUrl The short URL to reserve.
+     * @return The Short URL Reservation item that has just been reserved,
+     * or an empty Mono if the short URL was not available.
+     */
+    private Mono<ShortUrlReservation>
+    reserveShortUrlIfAvailable(String shortUrl) {
+        UpdateItemRequest request = ReservationUpdateRequests.reserveIfAvailable(
+                shortUrlReservationTable.tableName(), shortUrl);
+
+        Mono<ShortUrlReservation> attempt = Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .map(response -> {
+                ShortUrlReservation shortUrlReservation =
+                        new ShortUrlReservation(shortUrl, null);
+                shortUrlReservation.setVersion(
+                        Long.parseLong(response.attributes().get("version").n()));
+                return shortUrlReservation;
             })
-            .onErrorResume(e -> {
-                // Some other exception occurred.
-                System.out.println("====> Unexpected exception: " + e.getMessage());
-                return Mono.error(e);
+            .onErrorResume(ConditionalCheckFailedException.class, e -> {
+                staleKeyCache.markStale(shortUrl);
+                return Mono.empty();
             });
+
+        return recordAttempt("reserveAny", shortUrl, attempt,
+                shortUrlReservation -> SUCCESS.name(),
+                SHORT_URL_ALREADY_TAKEN.name());
+    }
+
+    /**
+     * Apply the same single-item update to every short URL that matches a
+     * filter.
+     *
+     * <p>The table is read with a parallel scan of `bulkScanSegments`
+     * segments, projecting nothing but the key. Each segment feeds the
+     * short URLs of one scan page at a time to at most
+     * `bulkConcurrencyPerSegment` concurrent updates, and reports its
+     * progress once the whole page is done, so that the memory used does
+     * not depend on the size of the table.</p>
+     *
+     * <p>The position of a segment is the last short URL of the last page
+     * that was done, i.e. the key from which the scan of the segment is to
+     * pick up again. Since each update is conditional, going over part of a
+     * page a second time (after an interruption) does no harm, but the
+     * short URLs concerned are then counted as unchanged.</p>
+     *
+     * @param filterExpression Which short URLs to update.
+     * @param update The update to apply to each short URL. Returns `SUCCESS`
+     *               if it changed the short URL, or some other status if the
+     *               short URL was already in the desired state.
+     * @param startPositions The position from which to pick up each segment,
+     *                       or an empty list to start from scratch.
+     * @return The progress of the operation, page by page.
+     */
+    private Flux<BulkProgress>
+    updateAllShortUrls(
+            String filterExpression,
+            Function<String, Mono<ShortUrlStatus>> update,
+            List<String> startPositions) {
+
+        int numSegments = startPositions.isEmpty() ? bulkScanSegments : startPositions.size();
+
+        return Flux.range(0, numSegments)
+            .flatMap(segment -> {
+                String startPosition = startPositions.isEmpty() ?
+                        BulkProgress.START : startPositions.get(segment);
+                if (startPosition.equals(BulkProgress.DONE)) {
+                    return Flux.empty();
+                }
+
+                ScanRequest.Builder scanRequest = ScanRequest.builder()
+                    .tableName(shortUrlReservationTable.tableName())
+                    .segment(segment)
+                    .totalSegments(numSegments)
+                    .filterExpression(filterExpression)
+                    .projectionExpression("shortUrl");
+                if (!startPosition.equals(BulkProgress.START)) {
+                    scanRequest.exclusiveStartKey(Map.of(
+                            "shortUrl", AttributeValue.fromS(startPosition)));
+                }
+
+                return Flux.from(dynamoDbAsyncClient.scanPaginator(scanRequest.build()))
+                    .concatMap(page -> Flux.fromIterable(page.items())
+                        .flatMap(item -> update.apply(item.get("shortUrl").s())
+                            .onErrorResume(e -> {
+                                System.out.println("====> Update failed: " + e.getMessage());
+                                return Mono.just(UNKNOWN_ERROR);
+                            }),
+                            bulkConcurrencyPerSegment)
+                        .collect(() -> new long[3], (counts, shortUrlStatus) -> {
+                            switch (shortUrlStatus) {
+                                case SUCCESS -> counts[0]++;
+                                case UNKNOWN_ERROR -> counts[2]++;
+                                default -> counts[1]++;
+                            }
+                        })
+                        .map(counts -> new BulkProgress(
+                                segment,
+                                numSegments,
+                                page.hasLastEvaluatedKey() && !page.lastEvaluatedKey().isEmpty() ?
+                                        page.lastEvaluatedKey().get("shortUrl").s() :
+                                        BulkProgress.DONE,
+                                page.scannedCount(),
+                                counts[0],
+                                counts[1],
+                                counts[2])));
+            }, numSegments);
+    }
+
+    /**
+     * Apply the same single-item update to each short URL in a list.
+     *
+     * <p>Up to `BULK_CONCURRENCY` updates are in flight at any one time, and
+     * the per-URL outcomes are returned in the same order as the request.</p>
+     *
+     * @param shortUrls The short URLs to update.
+     * @param update The update to apply to each short URL.
+     * @return The outcome for each short URL.
+     */
+    private Mono<StatusAndShortUrlStatusArray>
+    updateSpecificShortUrls(
+            List<String> shortUrls,
+            Function<String, Mono<ShortUrlStatus>> update) {
+
+        return Flux.fromIterable(shortUrls)
+            .flatMapSequential(shortUrl -> update.apply(shortUrl)
+                .onErrorResume(e -> {
+                    System.out.println("====> Update of '" + shortUrl + "' failed: " + e.getMessage());
+                    return Mono.just(UNKNOWN_ERROR);
+                })
+                .map(shortUrlStatus -> new ShortUrlAndStatus(shortUrl, shortUrlStatus)),
+                BULK_CONCURRENCY)
+            .collectList()
+            .map(shortUrlStatuses -> new StatusAndShortUrlStatusArray(
+                    new Status(SUCCESS),
+                    shortUrlStatuses));
+    }
+
+    /**
+     * Reserve a specific short URL with a single conditional `UpdateItem`
+     * call.
+     *
+     * <p>If the condition fails, DynamoDB returns the item as it was, which
+     * tells us whether the short URL was taken or does not exist at all.</p>
+     *
+     * @param shortUrl The short URL to reserve.
+     * @return The status of the operation.
+     */
+    private Mono<ShortUrlStatus>
+    reserveShortUrlConditionally(String shortUrl) {
+        // Something that is not even a short URL cannot be in the table.
+        if (!ShortUrlCodec.isValid(shortUrl)) {
+            return Mono.just(NO_SUCH_SHORT_URL);
+        }
+        UpdateItemRequest request = ReservationUpdateRequests.reserveConditionally(
+                shortUrlReservationTable.tableName(), shortUrl);
+
+        Mono<ShortUrlStatus> attempt = Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .thenReturn(SUCCESS)
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.just(
+                    e.hasItem() ? SHORT_URL_ALREADY_TAKEN : NO_SUCH_SHORT_URL));
+
+        return recordAttempt("reserveSpecific", shortUrl, attempt,
+                ShortUrlStatus::name,
+                null);
+    }
+
+    /**
+     * Cancel the reservation of a specific short URL with a single
+     * conditional `UpdateItem` call.
+     *
+     * @param shortUrl The short URL whose reservation is to be canceled.
+     * @return The status of the operation.
+     */
+    private Mono<ShortUrlStatus>
+    cancelShortUrlReservationConditionally(String shortUrl) {
+        if (!ShortUrlCodec.isValid(shortUrl)) {
+            return Mono.just(NO_SUCH_SHORT_URL);
+        }
+        UpdateItemRequest request = ReservationUpdateRequests.cancelConditionally(
+                shortUrlReservationTable.tableName(), shortUrl);
+
+        Mono<ShortUrlStatus> attempt = Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(request))
+            .thenReturn(SUCCESS)
+            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.just(
+                    e.hasItem() ? SHORT_URL_NOT_RESERVED : NO_SUCH_SHORT_URL));
+
+        return recordAttempt("cancelSpecific", shortUrl, attempt,
+                ShortUrlStatus::name,
+                null);
+    }
+
+    /**
+     * Record a reservation attempt as a JFR event, from subscription to
+     * its answer. When the event is not enabled, this costs next to
+     * nothing.
+     *
+     * @param operation The kind of attempt.
+     * @param shortUrl The short URL.
+     * @param attempt The attempt.
+     * @param outcomeOf Maps the result of the attempt to its outcome.
+     * @param emptyOutcome The outcome if the attempt completes empty.
+     * @return The recorded attempt.
+     */
+    private static <T> Mono<T>
+    recordAttempt(String operation,
+                  String shortUrl,
+                  Mono<T> attempt,
+                  Function<T, String> outcomeOf,
+                  String emptyOutcome) {
+
+        return Mono.defer(() -> {
+            ReservationAttemptEvent event = ReservationAttemptEvent.start(operation, shortUrl);
+            return attempt
+                .doOnSuccess(result -> event.finish(
+                        result == null ? emptyOutcome : outcomeOf.apply(result)))
+                .doOnError(e -> event.finish(UNKNOWN_ERROR.name()));
+        });
     }
 }
@@ -0,0 +1,82 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A short-lived memory of short URLs that the index recently claimed were
+ * available, but that turned out to be taken.
+ *
+ * <p>The index is only eventually consistent, so a short URL that has just
+ * been reserved may keep showing up as a candidate for a little while.
+ * Skipping such short URLs saves a wasted write per candidate.</p>
+ *
+ * <p>The cache is bounded. When it is full, expired entries are purged,
+ * and if it is still full, new entries are simply not recorded.</p>
+ */
+public class StaleKeyCache {
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<String, Long> expiryNanosByShortUrl = new ConcurrentHashMap<>();
+
+    /**
+     * General constructor.
+     *
+     * @param ttl How long to skip a short URL after it proved stale.
+     * @param maxSize The largest number of short URLs to remember.
+     */
+    public StaleKeyCache(Duration ttl, int maxSize) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Remember that a short URL is not really available.
+     *
+     * @param shortUrl The short URL of interest.
+     */
+    public void markStale(String shortUrl) {
+        long now = System.nanoTime();
+        if (expiryNanosByShortUrl.size() >= maxSize) {
+            expiryNanosByShortUrl.values().removeIf(expiry -> expiry - now <= 0);
+            if (expiryNanosByShortUrl.size() >= maxSize) {
+                return;
+            }
+        }
+        expiryNanosByShortUrl.put(shortUrl, now + ttlNanos);
+    }
+
+    /**
+     * Determine whether a short URL recently proved stale.
+     *
+     * @param shortUrl The short URL of interest.
+     * @return `true` if the short URL should be skipped for now.
+     */
+    public boolean isStale(String shortUrl) {
+        Long expiry = expiryNanosByShortUrl.get(shortUrl);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry - System.nanoTime() <= 0) {
+            expiryNanosByShortUrl.remove(shortUrl, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forget every short URL.
+     *
+     * <p>Called when the instance is restored from a SnapStart snapshot,
+     * after which the expiry times mean nothing.</p>
+     */
+    public void clear() {
+        expiryNanosByShortUrl.clear();
+    }
+}
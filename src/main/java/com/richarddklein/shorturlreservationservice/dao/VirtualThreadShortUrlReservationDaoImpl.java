@@ -0,0 +1,697 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.ShortUrlAndStatus;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.exception.InconsistentDataException;
+import com.richarddklein.shorturlreservationservice.exception.NoShortUrlsAvailableException;
+import com.richarddklein.shorturlreservationservice.exception.NoSuchShortUrlException;
+import com.richarddklein.shorturlreservationservice.jfr.ReservationAttemptEvent;
+import com.richarddklein.shorturlreservationservice.tracing.OtelContextAccessor;
+import io.opentelemetry.context.Context;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.*;
+
+/**
+ * An implementation of the Short URL Reservation DAO interface that runs
+ * plain blocking code on virtual threads.
+ *
+ * <p>This is the alternative to the Reactor chains of
+ * `ShortUrlReservationDaoImpl` for deployments that would rather read a
+ * stack trace than a Reactor assembly trace, selected by the
+ * `virtualThreads` execution mode (see `shortUrl.reservations.execution`).
+ * It works on the same table in the same way: the same conditional
+ * `UpdateItem` calls, the same availability index, stale key cache and
+ * retry strategy, and the same JFR events. Only the calls are made with
+ * the synchronous DynamoDB client, one blocking call after the other.</p>
+ *
+ * <p>Each operation still returns a Mono, as the interface demands, but
+ * the Mono merely runs the blocking code. If it is subscribed to on a
+ * virtual thread, such as the request thread of Spring MVC on virtual
+ * threads, the code runs right there, so the stack trace of a failure
+ * goes from the servlet container through the controller and the service
+ * down to the DynamoDB call. Otherwise it runs on a new virtual thread,
+ * and never on an event loop thread. The operations on a list of short
+ * URLs fan out over one virtual thread per short URL, with the same limits
+ * on concurrency as `ShortUrlReservationDaoImpl`.</p>
+ *
+ * <p>Reserving any short URL retries after a conflict with the shared
+ * `RetryStrategy`. Each attempt is blocking code; the delay between two
+ * attempts is a timer, after which the next attempt starts on a new
+ * virtual thread. The `pool` and `sequence` allocators, if chosen, are
+ * still consulted first, and make their own asynchronous calls.</p>
+ *
+ * <p>The table-wide operations (initialization, population, migration,
+ * range extension, reserving or canceling everything, and the estimates)
+ * are background jobs, most of which report their progress as a Flux.
+ * They are left to the Reactor implementation, to which this DAO
+ * delegates them.</p>
+ */
+public class VirtualThreadShortUrlReservationDaoImpl implements ShortUrlReservationDao {
+
+    // The same limits as those of `ShortUrlReservationDaoImpl`.
+    private static final int MAX_INDEX_SCAN_ROUNDS = 64;
+    private static final int RESERVATION_CONCURRENCY = 16;
+    private static final int BULK_CONCURRENCY = 100;
+    private static final int CANDIDATE_WINDOW_SIZE = 10;
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY =
+            Thread.ofVirtual().name("short-url-dao-", 0).factory();
+
+    private final ShortUrlReservationDao shortUrlReservationDao;
+    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbTable<ShortUrlReservation> shortUrlReservationTable;
+    private final ShortUrlAllocator shortUrlAllocator;
+    private final AvailabilityIndex availabilityIndex;
+    private final RetryStrategy retryStrategy;
+    private final StaleKeyCache staleKeyCache;
+    private final Scheduler virtualThreads;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param shortUrlReservationDao Dependency injection of a class instance
+     *                               that is to play the role of the Reactor
+     *                               DAO, to which the table-wide operations
+     *                               are delegated.
+     * @param dynamoDbClient Dependency injection of a class instance that
+     *                       is to play the role of a synchronous DynamoDB
+     *                       Client.
+     * @param shortUrlReservationTable Dependency injection of a class instance
+     *                                 that is to model the Short URL Reservation
+     *                                 table in DynamoDB, over `dynamoDbClient`.
+     * @param shortUrlAllocator Dependency injection of a class instance that
+     *                          is to play the role of the allocation engine
+     *                          consulted first when reserving any short URL.
+     * @param availabilityIndex Dependency injection of a class instance that
+     *                          is to play the role of the bucketed index of
+     *                          available short URLs.
+     * @param retryStrategy Dependency injection of a class instance that
+     *                      is to play the role of the policy for retrying
+     *                      after a conflict.
+     * @param staleKeyCache Dependency injection of a class instance that
+     *                      is to remember the short URLs that the index
+     *                      recently offered, but that were already taken.
+     */
+    public VirtualThreadShortUrlReservationDaoImpl(
+            ShortUrlReservationDao shortUrlReservationDao,
+            DynamoDbClient dynamoDbClient,
+            DynamoDbTable<ShortUrlReservation> shortUrlReservationTable,
+            ShortUrlAllocator shortUrlAllocator,
+            AvailabilityIndex availabilityIndex,
+            RetryStrategy retryStrategy,
+            StaleKeyCache staleKeyCache) {
+
+        this.shortUrlReservationDao = shortUrlReservationDao;
+        this.dynamoDbClient = dynamoDbClient;
+        this.shortUrlReservationTable = shortUrlReservationTable;
+        this.shortUrlAllocator = shortUrlAllocator;
+        this.availabilityIndex = availabilityIndex;
+        this.retryStrategy = retryStrategy;
+        this.staleKeyCache = staleKeyCache;
+        this.virtualThreads = Schedulers.fromExecutorService(
+                Executors.newThreadPerTaskExecutor(VIRTUAL_THREAD_FACTORY), "virtualThreads");
+    }
+
+    @Override
+    public void initializeShortUrlReservationRepository() {
+        shortUrlReservationDao.initializeShortUrlReservationRepository();
+    }
+
+    @Override
+    public void recreateShortUrlReservationTable() {
+        shortUrlReservationDao.recreateShortUrlReservationTable();
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    populateShortUrlReservationTable(List<String> startPositions) {
+        return shortUrlReservationDao.populateShortUrlReservationTable(startPositions);
+    }
+
+    @Override
+    public void migrateShortUrlReservationRepository() {
+        shortUrlReservationDao.migrateShortUrlReservationRepository();
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    extendShortUrlRange(long minShortUrlBase10, long maxShortUrlBase10, List<String> startPositions) {
+        return shortUrlReservationDao.extendShortUrlRange(
+                minShortUrlBase10, maxShortUrlBase10, startPositions);
+    }
+
+    @Override
+    public Mono<Long>
+    getMaxShortUrlBase10() {
+        return shortUrlReservationDao.getMaxShortUrlBase10();
+    }
+
+    @Override
+    public Mono<Long>
+    estimateNumFreeShortUrls(long upTo) {
+        return shortUrlReservationDao.estimateNumFreeShortUrls(upTo);
+    }
+
+    @Override
+    public Mono<ShortUrlReservation>
+    getSpecificShortUrlReservation(String shortUrl) {
+        return onVirtualThread(() -> {
+            if (!ShortUrlCodec.isValid(shortUrl)) {
+                throw new NoSuchShortUrlException();
+            }
+            ShortUrlReservation key = new ShortUrlReservation();
+            key.setShortUrl(shortUrl);
+            ShortUrlReservation shortUrlReservation = shortUrlReservationTable.getItem(key);
+            if (shortUrlReservation == null) {
+                throw new NoSuchShortUrlException();
+            }
+            return shortUrlReservation;
+        });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return onVirtualThread(() -> {
+            ScanEnhancedRequest.Builder scanRequest = scanRequest(available)
+                .limit(limit);
+            if (cursor != null) {
+                scanRequest.exclusiveStartKey(Map.of("shortUrl",
+                        AttributeValue.fromS(PageCursor.decode(cursor))));
+            }
+            Page<ShortUrlReservation> page =
+                    shortUrlReservationTable.scan(scanRequest.build()).iterator().next();
+            return new StatusAndShortUrlReservationPage(
+                    new Status(SUCCESS),
+                    page.items(),
+                    (page.lastEvaluatedKey() == null || page.lastEvaluatedKey().isEmpty()) ?
+                            null :
+                            PageCursor.encode(page.lastEvaluatedKey().get("shortUrl").s()));
+        })
+            // An invalid cursor is the client's fault, so let the caller see it.
+            .onErrorResume(e -> !(e instanceof IllegalArgumentException), e -> {
+                System.out.println("====> " + e.getMessage());
+                return Mono.just(new StatusAndShortUrlReservationPage(
+                        new Status(UNKNOWN_ERROR),
+                        Collections.emptyList(),
+                        null));
+            });
+    }
+
+    // The scan fetches its next page only when the subscriber asks for
+    // more items, on whichever virtual thread serves the request.
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        return Flux.defer(() -> Flux.fromIterable(
+                    shortUrlReservationTable.scan(scanRequest(available).build()).items()))
+            .subscribeOn(virtualThreads);
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation> reserveAnyShortUrl() {
+        return shortUrlAllocator.allocateShortUrlReservation()
+            .switchIfEmpty(Mono.defer(() -> onVirtualThread(this::reserveAnyShortUrlViaIndex)
+                .retryWhen(retryStrategy.retryOnConflict())))
+            .map(reservedShortUrlReservation -> new StatusAndShortUrlReservation(
+                    new Status(SUCCESS),
+                    reservedShortUrlReservation))
+            .onErrorResume(e -> {
+                System.out.println("====> reserveAnyShortUrl() failed: " + e.getMessage());
+                if (e instanceof NoShortUrlsAvailableException) {
+                    return Mono.just(new StatusAndShortUrlReservation(
+                            new Status(NO_SHORT_URLS_ARE_AVAILABLE),
+                            null));
+                } else {
+                    return Mono.just(new StatusAndShortUrlReservation(
+                            new Status(UNKNOWN_ERROR),
+                            null));
+                }
+            });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        return onVirtualThread(() -> reserveShortUrlsViaIndex(count))
+            .map(reservedShortUrlReservations -> new StatusAndShortUrlReservationArray(
+                    new Status(reservedShortUrlReservations.isEmpty() ?
+                            NO_SHORT_URLS_ARE_AVAILABLE : SUCCESS),
+                    reservedShortUrlReservations))
+            .onErrorResume(e -> {
+                System.out.println("====> reserveAnyShortUrls() failed: " + e.getMessage());
+                return Mono.just(new StatusAndShortUrlReservationArray(
+                        new Status(UNKNOWN_ERROR),
+                        Collections.emptyList()));
+            });
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    reserveSpecificShortUrl(String shortUrl) {
+        return onVirtualThread(() -> reserveShortUrlConditionally(shortUrl))
+            .onErrorResume(e -> {
+                System.out.println("====> reserveSpecificShortUrl() failed: " + e.getMessage());
+                return Mono.just(UNKNOWN_ERROR);
+            });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return onVirtualThread(() ->
+                updateSpecificShortUrls(shortUrls, this::reserveShortUrlConditionally));
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    reserveAllShortUrls(List<String> startPositions) {
+        return shortUrlReservationDao.reserveAllShortUrls(startPositions);
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    cancelSpecificShortUrlReservation(String shortUrl) {
+        return onVirtualThread(() -> cancelShortUrlReservationConditionally(shortUrl))
+            .onErrorResume(e -> {
+                System.out.println("====> cancelSpecificShortUrl() failed: " + e.getMessage());
+                return Mono.just(UNKNOWN_ERROR);
+            });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return onVirtualThread(() ->
+                updateSpecificShortUrls(shortUrls, this::cancelShortUrlReservationConditionally));
+    }
+
+    @Override
+    public Flux<BulkProgress>
+    cancelAllShortUrlReservations(List<String> startPositions) {
+        return shortUrlReservationDao.cancelAllShortUrlReservations(startPositions);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Run blocking code on a virtual thread.
+     *
+     * <p>The code runs on the subscribing thread if that is a virtual
+     * thread already, and on a new one otherwise. Either way, the trace
+     * context of the caller is current while it runs, so that the spans of
+     * its DynamoDB calls are children of the caller's span.</p>
+     *
+     * @param code The blocking code.
+     * @return A Mono that runs the code when subscribed to, and emits its
+     * result.
+     */
+    private <T> Mono<T>
+    onVirtualThread(Callable<T> code) {
+        return Mono.deferContextual(contextView -> {
+            Context context = contextView.getOrDefault(OtelContextAccessor.KEY, Context.current());
+            Mono<T> result = Mono.fromCallable(context.wrap(code));
+            return Thread.currentThread().isVirtual() ? result : result.subscribeOn(virtualThreads);
+        });
+    }
+
+    /**
+     * Reserve any available short URL, using the bucketed index to find
+     * it, in a single attempt.
+     *
+     * <p>Just like `ShortUrlReservationDaoImpl`, this tries the candidates
+     * of one window of the index in random order, for as long as the retry
+     * strategy allows immediate retries. The caller retries the whole
+     * attempt, after a delay, if it fails with an
+     * `InconsistentDataException`.</p>
+     *
+     * @return The Short URL Reservation item that has just been reserved.
+     * @throws NoShortUrlsAvailableException if the index has no available
+     * short URLs at all.
+     * @throws InconsistentDataException if none of the candidates was
+     * really available.
+     */
+    private ShortUrlReservation
+    reserveAnyShortUrlViaIndex()
+            throws NoShortUrlsAvailableException, InconsistentDataException {
+
+        List<String> candidates = findCandidates(CANDIDATE_WINDOW_SIZE);
+        if (candidates.isEmpty()) {
+            throw new NoShortUrlsAvailableException();
+        }
+        List<String> freshCandidates = new ArrayList<>(candidates.stream()
+            .filter(candidate -> !staleKeyCache.isStale(candidate))
+            .toList());
+        Collections.shuffle(freshCandidates, InstanceRandom.current());
+
+        for (int i = 0; i < freshCandidates.size(); i++) {
+            ShortUrlReservation shortUrlReservation = reserveShortUrlIfAvailable(freshCandidates.get(i));
+            if (shortUrlReservation != null) {
+                return shortUrlReservation;
+            }
+            if (i + 1 == freshCandidates.size() || !retryStrategy.tryImmediateRetry()) {
+                break;
+            }
+        }
+        throw new InconsistentDataException();
+    }
+
+    /**
+     * Find a small window of candidate short URLs at a random point in the
+     * index, just as `AvailabilityIndex.findCandidates()` does.
+     *
+     * @param windowSize The largest number of candidates to return.
+     * @return The candidate short URLs, or an empty list if no short URLs
+     * are available.
+     */
+    private List<String>
+    findCandidates(int windowSize) {
+        if (!availabilityIndex.isActive().block()) {
+            return availabilityIndex.shortUrlsOf(dynamoDbClient.scan(
+                    availabilityIndex.legacyScanRequest(null, windowSize)));
+        }
+        int bucket = InstanceRandom.current().nextInt(AvailabilityIndex.NUM_BUCKETS);
+
+        List<String> candidates = queryBucket(bucket, availabilityIndex.randomStartAt().block(), windowSize);
+        if (candidates.isEmpty()) {
+            candidates = queryBucket(bucket, null, windowSize);
+        }
+        if (candidates.isEmpty()) {
+            ScanResponse response = dynamoDbClient.scan(availabilityIndex.nonEmptyBucketScanRequest());
+            if (!response.items().isEmpty()) {
+                int nonEmptyBucket = Integer.parseInt(
+                        response.items().getFirst().get(AvailabilityIndex.AVAILABLE_BUCKET).n());
+                candidates = queryBucket(nonEmptyBucket, null, windowSize);
+            }
+        }
+        return candidates;
+    }
+
+    private List<String>
+    queryBucket(int bucket, String startAt, int limit) {
+        return availabilityIndex.shortUrlsOf(dynamoDbClient.query(
+                availabilityIndex.bucketQueryRequest(bucket, startAt, null, limit)));
+    }
+
+    /**
+     * Reserve several available Short URL Reservation items, using the
+     * bucketed index to find them.
+     *
+     * <p>Works in rounds, just like `ShortUrlReservationDaoImpl`: each round
+     * reads one page of candidates from the index, no larger than the
+     * number of short URLs still needed, and tries to reserve all of them
+     * concurrently, each on a virtual thread of its own. The index is read
+     * bucket by bucket, starting with a random bucket.</p>
+     *
+     * @param count The number of short URLs wanted.
+     * @return All the Short URL Reservation items that were reserved.
+     */
+    private List<ShortUrlReservation>
+    reserveShortUrlsViaIndex(int count) throws InterruptedException, ExecutionException {
+        List<ShortUrlReservation> reserved = new ArrayList<>();
+        boolean isIndexActive = availabilityIndex.isActive().block();
+        int bucket = InstanceRandom.current().nextInt(AvailabilityIndex.NUM_BUCKETS);
+        int numBucketsDone = 0;
+        Map<String, AttributeValue> exclusiveStartKey = null;
+
+        for (int round = 0;
+             reserved.size() < count &&
+                     numBucketsDone < AvailabilityIndex.NUM_BUCKETS &&
+                     round < MAX_INDEX_SCAN_ROUNDS;
+             round++) {
+
+            QueryResponse page;
+            try {
+                page = isIndexActive ?
+                        dynamoDbClient.query(availabilityIndex.bucketQueryRequest(
+                                bucket, null, exclusiveStartKey, count - reserved.size())) :
+                        AvailabilityIndex.asQueryResponse(dynamoDbClient.scan(
+                                availabilityIndex.legacyScanRequest(exclusiveStartKey, count - reserved.size())));
+            } catch (RuntimeException e) {
+                // Hang on to whatever we have already reserved.
+                if (reserved.isEmpty()) {
+                    throw e;
+                }
+                return reserved;
+            }
+
+            List<String> candidates = availabilityIndex.shortUrlsOf(page).stream()
+                .filter(shortUrl -> !staleKeyCache.isStale(shortUrl))
+                .toList();
+            mapConcurrently(candidates, RESERVATION_CONCURRENCY, shortUrl -> {
+                try {
+                    return reserveShortUrlIfAvailable(shortUrl);
+                } catch (RuntimeException e) {
+                    System.out.println("====> Could not reserve candidate: " + e.getMessage());
+                    return null;
+                }
+            }).stream()
+                .filter(Objects::nonNull)
+                .forEach(reserved::add);
+
+            if (!page.hasLastEvaluatedKey() || page.lastEvaluatedKey().isEmpty()) {
+                // The original index has no buckets: one scan covers it all.
+                bucket = (bucket + 1) % AvailabilityIndex.NUM_BUCKETS;
+                numBucketsDone = isIndexActive ? numBucketsDone + 1 : AvailabilityIndex.NUM_BUCKETS;
+                exclusiveStartKey = null;
+            } else {
+                exclusiveStartKey = page.lastEvaluatedKey();
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * Reserve a specific short URL, on condition that it is available.
+     *
+     * @param shortUrl The short URL to reserve.
+     * @return The Short URL Reservation item that has just been reserved,
+     * or null if the short URL was not available.
+     */
+    private ShortUrlReservation
+    reserveShortUrlIfAvailable(String shortUrl) {
+        UpdateItemRequest request = ReservationUpdateRequests.reserveIfAvailable(
+                shortUrlReservationTable.tableName(), shortUrl);
+
+        Supplier<ShortUrlReservation> attempt = () -> {
+            try {
+                UpdateItemResponse response = dynamoDbClient.updateItem(request);
+                ShortUrlReservation shortUrlReservation =
+                        new ShortUrlReservation(shortUrl, null);
+                shortUrlReservation.setVersion(
+                        Long.parseLong(response.attributes().get("version").n()));
+                return shortUrlReservation;
+            } catch (ConditionalCheckFailedException e) {
+                staleKeyCache.markStale(shortUrl);
+                return null;
+            }
+        };
+
+        return recordAttempt("reserveAny", shortUrl, attempt,
+                shortUrlReservation -> SUCCESS.name(),
+                SHORT_URL_ALREADY_TAKEN.name());
+    }
+
+    /**
+     * Apply the same single-item update to each short URL in a list.
+     *
+     * <p>Up to `BULK_CONCURRENCY` updates are in flight at any one time, and
+     * the per-URL outcomes are returned in the same order as the request.</p>
+     *
+     * @param shortUrls The short URLs to update.
+     * @param update The update to apply to each short URL.
+     * @return The outcome for each short URL.
+     */
+    private StatusAndShortUrlStatusArray
+    updateSpecificShortUrls(
+            List<String> shortUrls,
+            Function<String, ShortUrlStatus> update)
+            throws InterruptedException, ExecutionException {
+
+        List<ShortUrlAndStatus> shortUrlStatuses = mapConcurrently(shortUrls, BULK_CONCURRENCY, shortUrl -> {
+            try {
+                return new ShortUrlAndStatus(shortUrl, update.apply(shortUrl));
+            } catch (RuntimeException e) {
+                System.out.println("====> Update of '" + shortUrl + "' failed: " + e.getMessage());
+                return new ShortUrlAndStatus(shortUrl, UNKNOWN_ERROR);
+            }
+        });
+        return new StatusAndShortUrlStatusArray(
+                new Status(SUCCESS),
+                shortUrlStatuses);
+    }
+
+    /**
+     * Reserve a specific short URL with a single conditional `UpdateItem`
+     * call.
+     *
+     * @param shortUrl The short URL to reserve.
+     * @return The status of the operation.
+     */
+    private ShortUrlStatus
+    reserveShortUrlConditionally(String shortUrl) {
+        // Something that is not even a short URL cannot be in the table.
+        if (!ShortUrlCodec.isValid(shortUrl)) {
+            return NO_SUCH_SHORT_URL;
+        }
+        UpdateItemRequest request = ReservationUpdateRequests.reserveConditionally(
+                shortUrlReservationTable.tableName(), shortUrl);
+
+        Supplier<ShortUrlStatus> attempt = () -> {
+            try {
+                dynamoDbClient.updateItem(request);
+                return SUCCESS;
+            } catch (ConditionalCheckFailedException e) {
+                return e.hasItem() ? SHORT_URL_ALREADY_TAKEN : NO_SUCH_SHORT_URL;
+            }
+        };
+
+        return recordAttempt("reserveSpecific", shortUrl, attempt,
+                ShortUrlStatus::name,
+                null);
+    }
+
+    /**
+     * Cancel the reservation of a specific short URL with a single
+     * conditional `UpdateItem` call.
+     *
+     * @param shortUrl The short URL whose reservation is to be canceled.
+     * @return The status of the operation.
+     */
+    private ShortUrlStatus
+    cancelShortUrlReservationConditionally(String shortUrl) {
+        if (!ShortUrlCodec.isValid(shortUrl)) {
+            return NO_SUCH_SHORT_URL;
+        }
+        UpdateItemRequest request = ReservationUpdateRequests.cancelConditionally(
+                shortUrlReservationTable.tableName(), shortUrl);
+
+        Supplier<ShortUrlStatus> attempt = () -> {
+            try {
+                dynamoDbClient.updateItem(request);
+                return SUCCESS;
+            } catch (ConditionalCheckFailedException e) {
+                return e.hasItem() ? SHORT_URL_NOT_RESERVED : NO_SUCH_SHORT_URL;
+            }
+        };
+
+        return recordAttempt("cancelSpecific", shortUrl, attempt,
+                ShortUrlStatus::name,
+                null);
+    }
+
+    private static ScanEnhancedRequest.Builder
+    scanRequest(Boolean available) {
+        ScanEnhancedRequest.Builder scanRequest = ScanEnhancedRequest.builder();
+        if (available != null) {
+            scanRequest.filterExpression(Expression.builder()
+                .expression(available ?
+                        "attribute_exists(isAvailable)" :
+                        "attribute_not_exists(isAvailable)")
+                .build());
+        }
+        return scanRequest;
+    }
+
+    /**
+     * Apply a function to each element of a list, each on a virtual thread
+     * of its own, with at most `maxConcurrency` of them running at once.
+     *
+     * <p>The trace context of the caller is current on each of the
+     * threads. The function is expected to handle its own errors.</p>
+     *
+     * @param elements The elements.
+     * @param maxConcurrency The largest number of elements to work on at
+     *                       once.
+     * @param function The function to apply to each element.
+     * @return The results, in the same order as the elements.
+     */
+    private static <T, R> List<R>
+    mapConcurrently(List<T> elements, int maxConcurrency, Function<T, R> function)
+            throws InterruptedException, ExecutionException {
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Context context = Context.current();
+        List<Future<R>> futures = new ArrayList<>(elements.size());
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(VIRTUAL_THREAD_FACTORY)) {
+            for (T element : elements) {
+                permits.acquire();
+                futures.add(executor.submit(context.wrap(() -> {
+                    try {
+                        return function.apply(element);
+                    } finally {
+                        permits.release();
+                    }
+                })));
+            }
+        }
+
+        List<R> results = new ArrayList<>(futures.size());
+        for (Future<R> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    /**
+     * Record a reservation attempt as a JFR event, from its start to its
+     * answer. When the event is not enabled, this costs next to nothing.
+     *
+     * @param operation The kind of attempt.
+     * @param shortUrl The short URL.
+     * @param attempt The attempt.
+     * @param outcomeOf Maps the result of the attempt to its outcome.
+     * @param nullOutcome The outcome if the attempt returns null.
+     * @return The result of the attempt.
+     */
+    private static <T> T
+    recordAttempt(String operation,
+                  String shortUrl,
+                  Supplier<T> attempt,
+                  Function<T, String> outcomeOf,
+                  String nullOutcome) {
+
+        ReservationAttemptEvent event = ReservationAttemptEvent.start(operation, shortUrl);
+        try {
+            T result = attempt.get();
+            event.finish(result == null ? nullOutcome : outcomeOf.apply(result));
+            return result;
+        } catch (RuntimeException e) {
+            event.finish(UNKNOWN_ERROR.name());
+            throw e;
+        }
+    }
+}
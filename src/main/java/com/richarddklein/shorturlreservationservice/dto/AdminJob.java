@@ -0,0 +1,264 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An admin job: a table-wide operation that is run in the background, and
+ * that saves its progress as it goes, so that it can be resumed after a
+ * timeout or a crash instead of starting over.
+ *
+ * <p>This is both the checkpoint record that is kept in the metadata table,
+ * and the job status that is returned to clients.</p>
+ *
+ * <p>`positions` holds, for each segment of the table, the position from
+ * which the job is to pick up that segment (a scan key, or a base-10
+ * offset, depending on the job). `numScanned` counts the short URLs that
+ * the job has looked at so far, out of roughly `totalShortUrls`; the rate
+ * and estimated time remaining are derived from it, and from the time that
+ * the job has actually spent running (`activeMillis`).</p>
+ *
+ * <p>`minShortUrlBase10` and `maxShortUrlBase10` are the base-10 interval
+ * that the job covers. They are only set for range extension jobs.</p>
+ *
+ * <p>`leaseExpiresAt` is the time until which the instance working on a
+ * `RUNNING` job has claimed it. Each checkpoint extends the lease, so a
+ * `RUNNING` job whose lease has expired has been interrupted. `version` is
+ * used for optimistic locking of the checkpoint record.</p>
+ */
+public class AdminJob {
+    private String jobId;
+    private AdminJobType jobType;
+    private AdminJobState state;
+    private String message;
+    private List<String> positions = new ArrayList<>();
+    private long numScanned;
+    private long numUpdated;
+    private long numUnchanged;
+    private long numFailed;
+    private long totalShortUrls;
+    private long minShortUrlBase10;
+    private long maxShortUrlBase10;
+    private long activeMillis;
+    private long createdAt;
+    private long updatedAt;
+    private long leaseExpiresAt;
+    private long version;
+
+    public AdminJob() {
+    }
+
+    /**
+     * Constructor for a new job.
+     *
+     * @param jobId The unique ID of the job.
+     * @param jobType What the job does.
+     * @param totalShortUrls Roughly how many short URLs the job will look at.
+     * @param createdAt When the job was created, in epoch milliseconds.
+     */
+    public AdminJob(
+            String jobId,
+            AdminJobType jobType,
+            long totalShortUrls,
+            long createdAt) {
+
+        this.jobId = jobId;
+        this.jobType = jobType;
+        this.state = AdminJobState.RUNNING;
+        this.totalShortUrls = totalShortUrls;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other The job to copy.
+     */
+    public AdminJob(AdminJob other) {
+        this.jobId = other.jobId;
+        this.jobType = other.jobType;
+        this.state = other.state;
+        this.message = other.message;
+        this.positions = new ArrayList<>(other.positions);
+        this.numScanned = other.numScanned;
+        this.numUpdated = other.numUpdated;
+        this.numUnchanged = other.numUnchanged;
+        this.numFailed = other.numFailed;
+        this.totalShortUrls = other.totalShortUrls;
+        this.minShortUrlBase10 = other.minShortUrlBase10;
+        this.maxShortUrlBase10 = other.maxShortUrlBase10;
+        this.activeMillis = other.activeMillis;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.leaseExpiresAt = other.leaseExpiresAt;
+        this.version = other.version;
+    }
+
+    /**
+     * Get the rate at which the job has been looking at short URLs.
+     *
+     * @return The number of short URLs looked at per second of running time.
+     */
+    public double getShortUrlsPerSecond() {
+        return activeMillis == 0 ? 0 : numScanned * 1000.0 / activeMillis;
+    }
+
+    /**
+     * Estimate how much longer the job will take to run.
+     *
+     * @return The estimated number of seconds of running time remaining, or
+     * `null` if there is no basis for an estimate yet.
+     */
+    public Long getEstimatedSecondsRemaining() {
+        double shortUrlsPerSecond = getShortUrlsPerSecond();
+        if (state == AdminJobState.SUCCEEDED) {
+            return 0L;
+        }
+        if (shortUrlsPerSecond == 0) {
+            return null;
+        }
+        return (long) Math.ceil(Math.max(0, totalShortUrls - numScanned) / shortUrlsPerSecond);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public AdminJobType getJobType() {
+        return jobType;
+    }
+
+    public void setJobType(AdminJobType jobType) {
+        this.jobType = jobType;
+    }
+
+    public AdminJobState getState() {
+        return state;
+    }
+
+    public void setState(AdminJobState state) {
+        this.state = state;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public List<String> getPositions() {
+        return positions;
+    }
+
+    public void setPositions(List<String> positions) {
+        this.positions = new ArrayList<>(positions);
+    }
+
+    public long getNumScanned() {
+        return numScanned;
+    }
+
+    public void setNumScanned(long numScanned) {
+        this.numScanned = numScanned;
+    }
+
+    public long getNumUpdated() {
+        return numUpdated;
+    }
+
+    public void setNumUpdated(long numUpdated) {
+        this.numUpdated = numUpdated;
+    }
+
+    public long getNumUnchanged() {
+        return numUnchanged;
+    }
+
+    public void setNumUnchanged(long numUnchanged) {
+        this.numUnchanged = numUnchanged;
+    }
+
+    public long getNumFailed() {
+        return numFailed;
+    }
+
+    public void setNumFailed(long numFailed) {
+        this.numFailed = numFailed;
+    }
+
+    public long getTotalShortUrls() {
+        return totalShortUrls;
+    }
+
+    public void setTotalShortUrls(long totalShortUrls) {
+        this.totalShortUrls = totalShortUrls;
+    }
+
+    public long getMinShortUrlBase10() {
+        return minShortUrlBase10;
+    }
+
+    public void setMinShortUrlBase10(long minShortUrlBase10) {
+        this.minShortUrlBase10 = minShortUrlBase10;
+    }
+
+    public long getMaxShortUrlBase10() {
+        return maxShortUrlBase10;
+    }
+
+    public void setMaxShortUrlBase10(long maxShortUrlBase10) {
+        this.maxShortUrlBase10 = maxShortUrlBase10;
+    }
+
+    public long getActiveMillis() {
+        return activeMillis;
+    }
+
+    public void setActiveMillis(long activeMillis) {
+        this.activeMillis = activeMillis;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public long getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(long leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+/**
+ * The states that an admin job can be in.
+ *
+ * <ul>
+ *     <li>`RUNNING`: Some instance of the service is working on the job.</li>
+ *     <li>`PAUSED`: The job used up its time slice, and is waiting to be
+ *     resumed.</li>
+ *     <li>`INTERRUPTED`: The instance working on the job stopped reporting
+ *     progress (e.g. because it timed out or crashed), and the job is
+ *     waiting to be resumed.</li>
+ *     <li>`FAILED`: The job hit an error, and is waiting to be resumed.</li>
+ *     <li>`SUCCEEDED`: The job is done.</li>
+ * </ul>
+ */
+public enum AdminJobState {
+    RUNNING,
+    PAUSED,
+    INTERRUPTED,
+    FAILED,
+    SUCCEEDED
+}
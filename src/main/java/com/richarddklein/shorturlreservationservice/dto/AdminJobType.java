@@ -0,0 +1,46 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+/**
+ * The kinds of table-wide operation that can be run as an admin job.
+ */
+public enum AdminJobType {
+    INITIALIZE_REPOSITORY("initialize-repository"),
+    RESERVE_ALL("reserve-all"),
+    CANCEL_ALL("cancel-all"),
+    EXTEND_RANGE("extend-range");
+
+    private final String pathName;
+
+    AdminJobType(String pathName) {
+        this.pathName = pathName;
+    }
+
+    /**
+     * Get the name by which the job type is given in a REST endpoint path.
+     *
+     * @return The path name of the job type.
+     */
+    public String getPathName() {
+        return pathName;
+    }
+
+    /**
+     * Find the job type with a given path name.
+     *
+     * @param pathName The path name of interest.
+     * @return The job type, or `null` if there is none with that path name.
+     */
+    public static AdminJobType fromPathName(String pathName) {
+        for (AdminJobType adminJobType : values()) {
+            if (adminJobType.pathName.equals(pathName)) {
+                return adminJobType;
+            }
+        }
+        return null;
+    }
+}
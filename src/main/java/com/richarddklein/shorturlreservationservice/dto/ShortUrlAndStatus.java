@@ -0,0 +1,40 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+
+/**
+ * The outcome of an operation on one short URL within a bulk operation.
+ */
+public class ShortUrlAndStatus {
+    private String shortUrl;
+    private ShortUrlStatus status;
+
+    public ShortUrlAndStatus() {
+    }
+
+    public ShortUrlAndStatus(String shortUrl, ShortUrlStatus status) {
+        this.shortUrl = shortUrl;
+        this.status = status;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    public void setShortUrl(String shortUrl) {
+        this.shortUrl = shortUrl;
+    }
+
+    public ShortUrlStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ShortUrlStatus status) {
+        this.status = status;
+    }
+}
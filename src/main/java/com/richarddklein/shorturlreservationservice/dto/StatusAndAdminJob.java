@@ -0,0 +1,40 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+
+/**
+ * The status of a request concerning an admin job, together with the job.
+ */
+public class StatusAndAdminJob {
+    private Status status;
+    private AdminJob adminJob;
+
+    public StatusAndAdminJob() {
+    }
+
+    public StatusAndAdminJob(Status status, AdminJob adminJob) {
+        this.status = status;
+        this.adminJob = adminJob;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public AdminJob getAdminJob() {
+        return adminJob;
+    }
+
+    public void setAdminJob(AdminJob adminJob) {
+        this.adminJob = adminJob;
+    }
+}
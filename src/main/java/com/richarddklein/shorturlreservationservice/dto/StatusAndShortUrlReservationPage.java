@@ -0,0 +1,62 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+import java.util.List;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+
+/**
+ * The status of a paginated read, together with one page of Short URL
+ * Reservation items, and the cursor from which to read the next page.
+ *
+ * <p>`nextCursor` is `null` when there are no more pages. Note that when
+ * the read is filtered, a page may contain fewer items than requested
+ * (even none at all) and still be followed by more pages.</p>
+ */
+public class StatusAndShortUrlReservationPage {
+    private Status status;
+    private List<ShortUrlReservation> shortUrlReservations;
+    private String nextCursor;
+
+    public StatusAndShortUrlReservationPage() {
+    }
+
+    public StatusAndShortUrlReservationPage(
+            Status status,
+            List<ShortUrlReservation> shortUrlReservations,
+            String nextCursor) {
+
+        this.status = status;
+        this.shortUrlReservations = shortUrlReservations;
+        this.nextCursor = nextCursor;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public List<ShortUrlReservation> getShortUrlReservations() {
+        return shortUrlReservations;
+    }
+
+    public void setShortUrlReservations(List<ShortUrlReservation> shortUrlReservations) {
+        this.shortUrlReservations = shortUrlReservations;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
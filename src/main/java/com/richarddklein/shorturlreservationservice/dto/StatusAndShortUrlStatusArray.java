@@ -0,0 +1,46 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+import java.util.List;
+
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+
+/**
+ * The overall status of a bulk operation, together with the outcome for
+ * each individual short URL, in the same order as the request.
+ */
+public class StatusAndShortUrlStatusArray {
+    private Status status;
+    private List<ShortUrlAndStatus> shortUrlStatuses;
+
+    public StatusAndShortUrlStatusArray() {
+    }
+
+    public StatusAndShortUrlStatusArray(
+            Status status,
+            List<ShortUrlAndStatus> shortUrlStatuses) {
+
+        this.status = status;
+        this.shortUrlStatuses = shortUrlStatuses;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public List<ShortUrlAndStatus> getShortUrlStatuses() {
+        return shortUrlStatuses;
+    }
+
+    public void setShortUrlStatuses(List<ShortUrlAndStatus> shortUrlStatuses) {
+        this.shortUrlStatuses = shortUrlStatuses;
+    }
+}
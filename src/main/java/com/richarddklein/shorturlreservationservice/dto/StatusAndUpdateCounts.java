@@ -0,0 +1,70 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dto;
+
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+
+/**
+ * The overall status of a table-wide operation, together with counts of
+ * the short URLs that it updated, left unchanged, or failed to update.
+ *
+ * <p>A short URL is left unchanged when it was already in the desired
+ * state by the time the operation got to it (e.g. because a client
+ * reserved it concurrently).</p>
+ */
+public class StatusAndUpdateCounts {
+    private Status status;
+    private long numUpdated;
+    private long numUnchanged;
+    private long numFailed;
+
+    public StatusAndUpdateCounts() {
+    }
+
+    public StatusAndUpdateCounts(
+            Status status,
+            long numUpdated,
+            long numUnchanged,
+            long numFailed) {
+
+        this.status = status;
+        this.numUpdated = numUpdated;
+        this.numUnchanged = numUnchanged;
+        this.numFailed = numFailed;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getNumUpdated() {
+        return numUpdated;
+    }
+
+    public void setNumUpdated(long numUpdated) {
+        this.numUpdated = numUpdated;
+    }
+
+    public long getNumUnchanged() {
+        return numUnchanged;
+    }
+
+    public void setNumUnchanged(long numUnchanged) {
+        this.numUnchanged = numUnchanged;
+    }
+
+    public long getNumFailed() {
+        return numFailed;
+    }
+
+    public void setNumFailed(long numFailed) {
+        this.numFailed = numFailed;
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains the Data Transfer Objects (DTOs) that are specific
+ * to the Short URL Reservation Service. (DTOs that are shared with other
+ * services live in the Short URL Common Library.)
+ */
+package com.richarddklein.shorturlreservationservice.dto;
@@ -27,14 +27,19 @@ public class GlobalExceptionHandler {
      * Handle the `NoResourceFoundException` exception, which is thrown
      * by the Spring framework.
      *
+     * <p>Spring MVC and Spring WebFlux each have their own
+     * `NoResourceFoundException`, depending on the `WebStack`.</p>
+     *
      * @param e The `NoResourceFoundException` exception that was thrown
      *          by Spring.
      * @return An HTTP Response Entity containing an error message as well
      * as the HTTP "Not Found" error code (404).
      */
-    @ExceptionHandler(NoResourceFoundException.class)
+    @ExceptionHandler({
+            NoResourceFoundException.class,
+            org.springframework.web.reactive.resource.NoResourceFoundException.class})
     public ResponseEntity<Status> handleNoResourceFoundException(
-            NoResourceFoundException e) {
+            Exception e) {
         logger.warn("====> ", e);
         Status status = new Status(UNKNOWN_ERROR, e.getMessage());
         return new ResponseEntity<>(status, HttpStatus.NOT_FOUND);
@@ -0,0 +1,12 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.exception;
+
+public class UnprocessedItemsException extends Exception {
+    public UnprocessedItemsException(int numItems) {
+        super(numItems + " items were still unprocessed after the last retry");
+    }
+}
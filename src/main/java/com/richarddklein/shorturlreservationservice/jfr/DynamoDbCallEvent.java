@@ -0,0 +1,93 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one DynamoDB call, including the SDK's own retries.
+ *
+ * <p>The key is the short URL of the item, for calls on a single item.
+ * The outcome is `success`, `conditional_check_failed`, or the simple
+ * name of the exception that the call failed with.</p>
+ */
+@Name("com.richarddklein.shorturl.DynamoDbCall")
+@Label("DynamoDB Call")
+@Category({"Short URL Reservation Service", "DynamoDB"})
+@Description("A call to DynamoDB, from the request to the response")
+@StackTrace(false)
+public class DynamoDbCallEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Table")
+    String tableName;
+
+    @Label("Key")
+    String key;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Outcome")
+    String outcome;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Start an event, if the event is enabled.
+     *
+     * @param operation The DynamoDB operation, e.g. `UpdateItem`.
+     * @return The event.
+     */
+    public static DynamoDbCallEvent start(String operation) {
+        DynamoDbCallEvent event = new DynamoDbCallEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * Say what the call is about. Only worth doing if the event is
+     * enabled.
+     *
+     * @param tableName The table, or null if there is none.
+     * @param key The short URL of the item, or null if there is none.
+     */
+    public void setTarget(String tableName, String key) {
+        this.tableName = tableName;
+        this.key = key;
+    }
+
+    /**
+     * Count an attempt of the SDK to send the call.
+     */
+    public void countAttempt() {
+        attempts++;
+    }
+
+    /**
+     * End the event, and commit it if it passes the recording's settings.
+     *
+     * @param outcome The outcome of the call.
+     */
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one refill of the pool of short URLs of the
+ * `PooledShortUrlAllocator`.
+ *
+ * <p>Lasts from the query of the index to the last claim. The outcome is
+ * `success` or `failure`.</p>
+ */
+@Name("com.richarddklein.shorturl.PoolRefill")
+@Label("Pool Refill")
+@Category({"Short URL Reservation Service", "DAO"})
+@Description("A refill of the per-instance pool of short URLs")
+@StackTrace(false)
+public class PoolRefillEvent extends Event {
+    @Label("Requested")
+    int requested;
+
+    @Label("Claimed")
+    long claimed;
+
+    @Label("Outcome")
+    String outcome;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Start an event, if the event is enabled.
+     *
+     * @param requested The number of short URLs that the refill asks for.
+     * @return The event.
+     */
+    public static PoolRefillEvent start(int requested) {
+        PoolRefillEvent event = new PoolRefillEvent();
+        if (event.isEnabled()) {
+            event.requested = requested;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * End the event, and commit it if it passes the recording's settings.
+     *
+     * @param claimed The number of short URLs claimed.
+     * @param outcome The outcome of the refill.
+     */
+    public void finish(long claimed, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.claimed = claimed;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
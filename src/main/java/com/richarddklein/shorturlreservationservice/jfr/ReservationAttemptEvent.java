@@ -0,0 +1,71 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one attempt to reserve, or to cancel the reservation
+ * of, one short URL.
+ *
+ * <p>Lasts from the conditional write to its answer. The outcome is the
+ * `ShortUrlStatus` of the attempt, e.g. `SHORT_URL_ALREADY_TAKEN` when the
+ * index offered a short URL that somebody else had just reserved.</p>
+ */
+@Name("com.richarddklein.shorturl.ReservationAttempt")
+@Label("Reservation Attempt")
+@Category({"Short URL Reservation Service", "DAO"})
+@Description("An attempt to reserve, or to cancel the reservation of, a short URL")
+@StackTrace(false)
+public class ReservationAttemptEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Short URL")
+    String shortUrl;
+
+    @Label("Outcome")
+    String outcome;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Start an event, if the event is enabled.
+     *
+     * @param operation The kind of attempt, e.g. `reserveAny`.
+     * @param shortUrl The short URL.
+     * @return The event.
+     */
+    public static ReservationAttemptEvent start(String operation, String shortUrl) {
+        ReservationAttemptEvent event = new ReservationAttemptEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.shortUrl = shortUrl;
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * End the event, and commit it if it passes the recording's settings.
+     *
+     * @param outcome The outcome of the attempt.
+     */
+    public void finish(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
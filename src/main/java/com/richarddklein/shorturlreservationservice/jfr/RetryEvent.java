@@ -0,0 +1,65 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event for one decision whether to retry an operation that lost
+ * an optimistic-locking race.
+ *
+ * <p>An instant event. The outcome is `retried`, `max_retries`,
+ * `deadline` or `budget_exhausted`, and the reason is `stale_index` or
+ * `conditional_check_failed`.</p>
+ */
+@Name("com.richarddklein.shorturl.Retry")
+@Label("Retry")
+@Category({"Short URL Reservation Service", "DAO"})
+@Description("A decision whether to retry an operation after a conflict")
+@StackTrace(false)
+public class RetryEvent extends Event {
+    @Label("Attempt")
+    long attempt;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Reason")
+    String reason;
+
+    @Label("Delay")
+    @Timespan(Timespan.MILLISECONDS)
+    long delay;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Commit an event, if it is enabled.
+     *
+     * @param attempt The number of the retry, starting from 1.
+     * @param outcome What was decided.
+     * @param reason Why the operation failed.
+     * @param delayMillis The delay before the retry.
+     */
+    public static void record(long attempt, String outcome, String reason, long delayMillis) {
+        RetryEvent event = new RetryEvent();
+        if (event.shouldCommit()) {
+            event.attempt = attempt;
+            event.outcome = outcome;
+            event.reason = reason;
+            event.delay = delayMillis;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains the custom Java Flight Recorder events of the
+ * Short URL Reservation service.
+ */
+package com.richarddklein.shorturlreservationservice.jfr;
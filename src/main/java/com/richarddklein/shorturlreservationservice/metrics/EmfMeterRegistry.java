@@ -0,0 +1,273 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.metrics;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A meter registry that writes its meters to CloudWatch, as log lines in
+ * the CloudWatch embedded metric format (EMF).
+ *
+ * <p>Micrometer has no EMF registry of its own, and its CloudWatch
+ * registry calls the CloudWatch API on a schedule, which a Lambda
+ * function that is frozen between invocations cannot be relied upon to
+ * keep. Instead, this registry accumulates its meters like a
+ * `SimpleMeterRegistry`, and `flush()` writes one EMF line per meter that
+ * changed since the last flush, carrying the change: the increase of a
+ * counter, the recordings of a timer (as a histogram of values and
+ * counts), or the current value of a gauge. The meter's tags become the
+ * line's dimensions. The Lambda handler flushes after every invocation,
+ * so that nothing is lost when the function is frozen.</p>
+ *
+ * <p>Timer histograms are kept cumulative (rather than decaying, as they
+ * do by default), so that the change in each bucket can be worked
+ * out.</p>
+ */
+public class EmfMeterRegistry extends SimpleMeterRegistry {
+    private static volatile EmfMeterRegistry instance;
+
+    private final String namespace;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Meter.Id, double[]> lastFlushed = new HashMap<>();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param namespace The CloudWatch namespace of the metrics.
+     */
+    public EmfMeterRegistry(String namespace) {
+        super(SimpleConfig.DEFAULT, Clock.SYSTEM);
+        this.namespace = namespace;
+
+        config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id,
+                                                         DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder()
+                        .expiry(Duration.ofDays(1825))
+                        .bufferLength(1)
+                        .build()
+                        .merge(config);
+            }
+        });
+        instance = this;
+    }
+
+    /**
+     * Flush the EMF registry, if there is one.
+     *
+     * <p>This lets the Lambda handler, which is not a Spring bean, flush
+     * the metrics after each invocation.</p>
+     */
+    public static void flushInstance() {
+        EmfMeterRegistry emfMeterRegistry = instance;
+        if (emfMeterRegistry != null) {
+            emfMeterRegistry.flush();
+        }
+    }
+
+    /**
+     * Discard what the EMF registry recorded so far, if there is one.
+     *
+     * <p>This lets the SnapStart hooks leave out the calls that primed the
+     * instance.</p>
+     */
+    public static void discardInstance() {
+        EmfMeterRegistry emfMeterRegistry = instance;
+        if (emfMeterRegistry != null) {
+            emfMeterRegistry.discard();
+        }
+    }
+
+    /**
+     * Write one EMF log line for each meter that changed since the last
+     * flush.
+     */
+    public synchronized void flush() {
+        flush(true);
+    }
+
+    /**
+     * Forget every change since the last flush, without writing it.
+     */
+    public synchronized void discard() {
+        flush(false);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void flush(boolean write) {
+        long timestamp = clock.wallTime();
+        for (Meter meter : getMeters()) {
+            ObjectNode metricValue = meter.match(
+                    this::gaugeValue,
+                    counter -> countDelta(counter.getId(), counter.count()),
+                    this::timerDelta,
+                    summary -> null,
+                    longTaskTimer -> null,
+                    timeGauge -> gaugeValue(timeGauge.value(TimeUnit.MILLISECONDS)),
+                    functionCounter -> countDelta(functionCounter.getId(), functionCounter.count()),
+                    functionTimer -> null,
+                    other -> null);
+            if (metricValue != null && write) {
+                writeLine(meter.getId(), timestamp, metricValue);
+            }
+        }
+    }
+
+    private ObjectNode gaugeValue(Gauge gauge) {
+        return gaugeValue(gauge.value());
+    }
+
+    private ObjectNode gaugeValue(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+        return objectMapper.createObjectNode()
+                .put("Unit", "None")
+                .put("Value", value);
+    }
+
+    private ObjectNode countDelta(Meter.Id id, double count) {
+        double[] last = lastFlushed.getOrDefault(id, new double[] {0});
+        double delta = count - last[0];
+        if (delta <= 0) {
+            return null;
+        }
+        lastFlushed.put(id, new double[] {count});
+        return objectMapper.createObjectNode()
+                .put("Unit", "Count")
+                .put("Value", delta);
+    }
+
+    /**
+     * Work out the recordings of a timer since the last flush.
+     *
+     * @param timer The timer.
+     * @return An EMF histogram of the recordings, in milliseconds, or null
+     * if there were none.
+     */
+    private ObjectNode timerDelta(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        CountAtBucket[] buckets = snapshot.histogramCounts();
+
+        // Layout: count, total, then the cumulative count of each bucket.
+        double[] current = new double[2 + buckets.length];
+        current[0] = snapshot.count();
+        current[1] = snapshot.total(TimeUnit.MILLISECONDS);
+        for (int i = 0; i < buckets.length; i++) {
+            current[2 + i] = buckets[i].count();
+        }
+        double[] last = lastFlushed.get(timer.getId());
+        if (last == null || last.length != current.length) {
+            last = new double[current.length];
+        }
+        long countDelta = (long) (current[0] - last[0]);
+        if (countDelta <= 0) {
+            return null;
+        }
+        lastFlushed.put(timer.getId(), current);
+
+        ArrayNode values = objectMapper.createArrayNode();
+        ArrayNode counts = objectMapper.createArrayNode();
+        double min = Double.NaN;
+        double max = Double.NaN;
+        double cumulativeBelow = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            double cumulative = current[2 + i] - last[2 + i];
+            double inBucket = cumulative - cumulativeBelow;
+            cumulativeBelow = cumulative;
+            if (inBucket > 0) {
+                double value = buckets[i].bucket(TimeUnit.MILLISECONDS);
+                values.add(value);
+                counts.add(inBucket);
+                min = Double.isNaN(min) ? value : min;
+                max = value;
+            }
+        }
+        double sum = current[1] - last[1];
+        double aboveLastBucket = countDelta - cumulativeBelow;
+        if (aboveLastBucket > 0) {
+            // Without a histogram, report the mean; above its top bucket,
+            // the largest value ever recorded.
+            double value = buckets.length == 0 ?
+                    sum / aboveLastBucket : snapshot.max(TimeUnit.MILLISECONDS);
+            values.add(value);
+            counts.add(aboveLastBucket);
+            min = Double.isNaN(min) ? value : Math.min(min, value);
+            max = Double.isNaN(max) ? value : Math.max(max, value);
+        }
+
+        ObjectNode statistics = objectMapper.createObjectNode();
+        statistics.set("Values", values);
+        statistics.set("Counts", counts);
+        statistics.put("Max", max)
+                .put("Min", min)
+                .put("Count", countDelta)
+                .put("Sum", sum);
+        return objectMapper.createObjectNode()
+                .put("Unit", "Milliseconds")
+                .set("Value", statistics);
+    }
+
+    /**
+     * Write the EMF log line for one meter.
+     *
+     * @param id The ID of the meter.
+     * @param timestamp The time of the flush, in epoch milliseconds.
+     * @param metricValue The unit and value of the metric.
+     */
+    private void writeLine(Meter.Id id, long timestamp, ObjectNode metricValue) {
+        ObjectNode line = objectMapper.createObjectNode();
+        ArrayNode dimensions = objectMapper.createArrayNode();
+        for (Tag tag : id.getTagsAsIterable()) {
+            dimensions.add(tag.getKey());
+            line.put(tag.getKey(), tag.getValue());
+        }
+        line.set(id.getName(), metricValue.get("Value"));
+
+        ObjectNode metric = objectMapper.createObjectNode()
+                .put("Name", id.getName())
+                .put("Unit", metricValue.get("Unit").asText());
+        ObjectNode directive = objectMapper.createObjectNode()
+                .put("Namespace", namespace);
+        directive.putArray("Dimensions").add(dimensions);
+        directive.putArray("Metrics").add(metric);
+
+        ObjectNode aws = objectMapper.createObjectNode()
+                .put("Timestamp", timestamp);
+        aws.putArray("CloudWatchMetrics").add(directive);
+        line.set("_aws", aws);
+
+        try {
+            System.out.println(objectMapper.writeValueAsString(line));
+        } catch (JsonProcessingException e) {
+            System.out.println("====> Could not write metric " + id.getName()
+                    + ": " + e.getMessage());
+        }
+    }
+}
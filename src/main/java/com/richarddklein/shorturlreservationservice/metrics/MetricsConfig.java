@@ -0,0 +1,49 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.metrics;
+
+import com.richarddklein.shorturlcommonlibrary.environment.HostUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The Metrics @Configuration class.
+ *
+ * <p>Tells Spring how to construct the registry of the service's metrics,
+ * which decides where they are exported to.</p>
+ */
+@Configuration
+public class MetricsConfig {
+    @Autowired
+    HostUtils hostUtils;
+
+    @Value("${shortUrl.reservations.metrics.export:auto}")
+    String export;
+
+    @Value("${shortUrl.reservations.metrics.emf.namespace:ShortUrlReservationService}")
+    String emfNamespace;
+
+    @Bean
+    public MeterRegistry
+    meterRegistry() {
+        String exportTo = export;
+        if (exportTo.equals("auto")) {
+            exportTo = hostUtils.isRunningLocally() ? "prometheus" : "emf";
+        }
+        return switch (exportTo) {
+            case "prometheus" -> new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+            case "emf" -> new EmfMeterRegistry(emfNamespace);
+            // The metrics are kept, but not exported.
+            default -> new SimpleMeterRegistry();
+        };
+    }
+}
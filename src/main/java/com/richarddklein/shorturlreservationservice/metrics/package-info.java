@@ -0,0 +1,10 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains files that set up the metrics of the Short URL
+ * Reservation service, and export them to Prometheus or CloudWatch.
+ */
+package com.richarddklein.shorturlreservationservice.metrics;
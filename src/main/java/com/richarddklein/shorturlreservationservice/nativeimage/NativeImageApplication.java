@@ -0,0 +1,38 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.nativeimage;
+
+import com.richarddklein.shorturlreservationservice.Application;
+import com.richarddklein.shorturlreservationservice.WebStack;
+
+import com.amazonaws.serverless.proxy.spring.embedded.ServerlessReactiveServletEmbeddedServerFactory;
+import com.amazonaws.serverless.proxy.spring.embedded.ServerlessServletEmbeddedServerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * The application that Spring AOT processes for the native image.
+ *
+ * <p>In AWS Lambda, the `SpringBootLambdaContainerHandler` does not run
+ * `Application` on its own, but together with its serverless "server":
+ * a reactive one for the `REACTIVE` `WebStack`, or a servlet one for the
+ * `SERVLET` `WebStack`. Spring AOT fixes the bean definitions of the
+ * native image at build time, so it must process the very same sources:
+ * this class runs them exactly as the handler does. The web stack is
+ * therefore chosen when the image is built, and the function must choose
+ * the same one. This class is only ever run by the `process-aot` goal of
+ * the `native` Maven profile.</p>
+ */
+public class NativeImageApplication {
+    public static void main(String[] args) {
+        WebStack webStack = WebStack.current();
+        Class<?> serverFactory = webStack == WebStack.SERVLET ?
+                ServerlessServletEmbeddedServerFactory.class :
+                ServerlessReactiveServletEmbeddedServerFactory.class;
+        new SpringApplicationBuilder(serverFactory, Application.class)
+                .web(webStack.webApplicationType())
+                .run(args);
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.nativeimage;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.aot.AotApplicationContextInitializer;
+
+/**
+ * Initialize the application context from the bean definitions that
+ * Spring AOT generated for `NativeImageApplication`.
+ *
+ * <p>Spring Boot looks for the generated initializer by the name of the
+ * class whose `main()` started the application. In the native image, that
+ * is the Lambda runtime interface client, not `NativeImageApplication`,
+ * so this initializer (registered in `META-INF/spring.factories`) names
+ * the generated one explicitly. When the generated artifacts are not in
+ * use, i.e. on the JVM, it does nothing.</p>
+ */
+public class NativeImageContextInitializer
+        implements AotApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    private static final String GENERATED_INITIALIZER =
+            NativeImageApplication.class.getName() + "__ApplicationContextInitializer";
+
+    @Override
+    public void initialize(ConfigurableApplicationContext applicationContext) {
+        if (AotDetector.useGeneratedArtifacts()) {
+            AotApplicationContextInitializer.forInitializerClasses(GENERATED_INITIALIZER)
+                    .initialize(applicationContext);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.nativeimage;
+
+import java.util.List;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.StreamLambdaHandler;
+import com.richarddklein.shorturlreservationservice.dto.*;
+
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * The hints that tell GraalVM what the service reaches only at run time,
+ * and so must be included in the native image.
+ *
+ * <p>Spring AOT already derives the hints for the beans and the
+ * controller, and the AWS SDK, Netty and the Lambda runtime interface
+ * client ship their own. What remains is registered here:</p>
+ *
+ * <ul>
+ *     <li>`StreamLambdaHandler`, which the Lambda runtime interface client
+ *     loads by name.</li>
+ *     <li>The classes that Jackson binds: the API Gateway proxy events and
+ *     the DTOs of the responses.</li>
+ *     <li>`ShortUrlReservation`, whose getters and setters the `TableSchema`
+ *     of the DynamoDB enhanced client introspects.</li>
+ *     <li>The JDK proxy of the `ParameterStoreCache`.</li>
+ *     <li>The JWT library, which instantiates its implementation by name,
+ *     and finds its JSON support via the `ServiceLoader`.</li>
+ *     <li>The execution interceptors that the AWS SDK lists in
+ *     resources.</li>
+ * </ul>
+ */
+public class NativeImageHints implements RuntimeHintsRegistrar {
+    private static final List<Class<?>> JSON_BOUND_CLASSES = List.of(
+            AwsProxyRequest.class,
+            AwsProxyResponse.class,
+            Status.class,
+            StatusAndShortUrlReservation.class,
+            StatusAndShortUrlReservationArray.class,
+            StatusAndShortUrlReservationPage.class,
+            StatusAndShortUrlStatusArray.class,
+            StatusAndUpdateCounts.class,
+            StatusAndAdminJob.class,
+            ShortUrlAndStatus.class,
+            AdminJob.class,
+            ShortUrlReservation.class);
+
+    // The JWT library's API instantiates these via `Classes.newInstance()`.
+    private static final List<String> JWT_IMPLEMENTATION_CLASSES = List.of(
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+            "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardHashAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyOperations",
+            "io.jsonwebtoken.impl.security.KeysBridge",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(StreamLambdaHandler.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+        JSON_BOUND_CLASSES.forEach(type ->
+                bindingRegistrar.registerReflectionHints(hints.reflection(), type));
+
+        hints.reflection().registerType(ShortUrlReservation.class, MemberCategory.values());
+
+        hints.proxies().registerJdkProxy(ParameterStoreAccessor.class);
+
+        JWT_IMPLEMENTATION_CLASSES.forEach(className ->
+                hints.reflection().registerTypeIfPresent(classLoader, className,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS));
+        hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+
+        hints.resources().registerPattern("software/amazon/awssdk/global/handlers/execution.interceptors");
+        hints.resources().registerPattern("software/amazon/awssdk/services/*/execution.interceptors");
+    }
+}
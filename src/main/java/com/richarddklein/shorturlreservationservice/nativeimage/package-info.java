@@ -0,0 +1,13 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains files that let the Short URL Reservation service
+ * be built as a GraalVM native image, for an AWS Lambda custom runtime:
+ * the application whose context Spring AOT processes, and the hints that
+ * tell GraalVM what the service reaches only via reflection, proxies or
+ * resources.
+ */
+package com.richarddklein.shorturlreservationservice.nativeimage;
@@ -0,0 +1,398 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlreservationservice.dao.AdminJobStore;
+import com.richarddklein.shorturlreservationservice.dao.BulkProgress;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlReservationDao;
+import com.richarddklein.shorturlreservationservice.dto.AdminJob;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobState;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs table-wide operations as checkpointed, resumable admin jobs.
+ *
+ * <p>A job is worked on in slices of at most `sliceDuration`. While a slice
+ * runs, the job's progress is folded into its checkpoint record, which is
+ * saved at most once per `checkpointInterval`, and once more at the end of
+ * the slice. A job that did not finish within its slice is left `PAUSED`,
+ * and picks up from its last checkpoint when it is resumed.</p>
+ *
+ * <p>Slicing is what lets a job outlive the Lambda and API Gateway
+ * timeouts: Lambda freezes an instance as soon as it has returned its
+ * response, so work cannot simply carry on in the background there. Only
+ * on a long-lived host (a server, not Lambda) may `sliceDuration` be zero,
+ * in which case a job runs to completion in the background, and starting
+ * or resuming it returns at once. Background jobs are stopped when the
+ * runner is shut down, and can then be resumed from their checkpoints.</p>
+ *
+ * <p>Ending a slice cancels whatever writes are in flight, which may or may
+ * not have taken effect. Each bulk operation is written so that picking up
+ * from the last checkpoint redoes such writes safely.</p>
+ *
+ * <p>The instance that works on a job holds a lease on it, which each
+ * checkpoint extends by `leaseDuration`. If the instance times out or
+ * crashes, the lease runs out, the job shows up as `INTERRUPTED`, and any
+ * instance may resume it. Since every save of the checkpoint record is
+ * conditional on its version, an instance that wakes up to find that its
+ * job has been taken over simply stops.</p>
+ */
+public class AdminJobRunner {
+    private static final long MAX_EXTENSION_MULTIPLE = 10;
+
+    private final ShortUrlReservationDao shortUrlReservationDao;
+    private final AdminJobStore adminJobStore;
+    private final ParameterStoreAccessor parameterStoreAccessor;
+    private final Duration sliceDuration;
+    private final Duration leaseDuration;
+    private final Duration checkpointInterval;
+    private final long rangeExtensionSize;
+    private final Disposable.Composite backgroundSlices = Disposables.composite();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param shortUrlReservationDao Dependency injection of a class instance
+     *                               that is to play the role of the Short URL
+     *                               Reservation DAO.
+     * @param adminJobStore Dependency injection of a class instance that is to
+     *                      play the role of the store of checkpoint records.
+     * @param parameterStoreAccessor Dependency injection of a class instance that
+     *                               is to play the role of accessing parameters
+     *                               in the Parameter Store component of the AWS
+     *                               Simple System Manager (SSM).
+     * @param sliceDuration The longest time to work on a job per start or
+     *                      resume, or zero to run the job to completion in
+     *                      the background (on long-lived hosts only).
+     * @param leaseDuration How long after its last checkpoint a `RUNNING` job
+     *                      is considered to have been interrupted.
+     * @param checkpointInterval The shortest time between checkpoints.
+     * @param rangeExtensionSize The number of short URLs that a range
+     *                           extension job adds, unless told otherwise,
+     *                           and a tenth of the most that it may add.
+     */
+    public AdminJobRunner(
+            ShortUrlReservationDao shortUrlReservationDao,
+            AdminJobStore adminJobStore,
+            ParameterStoreAccessor parameterStoreAccessor,
+            Duration sliceDuration,
+            Duration leaseDuration,
+            Duration checkpointInterval,
+            long rangeExtensionSize) {
+
+        this.shortUrlReservationDao = shortUrlReservationDao;
+        this.adminJobStore = adminJobStore;
+        this.parameterStoreAccessor = parameterStoreAccessor;
+        this.sliceDuration = sliceDuration;
+        this.leaseDuration = leaseDuration;
+        this.checkpointInterval = checkpointInterval;
+        this.rangeExtensionSize = rangeExtensionSize;
+    }
+
+    /**
+     * Create the table that holds the checkpoint records, unless it already
+     * exists.
+     */
+    public void prepareJobStore() {
+        adminJobStore.createIfNotExists();
+    }
+
+    /**
+     * Stop every job that is running in the background.
+     *
+     * <p>The jobs are left as they were at their last checkpoint, and show
+     * up as `INTERRUPTED` once their leases run out.</p>
+     */
+    public void shutdown() {
+        backgroundSlices.dispose();
+    }
+
+    /**
+     * Start a new job.
+     *
+     * <p>A repository initialization job deletes and recreates the Short
+     * URL Reservation table before the job is created, since that cannot
+     * be done piecemeal. Only the population of the table is checkpointed.</p>
+     *
+     * <p>A range extension job covers the short URLs from just past the
+     * current end of the range up to `maxShortUrlBase10`. Its ID is derived
+     * from that interval, so that starting the same extension again (from
+     * this instance or any other) picks up the existing job instead of
+     * starting a second one. An extension may add no more than
+     * `MAX_EXTENSION_MULTIPLE` times `rangeExtensionSize` short URLs, so
+     * that a typo cannot set off a job that runs for days.</p>
+     *
+     * @param adminJobType What the job is to do.
+     * @param maxShortUrlBase10 For a range extension job, the new end of the
+     *                          range, or `null` to extend the range by
+     *                          `rangeExtensionSize`. Otherwise ignored.
+     * @return The job, as of the end of its first slice (or, when running
+     * in the background, as of its start). Fails with an
+     * `IllegalArgumentException` if `maxShortUrlBase10` is not past the
+     * current end of the range, or is too far past it.
+     */
+    public Mono<AdminJob> startJob(AdminJobType adminJobType, Long maxShortUrlBase10) {
+        if (adminJobType == AdminJobType.EXTEND_RANGE) {
+            return startRangeExtensionJob(maxShortUrlBase10);
+        }
+
+        Mono<Void> preparation = adminJobType != AdminJobType.INITIALIZE_REPOSITORY ?
+            Mono.empty() :
+            Mono.<Void>fromRunnable(() -> {
+                    prepareJobStore();
+                    shortUrlReservationDao.recreateShortUrlReservationTable();
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return preparation
+            .then(Mono.zip(
+                    parameterStoreAccessor.getMinShortUrlBase10().defaultIfEmpty(0L),
+                    parameterStoreAccessor.getMaxShortUrlBase10().defaultIfEmpty(0L)))
+            .map(range -> new AdminJob(
+                    UUID.randomUUID().toString(),
+                    adminJobType,
+                    range.getT2() - range.getT1() + 1,
+                    System.currentTimeMillis()))
+            .flatMap(this::runJob);
+    }
+
+    /**
+     * Get the current state of a job.
+     *
+     * @param jobId The ID of the job.
+     * @return The job, or an empty Mono if there is no such job.
+     */
+    public Mono<AdminJob> getJob(String jobId) {
+        return adminJobStore.getJob(jobId)
+            .doOnNext(adminJob -> {
+                if (adminJob.getState() == AdminJobState.RUNNING &&
+                        adminJob.getLeaseExpiresAt() < System.currentTimeMillis()) {
+                    adminJob.setState(AdminJobState.INTERRUPTED);
+                }
+            });
+    }
+
+    /**
+     * Resume a job from its last checkpoint.
+     *
+     * <p>A job that is still running, or that has already succeeded, is
+     * left alone.</p>
+     *
+     * @param adminJob The job, as returned by `getJob()`.
+     * @return The job, as of the end of this slice (or, when running in the
+     * background, as of its resumption).
+     */
+    public Mono<AdminJob> resumeJob(AdminJob adminJob) {
+        if (adminJob.getState() == AdminJobState.RUNNING ||
+                adminJob.getState() == AdminJobState.SUCCEEDED) {
+            return Mono.just(adminJob);
+        }
+        return runJob(adminJob);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private Mono<AdminJob> startRangeExtensionJob(Long requestedMaxShortUrlBase10) {
+        return shortUrlReservationDao.getMaxShortUrlBase10()
+            .flatMap(currentMaxShortUrlBase10 -> {
+                long min = currentMaxShortUrlBase10 + 1;
+                long max = requestedMaxShortUrlBase10 != null ?
+                        requestedMaxShortUrlBase10 :
+                        currentMaxShortUrlBase10 + rangeExtensionSize;
+                if (max <= currentMaxShortUrlBase10) {
+                    return Mono.error(new IllegalArgumentException(String.format(
+                            "maxShortUrlBase10 must be above the current end of the range, %d",
+                            currentMaxShortUrlBase10)));
+                }
+                if (max - currentMaxShortUrlBase10 > MAX_EXTENSION_MULTIPLE * rangeExtensionSize) {
+                    return Mono.error(new IllegalArgumentException(String.format(
+                            "A range extension may add at most %d short URLs",
+                            MAX_EXTENSION_MULTIPLE * rangeExtensionSize)));
+                }
+                String jobId = String.format("%s-%d-%d",
+                        AdminJobType.EXTEND_RANGE.getPathName(), min, max);
+
+                return getJob(jobId)
+                    .flatMap(this::resumeJob)
+                    .switchIfEmpty(Mono.defer(() -> {
+                        AdminJob adminJob = new AdminJob(
+                                jobId,
+                                AdminJobType.EXTEND_RANGE,
+                                max - min + 1,
+                                System.currentTimeMillis());
+                        adminJob.setMinShortUrlBase10(min);
+                        adminJob.setMaxShortUrlBase10(max);
+                        return runJob(adminJob);
+                    }));
+            });
+    }
+
+    /**
+     * Claim a job, and work on it for one slice.
+     *
+     * @param adminJob The job.
+     * @return The job, as of the end of the slice (or, when running in the
+     * background, as of the claim). If somebody else claimed the job first,
+     * their view of it.
+     */
+    private Mono<AdminJob> runJob(AdminJob adminJob) {
+        long now = System.currentTimeMillis();
+        adminJob.setState(AdminJobState.RUNNING);
+        adminJob.setMessage(null);
+        adminJob.setUpdatedAt(now);
+        adminJob.setLeaseExpiresAt(now + leaseDuration.toMillis());
+
+        return adminJobStore.saveJob(adminJob)
+            .flatMap(isClaimed -> {
+                if (!isClaimed) {
+                    return getJob(adminJob.getJobId());
+                }
+                System.out.println("====> Running job " + adminJob.getJobId()
+                        + " (" + adminJob.getJobType().getPathName() + ")");
+                Mono<AdminJob> slice = runSlice(adminJob);
+                if (!sliceDuration.isZero()) {
+                    return slice;
+                }
+                AdminJob snapshot = new AdminJob(adminJob);
+                runInBackground(adminJob.getJobId(), slice);
+                return Mono.just(snapshot);
+            });
+    }
+
+    /**
+     * Run a slice with nobody waiting for its outcome.
+     *
+     * <p>The slice records its own failures in the job, so an error here
+     * means that even that failed, and all we can do is log it.</p>
+     *
+     * @param jobId The ID of the job.
+     * @param slice The slice.
+     */
+    private void runInBackground(String jobId, Mono<AdminJob> slice) {
+        Disposable.Swap disposable = Disposables.swap();
+        backgroundSlices.add(disposable);
+        disposable.update(slice
+            .doFinally(signalType -> backgroundSlices.remove(disposable))
+            .subscribe(
+                adminJob -> { },
+                e -> System.out.println("====> Background job " + jobId
+                        + " failed: " + e.getMessage())));
+    }
+
+    /**
+     * Work on a job that we have claimed, until it is done, or until the
+     * slice is up.
+     *
+     * @param adminJob The job.
+     * @return The job, as of the end of the slice.
+     */
+    private Mono<AdminJob> runSlice(AdminJob adminJob) {
+        long sliceStartMillis = System.currentTimeMillis();
+        long activeMillisBefore = adminJob.getActiveMillis();
+        AtomicLong lastCheckpointMillis = new AtomicLong(sliceStartMillis);
+        AtomicBoolean isFinished = new AtomicBoolean();
+
+        Flux<BulkProgress> progress = bulkProgressOf(adminJob)
+            .doOnComplete(() -> isFinished.set(true));
+        if (!sliceDuration.isZero()) {
+            progress = progress.take(sliceDuration);
+        }
+
+        return progress
+            .concatMap(bulkProgress -> {
+                long now = System.currentTimeMillis();
+                applyProgress(adminJob, bulkProgress);
+                adminJob.setActiveMillis(activeMillisBefore + now - sliceStartMillis);
+                adminJob.setUpdatedAt(now);
+                if (now - lastCheckpointMillis.get() < checkpointInterval.toMillis()) {
+                    return Mono.just(true);
+                }
+                lastCheckpointMillis.set(now);
+                adminJob.setLeaseExpiresAt(now + leaseDuration.toMillis());
+                return adminJobStore.saveJob(adminJob);
+            })
+            // Stop as soon as we find that somebody else took over the job.
+            .takeUntil(isStillOurs -> !isStillOurs)
+            .last(true)
+            .onErrorResume(e -> {
+                System.out.println("====> Job " + adminJob.getJobId() + " failed: " + e.getMessage());
+                adminJob.setState(AdminJobState.FAILED);
+                adminJob.setMessage(e.getMessage());
+                return Mono.just(true);
+            })
+            .flatMap(isStillOurs -> {
+                if (!isStillOurs) {
+                    System.out.println("====> Job " + adminJob.getJobId()
+                            + " was taken over by another instance");
+                    return getJob(adminJob.getJobId());
+                }
+                long now = System.currentTimeMillis();
+                adminJob.setActiveMillis(activeMillisBefore + now - sliceStartMillis);
+                adminJob.setUpdatedAt(now);
+                adminJob.setLeaseExpiresAt(now);
+                if (adminJob.getState() != AdminJobState.FAILED) {
+                    adminJob.setState(isFinished.get() ?
+                            AdminJobState.SUCCEEDED : AdminJobState.PAUSED);
+                }
+                System.out.println("====> Job " + adminJob.getJobId() + " is "
+                        + adminJob.getState() + " after " + adminJob.getNumScanned()
+                        + " of about " + adminJob.getTotalShortUrls() + " short URLs");
+                return adminJobStore.saveJob(adminJob).thenReturn(adminJob);
+            });
+    }
+
+    private Flux<BulkProgress> bulkProgressOf(AdminJob adminJob) {
+        // The job's positions change as it makes progress, so the DAO gets
+        // a copy of where the job stood when the slice started.
+        List<String> startPositions = List.copyOf(adminJob.getPositions());
+
+        return switch (adminJob.getJobType()) {
+            case INITIALIZE_REPOSITORY ->
+                    shortUrlReservationDao.populateShortUrlReservationTable(startPositions);
+            case RESERVE_ALL ->
+                    shortUrlReservationDao.reserveAllShortUrls(startPositions);
+            case CANCEL_ALL ->
+                    shortUrlReservationDao.cancelAllShortUrlReservations(startPositions);
+            case EXTEND_RANGE ->
+                    shortUrlReservationDao.extendShortUrlRange(
+                            adminJob.getMinShortUrlBase10(),
+                            adminJob.getMaxShortUrlBase10(),
+                            startPositions);
+        };
+    }
+
+    private static void applyProgress(AdminJob adminJob, BulkProgress bulkProgress) {
+        List<String> positions = adminJob.getPositions();
+        if (positions.isEmpty()) {
+            positions.addAll(Collections.nCopies(bulkProgress.getNumSegments(), BulkProgress.START));
+        }
+        positions.set(bulkProgress.getSegment(), bulkProgress.getNextPosition());
+        adminJob.setNumScanned(adminJob.getNumScanned() + bulkProgress.getNumScanned());
+        adminJob.setNumUpdated(adminJob.getNumUpdated() + bulkProgress.getNumUpdated());
+        adminJob.setNumUnchanged(adminJob.getNumUnchanged() + bulkProgress.getNumUnchanged());
+        adminJob.setNumFailed(adminJob.getNumFailed() + bulkProgress.getNumFailed());
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlReservationDao;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A gauge of the estimated number of short URLs still available.
+ *
+ * <p>Registered as `shorturl.free.estimated`. The gauge refreshes its
+ * estimate on a schedule of its own, once per `refreshInterval`, one
+ * estimate at a time. Reading the gauge only returns the last estimate, so
+ * it never waits for DynamoDB, nor sets off any work. Estimates stop
+ * counting at `upTo`, which keeps them cheap; the gauge is meant to warn
+ * of a shortage, not to count a plentiful supply.</p>
+ */
+public class FreeShortUrlsGauge {
+    private final ShortUrlReservationDao shortUrlReservationDao;
+    private final long upTo;
+    private final Duration refreshInterval;
+
+    private final AtomicLong numFreeShortUrls = new AtomicLong(-1);
+    private final Disposable.Swap refreshes = Disposables.swap();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param shortUrlReservationDao Dependency injection of a class instance
+     *                               that is to play the role of the Short URL
+     *                               Reservation DAO.
+     * @param meterRegistry The registry to register the gauge with.
+     * @param upTo The number of available short URLs at which the estimate
+     *             stops counting.
+     * @param refreshInterval The shortest time between estimates.
+     */
+    public FreeShortUrlsGauge(
+            ShortUrlReservationDao shortUrlReservationDao,
+            MeterRegistry meterRegistry,
+            long upTo,
+            Duration refreshInterval) {
+
+        this.shortUrlReservationDao = shortUrlReservationDao;
+        this.upTo = upTo;
+        this.refreshInterval = refreshInterval;
+
+        Gauge.builder("shorturl.free.estimated", this, FreeShortUrlsGauge::value)
+                .description("Estimated number of short URLs still available, up to " + upTo)
+                .register(meterRegistry);
+        scheduleRefreshes();
+    }
+
+    /**
+     * Get the latest estimate.
+     *
+     * @return The estimated number of available short URLs, or NaN if
+     * there is no estimate yet.
+     */
+    public double value() {
+        long numFree = numFreeShortUrls.get();
+        return numFree < 0 ? Double.NaN : numFree;
+    }
+
+    /**
+     * Refresh the estimate now, and then once per `refreshInterval`.
+     *
+     * <p>Called when the instance is restored from a SnapStart snapshot,
+     * whose estimate may be long out of date.</p>
+     */
+    public void refreshSoon() {
+        scheduleRefreshes();
+    }
+
+    /**
+     * Stop refreshing the estimate.
+     */
+    public void close() {
+        refreshes.dispose();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void scheduleRefreshes() {
+        refreshes.update(Flux.interval(Duration.ZERO, refreshInterval)
+            // A slow estimate delays the next one, rather than piling up.
+            .onBackpressureDrop()
+            .concatMap(tick -> shortUrlReservationDao.estimateNumFreeShortUrls(upTo)
+                .onErrorResume(e -> {
+                    System.out.println("====> Could not estimate the number of "
+                            + "available short URLs: " + e.getMessage());
+                    return Mono.empty();
+                }), 1)
+            .subscribe(numFreeShortUrls::set));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlReservationDao;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+
+/**
+ * Extends the range of short URLs automatically, when it runs low.
+ *
+ * <p>Reservations call `checkAvailability()` after the fact. At most once
+ * per `checkInterval` (per instance), that estimates the number of short
+ * URLs still available, and if it has dropped below `threshold`, starts a
+ * range extension job in the background. Since the ID of a range extension
+ * job is derived from the interval that it covers, all the instances that
+ * notice the shortage at about the same time end up working on the same
+ * job, and a job that was paused or interrupted is picked up again at the
+ * next check.</p>
+ *
+ * <p>For the shortage to go away, the size of an extension must be well
+ * above `threshold`.</p>
+ */
+public class RangeAutoExtender {
+    private final ShortUrlReservationDao shortUrlReservationDao;
+    private final AdminJobRunner adminJobRunner;
+    private final long threshold;
+    private final Duration checkInterval;
+
+    private final AtomicLong nextCheckNanos = new AtomicLong(System.nanoTime());
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param shortUrlReservationDao Dependency injection of a class instance
+     *                               that is to play the role of the Short URL
+     *                               Reservation DAO.
+     * @param adminJobRunner Dependency injection of a class instance that is
+     *                       to play the role of the runner of admin jobs.
+     * @param threshold The number of available short URLs below which the
+     *                  range is extended, or zero to never extend it
+     *                  automatically.
+     * @param checkInterval The shortest time between checks.
+     */
+    public RangeAutoExtender(
+            ShortUrlReservationDao shortUrlReservationDao,
+            AdminJobRunner adminJobRunner,
+            long threshold,
+            Duration checkInterval) {
+
+        this.shortUrlReservationDao = shortUrlReservationDao;
+        this.adminJobRunner = adminJobRunner;
+        this.threshold = threshold;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Extend the range in the background if it is running low, unless it
+     * has been checked recently.
+     */
+    public void checkAvailability() {
+        if (threshold <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long nextCheck = nextCheckNanos.get();
+        if (now - nextCheck < 0 ||
+                !nextCheckNanos.compareAndSet(nextCheck, now + checkInterval.toNanos())) {
+            return;
+        }
+
+        shortUrlReservationDao.estimateNumFreeShortUrls(threshold)
+            .filter(numFree -> numFree < threshold)
+            .flatMap(numFree -> {
+                System.out.println("====> Only about " + numFree
+                        + " short URLs are available; extending the range");
+                return adminJobRunner.startJob(AdminJobType.EXTEND_RANGE, null);
+            })
+            .subscribe(
+                adminJob -> System.out.println("====> Range extension job "
+                        + adminJob.getJobId() + " is " + adminJob.getState()),
+                e -> System.out.println("====> Could not extend the range: "
+                        + e.getMessage()));
+    }
+
+    /**
+     * Have the next call to `checkAvailability()` check the range.
+     *
+     * <p>Called when the instance is restored from a SnapStart snapshot,
+     * after which the time of the last check means nothing.</p>
+     */
+    public void checkSoon() {
+        nextCheckNanos.set(System.nanoTime());
+    }
+}
@@ -5,9 +5,16 @@
 
 package com.richarddklein.shorturlreservationservice.service;
 
+import java.time.Duration;
+
 import com.richarddklein.shorturlcommonlibrary.environment.HostUtils;
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlreservationservice.dao.AdminJobStore;
 import com.richarddklein.shorturlreservationservice.dao.ShortUrlReservationDao;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -25,9 +32,97 @@ public class ServiceConfig {
     @Autowired
     HostUtils hostUtils;
 
+    @Autowired
+    AdminJobStore adminJobStore;
+
+    @Autowired
+    ParameterStoreAccessor parameterStoreAccessor;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    Tracer tracer;
+
+    @Value("${shortUrl.reservations.jobs.sliceSeconds:20}")
+    long jobSliceSeconds;
+
+    @Value("${shortUrl.reservations.jobs.leaseSeconds:60}")
+    long jobLeaseSeconds;
+
+    @Value("${shortUrl.reservations.jobs.checkpointIntervalMillis:1000}")
+    long jobCheckpointIntervalMillis;
+
+    @Value("${shortUrl.reservations.storageMode:item}")
+    String storageMode;
+
+    @Value("${shortUrl.reservations.rangeExtension.size:1000000}")
+    long rangeExtensionSize;
+
+    @Value("${shortUrl.reservations.rangeExtension.autoThreshold:0}")
+    long rangeExtensionAutoThreshold;
+
+    @Value("${shortUrl.reservations.rangeExtension.checkIntervalSeconds:60}")
+    long rangeExtensionCheckIntervalSeconds;
+
+    @Value("${shortUrl.reservations.metrics.freeShortUrls.upTo:100000}")
+    long freeShortUrlsUpTo;
+
+    @Value("${shortUrl.reservations.metrics.freeShortUrls.refreshSeconds:60}")
+    long freeShortUrlsRefreshSeconds;
+
     @Bean
     public ShortUrlReservationService
     shortUrlReservationService() {
-        return new ShortUrlReservationServiceImpl(shortUrlReservationDao, hostUtils);
+        return new TracedShortUrlReservationService(
+                new ShortUrlReservationServiceImpl(
+                        shortUrlReservationDao,
+                        hostUtils,
+                        adminJobRunner(),
+                        rangeAutoExtender()),
+                tracer);
+    }
+
+    @Bean
+    public AdminJobRunner
+    adminJobRunner() {
+        return new AdminJobRunner(
+                shortUrlReservationDao,
+                adminJobStore,
+                parameterStoreAccessor,
+                Duration.ofSeconds(jobSliceSeconds),
+                Duration.ofSeconds(jobLeaseSeconds),
+                Duration.ofMillis(jobCheckpointIntervalMillis),
+                rangeExtensionSize);
+    }
+
+    @Bean
+    public RangeAutoExtender
+    rangeAutoExtender() {
+        // In bitmap storage mode, estimating the number of available short
+        // URLs means scanning the chunk table (all of it, just when short
+        // URLs run low), which is too costly to do on the reservation path.
+        // The range can still be extended with an `extend-range` job.
+        long threshold = rangeExtensionAutoThreshold;
+        if (storageMode.equals("bitmap") && threshold > 0) {
+            System.out.println("====> Automatic range extension is disabled "
+                    + "in bitmap storage mode");
+            threshold = 0;
+        }
+        return new RangeAutoExtender(
+                shortUrlReservationDao,
+                adminJobRunner(),
+                threshold,
+                Duration.ofSeconds(rangeExtensionCheckIntervalSeconds));
+    }
+
+    @Bean
+    public FreeShortUrlsGauge
+    freeShortUrlsGauge() {
+        return new FreeShortUrlsGauge(
+                shortUrlReservationDao,
+                meterRegistry,
+                freeShortUrlsUpTo,
+                Duration.ofSeconds(freeShortUrlsRefreshSeconds));
     }
 }
@@ -5,9 +5,18 @@
 
 package com.richarddklein.shorturlreservationservice.service;
 
+import java.util.List;
+
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndAdminJob;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -21,24 +30,48 @@ public interface ShortUrlReservationService {
     ShortUrlStatus
     initializeShortUrlReservationRepository();
 
+    ShortUrlStatus
+    migrateShortUrlReservationRepository();
+
     Mono<StatusAndShortUrlReservation>
     getSpecificShortUrlReservation(String shortUrl);
 
-    Mono<StatusAndShortUrlReservationArray>
-    getAllShortUrlReservations();
+    Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available);
+
+    Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available);
 
     Mono<StatusAndShortUrlReservation>
     reserveAnyShortUrl();
 
+    Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count);
+
     Mono<ShortUrlStatus>
     reserveSpecificShortUrl(String shortUrl);
 
-    Mono<ShortUrlStatus>
+    Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls);
+
+    Mono<StatusAndUpdateCounts>
     reserveAllShortUrls();
 
     Mono<ShortUrlStatus>
     cancelSpecificShortUrlReservation(String shortUrl);
 
-    Mono<ShortUrlStatus>
+    Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls);
+
+    Mono<StatusAndUpdateCounts>
     cancelAllShortUrlReservations();
+
+    Mono<StatusAndAdminJob>
+    startAdminJob(AdminJobType adminJobType, Long maxShortUrlBase10);
+
+    Mono<StatusAndAdminJob>
+    resumeAdminJob(String jobId);
+
+    Mono<StatusAndAdminJob>
+    getAdminJob(String jobId);
 }
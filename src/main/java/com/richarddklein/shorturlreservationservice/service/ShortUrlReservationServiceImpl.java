@@ -5,14 +5,25 @@
 
 package com.richarddklein.shorturlreservationservice.service;
 
+import java.util.List;
+
 import com.richarddklein.shorturlcommonlibrary.environment.HostUtils;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
 import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
 import com.richarddklein.shorturlcommonlibrary.service.status.Status;
+import com.richarddklein.shorturlreservationservice.dto.AdminJob;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndAdminJob;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
 import org.springframework.stereotype.Service;
 
+import com.richarddklein.shorturlreservationservice.dao.BulkProgress;
 import com.richarddklein.shorturlreservationservice.dao.ShortUrlReservationDao;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus.*;
@@ -24,6 +35,8 @@ import static com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlSta
 public class ShortUrlReservationServiceImpl implements ShortUrlReservationService {
     private final ShortUrlReservationDao shortUrlReservationDao;
     private final HostUtils hostUtils;
+    private final AdminJobRunner adminJobRunner;
+    private final RangeAutoExtender rangeAutoExtender;
 
     // ------------------------------------------------------------------------
     // PUBLIC METHODS
@@ -31,10 +44,14 @@ public class ShortUrlReservationServiceImpl implements ShortUrlReservationServic
 
     public ShortUrlReservationServiceImpl(
             ShortUrlReservationDao shortUrlReservationDao,
-            HostUtils hostUtils) {
+            HostUtils hostUtils,
+            AdminJobRunner adminJobRunner,
+            RangeAutoExtender rangeAutoExtender) {
 
         this.shortUrlReservationDao = shortUrlReservationDao;
         this.hostUtils = hostUtils;
+        this.adminJobRunner = adminJobRunner;
+        this.rangeAutoExtender = rangeAutoExtender;
     }
 
     // Initialization of the Short URL Reservation repository is performed
@@ -48,6 +65,20 @@ public class ShortUrlReservationServiceImpl implements ShortUrlReservationServic
             return NOT_ON_LOCAL_MACHINE;
         }
         shortUrlReservationDao.initializeShortUrlReservationRepository();
+        adminJobRunner.prepareJobStore();
+        return SUCCESS;
+    }
+
+    // Migration, like initialization, is done only by the Admin from a
+    // local machine, and is synchronous.
+    @Override
+    public ShortUrlStatus
+    migrateShortUrlReservationRepository() {
+        if (!hostUtils.isRunningLocally()) {
+            return NOT_ON_LOCAL_MACHINE;
+        }
+        shortUrlReservationDao.migrateShortUrlReservationRepository();
+        adminJobRunner.prepareJobStore();
         return SUCCESS;
     }
 
@@ -64,15 +95,29 @@ public class ShortUrlReservationServiceImpl implements ShortUrlReservationServic
     }
 
     @Override
-    public Mono<StatusAndShortUrlReservationArray>
-    getAllShortUrlReservations() {
-        return shortUrlReservationDao.getAllShortUrlReservations();
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return shortUrlReservationDao.getAllShortUrlReservations(limit, cursor, available);
+    }
+
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        return shortUrlReservationDao.exportAllShortUrlReservations(available);
     }
 
     @Override
     public Mono<StatusAndShortUrlReservation>
     reserveAnyShortUrl() {
-        return shortUrlReservationDao.reserveAnyShortUrl();
+        return shortUrlReservationDao.reserveAnyShortUrl()
+            .doOnSuccess(statusAndShortUrlReservation -> rangeAutoExtender.checkAvailability());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        return shortUrlReservationDao.reserveAnyShortUrls(count)
+            .doOnSuccess(statusAndShortUrlReservationArray -> rangeAutoExtender.checkAvailability());
     }
 
     @Override
@@ -82,9 +127,16 @@ public class ShortUrlReservationServiceImpl implements ShortUrlReservationServic
     }
 
     @Override
-    public Mono<ShortUrlStatus>
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return shortUrlReservationDao.reserveSpecificShortUrls(shortUrls);
+    }
+
+    @Override
+    public Mono<StatusAndUpdateCounts>
     reserveAllShortUrls() {
-        return shortUrlReservationDao.reserveAllShortUrls();
+        return BulkProgress.toUpdateCounts(
+                shortUrlReservationDao.reserveAllShortUrls(List.of()));
     }
 
     @Override
@@ -94,12 +146,62 @@ public class ShortUrlReservationServiceImpl implements ShortUrlReservationServic
     }
 
     @Override
-    public Mono<ShortUrlStatus>
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return shortUrlReservationDao.cancelSpecificShortUrlReservations(shortUrls);
+    }
+
+    @Override
+    public Mono<StatusAndUpdateCounts>
     cancelAllShortUrlReservations() {
-        return shortUrlReservationDao.cancelAllShortUrlReservations();
+        return BulkProgress.toUpdateCounts(
+                shortUrlReservationDao.cancelAllShortUrlReservations(List.of()));
+    }
+
+    // Like synchronous initialization, an initialization job can be started
+    // or resumed only by the Admin from a local machine. Other jobs can be
+    // run from anywhere.
+    @Override
+    public Mono<StatusAndAdminJob>
+    startAdminJob(AdminJobType adminJobType, Long maxShortUrlBase10) {
+        if (adminJobType == AdminJobType.INITIALIZE_REPOSITORY &&
+                !hostUtils.isRunningLocally()) {
+            return Mono.just(new StatusAndAdminJob(new Status(NOT_ON_LOCAL_MACHINE), null));
+        }
+        return toStatusAndAdminJob(adminJobRunner.startJob(adminJobType, maxShortUrlBase10));
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    resumeAdminJob(String jobId) {
+        return adminJobRunner.getJob(jobId)
+            .flatMap(adminJob -> {
+                if (adminJob.getJobType() == AdminJobType.INITIALIZE_REPOSITORY &&
+                        !hostUtils.isRunningLocally()) {
+                    return Mono.just(new StatusAndAdminJob(new Status(NOT_ON_LOCAL_MACHINE), adminJob));
+                }
+                return toStatusAndAdminJob(adminJobRunner.resumeJob(adminJob));
+            });
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    getAdminJob(String jobId) {
+        return toStatusAndAdminJob(adminJobRunner.getJob(jobId));
     }
 
     // ------------------------------------------------------------------------
     // PRIVATE METHODS
     // ------------------------------------------------------------------------
+
+    private Mono<StatusAndAdminJob>
+    toStatusAndAdminJob(Mono<AdminJob> adminJob) {
+        return adminJob
+            .map(job -> new StatusAndAdminJob(new Status(SUCCESS), job))
+            // An invalid request is the client's fault, so let the caller see it.
+            .onErrorResume(e -> !(e instanceof IllegalArgumentException), e -> {
+                System.out.println("====> Admin job request failed: " + e.getMessage());
+                return Mono.just(new StatusAndAdminJob(new Status(UNKNOWN_ERROR), null));
+            });
+    }
 }
@@ -0,0 +1,281 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.service;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.dto.StatusAndShortUrlReservationArray;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlcommonlibrary.service.status.ShortUrlStatus;
+import com.richarddklein.shorturlreservationservice.dto.AdminJobType;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndAdminJob;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlReservationPage;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndShortUrlStatusArray;
+import com.richarddklein.shorturlreservationservice.dto.StatusAndUpdateCounts;
+import com.richarddklein.shorturlreservationservice.tracing.OtelContextAccessor;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A Short URL Reservation service that traces another one.
+ *
+ * <p>Every call gets a span, named after the service method, that lasts
+ * from subscription to completion, and is a child of whatever span was
+ * current when the method was called (normally the controller's). The
+ * span records the short URL or count that the call was given, and the
+ * `ShortUrlStatus` it resulted in.</p>
+ *
+ * <p>The span is current while the call subscribes to the DAO, and is
+ * written into the Reactor `Context` under `OtelContextAccessor.KEY`, so
+ * that the DAO's DynamoDB spans, and its retries, are attached to it on
+ * whichever thread they happen.</p>
+ */
+public class TracedShortUrlReservationService implements ShortUrlReservationService {
+    private final ShortUrlReservationService shortUrlReservationService;
+    private final Tracer tracer;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param shortUrlReservationService The service to be traced.
+     * @param tracer The tracer that creates the spans.
+     */
+    public TracedShortUrlReservationService(
+            ShortUrlReservationService shortUrlReservationService,
+            Tracer tracer) {
+
+        this.shortUrlReservationService = shortUrlReservationService;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public ShortUrlStatus
+    initializeShortUrlReservationRepository() {
+        return traceSync("initializeShortUrlReservationRepository",
+                shortUrlReservationService::initializeShortUrlReservationRepository);
+    }
+
+    @Override
+    public ShortUrlStatus
+    migrateShortUrlReservationRepository() {
+        return traceSync("migrateShortUrlReservationRepository",
+                shortUrlReservationService::migrateShortUrlReservationRepository);
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation>
+    getSpecificShortUrlReservation(String shortUrl) {
+        return trace("getSpecificShortUrlReservation", shortUrlAttribute(shortUrl),
+                () -> shortUrlReservationService.getSpecificShortUrlReservation(shortUrl),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationPage>
+    getAllShortUrlReservations(int limit, String cursor, Boolean available) {
+        return trace("getAllShortUrlReservations", countAttribute(limit),
+                () -> shortUrlReservationService.getAllShortUrlReservations(
+                        limit, cursor, available),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Flux<ShortUrlReservation>
+    exportAllShortUrlReservations(Boolean available) {
+        Context parent = Context.current();
+        return Flux.defer(() -> {
+            Span span = startSpan("exportAllShortUrlReservations", parent, Attributes.empty());
+            Context context = parent.with(span);
+            return Flux.<ShortUrlReservation>from(subscriber -> {
+                    try (Scope ignored = context.makeCurrent()) {
+                        shortUrlReservationService.exportAllShortUrlReservations(available)
+                            .subscribe(subscriber);
+                    }
+                })
+                .doOnError(span::recordException)
+                .doOnError(e -> span.setStatus(StatusCode.ERROR))
+                .doFinally(signalType -> span.end())
+                .contextWrite(reactorContext -> reactorContext.put(OtelContextAccessor.KEY, context));
+        });
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservation>
+    reserveAnyShortUrl() {
+        return trace("reserveAnyShortUrl", Attributes.empty(),
+                shortUrlReservationService::reserveAnyShortUrl,
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlReservationArray>
+    reserveAnyShortUrls(int count) {
+        return trace("reserveAnyShortUrls", countAttribute(count),
+                () -> shortUrlReservationService.reserveAnyShortUrls(count),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    reserveSpecificShortUrl(String shortUrl) {
+        return trace("reserveSpecificShortUrl", shortUrlAttribute(shortUrl),
+                () -> shortUrlReservationService.reserveSpecificShortUrl(shortUrl),
+                Function.identity());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    reserveSpecificShortUrls(List<String> shortUrls) {
+        return trace("reserveSpecificShortUrls", countAttribute(shortUrls),
+                () -> shortUrlReservationService.reserveSpecificShortUrls(shortUrls),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndUpdateCounts>
+    reserveAllShortUrls() {
+        return trace("reserveAllShortUrls", Attributes.empty(),
+                shortUrlReservationService::reserveAllShortUrls,
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<ShortUrlStatus>
+    cancelSpecificShortUrlReservation(String shortUrl) {
+        return trace("cancelSpecificShortUrlReservation", shortUrlAttribute(shortUrl),
+                () -> shortUrlReservationService.cancelSpecificShortUrlReservation(shortUrl),
+                Function.identity());
+    }
+
+    @Override
+    public Mono<StatusAndShortUrlStatusArray>
+    cancelSpecificShortUrlReservations(List<String> shortUrls) {
+        return trace("cancelSpecificShortUrlReservations", countAttribute(shortUrls),
+                () -> shortUrlReservationService.cancelSpecificShortUrlReservations(shortUrls),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndUpdateCounts>
+    cancelAllShortUrlReservations() {
+        return trace("cancelAllShortUrlReservations", Attributes.empty(),
+                shortUrlReservationService::cancelAllShortUrlReservations,
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    startAdminJob(AdminJobType adminJobType, Long maxShortUrlBase10) {
+        return trace("startAdminJob", Attributes.empty(),
+                () -> shortUrlReservationService.startAdminJob(adminJobType, maxShortUrlBase10),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    resumeAdminJob(String jobId) {
+        return trace("resumeAdminJob", Attributes.empty(),
+                () -> shortUrlReservationService.resumeAdminJob(jobId),
+                result -> result.getStatus().getStatus());
+    }
+
+    @Override
+    public Mono<StatusAndAdminJob>
+    getAdminJob(String jobId) {
+        return trace("getAdminJob", Attributes.empty(),
+                () -> shortUrlReservationService.getAdminJob(jobId),
+                result -> result.getStatus().getStatus());
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Trace a call that returns a Mono.
+     *
+     * @param operation The name of the service method.
+     * @param attributes The attributes describing the call.
+     * @param call Makes the call to the traced service.
+     * @param statusOf Maps the result of the call to its `ShortUrlStatus`.
+     * @return The traced Mono.
+     */
+    private <T> Mono<T>
+    trace(String operation,
+          Attributes attributes,
+          Supplier<Mono<T>> call,
+          Function<T, ShortUrlStatus> statusOf) {
+
+        Context parent = Context.current();
+        return Mono.defer(() -> {
+            Span span = startSpan(operation, parent, attributes);
+            Context context = parent.with(span);
+            return Mono.<T>from(subscriber -> {
+                    try (Scope ignored = context.makeCurrent()) {
+                        call.get().subscribe(subscriber);
+                    }
+                })
+                .doOnSuccess(result -> {
+                    if (result != null) {
+                        span.setAttribute("shorturl.status", statusOf.apply(result).name());
+                    }
+                })
+                .doOnError(span::recordException)
+                .doOnError(e -> span.setStatus(StatusCode.ERROR))
+                .doFinally(signalType -> span.end())
+                .contextWrite(reactorContext -> reactorContext.put(OtelContextAccessor.KEY, context));
+        });
+    }
+
+    private ShortUrlStatus
+    traceSync(String operation, Supplier<ShortUrlStatus> call) {
+        Span span = startSpan(operation, Context.current(), Attributes.empty());
+        try (Scope ignored = span.makeCurrent()) {
+            ShortUrlStatus shortUrlStatus = call.get();
+            span.setAttribute("shorturl.status", shortUrlStatus.name());
+            return shortUrlStatus;
+        } catch (RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private Span startSpan(String operation, Context parent, Attributes attributes) {
+        return tracer.spanBuilder("ShortUrlReservationService." + operation)
+                .setParent(parent)
+                .setAllAttributes(attributes)
+                .startSpan();
+    }
+
+    private static Attributes shortUrlAttribute(String shortUrl) {
+        return Attributes.builder().put("shorturl.short_url", shortUrl).build();
+    }
+
+    private static Attributes countAttribute(List<String> shortUrls) {
+        return countAttribute(shortUrls == null ? 0 : shortUrls.size());
+    }
+
+    private static Attributes countAttribute(long count) {
+        return Attributes.builder().put("shorturl.count", count).build();
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.snapstart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.serverless.proxy.internal.LambdaContainerHandler;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlCodec;
+import org.crac.Context;
+import org.crac.Resource;
+
+/**
+ * The CRaC hook that primes the whole request path before the SnapStart
+ * snapshot is taken.
+ *
+ * <p>Sends a handful of synthetic API Gateway events through the Lambda
+ * handler, exactly as AWS Lambda would: they are parsed, dispatched,
+ * filtered by security, handled by the controller, the service and the
+ * DAO (which calls DynamoDB), and their responses are serialized. This
+ * loads and initializes the classes on the way, warms up Jackson and the
+ * `TableSchema`, and gives the JIT compiler something to work on, so that
+ * the first real request after a restore need not.</p>
+ *
+ * <p>The requests have no effect on the table: they read, or they reserve
+ * and cancel `PRIMING_SHORT_URL`, the largest possible short URL, which
+ * is never in the range, so both fail their conditions.</p>
+ */
+public class LambdaPrimer implements Resource {
+    private static final String PRIMING_SHORT_URL = ShortUrlCodec.encode(Long.MAX_VALUE);
+
+    private static final int NUM_ROUNDS = 10;
+
+    private static final List<SyntheticRequest> REQUESTS = List.of(
+            new SyntheticRequest("GET", "/short-url/reservations/specific/" + PRIMING_SHORT_URL, Map.of()),
+            new SyntheticRequest("GET", "/short-url/reservations/all", Map.of("limit", "1")),
+            new SyntheticRequest("PATCH", "/short-url/reservations/reserve/specific/" + PRIMING_SHORT_URL, Map.of()),
+            new SyntheticRequest("PATCH", "/short-url/reservations/cancel/specific/" + PRIMING_SHORT_URL, Map.of()),
+            new SyntheticRequest("GET", "/short-url/reservations/metrics", Map.of()));
+
+    private static final com.amazonaws.services.lambda.runtime.Context PRIMING_CONTEXT =
+            new PrimingContext();
+
+    private final SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
+    private final ObjectMapper objectMapper = LambdaContainerHandler.getObjectMapper();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param handler The handler that the Lambda function proxies its
+     *                requests to.
+     */
+    public LambdaPrimer(SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        System.out.println("====> Priming the request path with " + NUM_ROUNDS
+                + " rounds of synthetic requests");
+        for (int round = 1; round <= NUM_ROUNDS; round++) {
+            for (SyntheticRequest request : REQUESTS) {
+                int statusCode = send(request);
+                if (round == NUM_ROUNDS) {
+                    System.out.println("====> " + request + " -> " + statusCode);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        // The `SnapStartHooks` refresh the instance.
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Send one synthetic request through the Lambda handler, as an API
+     * Gateway proxy event.
+     *
+     * @param request The request to send.
+     * @return The status code of the response, or -1 if there was none.
+     */
+    private int send(SyntheticRequest request) {
+        ObjectNode event = objectMapper.createObjectNode()
+                .put("httpMethod", request.httpMethod())
+                .put("path", request.path())
+                .put("resource", request.path())
+                .put("isBase64Encoded", false);
+        event.putObject("headers")
+                .put("Accept", "application/json")
+                .put("Host", "localhost");
+        ObjectNode queryStringParameters = event.putObject("queryStringParameters");
+        ObjectNode multiValueQueryStringParameters = event.putObject("multiValueQueryStringParameters");
+        request.queryParameters().forEach((name, value) -> {
+            queryStringParameters.put(name, value);
+            multiValueQueryStringParameters.putArray(name).add(value);
+        });
+        event.putObject("requestContext")
+                .put("stage", "Prod")
+                .put("httpMethod", request.httpMethod())
+                .put("path", request.path())
+                .putObject("identity")
+                .put("sourceIp", "127.0.0.1");
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            handler.proxyStream(
+                    new ByteArrayInputStream(objectMapper.writeValueAsBytes(event)),
+                    outputStream,
+                    PRIMING_CONTEXT);
+            return objectMapper.readTree(outputStream.toByteArray()).path("statusCode").asInt(-1);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("====> Priming request " + request
+                    + " failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private record SyntheticRequest(String httpMethod, String path, Map<String, String> queryParameters) {
+        @Override
+        public String toString() {
+            return httpMethod + " " + path + (queryParameters.isEmpty() ? "" : "?" + queryParameters);
+        }
+    }
+
+    /**
+     * The Lambda context of the synthetic requests.
+     */
+    private static final class PrimingContext implements com.amazonaws.services.lambda.runtime.Context {
+        @Override
+        public String getAwsRequestId() {
+            return "snapstart-priming";
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return null;
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return null;
+        }
+
+        @Override
+        public String getFunctionName() {
+            return null;
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return null;
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return null;
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            return 0;
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return new LambdaLogger() {
+                @Override
+                public void log(String message) {
+                    System.out.println(message);
+                }
+
+                @Override
+                public void log(byte[] message) {
+                    System.out.println(new String(message, StandardCharsets.UTF_8));
+                }
+            };
+        }
+    }
+}
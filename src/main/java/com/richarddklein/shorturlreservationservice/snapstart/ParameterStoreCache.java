@@ -0,0 +1,142 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.snapstart;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A cache in front of the Parameter Store accessor.
+ *
+ * <p>Every getter of the accessor that takes no arguments and returns a
+ * Mono is answered from the cache, which keeps each value for `ttl`. An
+ * error is not cached, so the next call asks the Parameter Store again.
+ * Any other method is passed straight through.</p>
+ *
+ * <p>The cache is filled by `prime()` before the SnapStart snapshot is
+ * taken, so that no request waits for the Parameter Store, and is emptied
+ * by `refresh()` when an instance is restored, since the values in the
+ * snapshot may be out of date by then.</p>
+ */
+public class ParameterStoreCache implements InvocationHandler {
+    private static final Duration PRIMING_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ParameterStoreAccessor parameterStoreAccessor;
+    private final Duration ttl;
+    private final Map<Method, Mono<?>> cachedValues = new ConcurrentHashMap<>();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Put a cache in front of a Parameter Store accessor.
+     *
+     * @param parameterStoreAccessor The accessor to be cached.
+     * @param ttl How long to keep each value for.
+     * @return An accessor that answers from the cache.
+     */
+    public static ParameterStoreAccessor
+    wrap(ParameterStoreAccessor parameterStoreAccessor, Duration ttl) {
+        return (ParameterStoreAccessor) Proxy.newProxyInstance(
+                ParameterStoreAccessor.class.getClassLoader(),
+                new Class<?>[] {ParameterStoreAccessor.class},
+                new ParameterStoreCache(parameterStoreAccessor, ttl));
+    }
+
+    /**
+     * Find the cache in front of a Parameter Store accessor.
+     *
+     * @param parameterStoreAccessor An accessor returned by `wrap()`, or
+     *                               any other.
+     * @return The accessor's cache, or null if it has none.
+     */
+    public static ParameterStoreCache
+    of(ParameterStoreAccessor parameterStoreAccessor) {
+        return Proxy.isProxyClass(parameterStoreAccessor.getClass()) &&
+                Proxy.getInvocationHandler(parameterStoreAccessor) instanceof ParameterStoreCache cache ?
+                cache : null;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (isCacheable(method)) {
+            return cachedValues.computeIfAbsent(method, this::cachedValue);
+        }
+        return invokeAccessor(method, args);
+    }
+
+    /**
+     * Read every value into the cache.
+     *
+     * <p>A value that cannot be read is skipped; it will be read on
+     * demand.</p>
+     */
+    public void prime() {
+        for (Method method : ParameterStoreAccessor.class.getMethods()) {
+            if (!isCacheable(method)) {
+                continue;
+            }
+            try {
+                cachedValues.computeIfAbsent(method, this::cachedValue).block(PRIMING_TIMEOUT);
+            } catch (RuntimeException e) {
+                System.out.println("====> Could not prime " + method.getName()
+                        + "(): " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Empty the cache, so that every value is read afresh.
+     */
+    public void refresh() {
+        cachedValues.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private ParameterStoreCache(ParameterStoreAccessor parameterStoreAccessor, Duration ttl) {
+        this.parameterStoreAccessor = parameterStoreAccessor;
+        this.ttl = ttl;
+    }
+
+    private static boolean isCacheable(Method method) {
+        return method.getParameterCount() == 0 &&
+                Mono.class.isAssignableFrom(method.getReturnType());
+    }
+
+    private Mono<?> cachedValue(Method method) {
+        // Defer the call, so that the accessor is asked again each time the
+        // cached value expires, even if it returns an eager Mono.
+        return Mono.defer(() -> {
+                try {
+                    return (Mono<?>) invokeAccessor(method, null);
+                } catch (Throwable e) {
+                    return Mono.error(e);
+                }
+            })
+            .cache(value -> ttl, e -> Duration.ZERO, () -> ttl);
+    }
+
+    private Object invokeAccessor(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(parameterStoreAccessor, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.snapstart;
+
+import java.time.Duration;
+import java.util.Map;
+
+import com.richarddklein.shorturlcommonlibrary.environment.ParameterStoreAccessor;
+import com.richarddklein.shorturlcommonlibrary.service.shorturlreservationservice.entity.ShortUrlReservation;
+import com.richarddklein.shorturlreservationservice.dao.BitmapChunk;
+import com.richarddklein.shorturlreservationservice.dao.RetryBudget;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlAllocator;
+import com.richarddklein.shorturlreservationservice.dao.StaleKeyCache;
+import com.richarddklein.shorturlreservationservice.service.FreeShortUrlsGauge;
+import com.richarddklein.shorturlreservationservice.service.RangeAutoExtender;
+import org.crac.Core;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The SnapStart @Configuration class.
+ *
+ * <p>Tells Spring how to put the `ParameterStoreCache` in front of the
+ * Parameter Store accessor, and how to construct the `SnapStartHooks`,
+ * which it registers with CRaC. Outside of SnapStart (e.g. when running
+ * locally), the hooks are simply never called.</p>
+ */
+@Configuration
+public class SnapStartConfig {
+    @Autowired
+    DynamoDbAsyncClient dynamoDbAsyncClient;
+
+    @Autowired
+    DynamoDbAsyncTable<ShortUrlReservation> shortUrlReservationTable;
+
+    @Autowired
+    ParameterStoreAccessor parameterStoreAccessor;
+
+    @Autowired
+    ShortUrlAllocator shortUrlAllocator;
+
+    @Autowired
+    RetryBudget retryBudget;
+
+    @Autowired
+    StaleKeyCache staleKeyCache;
+
+    @Autowired
+    FreeShortUrlsGauge freeShortUrlsGauge;
+
+    @Autowired
+    RangeAutoExtender rangeAutoExtender;
+
+    @Value("${shortUrl.reservations.storageMode:item}")
+    String storageMode;
+
+    /**
+     * Put a `ParameterStoreCache` in front of the Parameter Store accessor
+     * that the common library provides, before it is injected anywhere.
+     *
+     * <p>Static, as a `BeanPostProcessor` must be created before any other
+     * bean.</p>
+     */
+    @Bean
+    public static BeanPostProcessor
+    parameterStoreCachePostProcessor(
+            @Value("${shortUrl.reservations.parameterStore.cacheSeconds:300}") long cacheSeconds) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (cacheSeconds <= 0 ||
+                        !(bean instanceof ParameterStoreAccessor parameterStoreAccessor)) {
+                    return bean;
+                }
+                return ParameterStoreCache.wrap(parameterStoreAccessor, Duration.ofSeconds(cacheSeconds));
+            }
+        };
+    }
+
+    @Bean
+    public SnapStartHooks
+    snapStartHooks() {
+        SnapStartHooks snapStartHooks = new SnapStartHooks(
+                dynamoDbAsyncClient,
+                shortUrlReservationTable.tableName(),
+                // No short URL is "-", and no chunk is numbered -1.
+                storageMode.equals("bitmap") ?
+                        Map.of(BitmapChunk.CHUNK_ID, AttributeValue.fromN("-1")) :
+                        Map.of("shortUrl", AttributeValue.fromS("-")),
+                ParameterStoreCache.of(parameterStoreAccessor),
+                shortUrlAllocator,
+                retryBudget,
+                staleKeyCache,
+                freeShortUrlsGauge,
+                rangeAutoExtender
+        );
+        // CRaC holds on to it only weakly; as a bean, it stays alive.
+        Core.getGlobalContext().register(snapStartHooks);
+        return snapStartHooks;
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.snapstart;
+
+import java.time.Duration;
+import java.util.Map;
+
+import com.richarddklein.shorturlreservationservice.dao.InstanceRandom;
+import com.richarddklein.shorturlreservationservice.dao.RetryBudget;
+import com.richarddklein.shorturlreservationservice.dao.ShortUrlAllocator;
+import com.richarddklein.shorturlreservationservice.dao.StaleKeyCache;
+import com.richarddklein.shorturlreservationservice.metrics.EmfMeterRegistry;
+import com.richarddklein.shorturlreservationservice.service.FreeShortUrlsGauge;
+import com.richarddklein.shorturlreservationservice.service.RangeAutoExtender;
+import com.richarddklein.shorturlreservationservice.tracing.TracingConfig;
+import org.crac.Context;
+import org.crac.Resource;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+/**
+ * The CRaC hooks that AWS Lambda SnapStart calls around the snapshot of an
+ * instance.
+ *
+ * <p>Before the snapshot is taken (and after the `LambdaPrimer` has sent
+ * its synthetic requests), the Parameter Store values are read into the
+ * `ParameterStoreCache`, and the DynamoDB client connects to DynamoDB.
+ * The metrics recorded so far are then discarded, so that the priming does
+ * not show up in them.</p>
+ *
+ * <p>After an instance is restored, the connections in the snapshot are
+ * dead, and the per-instance state is shared with every other instance
+ * restored from the same snapshot. So the client connects afresh, the
+ * Parameter Store values are read again, the random generators are
+ * reseeded, and the allocator, the retry budget, the stale-key cache and
+ * the timers of the background checks are reset; all before the first
+ * request arrives.</p>
+ */
+public class SnapStartHooks implements Resource {
+    private static final Duration HOOK_TIMEOUT = Duration.ofSeconds(5);
+
+    // The client may serve several DynamoDB calls of one request at once,
+    // so open a few connections.
+    private static final int NUM_CONNECTIONS = 4;
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final String tableName;
+    private final Map<String, AttributeValue> nonexistentKey;
+    private final ParameterStoreCache parameterStoreCache;
+    private final ShortUrlAllocator shortUrlAllocator;
+    private final RetryBudget retryBudget;
+    private final StaleKeyCache staleKeyCache;
+    private final FreeShortUrlsGauge freeShortUrlsGauge;
+    private final RangeAutoExtender rangeAutoExtender;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param dynamoDbAsyncClient The DynamoDB client.
+     * @param tableName The name of the Short URL Reservation table.
+     * @param nonexistentKey The key of an item that is never in the table,
+     *                       for the calls that open the connections.
+     * @param parameterStoreCache The cache of Parameter Store values, or
+     *                            null if there is none.
+     * @param shortUrlAllocator The allocator that reserves any short URL.
+     * @param retryBudget The budget of the DAO's retries.
+     * @param staleKeyCache The DAO's memory of stale candidates.
+     * @param freeShortUrlsGauge The gauge of available short URLs.
+     * @param rangeAutoExtender The check that extends the range.
+     */
+    public SnapStartHooks(
+            DynamoDbAsyncClient dynamoDbAsyncClient,
+            String tableName,
+            Map<String, AttributeValue> nonexistentKey,
+            ParameterStoreCache parameterStoreCache,
+            ShortUrlAllocator shortUrlAllocator,
+            RetryBudget retryBudget,
+            StaleKeyCache staleKeyCache,
+            FreeShortUrlsGauge freeShortUrlsGauge,
+            RangeAutoExtender rangeAutoExtender) {
+
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.tableName = tableName;
+        this.nonexistentKey = nonexistentKey;
+        this.parameterStoreCache = parameterStoreCache;
+        this.shortUrlAllocator = shortUrlAllocator;
+        this.retryBudget = retryBudget;
+        this.staleKeyCache = staleKeyCache;
+        this.freeShortUrlsGauge = freeShortUrlsGauge;
+        this.rangeAutoExtender = rangeAutoExtender;
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        System.out.println("====> Priming the instance for its SnapStart snapshot");
+        await(connect());
+        if (parameterStoreCache != null) {
+            parameterStoreCache.prime();
+        }
+
+        EmfMeterRegistry.discardInstance();
+        // Leave no spans half-exported in the snapshot.
+        TracingConfig.flushSpans();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        System.out.println("====> Refreshing the instance restored from its SnapStart snapshot");
+        InstanceRandom.reseed();
+        shortUrlAllocator.onInstanceRestored();
+        retryBudget.reset();
+        staleKeyCache.clear();
+        freeShortUrlsGauge.refreshSoon();
+        rangeAutoExtender.checkSoon();
+
+        Mono<Void> refreshParameterStore = Mono.empty();
+        if (parameterStoreCache != null) {
+            parameterStoreCache.refresh();
+            refreshParameterStore = Mono.fromRunnable(parameterStoreCache::prime)
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+        }
+        await(Mono.when(connect(), refreshParameterStore));
+
+        EmfMeterRegistry.discardInstance();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Have the DynamoDB client open a few connections to DynamoDB, by asking
+     * it to get an item that is not there. A `GetItem` call is one that the
+     * service is allowed to make anyway, and reads next to nothing.
+     *
+     * <p>A connection that was captured in the snapshot fails on its first
+     * use, and the SDK retries on a new one. Better that this happens here
+     * than in a client's request. A call that fails nonetheless is only
+     * logged.</p>
+     *
+     * @return A Mono that completes once every call has.
+     */
+    private Mono<Void> connect() {
+        GetItemRequest request = GetItemRequest.builder()
+            .tableName(tableName)
+            .key(nonexistentKey)
+            .build();
+
+        return Flux.range(0, NUM_CONNECTIONS)
+            .flatMap(i -> Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(request)))
+            .then()
+            .onErrorResume(e -> {
+                System.out.println("====> Could not connect to DynamoDB: " + e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * Wait for a Mono to complete, but no longer than `HOOK_TIMEOUT`.
+     *
+     * <p>A hook that throws makes the snapshot (or the restore) fail, so
+     * a timeout is only logged: the instance is merely less warm.</p>
+     */
+    private static void await(Mono<Void> mono) {
+        mono.timeout(HOOK_TIMEOUT)
+            .onErrorResume(e -> {
+                System.out.println("====> SnapStart hook gave up waiting: " + e.getMessage());
+                return Mono.empty();
+            })
+            .block();
+    }
+}
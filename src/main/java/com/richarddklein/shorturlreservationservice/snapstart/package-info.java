@@ -0,0 +1,11 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains files that prepare the Short URL Reservation
+ * service for AWS Lambda SnapStart: priming an instance before its
+ * snapshot is taken, and refreshing it after it is restored.
+ */
+package com.richarddklein.shorturlreservationservice.snapstart;
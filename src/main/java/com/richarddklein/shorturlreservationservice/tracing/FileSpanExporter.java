@@ -0,0 +1,117 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.tracing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * A span exporter that appends each span to a file, as one line of JSON.
+ *
+ * <p>Meant for offline analysis, e.g. with `jq`, when there is no
+ * collector to send the spans to. Each line holds the span's trace, span
+ * and parent span IDs, its name and kind, its start time and duration (in
+ * nanoseconds), its status, its attributes and its events.</p>
+ */
+public class FileSpanExporter implements SpanExporter {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BufferedWriter writer;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    /**
+     * General constructor.
+     *
+     * @param path The file to append the spans to.
+     * @throws IOException if the file cannot be opened.
+     */
+    public FileSpanExporter(Path path) throws IOException {
+        this.writer = Files.newBufferedWriter(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        try {
+            for (SpanData span : spans) {
+                writer.write(objectMapper.writeValueAsString(toJson(span)));
+                writer.newLine();
+            }
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            System.out.println("====> Could not export spans: " + e.getMessage());
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode flush() {
+        try {
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        try {
+            writer.close();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private ObjectNode toJson(SpanData span) {
+        ObjectNode json = objectMapper.createObjectNode()
+                .put("traceId", span.getTraceId())
+                .put("spanId", span.getSpanId())
+                .put("parentSpanId", span.getParentSpanId())
+                .put("name", span.getName())
+                .put("kind", span.getKind().name())
+                .put("startEpochNanos", span.getStartEpochNanos())
+                .put("durationNanos", span.getEndEpochNanos() - span.getStartEpochNanos())
+                .put("status", span.getStatus().getStatusCode().name());
+        json.set("attributes", toJson(span.getAttributes()));
+
+        ArrayNode events = json.putArray("events");
+        for (EventData event : span.getEvents()) {
+            ObjectNode eventJson = events.addObject()
+                    .put("name", event.getName())
+                    .put("epochNanos", event.getEpochNanos());
+            eventJson.set("attributes", toJson(event.getAttributes()));
+        }
+        return json;
+    }
+
+    private ObjectNode toJson(Attributes attributes) {
+        ObjectNode json = objectMapper.createObjectNode();
+        attributes.forEach((key, value) -> json.set(key.getKey(), objectMapper.valueToTree(value)));
+        return json;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.tracing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import io.micrometer.context.ThreadLocalAccessor;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Carries the current OpenTelemetry context across the threads of a
+ * Reactor chain.
+ *
+ * <p>OpenTelemetry keeps the current span in a thread local, but a
+ * Reactor chain hops between threads, e.g. whenever DynamoDB answers.
+ * The tracing code therefore also writes the context into the Reactor
+ * `Context`, under `KEY`. With Reactor's automatic context propagation
+ * switched on, Reactor uses this accessor to make that context current
+ * on whichever thread runs the next step, and to restore the previous
+ * one afterwards.</p>
+ */
+public class OtelContextAccessor implements ThreadLocalAccessor<Context> {
+    /**
+     * The key of the OpenTelemetry context in the Reactor `Context`.
+     */
+    public static final String KEY = "shorturl.otel.context";
+
+    // The scopes opened on this thread, innermost first.
+    private final ThreadLocal<Deque<Scope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Object key() {
+        return KEY;
+    }
+
+    @Override
+    public Context getValue() {
+        Context context = Context.current();
+        return context == Context.root() ? null : context;
+    }
+
+    @Override
+    public void setValue(Context value) {
+        scopes.get().push(value.makeCurrent());
+    }
+
+    @Override
+    public void setValue() {
+        scopes.get().push(Context.root().makeCurrent());
+    }
+
+    @Override
+    public void restore(Context previousValue) {
+        closeInnermostScope();
+    }
+
+    @Override
+    public void restore() {
+        closeInnermostScope();
+    }
+
+    @Override
+    @Deprecated
+    public void reset() {
+        closeInnermostScope();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void closeInnermostScope() {
+        Scope scope = scopes.get().poll();
+        if (scope != null) {
+            scope.close();
+        }
+    }
+}
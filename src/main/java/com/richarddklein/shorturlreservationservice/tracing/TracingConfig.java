@@ -0,0 +1,112 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.tracing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.context.ContextRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import reactor.core.publisher.Hooks;
+
+/**
+ * The Tracing @Configuration class.
+ *
+ * <p>Tells Spring how to construct the OpenTelemetry instance that traces
+ * the service, which decides where its spans are exported to. With no
+ * exporter, tracing is switched off altogether, and costs next to
+ * nothing.</p>
+ */
+@Configuration
+public class TracingConfig {
+    private static final String SERVICE_NAME = "short-url-reservation-service";
+
+    private static volatile SdkTracerProvider tracerProvider;
+
+    @Value("${shortUrl.reservations.tracing.exporter:none}")
+    String exporter;
+
+    @Value("${shortUrl.reservations.tracing.otlp.endpoint:http://localhost:4318/v1/traces}")
+    String otlpEndpoint;
+
+    @Value("${shortUrl.reservations.tracing.file.path:/tmp/short-url-reservation-spans.jsonl}")
+    String filePath;
+
+    @Value("${shortUrl.reservations.tracing.sampleRatio:1.0}")
+    double sampleRatio;
+
+    @Bean
+    public OpenTelemetry
+    openTelemetry() throws IOException {
+        SpanProcessor spanProcessor = switch (exporter) {
+            case "otlp" -> BatchSpanProcessor.builder(
+                    OtlpHttpSpanExporter.builder()
+                            .setEndpoint(otlpEndpoint)
+                            .build())
+                    .build();
+            case "file" -> SimpleSpanProcessor.create(
+                    new FileSpanExporter(Path.of(filePath)));
+            default -> null;
+        };
+        if (spanProcessor == null) {
+            return OpenTelemetry.noop();
+        }
+
+        tracerProvider = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(
+                        AttributeKey.stringKey("service.name"), SERVICE_NAME))))
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)))
+                .addSpanProcessor(spanProcessor)
+                .build();
+
+        // Make the current span follow each Reactor chain from thread to
+        // thread (see `OtelContextAccessor`).
+        ContextRegistry.getInstance().registerThreadLocalAccessor(new OtelContextAccessor());
+        Hooks.enableAutomaticContextPropagation();
+
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    @Bean
+    public Tracer
+    tracer() throws IOException {
+        return openTelemetry().getTracer(SERVICE_NAME);
+    }
+
+    /**
+     * Export the spans that have ended, if tracing is switched on.
+     *
+     * <p>This lets the Lambda handler, which is not a Spring bean, export
+     * the spans of each invocation before the function is frozen.</p>
+     */
+    public static void flushSpans() {
+        SdkTracerProvider sdkTracerProvider = tracerProvider;
+        if (sdkTracerProvider != null) {
+            sdkTracerProvider.forceFlush().join(5, TimeUnit.SECONDS);
+        }
+    }
+}
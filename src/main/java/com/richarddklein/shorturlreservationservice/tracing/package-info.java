@@ -0,0 +1,11 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains files that set up the OpenTelemetry tracing of
+ * the Short URL Reservation service, and export its spans to an OTLP
+ * collector or a file.
+ */
+package com.richarddklein.shorturlreservationservice.tracing;
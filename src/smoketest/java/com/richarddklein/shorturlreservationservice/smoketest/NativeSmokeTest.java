@@ -0,0 +1,478 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.smoketest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A smoke test of the Lambda function, built as a GraalVM native image,
+ * and, for comparison, run on the JVM.
+ *
+ * <p>Each variant of the function is started under a `RuntimeApiEmulator`,
+ * exactly as the Lambda service would start it, and is then invoked with
+ * an API Gateway event for every endpoint of the controller, one after the
+ * other. An endpoint passes if its response was routed to the controller
+ * (not 404 or 405), did not fail (not 5xx), and has a body; for a JSON
+ * body, every JSON value in it must be an object with at least one field,
+ * which is what goes missing when the native image lacks a reflection
+ * hint. The requests that follow `reserve/any` use the short URL that it
+ * reserved, and those that follow `jobs/cancel-all` the ID of its job.</p>
+ *
+ * <p>The report gives, for each variant, the time from starting the
+ * process to its first poll for an invocation (i.e. its cold start), the
+ * latency of each request, and the peak and final resident set size of
+ * the process. The test exits with status 1 if any endpoint failed in any
+ * variant.</p>
+ *
+ * <p>The function reads the Parameter Store and DynamoDB of the AWS
+ * account in the environment, with the given profile, and note that the
+ * requests change the data in its table. The test is configured with
+ * system properties (see the `native` profile in the pom):</p>
+ *
+ * <ul>
+ *   <li>`smoketest.nativeImage`: the path of the native image; if empty,
+ *       only the JVM variant is run;</li>
+ *   <li>`smoketest.jvm`: whether to run the JVM variant too;</li>
+ *   <li>`smoketest.profile`: the `PROFILE` of the function, `test` or
+ *       `prod`;</li>
+ *   <li>`smoketest.authorization`: the `Authorization` header to send,
+ *       e.g. `Bearer` and an admin's JWT.</li>
+ * </ul>
+ */
+public class NativeSmokeTest {
+    private static final String HANDLER =
+            "com.richarddklein.shorturlreservationservice.StreamLambdaHandler::handleRequest";
+    private static final String RUNTIME_INTERFACE_CLIENT =
+            "com.amazonaws.services.lambda.runtime.api.client.AWSLambda";
+    private static final String BASE_PATH = "/short-url/reservations";
+    private static final Duration INIT_TIMEOUT = Duration.ofSeconds(120);
+    private static final Duration INVOCATION_TIMEOUT = Duration.ofSeconds(90);
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\w+)}");
+
+    private static final List<SmokeRequest> SMOKE_REQUESTS = List.of(
+            new SmokeRequest("POST", "/initialize-repository", null),
+            new SmokeRequest("POST", "/migrate-repository", null),
+            new SmokeRequest("GET", "/all?limit=2", null),
+            new SmokeRequest("GET", "/all/export?available=false", null),
+            new SmokeRequest("PATCH", "/reserve/any", null),
+            new SmokeRequest("GET", "/specific/{shortUrl}", null),
+            new SmokeRequest("PATCH", "/cancel/specific/{shortUrl}", null),
+            new SmokeRequest("PATCH", "/reserve/specific/{shortUrl}", null),
+            new SmokeRequest("PATCH", "/cancel/specific", "[\"{shortUrl}\"]"),
+            new SmokeRequest("PATCH", "/reserve/specific", "[\"{shortUrl}\"]"),
+            new SmokeRequest("PATCH", "/reserve/any?count=2", null),
+            new SmokeRequest("PATCH", "/reserve/all", null),
+            new SmokeRequest("PATCH", "/cancel/all", null),
+            new SmokeRequest("POST", "/jobs/cancel-all", null),
+            new SmokeRequest("GET", "/jobs/{jobId}", null),
+            new SmokeRequest("POST", "/jobs/{jobId}/resume", null),
+            new SmokeRequest("GET", "/metrics", null));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String profile;
+    private final String authorization;
+    private final File logDirectory;
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+        String nativeImage = System.getProperty("smoketest.nativeImage", "");
+        boolean jvm = Boolean.parseBoolean(System.getProperty("smoketest.jvm", "true"));
+        String profile = System.getProperty("smoketest.profile", "test");
+        String authorization = System.getProperty("smoketest.authorization", "");
+
+        List<Variant> variants = new ArrayList<>();
+        if (!nativeImage.isEmpty()) {
+            variants.add(new Variant("native", List.of(nativeImage, HANDLER)));
+        }
+        if (jvm) {
+            variants.add(new Variant("jvm", List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    // As the Lambda Java runtimes start the JVM.
+                    "-XX:+TieredCompilation",
+                    "-XX:TieredStopAtLevel=1",
+                    "-XX:+UseSerialGC",
+                    "-classpath",
+                    System.getProperty("java.class.path"),
+                    RUNTIME_INTERFACE_CLIENT,
+                    HANDLER)));
+        }
+        if (variants.isEmpty()) {
+            System.out.println("====> Nothing to smoke test");
+            return;
+        }
+        if (authorization.isEmpty()) {
+            System.out.println("====> No smoketest.authorization given, so endpoints that "
+                    + "require it will fail");
+        }
+
+        NativeSmokeTest smokeTest = new NativeSmokeTest(profile, authorization,
+                new File(System.getProperty("smoketest.logDirectory", "target")));
+        List<RunResult> runResults = new ArrayList<>();
+        for (Variant variant : variants) {
+            runResults.add(smokeTest.run(variant));
+        }
+
+        smokeTest.report(runResults);
+        boolean passed = runResults.stream().allMatch(RunResult::passed);
+        System.out.println(passed ? "====> Smoke test passed" : "====> Smoke test FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private NativeSmokeTest(String profile, String authorization, File logDirectory) {
+        this.profile = profile;
+        this.authorization = authorization;
+        this.logDirectory = logDirectory;
+    }
+
+    /**
+     * Start one variant of the function, send it every smoke request, and
+     * stop it again.
+     */
+    private RunResult run(Variant variant) throws IOException, InterruptedException {
+        File logFile = new File(logDirectory, "smoketest-" + variant.name() + ".log");
+        System.out.println("====> Smoke testing the " + variant.name()
+                + " function (its output is in " + logFile + ")");
+
+        try (RuntimeApiEmulator emulator = new RuntimeApiEmulator()) {
+            ProcessBuilder processBuilder = new ProcessBuilder(variant.command())
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile);
+            Map<String, String> environment = processBuilder.environment();
+            environment.put("AWS_LAMBDA_RUNTIME_API", emulator.address());
+            environment.put("_HANDLER", HANDLER);
+            environment.put("LAMBDA_TASK_ROOT", logDirectory.getAbsolutePath());
+            environment.put("AWS_LAMBDA_FUNCTION_NAME", "short-url-reservation-service-smoketest");
+            environment.put("AWS_LAMBDA_FUNCTION_VERSION", "$LATEST");
+            environment.put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", "512");
+            environment.put("PROFILE", profile);
+
+            long startNanos = System.nanoTime();
+            Process process = processBuilder.start();
+            try {
+                long initNanos = awaitInit(emulator, process) - startNanos;
+
+                List<Outcome> outcomes = new ArrayList<>();
+                Map<String, String> captured = new HashMap<>();
+                for (SmokeRequest smokeRequest : SMOKE_REQUESTS) {
+                    outcomes.add(send(emulator, process, smokeRequest, captured));
+                }
+
+                return new RunResult(variant.name(), initNanos, outcomes,
+                        readMemoryKb(process, "VmHWM"), readMemoryKb(process, "VmRSS"));
+            } catch (IllegalStateException e) {
+                System.out.println("====> The " + variant.name() + " function failed: " + e.getMessage());
+                return new RunResult(variant.name(), -1, List.of(), -1, -1);
+            } finally {
+                process.destroy();
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for the function to initialize.
+     *
+     * @return The `System.nanoTime()` at which it first polled for an
+     * invocation.
+     */
+    private static long awaitInit(RuntimeApiEmulator emulator, Process process) throws InterruptedException {
+        CompletableFuture<Object> initOrExit = CompletableFuture.anyOf(emulator.firstPoll(), process.onExit());
+        try {
+            Object result = initOrExit.get(INIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            if (result instanceof Long firstPollNanos) {
+                return firstPollNanos;
+            }
+            throw new IllegalStateException("It exited with status " + process.exitValue()
+                    + " while initializing");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("It did not initialize within " + INIT_TIMEOUT);
+        }
+    }
+
+    /**
+     * Send one smoke request to the function, and check its response.
+     *
+     * @param captured The values captured from earlier responses, by
+     *                 placeholder name. Updated from this response.
+     */
+    private Outcome send(RuntimeApiEmulator emulator, Process process,
+            SmokeRequest smokeRequest, Map<String, String> captured) throws InterruptedException {
+
+        String request = smokeRequest.toString();
+        String path;
+        String body;
+        try {
+            path = resolve(smokeRequest.path(), captured);
+            body = (smokeRequest.body() == null) ? null : resolve(smokeRequest.body(), captured);
+        } catch (IllegalArgumentException e) {
+            return new Outcome(request, -1, -1, e.getMessage());
+        }
+
+        long startNanos = System.nanoTime();
+        JsonNode response;
+        try {
+            byte[] rawResponse = emulator.invoke(event(smokeRequest.httpMethod(), path, body))
+                    .get(INVOCATION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            response = objectMapper.readTree(rawResponse);
+        } catch (ExecutionException e) {
+            return new Outcome(request, -1, -1, e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            return new Outcome(request, -1, -1, process.isAlive()
+                    ? "No response within " + INVOCATION_TIMEOUT
+                    : "The function exited with status " + process.exitValue());
+        } catch (IOException e) {
+            return new Outcome(request, -1, -1, "Malformed response: " + e.getMessage());
+        }
+        long latencyNanos = System.nanoTime() - startNanos;
+
+        int statusCode = response.path("statusCode").asInt(-1);
+        String responseBody = response.path("body").asText("");
+        String problem = check(statusCode, contentType(response), responseBody);
+        if (problem == null) {
+            capture(responseBody, captured);
+        }
+        return new Outcome(request, statusCode, latencyNanos, problem);
+    }
+
+    /**
+     * @return What is wrong with a response, or null if nothing is.
+     */
+    private String check(int statusCode, String contentType, String responseBody) {
+        if (statusCode == 404 || statusCode == 405) {
+            return "Not routed to the controller";
+        }
+        if (statusCode < 200 || statusCode >= 500) {
+            return "Failed";
+        }
+        if (responseBody.isBlank()) {
+            return (statusCode == 401 || statusCode == 403)
+                    ? "Rejected before reaching the controller (set smoketest.authorization)"
+                    : "No body";
+        }
+        if (contentType.contains("json")) {
+            for (String line : responseBody.split("\n")) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonNode value = objectMapper.readTree(line);
+                    if (!value.isObject() || value.isEmpty()) {
+                        return "Empty JSON value: " + line;
+                    }
+                } catch (IOException e) {
+                    return "Malformed JSON: " + e.getMessage();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Capture the short URL and the job ID in a response, if there are any,
+     * for the requests that follow.
+     */
+    private void capture(String responseBody, Map<String, String> captured) {
+        try {
+            JsonNode value = objectMapper.readTree(responseBody.split("\n")[0]);
+            for (String name : List.of("shortUrl", "jobId")) {
+                JsonNode field = value.findValue(name);
+                if (field != null && field.isTextual()) {
+                    captured.put(name, field.asText());
+                }
+            }
+        } catch (IOException e) {
+            // Not JSON, so nothing to capture.
+        }
+    }
+
+    private static String resolve(String template, Map<String, String> captured) {
+        Matcher matcher = PLACEHOLDER.matcher(template);
+        StringBuilder resolved = new StringBuilder();
+        while (matcher.find()) {
+            String value = captured.get(matcher.group(1));
+            if (value == null) {
+                throw new IllegalArgumentException("No " + matcher.group(1)
+                        + " was handed out by an earlier request");
+            }
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+        }
+        return matcher.appendTail(resolved).toString();
+    }
+
+    /**
+     * Build the API Gateway proxy event of a request.
+     */
+    private byte[] event(String httpMethod, String pathAndQuery, String body) throws IOException {
+        int queryStart = pathAndQuery.indexOf('?');
+        String path = BASE_PATH + (queryStart < 0 ? pathAndQuery : pathAndQuery.substring(0, queryStart));
+
+        ObjectNode event = objectMapper.createObjectNode()
+                .put("httpMethod", httpMethod)
+                .put("path", path)
+                .put("resource", path)
+                .put("body", body)
+                .put("isBase64Encoded", false);
+        ObjectNode headers = event.putObject("headers")
+                .put("Accept", "application/json, application/x-ndjson, text/plain")
+                .put("Host", "localhost");
+        if (body != null) {
+            headers.put("Content-Type", "application/json");
+        }
+        if (!authorization.isEmpty()) {
+            headers.put("Authorization", authorization);
+        }
+        ObjectNode queryStringParameters = event.putObject("queryStringParameters");
+        ObjectNode multiValueQueryStringParameters = event.putObject("multiValueQueryStringParameters");
+        if (queryStart >= 0) {
+            for (String parameter : pathAndQuery.substring(queryStart + 1).split("&")) {
+                String[] nameAndValue = parameter.split("=", 2);
+                String value = (nameAndValue.length > 1) ? nameAndValue[1] : "";
+                queryStringParameters.put(nameAndValue[0], value);
+                multiValueQueryStringParameters.putArray(nameAndValue[0]).add(value);
+            }
+        }
+        event.putObject("requestContext")
+                .put("stage", "Prod")
+                .put("httpMethod", httpMethod)
+                .put("path", path)
+                .putObject("identity")
+                .put("sourceIp", "127.0.0.1");
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    private static String contentType(JsonNode response) {
+        for (String headersField : List.of("headers", "multiValueHeaders")) {
+            Iterator<Map.Entry<String, JsonNode>> headers = response.path(headersField).fields();
+            while (headers.hasNext()) {
+                Map.Entry<String, JsonNode> header = headers.next();
+                if (header.getKey().equalsIgnoreCase("Content-Type")) {
+                    JsonNode value = header.getValue();
+                    return (value.isArray() ? value.path(0) : value).asText("").toLowerCase();
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Read one of the memory figures of a process (on Linux only).
+     *
+     * @return The figure in KB, or -1 if it cannot be read.
+     */
+    private static long readMemoryKb(Process process, String figure) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(process.pid()), "status"),
+                    StandardCharsets.UTF_8)) {
+                if (line.startsWith(figure + ":")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux.
+        }
+        return -1;
+    }
+
+    private void report(List<RunResult> runResults) {
+        System.out.println();
+        System.out.printf("%-40s", "");
+        runResults.forEach(runResult -> System.out.printf("%22s", runResult.variant()));
+        System.out.println();
+        System.out.printf("%-40s", "cold start (ms)");
+        runResults.forEach(runResult -> System.out.printf("%22s", millis(runResult.initNanos())));
+        System.out.println();
+        System.out.printf("%-40s", "peak RSS (MB)");
+        runResults.forEach(runResult -> System.out.printf("%22s", megabytes(runResult.peakRssKb())));
+        System.out.println();
+        System.out.printf("%-40s", "final RSS (MB)");
+        runResults.forEach(runResult -> System.out.printf("%22s", megabytes(runResult.finalRssKb())));
+        System.out.println();
+
+        for (int i = 0; i < SMOKE_REQUESTS.size(); i++) {
+            System.out.printf("%-40s", SMOKE_REQUESTS.get(i));
+            for (RunResult runResult : runResults) {
+                if (i < runResult.outcomes().size()) {
+                    Outcome outcome = runResult.outcomes().get(i);
+                    System.out.printf("%22s", outcome.statusCode() + " in "
+                            + millis(outcome.latencyNanos()) + " ms"
+                            + (outcome.problem() == null ? "" : " !"));
+                } else {
+                    System.out.printf("%22s", "-");
+                }
+            }
+            System.out.println();
+        }
+        System.out.println();
+
+        for (RunResult runResult : runResults) {
+            for (Outcome outcome : runResult.outcomes()) {
+                if (outcome.problem() != null) {
+                    System.out.println("====> " + runResult.variant() + ": " + outcome.request()
+                            + " -> " + outcome.statusCode() + ": " + outcome.problem());
+                }
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return (nanos < 0) ? "-" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private static String megabytes(long kb) {
+        return (kb < 0) ? "-" : String.valueOf(kb / 1024);
+    }
+
+    private record SmokeRequest(String httpMethod, String path, String body) {
+        @Override
+        public String toString() {
+            return httpMethod + " " + path;
+        }
+    }
+
+    private record Variant(String name, List<String> command) {
+    }
+
+    private record Outcome(String request, int statusCode, long latencyNanos, String problem) {
+    }
+
+    private record RunResult(String variant, long initNanos, List<Outcome> outcomes,
+                             long peakRssKb, long finalRssKb) {
+        boolean passed() {
+            return initNanos >= 0 && outcomes.stream().allMatch(outcome -> outcome.problem() == null);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.smoketest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A minimal emulator of the AWS Lambda Runtime API, which a function's
+ * runtime polls for invocations and posts their responses to.
+ *
+ * <p>Only what the Lambda runtime interface client uses is emulated:
+ * `invocation/next`, `invocation/{id}/response`, `invocation/{id}/error`
+ * and `init/error`. Invocations are handed out one at a time, in the order
+ * of `invoke()`.</p>
+ */
+class RuntimeApiEmulator implements AutoCloseable {
+    private static final String PATH_PREFIX = "/2018-06-01/runtime/";
+    private static final String FUNCTION_ARN =
+            "arn:aws:lambda:us-east-2:000000000000:function:short-url-reservation-service-smoketest";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BlockingQueue<Invocation> pendingInvocations = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<byte[]>> pendingResponses = new ConcurrentHashMap<>();
+    private final CompletableFuture<Long> firstPollNanos = new CompletableFuture<>();
+    private final AtomicLong lastRequestId = new AtomicLong();
+
+    // ------------------------------------------------------------------------
+    // PUBLIC METHODS
+    // ------------------------------------------------------------------------
+
+    RuntimeApiEmulator() throws IOException {
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "runtime-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PATH_PREFIX, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return The address of the emulator, as the runtime expects it in
+     * `AWS_LAMBDA_RUNTIME_API`.
+     */
+    String address() {
+        return server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return A future that completes with the `System.nanoTime()` at which
+     * the runtime first polled for an invocation, i.e. at which the
+     * function finished initializing, or fails if its initialization did.
+     */
+    CompletableFuture<Long> firstPoll() {
+        return firstPollNanos;
+    }
+
+    /**
+     * Queue an invocation of the function.
+     *
+     * @param event The event to invoke the function with.
+     * @return A future that completes with the function's response, or
+     * fails if the function reports an error.
+     */
+    CompletableFuture<byte[]> invoke(byte[] event) {
+        String requestId = "smoketest-" + lastRequestId.incrementAndGet();
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        pendingResponses.put(requestId, response);
+        pendingInvocations.add(new Invocation(requestId, event));
+        return response;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------------------------------------
+    // PRIVATE METHODS
+    // ------------------------------------------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring(PATH_PREFIX.length());
+            byte[] body = readBody(exchange.getRequestBody());
+
+            if (path.equals("invocation/next")) {
+                firstPollNanos.complete(System.nanoTime());
+                Invocation invocation = pendingInvocations.take();
+                exchange.getResponseHeaders().add("Lambda-Runtime-Aws-Request-Id", invocation.requestId());
+                exchange.getResponseHeaders().add("Lambda-Runtime-Deadline-Ms",
+                        String.valueOf(System.currentTimeMillis() + 90_000));
+                exchange.getResponseHeaders().add("Lambda-Runtime-Invoked-Function-Arn", FUNCTION_ARN);
+                exchange.getResponseHeaders().add("Lambda-Runtime-Trace-Id",
+                        "Root=1-00000000-000000000000000000000000;Sampled=0");
+                send(exchange, 200, invocation.event());
+            } else if (path.equals("init/error")) {
+                firstPollNanos.completeExceptionally(new IllegalStateException(
+                        "Initialization failed: " + new String(body, StandardCharsets.UTF_8)));
+                send(exchange, 202, new byte[0]);
+            } else if (path.startsWith("invocation/") && path.endsWith("/response")) {
+                CompletableFuture<byte[]> response = pendingResponses.remove(requestId(path));
+                if (response != null) {
+                    response.complete(body);
+                }
+                send(exchange, 202, new byte[0]);
+            } else if (path.startsWith("invocation/") && path.endsWith("/error")) {
+                CompletableFuture<byte[]> response = pendingResponses.remove(requestId(path));
+                if (response != null) {
+                    response.completeExceptionally(new IllegalStateException(
+                            "Invocation failed: " + new String(body, StandardCharsets.UTF_8)));
+                }
+                send(exchange, 202, new byte[0]);
+            } else {
+                send(exchange, 404, new byte[0]);
+            }
+        } catch (InterruptedException e) {
+            // The emulator is closing.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String requestId(String path) {
+        return path.substring("invocation/".length(), path.lastIndexOf('/'));
+    }
+
+    private static byte[] readBody(InputStream inputStream) throws IOException {
+        try (inputStream) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+
+    private record Invocation(String requestId, byte[] event) {
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+/**
+ * This package contains the smoke test of the Lambda function, built as a
+ * GraalVM native image and run on the JVM, which is run by the `native`
+ * Maven profile.
+ */
+package com.richarddklein.shorturlreservationservice.smoketest;
@@ -0,0 +1,161 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import static com.richarddklein.shorturlreservationservice.dao.BitmapChunk.CHUNK_SIZE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `BitmapChunk`.
+ */
+class BitmapChunkTest {
+    @Test
+    void aNewChunkHasOnlyItsValidBitsAvailable() {
+        BitmapChunk chunk = BitmapChunk.newChunk(3, 100);
+
+        assertEquals(3, chunk.getChunkId());
+        assertEquals(0, chunk.getVersion());
+        assertEquals(100, chunk.getFreeCount());
+        assertFalse(chunk.isReserved(0));
+        assertFalse(chunk.isReserved(99));
+        assertTrue(chunk.isReserved(100));
+        assertTrue(chunk.isReserved(CHUNK_SIZE - 1));
+    }
+
+    @Test
+    void aFullChunkHasEveryBitAvailable() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, CHUNK_SIZE);
+
+        assertEquals(CHUNK_SIZE, chunk.getFreeCount());
+        assertFalse(chunk.isReserved(CHUNK_SIZE - 1));
+    }
+
+    @Test
+    void settingABitKeepsTheFreeCount() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, 64);
+
+        chunk.setReserved(9, true);
+        assertTrue(chunk.isReserved(9));
+        assertFalse(chunk.isReserved(8));
+        assertFalse(chunk.isReserved(10));
+        assertEquals(63, chunk.getFreeCount());
+
+        // Setting a bit to the value it already has changes nothing.
+        chunk.setReserved(9, true);
+        assertEquals(63, chunk.getFreeCount());
+
+        chunk.setReserved(9, false);
+        assertFalse(chunk.isReserved(9));
+        assertEquals(64, chunk.getFreeCount());
+        chunk.setReserved(9, false);
+        assertEquals(64, chunk.getFreeCount());
+    }
+
+    @Test
+    void findsAFreeBitFromTheStartBitOn() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, 64);
+        for (int bit = 0; bit < 20; bit++) {
+            chunk.setReserved(bit, true);
+        }
+
+        assertEquals(20, chunk.findFreeBit(0));
+        assertEquals(40, chunk.findFreeBit(40));
+    }
+
+    @Test
+    void wrapsAroundWhenLookingForAFreeBit() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, 64);
+        for (int bit = 8; bit < 64; bit++) {
+            chunk.setReserved(bit, true);
+        }
+
+        // Every bit from the start bit to the end is reserved, or invalid.
+        assertEquals(0, chunk.findFreeBit(CHUNK_SIZE - 8));
+    }
+
+    @Test
+    void reservingAndCancelingAllRespectTheValidBits() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, 1000);
+
+        chunk.reserveAll();
+        assertEquals(0, chunk.getFreeCount());
+        assertEquals(-1, chunk.findFreeBit(0));
+
+        chunk.cancelAll(1000);
+        assertEquals(1000, chunk.getFreeCount());
+        assertFalse(chunk.isReserved(999));
+        assertTrue(chunk.isReserved(1000));
+    }
+
+    @Test
+    void roundTripsThroughADynamoDbItem() {
+        BitmapChunk chunk = BitmapChunk.newChunk(7, 100);
+        chunk.setReserved(42, true);
+
+        Map<String, AttributeValue> item = chunk.toItem();
+        assertEquals("7", item.get(BitmapChunk.HAS_FREE_BITS).n());
+
+        BitmapChunk copy = BitmapChunk.fromItem(item);
+        assertEquals(7, copy.getChunkId());
+        assertEquals(1, copy.getVersion());
+        assertEquals(99, copy.getFreeCount());
+        assertTrue(copy.isReserved(42));
+        assertFalse(copy.isReserved(43));
+        assertTrue(copy.isReserved(100));
+    }
+
+    @Test
+    void aChunkWithNoFreeBitsLeavesTheIndex() {
+        BitmapChunk chunk = BitmapChunk.newChunk(7, 100);
+        chunk.reserveAll();
+
+        assertNull(chunk.toItem().get(BitmapChunk.HAS_FREE_BITS));
+    }
+
+    @Test
+    void wideningMakesTheNewShortUrlsAvailable() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, 100);
+        chunk.setReserved(50, true);
+
+        assertEquals(50, chunk.widen(100, 150));
+        assertEquals(149, chunk.getFreeCount());
+        assertFalse(chunk.isReserved(100));
+        assertFalse(chunk.isReserved(149));
+        assertTrue(chunk.isReserved(150));
+        assertTrue(chunk.isReserved(50));
+    }
+
+    @Test
+    void wideningAgainChangesNothing() {
+        BitmapChunk chunk = BitmapChunk.newChunk(0, 100);
+        chunk.widen(100, 150);
+        chunk.setReserved(120, true);
+
+        // As when an interrupted extension is redone, after somebody has
+        // reserved one of the new short URLs.
+        BitmapChunk copy = BitmapChunk.fromItem(chunk.toItem());
+        assertEquals(0, copy.widen(100, 150));
+        assertTrue(copy.isReserved(120));
+        assertEquals(149, copy.getFreeCount());
+    }
+
+    @Test
+    void wideningAChunkThatDoesNotRecordItsValidBits() {
+        Map<String, AttributeValue> item = new HashMap<>(BitmapChunk.newChunk(0, 100).toItem());
+        item.remove(BitmapChunk.VALID_BITS);
+        BitmapChunk chunk = BitmapChunk.fromItem(item);
+
+        assertEquals(CHUNK_SIZE - 100, chunk.widen(100, CHUNK_SIZE));
+        assertEquals(CHUNK_SIZE, chunk.getFreeCount());
+        assertEquals(String.valueOf(CHUNK_SIZE), chunk.toItem().get(BitmapChunk.VALID_BITS).n());
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `JitteredBackoff`.
+ */
+class JitteredBackoffTest {
+    @Test
+    void delaysStayWithinTheExponentialCap() {
+        JitteredBackoff backoff = new JitteredBackoff(Duration.ofMillis(10), Duration.ofSeconds(10));
+
+        for (int numRetriesSoFar = 0; numRetriesSoFar < 8; numRetriesSoFar++) {
+            Duration cap = Duration.ofMillis(10L << numRetriesSoFar);
+            for (int i = 0; i < 1000; i++) {
+                Duration delay = backoff.nextDelay(numRetriesSoFar);
+                assertFalse(delay.isNegative());
+                assertTrue(delay.compareTo(cap) <= 0, "Retry " + numRetriesSoFar + ": " + delay);
+            }
+        }
+    }
+
+    @Test
+    void delaysNeverExceedTheMaxDelay() {
+        JitteredBackoff backoff = new JitteredBackoff(Duration.ofMillis(10), Duration.ofMillis(100));
+
+        // Includes shift counts that would overflow without the cap.
+        for (long numRetriesSoFar : new long[] {4, 10, 40, 63, 1000}) {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(backoff.nextDelay(numRetriesSoFar).compareTo(Duration.ofMillis(100)) <= 0);
+            }
+        }
+    }
+
+    @Test
+    void delaysAreSpreadOut() {
+        JitteredBackoff backoff = new JitteredBackoff(Duration.ofMillis(100), Duration.ofMillis(100));
+
+        long numInLowerHalf = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (backoff.nextDelay(0).compareTo(Duration.ofMillis(50)) < 0) {
+                numInLowerHalf++;
+            }
+        }
+        assertTrue(numInLowerHalf > 4500 && numInLowerHalf < 5500, "In lower half: " + numInLowerHalf);
+    }
+
+    @Test
+    void zeroDelaysAllowImmediateRetries() {
+        JitteredBackoff backoff = new JitteredBackoff(Duration.ZERO, Duration.ZERO);
+
+        assertEquals(Duration.ZERO, backoff.nextDelay(0));
+        assertEquals(Duration.ZERO, backoff.nextDelay(5));
+    }
+}
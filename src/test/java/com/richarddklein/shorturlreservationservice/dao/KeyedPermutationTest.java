@@ -0,0 +1,68 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `KeyedPermutation`.
+ */
+class KeyedPermutationTest {
+    @Test
+    void isABijectionOverTheDomain() {
+        for (long domainSize : new long[] {1, 2, 3, 63, 64, 65, 1000, 4096, 5001}) {
+            for (long key : new long[] {0, 1, 0x5eed_1234_abcdL, -1}) {
+                KeyedPermutation keyedPermutation = new KeyedPermutation(domainSize, key);
+                boolean[] seen = new boolean[(int) domainSize];
+                for (long n = 0; n < domainSize; n++) {
+                    long image = keyedPermutation.permute(n);
+                    assertTrue(image >= 0 && image < domainSize,
+                            "Image " + image + " of " + n + " outside [0, " + domainSize + ")");
+                    assertFalse(seen[(int) image],
+                            "Image " + image + " hit twice (domain " + domainSize + ", key " + key + ")");
+                    seen[(int) image] = true;
+                }
+            }
+        }
+    }
+
+    @Test
+    void isDeterministicForAGivenKey() {
+        KeyedPermutation first = new KeyedPermutation(100_000, 42);
+        KeyedPermutation second = new KeyedPermutation(100_000, 42);
+        for (long n = 0; n < 100_000; n += 997) {
+            assertEquals(first.permute(n), second.permute(n));
+        }
+    }
+
+    @Test
+    void differentKeysGiveDifferentPermutations() {
+        KeyedPermutation first = new KeyedPermutation(1000, 1);
+        KeyedPermutation second = new KeyedPermutation(1000, 2);
+        int numDifferences = 0;
+        for (long n = 0; n < 1000; n++) {
+            if (first.permute(n) != second.permute(n)) {
+                numDifferences++;
+            }
+        }
+        assertTrue(numDifferences > 900, "Only " + numDifferences + " values differ");
+    }
+
+    @Test
+    void rejectsValuesOutsideTheDomain() {
+        KeyedPermutation keyedPermutation = new KeyedPermutation(10, 7);
+        assertThrows(IllegalArgumentException.class, () -> keyedPermutation.permute(-1));
+        assertThrows(IllegalArgumentException.class, () -> keyedPermutation.permute(10));
+    }
+
+    @Test
+    void rejectsDomainSizesOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyedPermutation(0, 7));
+        assertThrows(IllegalArgumentException.class, () -> new KeyedPermutation((1L << 62) + 1, 7));
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `PageCursor`.
+ */
+class PageCursorTest {
+    @Test
+    void decodeIsTheInverseOfEncode() {
+        for (String position : new String[] {"0", "aZ_-9", "12345678", "a:b:c", "\u00e9t\u00e9"}) {
+            assertEquals(position, PageCursor.decode(PageCursor.encode(position)));
+        }
+    }
+
+    @Test
+    void cursorsAreUrlSafe() {
+        String cursor = PageCursor.encode("??>>??");
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(""));
+        // Well-formed Base64, but without the version prefix...
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(base64("abc")));
+        // ...or with another version...
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(base64("v2:abc")));
+        // ...or with no position.
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(PageCursor.encode("")));
+    }
+
+    private static String base64(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
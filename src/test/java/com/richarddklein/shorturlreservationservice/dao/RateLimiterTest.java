@@ -0,0 +1,59 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `RateLimiter`.
+ */
+class RateLimiterTest {
+    @Test
+    void doesNotDelayTheFirstCaller() {
+        RateLimiter rateLimiter = new RateLimiter(1);
+
+        assertTrue(elapsedMillis(rateLimiter.acquire(1)) < 500);
+    }
+
+    @Test
+    void spacesCallersOutAtTheRate() {
+        // 1000 permits per second, so each batch of 100 permits takes 100 ms.
+        RateLimiter rateLimiter = new RateLimiter(1000);
+
+        long elapsedMillis = elapsedMillis(Mono.when(
+                rateLimiter.acquire(100),
+                rateLimiter.acquire(100),
+                rateLimiter.acquire(100)));
+
+        // The third caller may start once the first two have had their
+        // 200 ms.
+        assertTrue(elapsedMillis >= 180, elapsedMillis + " ms");
+        assertTrue(elapsedMillis < 2000, elapsedMillis + " ms");
+    }
+
+    @Test
+    void zeroMeansNoLimit() {
+        RateLimiter rateLimiter = new RateLimiter(0);
+
+        long elapsedMillis = elapsedMillis(Mono.when(
+                rateLimiter.acquire(1_000_000),
+                rateLimiter.acquire(1_000_000)));
+
+        assertTrue(elapsedMillis < 500, elapsedMillis + " ms");
+    }
+
+    private static long elapsedMillis(Mono<Void> mono) {
+        long startNanos = System.nanoTime();
+        mono.block(Duration.ofSeconds(10));
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `RetryBudget`.
+ */
+class RetryBudgetTest {
+    @Test
+    void allowsABurstOfUpToTheCapacity() {
+        RetryBudget retryBudget = new RetryBudget(3, 0);
+
+        assertTrue(retryBudget.tryAcquire());
+        assertTrue(retryBudget.tryAcquire());
+        assertTrue(retryBudget.tryAcquire());
+        assertFalse(retryBudget.tryAcquire());
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        RetryBudget retryBudget = new RetryBudget(1, 20);
+        assertTrue(retryBudget.tryAcquire());
+        assertFalse(retryBudget.tryAcquire());
+
+        // One token every 50 ms.
+        Thread.sleep(120);
+        assertTrue(retryBudget.tryAcquire());
+    }
+
+    @Test
+    void neverRefillsPastTheCapacity() throws InterruptedException {
+        RetryBudget retryBudget = new RetryBudget(2, 10);
+        assertTrue(retryBudget.tryAcquire());
+        assertTrue(retryBudget.tryAcquire());
+
+        // Long enough for 3 tokens, but the bucket only holds 2, and the
+        // next one is another 100 ms away.
+        Thread.sleep(300);
+        assertTrue(retryBudget.tryAcquire());
+        assertTrue(retryBudget.tryAcquire());
+        assertFalse(retryBudget.tryAcquire());
+    }
+
+    @Test
+    void resetFillsTheBucketUp() {
+        RetryBudget retryBudget = new RetryBudget(2, 0);
+        assertTrue(retryBudget.tryAcquire());
+        assertTrue(retryBudget.tryAcquire());
+        assertFalse(retryBudget.tryAcquire());
+
+        retryBudget.reset();
+        assertTrue(retryBudget.tryAcquire());
+        assertTrue(retryBudget.tryAcquire());
+        assertFalse(retryBudget.tryAcquire());
+    }
+}
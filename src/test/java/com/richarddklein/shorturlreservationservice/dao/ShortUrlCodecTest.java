@@ -0,0 +1,95 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `ShortUrlCodec`.
+ */
+class ShortUrlCodecTest {
+    @Test
+    void encodesTheDigitsInOrder() {
+        assertEquals("0", ShortUrlCodec.encode(0));
+        assertEquals("9", ShortUrlCodec.encode(9));
+        assertEquals("a", ShortUrlCodec.encode(10));
+        assertEquals("A", ShortUrlCodec.encode(36));
+        assertEquals("_", ShortUrlCodec.encode(62));
+        assertEquals("-", ShortUrlCodec.encode(63));
+        assertEquals("10", ShortUrlCodec.encode(64));
+    }
+
+    @Test
+    void decodeIsTheInverseOfEncode() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 10_000; i++) {
+            long n = random.nextLong(Long.MAX_VALUE);
+            String shortUrl = ShortUrlCodec.encode(n);
+            assertEquals(ShortUrlCodec.length(n), shortUrl.length());
+            assertEquals(n, ShortUrlCodec.decode(shortUrl));
+        }
+        for (long n : new long[] {0, 1, 63, 64, 4095, 4096, Long.MAX_VALUE}) {
+            assertEquals(n, ShortUrlCodec.decode(ShortUrlCodec.encode(n)));
+        }
+    }
+
+    @Test
+    void encodesIntoTheCallersBuffer() {
+        char[] buffer = "xxxxxxxx".toCharArray();
+        int length = ShortUrlCodec.encode(4096, buffer, 2);
+        assertEquals(3, length);
+        assertEquals("xx100xxx", new String(buffer));
+        assertEquals(4096, ShortUrlCodec.decode(new String(buffer), 2, 2 + length));
+    }
+
+    @Test
+    void padsToAFixedWidth() {
+        assertEquals("0005", ShortUrlCodec.encode(5, 4));
+        assertEquals(5, ShortUrlCodec.decode("0005"));
+        assertEquals("-", ShortUrlCodec.encode(63, 1));
+        assertThrows(IllegalArgumentException.class, () -> ShortUrlCodec.encode(64, 1));
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> ShortUrlCodec.encode(-1));
+        assertThrows(IllegalArgumentException.class, () -> ShortUrlCodec.encode(-1, 4));
+    }
+
+    @Test
+    void tellsValidShortUrlsFromInvalidOnes() {
+        assertTrue(ShortUrlCodec.isValid("0"));
+        assertTrue(ShortUrlCodec.isValid("aZ_-9"));
+        assertTrue(ShortUrlCodec.isValid("0000"));
+
+        assertFalse(ShortUrlCodec.isValid(null));
+        assertFalse(ShortUrlCodec.isValid(""));
+        assertFalse(ShortUrlCodec.isValid("ab+c"));
+        assertFalse(ShortUrlCodec.isValid("ab/c"));
+        assertFalse(ShortUrlCodec.isValid("\u00e9"));
+        assertThrows(IllegalArgumentException.class, () -> ShortUrlCodec.decode("ab+c"));
+        assertThrows(IllegalArgumentException.class, () -> ShortUrlCodec.decode(null));
+    }
+
+    @Test
+    void handlesTheMaximumLength() {
+        String largest = ShortUrlCodec.encode(Long.MAX_VALUE);
+        assertEquals(ShortUrlCodec.MAX_LENGTH, largest.length());
+        assertEquals("7----------", largest);
+        assertTrue(ShortUrlCodec.isValid(largest));
+        assertEquals(Long.MAX_VALUE, ShortUrlCodec.decode(largest));
+
+        // One more than `Long.MAX_VALUE` does not fit in a long integer.
+        assertFalse(ShortUrlCodec.isValid("80000000000"));
+        // Nor does any short URL longer than `MAX_LENGTH`, even a zero.
+        assertFalse(ShortUrlCodec.isValid("0".repeat(ShortUrlCodec.MAX_LENGTH + 1)));
+        assertTrue(ShortUrlCodec.isValid("0".repeat(ShortUrlCodec.MAX_LENGTH)));
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * The Short URL Reservation Service
+ * (Copyright 2024 by Richard Klein)
+ */
+
+package com.richarddklein.shorturlreservationservice.dao;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests of the `StaleKeyCache`.
+ */
+class StaleKeyCacheTest {
+    @Test
+    void remembersAStaleShortUrlUntilItExpires() throws InterruptedException {
+        StaleKeyCache staleKeyCache = new StaleKeyCache(Duration.ofMillis(50), 10);
+        staleKeyCache.markStale("abc");
+
+        assertTrue(staleKeyCache.isStale("abc"));
+        assertFalse(staleKeyCache.isStale("abd"));
+
+        Thread.sleep(100);
+        assertFalse(staleKeyCache.isStale("abc"));
+    }
+
+    @Test
+    void ignoresNewShortUrlsWhenFull() {
+        StaleKeyCache staleKeyCache = new StaleKeyCache(Duration.ofMinutes(1), 2);
+        staleKeyCache.markStale("a");
+        staleKeyCache.markStale("b");
+        staleKeyCache.markStale("c");
+
+        assertTrue(staleKeyCache.isStale("a"));
+        assertTrue(staleKeyCache.isStale("b"));
+        assertFalse(staleKeyCache.isStale("c"));
+    }
+
+    @Test
+    void makesRoomByPurgingExpiredShortUrls() throws InterruptedException {
+        StaleKeyCache staleKeyCache = new StaleKeyCache(Duration.ofMillis(50), 1);
+        staleKeyCache.markStale("a");
+
+        Thread.sleep(100);
+        staleKeyCache.markStale("b");
+        assertTrue(staleKeyCache.isStale("b"));
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        StaleKeyCache staleKeyCache = new StaleKeyCache(Duration.ofMinutes(1), 10);
+        staleKeyCache.markStale("a");
+
+        staleKeyCache.clear();
+        assertFalse(staleKeyCache.isStale("a"));
+    }
+}